@@ -1,10 +1,18 @@
 package com.github.nonfou.mpay.autoconfigure;
 
 import com.alipay.api.AlipayClient;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
 import com.github.nonfou.mpay.controller.PaymentController;
 import com.github.nonfou.mpay.payment.config.AlipayConfig;
+import com.github.nonfou.mpay.payment.config.CallbackDedupConfig;
+import com.github.nonfou.mpay.payment.config.CallbackPipelineConfig;
+import com.github.nonfou.mpay.payment.config.ResilienceConfig;
 import com.github.nonfou.mpay.payment.service.AlipayService;
 import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
+import com.github.nonfou.mpay.transaction.config.AsyncConfig;
+import com.github.nonfou.mpay.transaction.event.PaymentEventCodec;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import com.github.nonfou.mpay.transaction.event.PaymentEventSpillStore;
 import com.github.nonfou.mpay.websocket.PaymentWebSocketHandler;
 import com.github.nonfou.mpay.websocket.WebSocketConfig;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -27,6 +35,14 @@ import org.springframework.context.annotation.Import;
         AlipayService.class,
         PaymentWebSocketHandler.class,
         WebSocketConfig.class,
+        AsyncConfig.class,
+        PaymentEventCodec.class,
+        PaymentEventSpillStore.class,
+        PaymentEventPublisher.class,
+        CallbackDedupConfig.class,
+        CallbackPipelineConfig.class,
+        ResilienceConfig.class,
+        PaymentMetrics.class,
         PaymentCallbackService.class,
         PaymentController.class
 })
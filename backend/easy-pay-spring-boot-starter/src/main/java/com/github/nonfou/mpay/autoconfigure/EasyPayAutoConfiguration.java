@@ -1,17 +1,23 @@
 package com.github.nonfou.mpay.autoconfigure;
 
+import com.github.nonfou.mpay.payment.config.VirtualThreadConfig;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Easy Pay 主自动配置类
  * <p>
- * 自动导入支付宝和微信支付的配置
+ * 自动导入支付宝和微信支付的配置；
+ * 配置 easy-pay.virtual-threads.enabled=true 时启用虚拟线程模式；
+ * 落盘事件回放、回调重试等依赖 @Scheduled 定时执行，因此在 Starter 中启用定时任务
  */
 @AutoConfiguration
+@EnableScheduling
 @Import({
         AlipayAutoConfiguration.class,
-        WxPayAutoConfiguration.class
+        WxPayAutoConfiguration.class,
+        VirtualThreadConfig.class
 })
 public class EasyPayAutoConfiguration {
 }
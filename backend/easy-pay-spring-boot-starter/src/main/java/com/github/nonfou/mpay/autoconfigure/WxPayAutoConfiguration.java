@@ -1,8 +1,20 @@
 package com.github.nonfou.mpay.autoconfigure;
 
 import com.github.binarywang.wxpay.service.WxPayService;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
+import com.github.nonfou.mpay.controller.PaymentController;
+import com.github.nonfou.mpay.payment.config.CallbackDedupConfig;
+import com.github.nonfou.mpay.payment.config.CallbackPipelineConfig;
+import com.github.nonfou.mpay.payment.config.ResilienceConfig;
 import com.github.nonfou.mpay.payment.config.WxPayConfiguration;
+import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
 import com.github.nonfou.mpay.payment.service.WxPayServiceWrapper;
+import com.github.nonfou.mpay.transaction.config.AsyncConfig;
+import com.github.nonfou.mpay.transaction.event.PaymentEventCodec;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import com.github.nonfou.mpay.transaction.event.PaymentEventSpillStore;
+import com.github.nonfou.mpay.websocket.PaymentWebSocketHandler;
+import com.github.nonfou.mpay.websocket.WebSocketConfig;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -20,7 +32,19 @@ import org.springframework.context.annotation.Import;
 @ConditionalOnProperty(prefix = "easy-pay.wxpay", name = "app-id")
 @Import({
         WxPayConfiguration.class,
-        WxPayServiceWrapper.class
+        WxPayServiceWrapper.class,
+        PaymentWebSocketHandler.class,
+        WebSocketConfig.class,
+        AsyncConfig.class,
+        PaymentEventCodec.class,
+        PaymentEventSpillStore.class,
+        PaymentEventPublisher.class,
+        CallbackDedupConfig.class,
+        CallbackPipelineConfig.class,
+        ResilienceConfig.class,
+        PaymentMetrics.class,
+        PaymentCallbackService.class,
+        PaymentController.class
 })
 public class WxPayAutoConfiguration {
 }
@@ -0,0 +1,141 @@
+package com.github.nonfou.mpay.common.metrics;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * 支付链路指标
+ * <p>
+ * 网关调用、回调验签、回调处理、事件处理、数据库写入和退款的耗时，均按 platform、operation、outcome 打标签，
+ * 并发布百分位直方图，可在 Prometheus 中用 histogram_quantile 计算 P95、P99。
+ * <ul>
+ *     <li>payment.gateway.call - 调用支付网关</li>
+ *     <li>payment.callback.verify - 回调验签与解析</li>
+ *     <li>payment.callback.handle - 回调业务处理</li>
+ *     <li>payment.callback.stage - 启用分阶段处理时各阶段耗时，operation 为 journal、queue、process、push</li>
+ *     <li>payment.event.handle - 支付/退款事件处理（含数据库事务）</li>
+ *     <li>payment.db.write - 事件处理中的交易、退款记录写入</li>
+ *     <li>payment.refund - 发起退款全流程，另有 payment.refund.amount 累计退款金额</li>
+ * </ul>
+ */
+@Component
+public class PaymentMetrics {
+
+    /**
+     * 未注入指标时使用，记录的指标直接丢弃
+     */
+    public static final PaymentMetrics NOOP = new PaymentMetrics(new CompositeMeterRegistry());
+
+    public static final String SUCCESS = "success";
+    /**
+     * 网关已正常应答但业务失败，如订单不存在、余额不足
+     */
+    public static final String FAILURE = "failure";
+    public static final String ERROR = "error";
+    /**
+     * 被限流、熔断或并发隔离拒绝，未访问网关
+     */
+    public static final String REJECTED = "rejected";
+    public static final String INVALID = "invalid";
+    public static final String DUPLICATE = "duplicate";
+    /**
+     * 多次处理失败，不再自动重试
+     */
+    public static final String DEAD_LETTER = "dead_letter";
+
+    private final MeterRegistry meterRegistry;
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 开始计时
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void recordGatewayCall(Timer.Sample sample, PaymentPlatform platform, String operation, String outcome) {
+        sample.stop(timer("payment.gateway.call", "支付网关调用耗时", platform, operation, outcome));
+    }
+
+    public void recordCallbackVerify(Timer.Sample sample, PaymentPlatform platform, String outcome) {
+        recordCallbackVerify(sample, platform, "notify", outcome);
+    }
+
+    /**
+     * @param operation notify 为支付结果通知，refund_notify 为退款结果通知
+     */
+    public void recordCallbackVerify(Timer.Sample sample, PaymentPlatform platform, String operation, String outcome) {
+        sample.stop(timer("payment.callback.verify", "支付回调验签耗时", platform, operation, outcome));
+    }
+
+    public void recordCallbackHandle(Timer.Sample sample, PaymentPlatform platform, String outcome) {
+        recordCallbackHandle(sample, platform, "notify", outcome);
+    }
+
+    public void recordCallbackHandle(Timer.Sample sample, PaymentPlatform platform, String operation, String outcome) {
+        sample.stop(timer("payment.callback.handle", "支付回调处理耗时", platform, operation, outcome));
+    }
+
+    /**
+     * @param stage journal 为写入回调日志，queue 为等待处理线程，process 为去重与发布事件，push 为 WebSocket 推送（含排队）
+     */
+    public void recordCallbackStage(Timer.Sample sample, PaymentPlatform platform, String stage, String outcome) {
+        sample.stop(timer("payment.callback.stage", "支付回调分阶段处理耗时", platform, stage, outcome));
+    }
+
+    public void recordEventHandle(Timer.Sample sample, PaymentPlatform platform, String eventType, String outcome) {
+        sample.stop(timer("payment.event.handle", "支付事件处理耗时", platform, eventType, outcome));
+    }
+
+    public void recordDbWrite(Timer.Sample sample, PaymentPlatform platform, String operation) {
+        sample.stop(timer("payment.db.write", "支付数据写入耗时", platform, operation, SUCCESS));
+    }
+
+    public void recordRefund(Timer.Sample sample, PaymentPlatform platform, String outcome, BigDecimal amount) {
+        sample.stop(timer("payment.refund", "发起退款耗时", platform, "refund", outcome));
+        if (SUCCESS.equals(outcome) && amount != null) {
+            Counter.builder("payment.refund.amount")
+                    .description("退款成功的累计金额（元）")
+                    .tag("platform", tag(platform))
+                    .register(meterRegistry)
+                    .increment(amount.doubleValue());
+        }
+    }
+
+    /**
+     * 按异常判断调用结果：被限流、熔断或隔离拒绝为 rejected，其余为 error
+     */
+    public static String outcomeOf(Throwable e) {
+        if (e instanceof BusinessException be && (be.getErrorCode() == ErrorCode.TOO_MANY_REQUESTS
+                || be.getErrorCode() == ErrorCode.SERVICE_UNAVAILABLE)) {
+            return REJECTED;
+        }
+        return ERROR;
+    }
+
+    private Timer timer(String name, String description, PaymentPlatform platform, String operation, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("platform", tag(platform))
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String tag(PaymentPlatform platform) {
+        return platform == null ? "unknown" : platform.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.nonfou.mpay.common.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页返回体。
+ * <p>
+ * nextCursor 为下一页的续传令牌，没有更多数据时为 null；total 仅在请求时返回。
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPageResponse<T> {
+    private final long pageSize;
+    private final boolean hasMore;
+    private final String nextCursor;
+    private final Long total;
+    private final List<T> items;
+
+    private CursorPageResponse(long pageSize, boolean hasMore, String nextCursor, Long total, List<T> items) {
+        this.pageSize = pageSize;
+        this.hasMore = hasMore;
+        this.nextCursor = nextCursor;
+        this.total = total;
+        this.items = items == null ? Collections.emptyList() : Collections.unmodifiableList(items);
+    }
+
+    public static <T> CursorPageResponse<T> of(long pageSize, String nextCursor, Long total, List<T> items) {
+        return new CursorPageResponse<>(pageSize, nextCursor != null, nextCursor, total, items);
+    }
+
+    /**
+     * 从多查一条（pageSize + 1）的结果构造，多出的一条只用于判断是否还有下一页
+     */
+    public static <E, T> CursorPageResponse<T> of(List<E> rows,
+                                                  int pageSize,
+                                                  Function<E, SeekCursor> cursorOf,
+                                                  Function<E, T> mapper,
+                                                  Long total) {
+        boolean hasMore = rows.size() > pageSize;
+        List<E> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(page.get(page.size() - 1)).encode() : null;
+        return of(pageSize, nextCursor, total, page.stream().map(mapper).toList());
+    }
+}
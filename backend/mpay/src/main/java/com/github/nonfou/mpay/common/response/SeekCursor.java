@@ -0,0 +1,48 @@
+package com.github.nonfou.mpay.common.response;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标分页的定位键 (createdAt, id)。
+ * <p>
+ * 列表按 createdAt DESC, id DESC 排序，下一页取严格小于该键的记录，
+ * 不需要 OFFSET，翻到多深都只扫描一页的数据。对外编码为不透明的 Base64 令牌。
+ */
+public record SeekCursor(LocalDateTime createdAt, Long id) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * 编码为续传令牌
+     */
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析续传令牌，为空时返回 null（第一页）
+     */
+    public static SeekCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            if (index <= 0) {
+                throw new IllegalArgumentException(raw);
+            }
+            return new SeekCursor(LocalDateTime.parse(raw.substring(0, index)),
+                    Long.parseLong(raw.substring(index + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException(ErrorCode.INVALID_ARGUMENT, "无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.nonfou.mpay.common.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮定时器
+ * <p>
+ * 底层时间轮每格 tickMs、共 wheelSize 格，超出一圈范围的定时任务放入按需创建的上层时间轮（上层每格等于下层一圈）。
+ * 只有非空的格子进入 DelayQueue，工作线程在格子到期时推进时钟，把格子里的任务降到下层或交给 executor 执行。
+ * 注册和取消都是 O(1)，与待触发的定时任务总数无关；到期任务在 executor 中执行，不应长时间阻塞。
+ */
+@Slf4j
+public class HierarchicalTimingWheel implements AutoCloseable {
+
+    private final DelayQueue<Bucket> queue = new DelayQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Wheel wheel;
+    private final Executor executor;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * @param name      工作线程名称
+     * @param tickMs    底层时间轮每格的时长（毫秒），即定时精度
+     * @param wheelSize 每层时间轮的格数
+     * @param executor  执行到期任务的线程池
+     */
+    public HierarchicalTimingWheel(String name, long tickMs, int wheelSize, Executor executor) {
+        this.executor = executor;
+        this.wheel = new Wheel(tickMs, wheelSize, now(), queue);
+        this.worker = Thread.ofPlatform().name(name).daemon(true).unstarted(this::run);
+        this.worker.start();
+    }
+
+    /**
+     * 注册定时任务
+     *
+     * @param task    到期时执行的任务
+     * @param delayMs 延迟（毫秒），小于等于 0 时立即执行
+     * @return 可用于取消的句柄
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(this, task, now() + Math.max(0, delayMs));
+        pending.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            addOrExpire(timeout);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * 待触发的定时任务数
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Bucket bucket = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (bucket == null) {
+                    continue;
+                }
+                lock.writeLock().lock();
+                try {
+                    while (bucket != null) {
+                        wheel.advanceClock(bucket.getExpiration());
+                        bucket.flush(this::addOrExpire);
+                        bucket = queue.poll();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("时间轮推进失败", e);
+            }
+        }
+    }
+
+    /**
+     * 放入时间轮；已进入当前格的任务直接到期执行
+     */
+    private void addOrExpire(Timeout timeout) {
+        if (timeout.isCancelled()) {
+            return;
+        }
+        if (!wheel.add(timeout)) {
+            expire(timeout);
+        }
+    }
+
+    private void expire(Timeout timeout) {
+        if (!timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+            return;
+        }
+        pending.decrementAndGet();
+        try {
+            executor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            log.error("定时任务被拒绝执行", e);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HierarchicalTimingWheel timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // 所在格子的双向链表，由格子加锁维护
+        private volatile Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(HierarchicalTimingWheel timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消定时任务
+         *
+         * @return 取消前任务尚未到期
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            timer.pending.decrementAndGet();
+            Bucket current = bucket;
+            if (current != null) {
+                current.remove(this);
+            }
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    /**
+     * 时间轮中的一格，到期时间为该格覆盖时间段的起点
+     */
+    private static final class Bucket implements Delayed {
+
+        private final AtomicLong expiration = new AtomicLong(-1);
+        private final Timeout head = new Timeout(null, null, -1);
+
+        private Bucket() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        synchronized void add(Timeout timeout) {
+            if (timeout.bucket != null) {
+                return;
+            }
+            Timeout tail = head.prev;
+            timeout.next = head;
+            timeout.prev = tail;
+            tail.next = timeout;
+            head.prev = timeout;
+            timeout.bucket = this;
+        }
+
+        synchronized void remove(Timeout timeout) {
+            if (timeout.bucket == this) {
+                unlink(timeout);
+            }
+        }
+
+        /**
+         * 取出全部任务并重置到期时间，任务交给 consumer 重新放入时间轮或执行
+         */
+        void flush(Consumer<Timeout> consumer) {
+            List<Timeout> timeouts = new ArrayList<>();
+            synchronized (this) {
+                Timeout current = head.next;
+                while (current != head) {
+                    Timeout next = current.next;
+                    unlink(current);
+                    timeouts.add(current);
+                    current = next;
+                }
+                expiration.set(-1);
+            }
+            timeouts.forEach(consumer);
+        }
+
+        /**
+         * @return 到期时间是否变化，变化时需要重新放入 DelayQueue
+         */
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        private void unlink(Timeout timeout) {
+            timeout.prev.next = timeout.next;
+            timeout.next.prev = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - now(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((Bucket) other).getExpiration());
+        }
+    }
+
+    /**
+     * 单层时间轮
+     */
+    private static final class Wheel {
+
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket[] buckets;
+        private final DelayQueue<Bucket> queue;
+        private volatile long currentTime;
+        private volatile Wheel overflow;
+
+        Wheel(long tickMs, int wheelSize, long startMs, DelayQueue<Bucket> queue) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.queue = queue;
+            this.currentTime = startMs - startMs % tickMs;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        /**
+         * @return false 表示任务已到期，应立即执行
+         */
+        boolean add(Timeout timeout) {
+            long deadline = timeout.deadline;
+            if (deadline < currentTime + tickMs) {
+                return false;
+            }
+            if (deadline < currentTime + interval) {
+                long virtualId = deadline / tickMs;
+                Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(timeout);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            return overflowWheel().add(timeout);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - timeMs % tickMs;
+                Wheel upper = overflow;
+                if (upper != null) {
+                    upper.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Wheel overflowWheel() {
+            Wheel upper = overflow;
+            if (upper == null) {
+                synchronized (this) {
+                    upper = overflow;
+                    if (upper == null) {
+                        upper = new Wheel(interval, wheelSize, currentTime, queue);
+                        overflow = upper;
+                    }
+                }
+            }
+            return upper;
+        }
+    }
+}
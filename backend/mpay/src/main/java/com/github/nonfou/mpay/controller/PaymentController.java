@@ -5,14 +5,19 @@ import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.nonfou.mpay.common.response.ApiResponse;
 import com.github.nonfou.mpay.payment.dto.alipay.*;
 import com.github.nonfou.mpay.payment.dto.wxpay.*;
+import com.github.nonfou.mpay.payment.resilience.GatewayRateLimitedException;
+import com.github.nonfou.mpay.payment.resilience.GatewayUnavailableException;
 import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.github.nonfou.mpay.payment.service.CallbackPipeline;
 import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
 import com.github.nonfou.mpay.payment.service.WxPayServiceWrapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -32,6 +37,12 @@ public class PaymentController {
     @Autowired(required = false)
     private WxPayServiceWrapper wxPayService;
 
+    /**
+     * 启用分阶段处理时，回调验签后写入日志即应答，业务处理异步执行
+     */
+    @Autowired(required = false)
+    private CallbackPipeline callbackPipeline;
+
     // ==================== 支付宝接口 ====================
 
     /**
@@ -143,6 +154,9 @@ public class PaymentController {
         }
         try {
             AlipayCallbackDTO callback = alipayService.verifyCallback(request);
+            if (callbackPipeline != null && callbackPipeline.submitAlipay(callback)) {
+                return "SUCCESS";
+            }
             boolean success = callbackService.handleAlipayCallback(callback);
             return success ? "SUCCESS" : "FAIL";
         } catch (AlipayApiException e) {
@@ -253,6 +267,9 @@ public class PaymentController {
         }
         try {
             WxPayCallbackDTO callback = wxPayService.parseCallback(request);
+            if (callbackPipeline != null && callbackPipeline.submitWxPay(callback)) {
+                return wxPayService.successResponse();
+            }
             boolean success = callbackService.handleWxPayCallback(callback);
             return success ? wxPayService.successResponse() : wxPayService.failResponse("处理失败");
         } catch (WxPayException e) {
@@ -270,8 +287,37 @@ public class PaymentController {
         if (wxPayService == null) {
             return "<xml><return_code><![CDATA[FAIL]]></return_code><return_msg><![CDATA[微信支付未配置]]></return_msg></xml>";
         }
-        // TODO: 实现退款回调处理逻辑
-        return wxPayService.successResponse();
+        try {
+            WxPayRefundNotifyDTO notify = wxPayService.parseRefundCallback(request);
+            if (notify.getOutRefundNo() != null && callbackPipeline != null && callbackPipeline.submitWxRefund(notify)) {
+                return wxPayService.successResponse();
+            }
+            boolean success = callbackService.handleWxRefundCallback(notify);
+            return success ? wxPayService.successResponse() : wxPayService.failResponse("处理失败");
+        } catch (WxPayException e) {
+            log.error("微信退款回调处理失败: {}", e.getMessage(), e);
+            return wxPayService.failResponse(e.getMessage());
+        }
+    }
+
+    /**
+     * 支付网关熔断或并发已满时快速失败
+     */
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<ApiResponse<Void>> handleGatewayUnavailable(GatewayUnavailableException e) {
+        log.warn("支付网关调用被拒绝: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error(e.getPlatform() + "_UNAVAILABLE", e.getMessage()));
+    }
+
+    /**
+     * 客户端限流令牌不足时快速失败
+     */
+    @ExceptionHandler(GatewayRateLimitedException.class)
+    public ResponseEntity<ApiResponse<Void>> handleGatewayRateLimited(GatewayRateLimitedException e) {
+        log.warn("支付网关调用被限流: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(ApiResponse.error(e.getPlatform() + "_RATE_LIMITED", e.getMessage()));
     }
 
     // ==================== 状态查询接口 ====================
@@ -1,31 +1,74 @@
 package com.github.nonfou.mpay.payment.config;
 
 import com.alipay.api.AlipayClient;
-import com.alipay.api.DefaultAlipayClient;
+import com.alipay.api.Signer;
 import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.payment.properties.VirtualThreadProperties;
+import com.github.nonfou.mpay.payment.service.AlipaySignatureVerifier;
+import com.github.nonfou.mpay.payment.transport.AlipayTransport;
+import com.github.nonfou.mpay.payment.transport.ClientAlipayTransport;
+import com.github.nonfou.mpay.payment.transport.HttpClientAlipayTransport;
+import com.github.nonfou.mpay.payment.transport.PooledAlipaySigner;
+import com.github.nonfou.mpay.payment.transport.SignerAlipayClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.Executors;
+
 /**
  * 支付宝配置类
  */
 @Configuration
-@EnableConfigurationProperties(AlipayProperties.class)
+@EnableConfigurationProperties({AlipayProperties.class, VirtualThreadProperties.class})
 @ConditionalOnProperty(prefix = "easy-pay.alipay", name = "app-id")
 public class AlipayConfig {
 
+    /**
+     * 请求签名器，私钥只解析一次，Signature 池化复用
+     */
     @Bean
-    public AlipayClient alipayClient(AlipayProperties properties) {
-        return new DefaultAlipayClient(
-                properties.getGatewayUrl(),
-                properties.getAppId(),
-                properties.getPrivateKey(),
-                "JSON",
-                properties.getCharset(),
-                properties.getPublicKey(),
-                properties.getSignType()
-        );
+    @ConditionalOnMissingBean(Signer.class)
+    public Signer alipaySigner(AlipayProperties properties) {
+        return new PooledAlipaySigner(properties);
+    }
+
+    @Bean
+    public AlipayClient alipayClient(AlipayProperties properties, Signer alipaySigner) {
+        return new SignerAlipayClient(properties, alipaySigner);
+    }
+
+    /**
+     * 回调验签器，公钥只解析一次
+     */
+    @Bean
+    @ConditionalOnMissingBean(AlipaySignatureVerifier.class)
+    public AlipaySignatureVerifier alipaySignatureVerifier(AlipayProperties properties) {
+        return new AlipaySignatureVerifier(properties);
+    }
+
+    /**
+     * 异步调用的传输层，未声明自定义 {@link AlipayTransport} 时按 easy-pay.alipay.http.async 选择实现
+     * <p>
+     * 线程池和 HttpClient 归传输层所有，容器关闭时随 close() 关闭
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(AlipayTransport.class)
+    public AlipayTransport alipayTransport(AlipayProperties properties, AlipayClient alipayClient,
+                                           Signer alipaySigner, AlipaySignatureVerifier alipaySignatureVerifier,
+                                           VirtualThreadProperties virtualThreadProperties) {
+        if (properties.getHttp().isAsync()) {
+            return new HttpClientAlipayTransport(properties, alipaySigner, alipaySignatureVerifier);
+        }
+        if (virtualThreadProperties.isEnabled()) {
+            // 每次调用一个虚拟线程，阻塞等待网关响应不占用平台线程
+            return new ClientAlipayTransport(alipayClient,
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("alipay-client-", 0).factory()));
+        }
+        return new ClientAlipayTransport(alipayClient, Executors.newFixedThreadPool(
+                Math.max(1, properties.getHttp().getIoThreads()),
+                Thread.ofPlatform().name("alipay-client-", 0).daemon(true).factory()));
     }
 }
@@ -0,0 +1,22 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.payment.properties.CallbackDedupProperties;
+import com.github.nonfou.mpay.payment.service.CallbackDeduplicator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 支付回调去重配置
+ */
+@Configuration
+@EnableConfigurationProperties(CallbackDedupProperties.class)
+public class CallbackDedupConfig {
+
+    @Bean
+    public CallbackDeduplicator callbackDeduplicator(CallbackDedupProperties properties,
+                                                     MeterRegistry meterRegistry) {
+        return new CallbackDeduplicator(properties, meterRegistry);
+    }
+}
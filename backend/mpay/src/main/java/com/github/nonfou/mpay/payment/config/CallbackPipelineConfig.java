@@ -0,0 +1,87 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.payment.properties.CallbackPipelineProperties;
+import com.github.nonfou.mpay.payment.service.CallbackJournal;
+import com.github.nonfou.mpay.payment.service.CallbackPipeline;
+import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 支付回调分阶段处理配置
+ * <p>
+ * easy-pay.callback.pipeline.enabled=true 时启用，处理和推送阶段各使用独立的有界线程池
+ */
+@Configuration
+@EnableConfigurationProperties(CallbackPipelineProperties.class)
+@ConditionalOnProperty(prefix = "easy-pay.callback.pipeline", name = "enabled", havingValue = "true")
+public class CallbackPipelineConfig {
+
+    public static final String CALLBACK_PROCESS_EXECUTOR = "callbackProcessExecutor";
+    public static final String CALLBACK_PUSH_EXECUTOR = "callbackPushExecutor";
+
+    @Bean
+    public CallbackJournal callbackJournal(CallbackPipelineProperties properties) {
+        return new CallbackJournal(properties.getDirectory(), properties.getCompactBytes());
+    }
+
+    @Bean(name = CALLBACK_PROCESS_EXECUTOR)
+    public ThreadPoolTaskExecutor callbackProcessExecutor(CallbackPipelineProperties properties,
+                                                          MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = executor("callback-process-", properties.getProcessThreads(),
+                properties.getProcessQueueCapacity(), properties.getAwaitTerminationSeconds());
+        // 队列满时拒绝，由 CallbackPipeline 放入重试队列；不在回调线程同步处理，避免拖慢对支付平台的应答
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("payment.callback.process.queue.size", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("等待处理的支付回调数")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    @Bean(name = CALLBACK_PUSH_EXECUTOR)
+    public ThreadPoolTaskExecutor callbackPushExecutor(CallbackPipelineProperties properties,
+                                                       MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = executor("callback-push-", properties.getPushThreads(),
+                properties.getPushQueueCapacity(), properties.getAwaitTerminationSeconds());
+        // 队列满时拒绝，由 CallbackPipeline 丢弃推送，避免拖慢处理线程
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("payment.callback.push.queue.size", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("等待推送的 WebSocket 消息数")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    @Bean
+    public CallbackPipeline callbackPipeline(CallbackPipelineProperties properties,
+                                             CallbackJournal callbackJournal,
+                                             PaymentCallbackService callbackService,
+                                             ObjectMapper objectMapper,
+                                             @Qualifier(CALLBACK_PROCESS_EXECUTOR) ThreadPoolTaskExecutor processExecutor,
+                                             @Qualifier(CALLBACK_PUSH_EXECUTOR) ThreadPoolTaskExecutor pushExecutor) {
+        return new CallbackPipeline(callbackJournal, callbackService, objectMapper, processExecutor, pushExecutor,
+                properties.getMaxAttempts(), properties.getRetryQueueCapacity(),
+                Duration.ofSeconds(properties.getAwaitTerminationSeconds()));
+    }
+
+    private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int threads, int queueCapacity,
+                                                   int awaitTerminationSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        return executor;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.payment.properties.OrderCloseProperties;
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.github.nonfou.mpay.payment.service.ExpiredOrderCloser;
+import com.github.nonfou.mpay.payment.service.WxPayServiceWrapper;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Optional;
+
+/**
+ * 超时订单关闭配置
+ */
+@Configuration
+@EnableConfigurationProperties({OrderCloseProperties.class, RateLimitProperties.class})
+public class OrderCloseConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "easy-pay.order-close", name = "enabled", havingValue = "true")
+    public ExpiredOrderCloser expiredOrderCloser(PaymentTransactionRepository transactionRepository,
+                                                 PaymentTransactionCache transactionCache,
+                                                 Optional<AlipayService> alipayService,
+                                                 Optional<WxPayServiceWrapper> wxPayService,
+                                                 LeaderElector leaderElector,
+                                                 OrderCloseProperties properties,
+                                                 RateLimitProperties rateLimitProperties,
+                                                 MeterRegistry meterRegistry) {
+        return new ExpiredOrderCloser(transactionRepository, transactionCache, alipayService, wxPayService,
+                leaderElector, properties, rateLimitProperties, meterRegistry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.payment.properties.OrderCloseProperties;
+import com.github.nonfou.mpay.payment.properties.OrderTimerProperties;
+import com.github.nonfou.mpay.payment.properties.ReconcileProperties;
+import com.github.nonfou.mpay.payment.service.ExpiredOrderCloser;
+import com.github.nonfou.mpay.payment.service.OrderTimeoutScheduler;
+import com.github.nonfou.mpay.payment.service.PaymentReconciler;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 订单定时器配置
+ */
+@Configuration
+@EnableConfigurationProperties({OrderTimerProperties.class, ReconcileProperties.class, OrderCloseProperties.class})
+public class OrderTimerConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "easy-pay.order-timer", name = "enabled", havingValue = "true")
+    public OrderTimeoutScheduler orderTimeoutScheduler(PaymentTransactionRepository transactionRepository,
+                                                       Optional<PaymentReconciler> reconciler,
+                                                       Optional<ExpiredOrderCloser> closer,
+                                                       ReconcileProperties reconcileProperties,
+                                                       OrderCloseProperties closeProperties,
+                                                       OrderTimerProperties properties,
+                                                       LeaderElector leaderElector,
+                                                       MeterRegistry meterRegistry) {
+        return new OrderTimeoutScheduler(transactionRepository, reconciler, closer,
+                reconcileProperties.getTiers(), Duration.ofMinutes(closeProperties.getExpireMinutes()),
+                properties, leaderElector, meterRegistry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.properties.ReconcileProperties;
+import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
+import com.github.nonfou.mpay.payment.service.PaymentReconciler;
+import com.github.nonfou.mpay.payment.service.WxPayServiceWrapper;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Optional;
+
+/**
+ * 支付状态主动对账配置
+ */
+@Configuration
+@EnableConfigurationProperties({ReconcileProperties.class, RateLimitProperties.class})
+public class ReconcileConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "easy-pay.reconcile", name = "enabled", havingValue = "true")
+    public PaymentReconciler paymentReconciler(PaymentTransactionRepository transactionRepository,
+                                               SchedulerLeaseRepository leaseRepository,
+                                               PaymentCallbackService callbackService,
+                                               Optional<AlipayService> alipayService,
+                                               Optional<WxPayServiceWrapper> wxPayService,
+                                               LeaderElector leaderElector,
+                                               ReconcileProperties properties,
+                                               RateLimitProperties rateLimitProperties,
+                                               MeterRegistry meterRegistry) {
+        return new PaymentReconciler(transactionRepository, leaseRepository, callbackService, alipayService, wxPayService,
+                leaderElector, properties, rateLimitProperties, meterRegistry);
+    }
+}
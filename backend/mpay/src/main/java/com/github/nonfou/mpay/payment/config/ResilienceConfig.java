@@ -0,0 +1,34 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.properties.ResilienceProperties;
+import com.github.nonfou.mpay.payment.resilience.GatewayGuard;
+import com.github.nonfou.mpay.payment.resilience.GatewayRateLimiter;
+import com.github.nonfou.mpay.payment.resilience.ResilientGatewayGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 支付网关限流、熔断与并发隔离配置
+ * 未声明自定义 {@link GatewayGuard} 时按 easy-pay.resilience 和 easy-pay.rate-limit 创建，两者都关闭时直接调用网关
+ */
+@Configuration
+@EnableConfigurationProperties({ResilienceProperties.class, RateLimitProperties.class})
+public class ResilienceConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(GatewayGuard.class)
+    public GatewayGuard gatewayGuard(ResilienceProperties properties, RateLimitProperties rateLimitProperties,
+                                     MeterRegistry meterRegistry) {
+        if (!properties.isEnabled() && !rateLimitProperties.isEnabled()) {
+            return GatewayGuard.NONE;
+        }
+        GatewayRateLimiter rateLimiter = rateLimitProperties.isEnabled()
+                ? new GatewayRateLimiter(rateLimitProperties, meterRegistry)
+                : null;
+        return new ResilientGatewayGuard(properties, rateLimiter, meterRegistry);
+    }
+}
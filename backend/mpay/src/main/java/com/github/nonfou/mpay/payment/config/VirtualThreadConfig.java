@@ -0,0 +1,46 @@
+package com.github.nonfou.mpay.payment.config;
+
+import com.github.nonfou.mpay.common.thread.VirtualThreadPinningMonitor;
+import com.github.nonfou.mpay.payment.properties.VirtualThreadProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 虚拟线程模式配置
+ * <p>
+ * 启用 easy-pay.virtual-threads.enabled 后，Tomcat 请求处理改为每请求一个虚拟线程，
+ * 网关响应慢时不再耗尽工作线程池。支付事件线程池（{@link com.github.nonfou.mpay.transaction.config.AsyncConfig}）
+ * 和支付宝传输层的线程池也会相应改用虚拟线程，见各自配置。
+ */
+@Configuration
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+@ConditionalOnProperty(prefix = "easy-pay.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "easy-pay.virtual-threads", name = "pinning-monitor", havingValue = "true",
+            matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(VirtualThreadProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(properties.getPinnedThresholdMs()), meterRegistry);
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+    static class TomcatVirtualThreadConfig {
+
+        @Bean
+        public TomcatProtocolHandlerCustomizer<ProtocolHandler> easyPayVirtualThreadCustomizer() {
+            return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("easy-pay-http-"));
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.github.nonfou.mpay.payment.config;
 
 import com.github.binarywang.wxpay.config.WxPayConfig;
 import com.github.binarywang.wxpay.service.WxPayService;
-import com.github.binarywang.wxpay.service.impl.WxPayServiceImpl;
 import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+import com.github.nonfou.mpay.payment.service.WxPayNotifyParser;
+import com.github.nonfou.mpay.payment.transport.PooledWxPayServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -11,14 +14,15 @@ import org.springframework.context.annotation.Configuration;
 
 /**
  * 微信支付配置类
+ * 使用 {@link PooledWxPayServiceImpl} 复用 HTTP 连接，连接池参数见 easy-pay.wxpay.http
  */
 @Configuration
 @EnableConfigurationProperties(WxPayProperties.class)
 @ConditionalOnProperty(prefix = "easy-pay.wxpay", name = "app-id")
 public class WxPayConfiguration {
 
-    @Bean
-    public WxPayService wxPayService(WxPayProperties properties) {
+    @Bean(destroyMethod = "close")
+    public WxPayService wxPayService(WxPayProperties properties, MeterRegistry meterRegistry) {
         WxPayConfig config = new WxPayConfig();
         config.setAppId(properties.getAppId());
         config.setMchId(properties.getMchId());
@@ -26,9 +30,20 @@ public class WxPayConfiguration {
         config.setKeyPath(properties.getCertPath());
         config.setTradeType(properties.getTradeType());
         config.setNotifyUrl(properties.getPayNotifyUrl());
+        config.setHttpConnectionTimeout(properties.getHttp().getConnectTimeoutMs());
+        config.setHttpTimeout(properties.getHttp().getReadTimeoutMs());
 
-        WxPayService wxPayService = new WxPayServiceImpl();
+        WxPayService wxPayService = new PooledWxPayServiceImpl(properties.getHttp(), meterRegistry);
         wxPayService.setConfig(config);
         return wxPayService;
     }
+
+    /**
+     * 支付结果通知解析器，流式读取请求体并验签
+     */
+    @Bean
+    @ConditionalOnMissingBean(WxPayNotifyParser.class)
+    public WxPayNotifyParser wxPayNotifyParser(WxPayProperties properties) {
+        return new WxPayNotifyParser(properties);
+    }
 }
@@ -0,0 +1,89 @@
+package com.github.nonfou.mpay.payment.dto.wxpay;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 微信退款结果通知（req_info 解密后的字段）
+ */
+@Data
+public class WxPayRefundNotifyDTO {
+
+    /**
+     * 返回状态码
+     */
+    private String returnCode;
+
+    /**
+     * 返回信息
+     */
+    private String returnMsg;
+
+    /**
+     * 公众号 ID
+     */
+    private String appId;
+
+    /**
+     * 商户号
+     */
+    private String mchId;
+
+    /**
+     * 微信支付订单号
+     */
+    private String transactionId;
+
+    /**
+     * 商户订单号
+     */
+    private String outTradeNo;
+
+    /**
+     * 微信退款单号
+     */
+    private String refundId;
+
+    /**
+     * 商户退款单号
+     */
+    private String outRefundNo;
+
+    /**
+     * 订单金额 (单位: 元)
+     */
+    private BigDecimal totalFee;
+
+    /**
+     * 申请退款金额 (单位: 元)
+     */
+    private BigDecimal refundFee;
+
+    /**
+     * 退款金额 (单位: 元)，扣除非充值代金券后的实际退款金额
+     */
+    private BigDecimal settlementRefundFee;
+
+    /**
+     * 退款状态: SUCCESS(退款成功), CHANGE(退款异常), REFUNDCLOSE(退款关闭)
+     */
+    private String refundStatus;
+
+    /**
+     * 退款成功时间
+     */
+    private String successTime;
+
+    /**
+     * 退款入账账户
+     */
+    private String refundRecvAccout;
+
+    /**
+     * 是否退款成功
+     */
+    public boolean isRefundSuccess() {
+        return "SUCCESS".equals(returnCode) && "SUCCESS".equals(refundStatus);
+    }
+}
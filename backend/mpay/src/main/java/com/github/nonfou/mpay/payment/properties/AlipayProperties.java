@@ -49,4 +49,33 @@ public class AlipayProperties {
      * 网关地址
      */
     private String gatewayUrl = "https://openapi.alipay.com/gateway.do";
+
+    /**
+     * 异步调用的 HTTP 配置
+     */
+    private Http http = new Http();
+
+    @Data
+    public static class Http {
+
+        /**
+         * 是否使用非阻塞 HTTP 客户端，关闭后异步方法在线程池中调用 AlipayClient
+         */
+        private boolean async = true;
+
+        /**
+         * 建立连接超时（毫秒）
+         */
+        private long connectTimeoutMs = 5000;
+
+        /**
+         * 单次请求超时（毫秒）
+         */
+        private long requestTimeoutMs = 15000;
+
+        /**
+         * 处理响应的线程数；非阻塞模式下与并发请求数无关
+         */
+        private int ioThreads = 4;
+    }
 }
@@ -0,0 +1,27 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 支付回调去重配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.callback.dedup")
+public class CallbackDedupProperties {
+
+    /**
+     * 是否启用回调去重
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的回调数，超过后按最近最少使用淘汰
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * 回调记录的保留时间（秒），应覆盖支付平台的重试周期
+     */
+    private long expireAfterWriteSeconds = 3600;
+}
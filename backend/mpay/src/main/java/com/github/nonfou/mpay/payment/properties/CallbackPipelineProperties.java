@@ -0,0 +1,67 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 支付回调分阶段处理配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.callback.pipeline")
+public class CallbackPipelineProperties {
+
+    /**
+     * 是否启用分阶段处理：验签后写入本地日志即应答，事件发布和 WebSocket 推送异步执行
+     */
+    private boolean enabled = false;
+
+    /**
+     * 回调日志目录
+     */
+    private String directory = "data/callback-journal";
+
+    /**
+     * 处理阶段（去重、发布事件）线程数
+     */
+    private int processThreads = 4;
+
+    /**
+     * 处理阶段队列容量，队列满时放入重试队列，由定时重试再次提交
+     */
+    private int processQueueCapacity = 1000;
+
+    /**
+     * 推送阶段（WebSocket 通知）线程数
+     */
+    private int pushThreads = 2;
+
+    /**
+     * 推送阶段队列容量，队列满时丢弃推送（客户端可轮询订单状态）
+     */
+    private int pushQueueCapacity = 1000;
+
+    /**
+     * 处理失败的回调的重试间隔（毫秒）
+     */
+    private long retryIntervalMs = 5000;
+
+    /**
+     * 重试队列容量，队列满时回调溢出到日志目录下的 callback.spill，队列腾出空间后读回
+     */
+    private int retryQueueCapacity = 10000;
+
+    /**
+     * 单条回调的最多处理次数，达到后写入死信文件不再重试，小于等于 0 表示不限次数
+     */
+    private int maxAttempts = 10;
+
+    /**
+     * 回调日志段大小（字节），当前段超过该大小后封存并写入新段，段内回调全部处理完成后删除
+     */
+    private long compactBytes = 1024 * 1024;
+
+    /**
+     * 停机时等待队列中回调处理完成、以及处理重试队列的最长时间（秒），未完成的回调下次启动时从日志恢复
+     */
+    private int awaitTerminationSeconds = 30;
+}
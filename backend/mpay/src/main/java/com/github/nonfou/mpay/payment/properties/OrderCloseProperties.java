@@ -0,0 +1,43 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 超时订单关闭配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.order-close")
+public class OrderCloseProperties {
+
+    /**
+     * 是否启用超时订单定时关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 兜底超时时长（分钟）：订单按下单时记录的 expire_at 判断超时，
+     * 未记录 expire_at 的订单（微信下单、升级前的历史订单）创建后超过该时长仍未支付视为超时
+     */
+    private int expireMinutes = 30;
+
+    /**
+     * 每批处理的订单数，每批执行一次批量 UPDATE
+     */
+    private int batchSize = 200;
+
+    /**
+     * 同时调用支付平台关单接口的最大并发数
+     */
+    private int concurrency = 8;
+
+    /**
+     * 扫描间隔（毫秒）
+     */
+    private long intervalMs = 60000;
+
+    /**
+     * 是否仅在主节点执行，多节点部署时开启
+     */
+    private boolean leaderOnly = false;
+}
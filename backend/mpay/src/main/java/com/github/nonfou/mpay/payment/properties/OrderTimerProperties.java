@@ -0,0 +1,42 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 订单定时器配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.order-timer")
+public class OrderTimerProperties {
+
+    /**
+     * 是否启用订单定时器，启用后按订单注册查询和关单定时任务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 时间轮每格时长（毫秒），即定时精度
+     */
+    private long tickMs = 100;
+
+    /**
+     * 每层时间轮的格数
+     */
+    private int wheelSize = 512;
+
+    /**
+     * 执行到期任务的线程数
+     */
+    private int workerThreads = 4;
+
+    /**
+     * 启动时从待支付交易重建定时器的分批大小
+     */
+    private int rebuildBatchSize = 1000;
+
+    /**
+     * 检查租约的间隔（毫秒），新成为主节点时从待支付交易重建定时器；应小于 easy-pay.lock.leader-lease-seconds
+     */
+    private long leaderCheckMs = 60000;
+}
@@ -0,0 +1,88 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支付网关客户端限流配置属性
+ * <p>
+ * 每个 平台 + 接口 一个令牌桶，例如 alipay.refund、wxpay.query。
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否启用客户端限流
+     * <p>
+     * 默认关闭：各商户在支付平台的配额不同，统一的默认速率可能把正常的下单请求拒掉，
+     * 需按实际配额开启并配置各接口速率
+     */
+    private boolean enabled = false;
+
+    /**
+     * 未单独配置的接口的每秒调用数，小于等于 0 表示不限流
+     */
+    private double permitsPerSecond = 50;
+
+    /**
+     * 按 平台.接口 单独配置每秒调用数，如 "[alipay.refund]": 20
+     */
+    private Map<String, Double> limits = new HashMap<>();
+
+    /**
+     * 令牌桶容量，按秒计：允许突发 permitsPerSecond * burstSeconds 次调用
+     */
+    private double burstSeconds = 1;
+
+    /**
+     * 默认等待令牌的最长时间（毫秒），0 表示拿不到令牌立即失败
+     */
+    private long maxWaitMs = 0;
+
+    /**
+     * 批量调用方（主动对账、超时关单）等待令牌的最长时间（毫秒）
+     */
+    private long batchMaxWaitMs = 2000;
+
+    /**
+     * 是否在网关返回限流错误码时自动降低速率
+     */
+    private boolean adaptive = true;
+
+    /**
+     * 收到限流错误码时速率乘以该系数
+     */
+    private double backoffFactor = 0.5;
+
+    /**
+     * 自适应降速的下限（每秒调用数）
+     */
+    private double minPermitsPerSecond = 1;
+
+    /**
+     * 降速后每隔多久恢复一次（毫秒）
+     */
+    private long recoveryIntervalMs = 5000;
+
+    /**
+     * 每次恢复增加配置速率的比例
+     */
+    private double recoveryStep = 0.1;
+
+    /**
+     * 视为限流的支付宝 sub_code
+     */
+    private List<String> alipayRateLimitCodes = new ArrayList<>(List.of(
+            "aop.ACQ.CALL_LIMITED", "ACQ.CALL_LIMITED", "isv.app-call-limited"));
+
+    /**
+     * 视为限流的微信支付 err_code
+     */
+    private List<String> wxpayRateLimitCodes = new ArrayList<>(List.of("FREQUENCY_LIMITED", "FREQ_LIMIT"));
+}
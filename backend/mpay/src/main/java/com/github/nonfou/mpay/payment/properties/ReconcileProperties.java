@@ -0,0 +1,47 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 支付状态对账配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.reconcile")
+public class ReconcileProperties {
+
+    /**
+     * 是否启用主动对账
+     */
+    private boolean enabled = false;
+
+    /**
+     * 退避梯度：交易创建后经过这些时长时各查询一次支付平台
+     */
+    private List<Duration> tiers = new ArrayList<>(List.of(
+            Duration.ofSeconds(15), Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(30)));
+
+    /**
+     * 调度间隔（毫秒）
+     */
+    private long intervalMs = 5000;
+
+    /**
+     * 每批查询的交易数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 同时查询支付平台的最大并发数
+     */
+    private int concurrency = 8;
+
+    /**
+     * 是否仅在主节点执行，多节点部署时开启
+     */
+    private boolean leaderOnly = false;
+}
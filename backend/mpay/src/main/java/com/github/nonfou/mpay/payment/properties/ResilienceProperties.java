@@ -0,0 +1,59 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 支付网关熔断与隔离配置属性
+ * <p>
+ * 每个支付平台的每种操作（下单、退款、查询、关单）各有一个熔断器和一个并发隔离舱，参数共用本配置。
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.resilience")
+public class ResilienceProperties {
+
+    /**
+     * 是否启用熔断与并发隔离
+     */
+    private boolean enabled = true;
+
+    /**
+     * 统计失败率的滑动窗口大小（最近调用次数）
+     */
+    private int slidingWindowSize = 20;
+
+    /**
+     * 窗口内至少有这么多次调用才计算失败率
+     */
+    private int minimumCalls = 10;
+
+    /**
+     * 失败率达到该百分比时熔断
+     */
+    private int failureRateThreshold = 50;
+
+    /**
+     * 调用耗时超过该值按失败计（毫秒）
+     */
+    private long slowCallThresholdMs = 5000;
+
+    /**
+     * 熔断后等待多久进入半开状态（毫秒）
+     */
+    private long openDurationMs = 30000;
+
+    /**
+     * 半开状态下允许的试探调用次数，全部成功后恢复
+     */
+    private int halfOpenCalls = 3;
+
+    /**
+     * 每种操作的最大并发调用数
+     */
+    private int maxConcurrentCalls = 32;
+
+    /**
+     * 并发已满时等待空位的时间（毫秒），0 表示立即拒绝
+     */
+    private long maxWaitMs = 0;
+}
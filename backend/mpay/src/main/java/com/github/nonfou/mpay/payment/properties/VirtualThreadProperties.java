@@ -0,0 +1,27 @@
+package com.github.nonfou.mpay.payment.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 虚拟线程配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.virtual-threads")
+public class VirtualThreadProperties {
+
+    /**
+     * 是否启用虚拟线程模式，启用后 Servlet 请求、支付事件处理和 SDK 调用都在虚拟线程上执行
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否通过 JFR 监控虚拟线程被钉住（pinned）的情况
+     */
+    private boolean pinningMonitor = true;
+
+    /**
+     * 钉住时长超过该值才记录（毫秒）
+     */
+    private long pinnedThresholdMs = 20;
+}
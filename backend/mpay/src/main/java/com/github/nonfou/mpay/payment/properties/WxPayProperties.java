@@ -44,4 +44,53 @@ public class WxPayProperties {
      * 退款证书路径
      */
     private String certPath;
+
+    /**
+     * 支付结果通知请求体的大小上限（字节），超过时在读取过程中拒绝
+     */
+    private int notifyMaxBytes = 64 * 1024;
+
+    /**
+     * HTTP 连接池配置
+     */
+    private Http http = new Http();
+
+    @Data
+    public static class Http {
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxTotal = 200;
+
+        /**
+         * 每个目标主机的最大连接数
+         */
+        private int maxPerRoute = 50;
+
+        /**
+         * 建立连接超时（毫秒）
+         */
+        private int connectTimeoutMs = 5000;
+
+        /**
+         * 读取响应超时（毫秒）
+         */
+        private int readTimeoutMs = 10000;
+
+        /**
+         * 从连接池获取连接的等待超时（毫秒）
+         */
+        private int connectionRequestTimeoutMs = 2000;
+
+        /**
+         * 服务端未声明 Keep-Alive 时空闲连接的保持时间（秒）
+         */
+        private long keepAliveSeconds = 30;
+
+        /**
+         * 空闲超过该时间的连接由后台线程关闭（秒）
+         */
+        private long idleEvictSeconds = 60;
+    }
 }
@@ -0,0 +1,48 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发隔离舱 - 限制同时进行中的网关调用数，避免一个变慢的操作占满全部请求线程
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+
+    public Bulkhead(int maxConcurrentCalls, long maxWaitMs) {
+        this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(this.maxConcurrentCalls);
+    }
+
+    /**
+     * 获取一个并发许可，最多等待 maxWaitMs
+     *
+     * @return false 表示并发已满
+     */
+    public boolean tryAcquire() {
+        if (maxWaitMs <= 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 正在进行中的调用数
+     */
+    public int inFlight() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+}
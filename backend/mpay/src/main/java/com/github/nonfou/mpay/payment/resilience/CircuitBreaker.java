@@ -0,0 +1,181 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于调用次数滑动窗口的熔断器
+ * <p>
+ * CLOSED：记录最近 N 次调用结果，失败率达到阈值后转为 OPEN；
+ * OPEN：拒绝所有调用，经过 openDuration 后转为 HALF_OPEN；
+ * HALF_OPEN：只放行有限次数的试探调用，全部成功则恢复 CLOSED，任一失败重新 OPEN。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED(0), OPEN(1), HALF_OPEN(2);
+
+        private final int code;
+
+        State(int code) {
+            this.code = code;
+        }
+
+        /**
+         * 用于指标输出的数值
+         */
+        public int code() {
+            return code;
+        }
+    }
+
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    private final BiConsumer<State, State> transitionListener;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int recorded;
+    private int failures;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold,
+                          long openDurationMs, int halfOpenCalls,
+                          BiConsumer<State, State> transitionListener) {
+        this(slidingWindowSize, minimumCalls, failureRateThreshold, openDurationMs, halfOpenCalls,
+                transitionListener, System::nanoTime);
+    }
+
+    CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold,
+                   long openDurationMs, int halfOpenCalls,
+                   BiConsumer<State, State> transitionListener, LongSupplier nanoClock) {
+        this.window = new boolean[Math.max(1, slidingWindowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.transitionListener = transitionListener;
+        this.nanoClock = nanoClock;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @return false 表示熔断中，调用方应直接失败
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归还未使用的许可（获得许可后调用并未真正发出时）
+     */
+    public void releasePermission() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                halfOpenPermits++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次调用结果
+     *
+     * @param failed 调用失败或超过慢调用阈值
+     */
+    public void onResult(boolean failed) {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED -> {
+                    record(failed);
+                    if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                        transitionTo(State.OPEN);
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failed) {
+                        transitionTo(State.OPEN);
+                    } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                        transitionTo(State.CLOSED);
+                    }
+                }
+                // 熔断前发出的调用晚到的结果不再影响状态
+                case OPEN -> {
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            if (window[windowIndex]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            failures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State target) {
+        State previous = state;
+        switch (target) {
+            case OPEN -> openedAt = nanoClock.getAsLong();
+            case HALF_OPEN -> {
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                recorded = 0;
+                failures = 0;
+            }
+        }
+        state = target;
+        transitionListener.accept(previous, target);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 支付网关调用保护
+ * <p>
+ * 按 平台 + 操作 对网关调用做限流、熔断和并发隔离。被熔断或隔离拒绝时抛出 {@link GatewayUnavailableException}，
+ * 限流令牌不足时抛出 {@link GatewayRateLimitedException}，调用方无需等待超时即可失败。
+ */
+public interface GatewayGuard {
+
+    /**
+     * 不做任何保护，直接调用
+     */
+    GatewayGuard NONE = new GatewayGuard() {
+        @Override
+        public <T, E extends Exception> T call(PaymentPlatform platform, String operation,
+                                               Predicate<Throwable> isFailure, GatewayCall<T, E> call) throws E {
+            return call.execute();
+        }
+
+        @Override
+        public <T> CompletableFuture<T> callAsync(PaymentPlatform platform, String operation,
+                                                  Supplier<CompletableFuture<T>> call) {
+            return call.get();
+        }
+
+        @Override
+        public void reportErrorCode(PaymentPlatform platform, String operation, String code) {
+        }
+    };
+
+    /**
+     * 同步调用网关
+     *
+     * @param isFailure 判断异常是否计入熔断失败率；网关已正常返回的业务错误不应计入
+     */
+    <T, E extends Exception> T call(PaymentPlatform platform, String operation,
+                                    Predicate<Throwable> isFailure, GatewayCall<T, E> call) throws E;
+
+    /**
+     * 同步调用网关，任何异常都计入失败率
+     */
+    default <T, E extends Exception> T call(PaymentPlatform platform, String operation,
+                                            GatewayCall<T, E> call) throws E {
+        return call(platform, operation, e -> true, call);
+    }
+
+    /**
+     * 异步调用网关，Future 异常完成计入失败率
+     */
+    <T> CompletableFuture<T> callAsync(PaymentPlatform platform, String operation,
+                                       Supplier<CompletableFuture<T>> call);
+
+    /**
+     * 上报网关返回的业务错误码（支付宝 sub_code、微信 err_code），用于识别限流并自动降速
+     */
+    void reportErrorCode(PaymentPlatform platform, String operation, String code);
+
+    /**
+     * 可抛出受检异常的网关调用
+     */
+    @FunctionalInterface
+    interface GatewayCall<T, E extends Exception> {
+        T execute() throws E;
+    }
+}
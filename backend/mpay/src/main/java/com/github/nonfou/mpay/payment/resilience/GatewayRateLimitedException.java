@@ -0,0 +1,22 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import lombok.Getter;
+
+/**
+ * 网关调用在等待期限内没有拿到限流令牌
+ */
+@Getter
+public class GatewayRateLimitedException extends BusinessException {
+
+    private final PaymentPlatform platform;
+    private final String operation;
+
+    public GatewayRateLimitedException(PaymentPlatform platform, String operation) {
+        super(ErrorCode.TOO_MANY_REQUESTS, platform + " " + operation + " 调用过于频繁，请稍后重试");
+        this.platform = platform;
+        this.operation = operation;
+    }
+}
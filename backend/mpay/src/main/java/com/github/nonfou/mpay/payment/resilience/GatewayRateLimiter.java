@@ -0,0 +1,236 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 支付网关客户端限流 - 每个 平台 + 接口 一个令牌桶
+ * <p>
+ * 等待策略由调用方选择：默认按 easy-pay.rate-limit.max-wait-ms（默认 0，即拿不到令牌立即失败）；
+ * 批量调用方用 {@link #waitUpTo(Duration, GatewayGuard.GatewayCall)} 包住调用，在期限内排队等待令牌；
+ * 异步调用用 {@link #waitUpToAsync(Duration, Supplier, Executor)}，排队等待在指定线程池中进行。
+ * 等待是预约式的：能在期限内拿到令牌才占用并等待，否则不消耗令牌直接失败。
+ * <p>
+ * 自适应模式下网关返回限流错误码时速率按系数下降，之后每隔一段时间按配置速率的固定比例恢复。
+ */
+@Slf4j
+public class GatewayRateLimiter {
+
+    private static final ThreadLocal<Duration> MAX_WAIT = new ThreadLocal<>();
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Map<PaymentPlatform, Set<String>> rateLimitCodes;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Timer waitTimer;
+
+    public GatewayRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    GatewayRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.rateLimitCodes = Map.of(
+                PaymentPlatform.ALIPAY, new HashSet<>(properties.getAlipayRateLimitCodes()),
+                PaymentPlatform.WXPAY, new HashSet<>(properties.getWxpayRateLimitCodes()));
+        this.waitTimer = Timer.builder("payment.gateway.ratelimit.wait")
+                .description("等待限流令牌的时间")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在当前线程内以指定等待期限执行网关调用
+     */
+    public static <T, E extends Exception> T waitUpTo(Duration maxWait, GatewayGuard.GatewayCall<T, E> call) throws E {
+        Duration previous = MAX_WAIT.get();
+        MAX_WAIT.set(maxWait);
+        try {
+            return call.execute();
+        } finally {
+            if (previous == null) {
+                MAX_WAIT.remove();
+            } else {
+                MAX_WAIT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 在指定线程池中以等待期限发起异步网关调用
+     * <p>
+     * 令牌在发起调用的线程上获取，排队等待令牌只占用 executor 的线程，等待网关响应期间不占用线程
+     */
+    public static <T> CompletableFuture<T> waitUpToAsync(Duration maxWait, Supplier<CompletableFuture<T>> call,
+                                                         Executor executor) {
+        return CompletableFuture.supplyAsync(() -> waitUpTo(maxWait, call::get), executor)
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 获取一个令牌，必要时在等待期限内阻塞
+     *
+     * @return false 表示期限内拿不到令牌
+     */
+    public boolean acquire(PaymentPlatform platform, String operation) throws InterruptedException {
+        Duration maxWait = MAX_WAIT.get();
+        long maxWaitNanos = maxWait != null ? maxWait.toNanos() : TimeUnit.MILLISECONDS.toNanos(properties.getMaxWaitMs());
+        long waitNanos = bucket(platform, operation).reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * 网关返回错误码时调用，是限流错误码则降低该接口的速率
+     */
+    public void onErrorCode(PaymentPlatform platform, String operation, String code) {
+        if (!properties.isAdaptive() || code == null || !rateLimitCodes.get(platform).contains(code)) {
+            return;
+        }
+        bucket(platform, operation).backoff(code);
+    }
+
+    /**
+     * 当前速率（每秒调用数），用于观察自适应调整
+     */
+    public double currentRate(PaymentPlatform platform, String operation) {
+        return bucket(platform, operation).rate;
+    }
+
+    private Bucket bucket(PaymentPlatform platform, String operation) {
+        String key = platform.name().toLowerCase(Locale.ROOT) + "." + operation;
+        return buckets.computeIfAbsent(key, k -> new Bucket(platform, operation,
+                properties.getLimits().getOrDefault(k, properties.getPermitsPerSecond())));
+    }
+
+    /**
+     * 令牌桶：按当前速率补充令牌，令牌数可以为负，表示已被预约的未来令牌
+     */
+    private class Bucket {
+
+        private final PaymentPlatform platform;
+        private final String operation;
+        private final double configuredRate;
+        private final double minRate;
+        private final long recoveryIntervalNanos;
+        private final Counter backoffCounter;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile double rate;
+        private double tokens;
+        private long refilledAt;
+        private long adjustedAt;
+
+        Bucket(PaymentPlatform platform, String operation, double configuredRate) {
+            this.platform = platform;
+            this.operation = operation;
+            this.configuredRate = configuredRate;
+            this.minRate = Math.min(configuredRate, properties.getMinPermitsPerSecond());
+            this.recoveryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getRecoveryIntervalMs());
+            this.rate = configuredRate;
+            this.tokens = capacity();
+            this.refilledAt = nanoClock.getAsLong();
+            this.adjustedAt = refilledAt;
+
+            String platformTag = platform.name().toLowerCase(Locale.ROOT);
+            this.backoffCounter = Counter.builder("payment.gateway.ratelimit.backoff")
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .description("因网关限流错误码自动降速的次数")
+                    .register(meterRegistry);
+            Gauge.builder("payment.gateway.ratelimit.rate", this, bucket -> bucket.rate)
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .description("当前限流速率（每秒调用数）")
+                    .register(meterRegistry);
+        }
+
+        /**
+         * 预约一个令牌
+         *
+         * @return 需要等待的纳秒数，-1 表示超出等待期限（未消耗令牌）
+         */
+        long reserve(long maxWaitNanos) {
+            if (configuredRate <= 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                long now = nanoClock.getAsLong();
+                refill(now);
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return 0;
+                }
+                long waitNanos = (long) Math.ceil((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+                if (waitNanos > maxWaitNanos) {
+                    return -1;
+                }
+                tokens -= 1;
+                return waitNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void backoff(String code) {
+            lock.lock();
+            try {
+                long now = nanoClock.getAsLong();
+                refill(now);
+                double previous = rate;
+                rate = Math.max(minRate, rate * properties.getBackoffFactor());
+                // 丢弃积攒的突发额度，避免降速后立即再次触发限流
+                tokens = Math.min(tokens, 0);
+                adjustedAt = now;
+                backoffCounter.increment();
+                log.warn("支付网关返回限流错误码，降低调用速率: platform={}, operation={}, code={}, rate={} -> {}",
+                        platform, operation, code, previous, rate);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refill(long now) {
+            if (rate < configuredRate && now - adjustedAt >= recoveryIntervalNanos) {
+                long steps = (now - adjustedAt) / recoveryIntervalNanos;
+                rate = Math.min(configuredRate, rate + configuredRate * properties.getRecoveryStep() * steps);
+                adjustedAt += steps * recoveryIntervalNanos;
+            }
+            double elapsedSeconds = (now - refilledAt) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(capacity(), tokens + elapsedSeconds * rate);
+            refilledAt = now;
+        }
+
+        private double capacity() {
+            return Math.max(1, rate * properties.getBurstSeconds());
+        }
+    }
+}
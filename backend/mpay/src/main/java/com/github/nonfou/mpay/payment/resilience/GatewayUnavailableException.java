@@ -0,0 +1,22 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import lombok.Getter;
+
+/**
+ * 网关调用被熔断器或并发隔离舱拒绝
+ */
+@Getter
+public class GatewayUnavailableException extends BusinessException {
+
+    private final PaymentPlatform platform;
+    private final String operation;
+
+    public GatewayUnavailableException(PaymentPlatform platform, String operation, String reason) {
+        super(ErrorCode.SERVICE_UNAVAILABLE, platform + " " + operation + " 暂不可用: " + reason);
+        this.platform = platform;
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.payment.properties.ResilienceProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 限流 + 熔断 + 并发隔离的网关调用保护
+ * <p>
+ * 每个 平台 + 操作 懒创建一组 {@link CircuitBreaker} 和 {@link Bulkhead}。先拿限流令牌（可能等待），
+ * 再检查熔断，最后占用并发许可，等待令牌期间不占并发许可。
+ * 调用耗时超过慢调用阈值同样计为失败，网关变慢时也能熔断。
+ * 指标：payment.gateway.circuit.state、payment.gateway.circuit.transition、
+ * payment.gateway.bulkhead.active、payment.gateway.rejected{reason}。
+ */
+@Slf4j
+public class ResilientGatewayGuard implements GatewayGuard {
+
+    private static final String REJECTED_CIRCUIT_OPEN = "circuit_open";
+    private static final String REJECTED_BULKHEAD_FULL = "bulkhead_full";
+    private static final String REJECTED_RATE_LIMITED = "rate_limited";
+
+    private final ResilienceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final GatewayRateLimiter rateLimiter;
+    private final long slowCallThresholdNanos;
+    private final Map<String, Guarded> guards = new ConcurrentHashMap<>();
+
+    public ResilientGatewayGuard(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        this(properties, null, meterRegistry);
+    }
+
+    /**
+     * @param rateLimiter 为 null 时不限流；easy-pay.resilience.enabled=false 时只限流，不做熔断和并发隔离
+     */
+    public ResilientGatewayGuard(ResilienceProperties properties, GatewayRateLimiter rateLimiter,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = rateLimiter;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(properties.getSlowCallThresholdMs());
+    }
+
+    @Override
+    public <T, E extends Exception> T call(PaymentPlatform platform, String operation,
+                                           Predicate<Throwable> isFailure, GatewayCall<T, E> call) throws E {
+        Guarded guarded = guarded(platform, operation);
+        guarded.acquire();
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return call.execute();
+        } catch (Exception e) {
+            failed = isFailure.test(e);
+            throw e;
+        } finally {
+            guarded.complete(failed, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> callAsync(PaymentPlatform platform, String operation,
+                                              Supplier<CompletableFuture<T>> call) {
+        Guarded guarded = guarded(platform, operation);
+        try {
+            guarded.acquire();
+        } catch (GatewayUnavailableException | GatewayRateLimitedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            guarded.complete(true, System.nanoTime() - start);
+            throw e;
+        }
+        return future.whenComplete((result, error) -> guarded.complete(error != null, System.nanoTime() - start));
+    }
+
+    @Override
+    public void reportErrorCode(PaymentPlatform platform, String operation, String code) {
+        if (rateLimiter != null) {
+            rateLimiter.onErrorCode(platform, operation, code);
+        }
+    }
+
+    /**
+     * 当前熔断状态，未调用过的操作视为 CLOSED
+     */
+    public CircuitBreaker.State state(PaymentPlatform platform, String operation) {
+        Guarded guarded = guards.get(key(platform, operation));
+        return guarded == null ? CircuitBreaker.State.CLOSED : guarded.circuitBreaker.getState();
+    }
+
+    private Guarded guarded(PaymentPlatform platform, String operation) {
+        return guards.computeIfAbsent(key(platform, operation), key -> new Guarded(platform, operation));
+    }
+
+    private static String key(PaymentPlatform platform, String operation) {
+        return platform.name() + ":" + operation;
+    }
+
+    /**
+     * 单个 平台 + 操作 的熔断器、隔离舱和指标
+     */
+    private class Guarded {
+
+        private final PaymentPlatform platform;
+        private final String operation;
+        private final String platformTag;
+        private final CircuitBreaker circuitBreaker;
+        private final Bulkhead bulkhead;
+        private final Counter circuitOpenRejections;
+        private final Counter bulkheadFullRejections;
+        private final Counter rateLimitedRejections;
+
+        Guarded(PaymentPlatform platform, String operation) {
+            this.platform = platform;
+            this.operation = operation;
+            this.platformTag = platform.name().toLowerCase(Locale.ROOT);
+            this.circuitBreaker = new CircuitBreaker(properties.getSlidingWindowSize(), properties.getMinimumCalls(),
+                    properties.getFailureRateThreshold(), properties.getOpenDurationMs(),
+                    properties.getHalfOpenCalls(), this::onTransition);
+            this.bulkhead = new Bulkhead(properties.getMaxConcurrentCalls(), properties.getMaxWaitMs());
+            this.circuitOpenRejections = rejectedCounter(REJECTED_CIRCUIT_OPEN);
+            this.bulkheadFullRejections = rejectedCounter(REJECTED_BULKHEAD_FULL);
+            this.rateLimitedRejections = rejectedCounter(REJECTED_RATE_LIMITED);
+
+            Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().code())
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .description("熔断器状态：0 关闭，1 打开，2 半开")
+                    .register(meterRegistry);
+            Gauge.builder("payment.gateway.bulkhead.active", bulkhead, Bulkhead::inFlight)
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .description("进行中的网关调用数")
+                    .register(meterRegistry);
+        }
+
+        void acquire() {
+            if (rateLimiter != null && !acquireRateLimit()) {
+                rateLimitedRejections.increment();
+                throw new GatewayRateLimitedException(platform, operation);
+            }
+            if (!properties.isEnabled()) {
+                return;
+            }
+            if (!circuitBreaker.tryAcquirePermission()) {
+                circuitOpenRejections.increment();
+                throw new GatewayUnavailableException(platform, operation, "熔断中");
+            }
+            if (!bulkhead.tryAcquire()) {
+                circuitBreaker.releasePermission();
+                bulkheadFullRejections.increment();
+                throw new GatewayUnavailableException(platform, operation, "并发调用已满");
+            }
+        }
+
+        private boolean acquireRateLimit() {
+            try {
+                return rateLimiter.acquire(platform, operation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        void complete(boolean failed, long elapsedNanos) {
+            if (!properties.isEnabled()) {
+                return;
+            }
+            bulkhead.release();
+            circuitBreaker.onResult(failed || elapsedNanos >= slowCallThresholdNanos);
+        }
+
+        private void onTransition(CircuitBreaker.State from, CircuitBreaker.State to) {
+            log.warn("支付网关熔断器状态变化: platform={}, operation={}, {} -> {}", platform, operation, from, to);
+            Counter.builder("payment.gateway.circuit.transition")
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .tag("from", from.name().toLowerCase(Locale.ROOT))
+                    .tag("to", to.name().toLowerCase(Locale.ROOT))
+                    .description("熔断器状态变化次数")
+                    .register(meterRegistry)
+                    .increment();
+        }
+
+        private Counter rejectedCounter(String reason) {
+            return Counter.builder("payment.gateway.rejected")
+                    .tag("platform", platformTag)
+                    .tag("operation", operation)
+                    .tag("reason", reason)
+                    .description("被限流、熔断或并发隔离拒绝的网关调用数")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -2,25 +2,46 @@ package com.github.nonfou.mpay.payment.service;
 
 import com.alipay.api.AlipayApiException;
 import com.alipay.api.AlipayClient;
+import com.alipay.api.AlipayRequest;
+import com.alipay.api.AlipayResponse;
 import com.alipay.api.internal.util.AlipaySignature;
 import com.alipay.api.request.*;
 import com.alipay.api.response.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
 import com.github.nonfou.mpay.payment.dto.alipay.*;
 import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.payment.resilience.GatewayGuard;
+import com.github.nonfou.mpay.payment.transport.AlipayTransport;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 支付宝支付服务
+ * <p>
+ * 同步方法通过 {@link AlipayClient} 阻塞调用网关；二维码、退款、查询、关单另提供异步版本，
+ * 经 {@link AlipayTransport} 发出请求，等待网关响应期间不占用调用线程。
+ * 访问网关的调用经 {@link GatewayGuard} 限流、熔断和并发隔离，网关返回的 sub_code 回报给限流器用于自适应降速。
+ * 网关调用和回调验签的耗时记录到 {@link PaymentMetrics}。
+ * 下单成功后发布 CREATE 事件，写入待支付交易并注册订单定时器。
  */
 @Slf4j
 @Service
@@ -30,8 +51,13 @@ public class AlipayService {
 
     private final AlipayClient alipayClient;
     private final AlipayProperties alipayProperties;
+    private final AlipayTransport alipayTransport;
     private final ObjectMapper objectMapper = new ObjectMapper()
             .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    private GatewayGuard gatewayGuard = GatewayGuard.NONE;
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
+    private AlipaySignatureVerifier signatureVerifier;
+    private PaymentEventPublisher eventPublisher;
 
     /**
      * PC 端支付固定值
@@ -43,10 +69,70 @@ public class AlipayService {
      */
     private static final String QUICK_WAP_WAY = "QUICK_WAP_WAY";
 
+    /**
+     * 当面付（扫码）产品码
+     */
+    private static final String FACE_TO_FACE_PAYMENT = "FACE_TO_FACE_PAYMENT";
+
+    @Autowired(required = false)
+    public void setGatewayGuard(GatewayGuard gatewayGuard) {
+        this.gatewayGuard = gatewayGuard;
+    }
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    /**
+     * 未注入时回调验签退回 SDK 的 {@link AlipaySignature#rsaCheckV1}
+     */
+    @Autowired(required = false)
+    public void setSignatureVerifier(AlipaySignatureVerifier signatureVerifier) {
+        this.signatureVerifier = signatureVerifier;
+    }
+
+    /**
+     * 未注入时下单不记录交易，交易记录在支付回调到达时补建
+     */
+    @Autowired(required = false)
+    public void setEventPublisher(PaymentEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     /**
      * 生成支付二维码
      */
     public AlipayQrcodeResponse createQrcode(AlipayQrcodeRequest request) throws AlipayApiException {
+        AlipayTradePrecreateRequest apiRequest = buildPrecreateRequest(request);
+        AlipayTradePrecreateResponse response = execute("create", apiRequest);
+        log.debug("支付宝二维码响应: {}", response.getBody());
+        return onQrcodeCreated(request, apiRequest, response);
+    }
+
+    /**
+     * 生成支付二维码（异步）
+     */
+    public CompletableFuture<AlipayQrcodeResponse> createQrcodeAsync(AlipayQrcodeRequest request) {
+        AlipayTradePrecreateRequest apiRequest = buildPrecreateRequest(request);
+        return executeAsync("create", apiRequest)
+                .thenApply(response -> {
+                    log.debug("支付宝二维码响应: {}", response.getBody());
+                    return onQrcodeCreated(request, apiRequest, response);
+                });
+    }
+
+    private AlipayQrcodeResponse onQrcodeCreated(AlipayQrcodeRequest request, AlipayTradePrecreateRequest apiRequest,
+                                                 AlipayTradePrecreateResponse response) {
+        AlipayQrcodeResponse result = toQrcodeResponse(response);
+        if (result.isSuccess()) {
+            publishCreated(request.getOutTradeNo(), FACE_TO_FACE_PAYMENT, request.getTotalAmount(),
+                    request.getSubject(), request.getTimeoutExpress(), apiRequest.getBizContent(), response.getBody());
+        }
+        return result;
+    }
+
+    private AlipayTradePrecreateRequest buildPrecreateRequest(AlipayQrcodeRequest request) {
         AlipayTradePrecreateRequest apiRequest = new AlipayTradePrecreateRequest();
         apiRequest.setNotifyUrl(alipayProperties.getNotifyUrl());
 
@@ -58,10 +144,10 @@ public class AlipayService {
 
         apiRequest.setBizContent(toJson(bizContent));
         log.debug("支付宝二维码请求: {}", apiRequest.getBizContent());
+        return apiRequest;
+    }
 
-        AlipayTradePrecreateResponse response = alipayClient.execute(apiRequest);
-        log.debug("支付宝二维码响应: {}", response.getBody());
-
+    private AlipayQrcodeResponse toQrcodeResponse(AlipayTradePrecreateResponse response) {
         AlipayQrcodeResponse result = new AlipayQrcodeResponse();
         result.setCode(response.getCode());
         result.setMsg(response.getMsg());
@@ -97,6 +183,8 @@ public class AlipayService {
         AlipayTradePagePayResponse response = alipayClient.pageExecute(apiRequest);
         log.debug("支付宝PC支付响应: {}", response.getBody());
 
+        publishCreated(request.getOutTradeNo(), FAST_INSTANT_TRADE_PAY, request.getTotalAmount(),
+                request.getSubject(), request.getTimeoutExpress(), apiRequest.getBizContent(), null);
         return response.getBody();
     }
 
@@ -127,13 +215,91 @@ public class AlipayService {
         AlipayTradeWapPayResponse response = alipayClient.pageExecute(apiRequest);
         log.debug("支付宝H5支付响应: {}", response.getBody());
 
+        publishCreated(request.getOutTradeNo(), QUICK_WAP_WAY, request.getTotalAmount(),
+                request.getSubject(), request.getTimeoutExpress(), apiRequest.getBizContent(), null);
         return response.getBody();
     }
 
+    /**
+     * 发布支付创建事件
+     * <p>
+     * 支付宝侧已下单，发布失败时不影响返回结果，交易记录在支付回调到达时补建
+     */
+    private void publishCreated(String outTradeNo, String tradeType, BigDecimal amount, String subject,
+                                String timeoutExpress, String requestData, String responseData) {
+        if (eventPublisher == null) {
+            return;
+        }
+        PaymentEvent event = PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.CREATE)
+                .platform(PaymentPlatform.ALIPAY)
+                .orderId(outTradeNo)
+                .tradeNo(outTradeNo)
+                .tradeType(tradeType)
+                .amount(amount)
+                .subject(subject)
+                .expireAt(expireAt(timeoutExpress, LocalDateTime.now()))
+                .requestData(requestData)
+                .responseData(responseData)
+                .success(true)
+                .build();
+        try {
+            eventPublisher.publish(event);
+        } catch (RuntimeException e) {
+            log.error("发布支付创建事件失败: outTradeNo={}", outTradeNo, e);
+        }
+    }
+
+    /**
+     * 按 timeout_express 计算订单超时时间
+     * <p>
+     * 取值为 m（分钟）、h（小时）、d（天）或 1c（当天结束），不合法时返回 null，由超时关单按全局超时时间兜底
+     */
+    static LocalDateTime expireAt(String timeoutExpress, LocalDateTime now) {
+        if (timeoutExpress == null || timeoutExpress.length() < 2) {
+            return null;
+        }
+        char unit = timeoutExpress.charAt(timeoutExpress.length() - 1);
+        long amount;
+        try {
+            amount = Long.parseLong(timeoutExpress.substring(0, timeoutExpress.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (amount <= 0) {
+            return null;
+        }
+        return switch (unit) {
+            case 'm' -> now.plusMinutes(amount);
+            case 'h' -> now.plusHours(amount);
+            case 'd' -> now.plusDays(amount);
+            case 'c' -> amount == 1 ? now.toLocalDate().plusDays(1).atStartOfDay() : null;
+            default -> null;
+        };
+    }
+
     /**
      * 退款
      */
     public AlipayRefundResponse refund(AlipayRefundRequest request) throws AlipayApiException {
+        AlipayTradeRefundResponse response = execute("refund", buildRefundRequest(request));
+        log.debug("支付宝退款响应: {}", response.getBody());
+        return toRefundResponse(response);
+    }
+
+    /**
+     * 退款（异步）
+     */
+    public CompletableFuture<AlipayRefundResponse> refundAsync(AlipayRefundRequest request) {
+        return executeAsync("refund", buildRefundRequest(request))
+                .thenApply(response -> {
+                    log.debug("支付宝退款响应: {}", response.getBody());
+                    return toRefundResponse(response);
+                });
+    }
+
+    private AlipayTradeRefundRequest buildRefundRequest(AlipayRefundRequest request) {
         AlipayTradeRefundRequest apiRequest = new AlipayTradeRefundRequest();
 
         Map<String, Object> bizContent = new HashMap<>();
@@ -153,10 +319,10 @@ public class AlipayService {
 
         apiRequest.setBizContent(toJson(bizContent));
         log.debug("支付宝退款请求: {}", apiRequest.getBizContent());
+        return apiRequest;
+    }
 
-        AlipayTradeRefundResponse response = alipayClient.execute(apiRequest);
-        log.debug("支付宝退款响应: {}", response.getBody());
-
+    private AlipayRefundResponse toRefundResponse(AlipayTradeRefundResponse response) {
         AlipayRefundResponse result = new AlipayRefundResponse();
         result.setCode(response.getCode());
         result.setMsg(response.getMsg());
@@ -175,6 +341,23 @@ public class AlipayService {
      * 查询订单
      */
     public AlipayQueryResponse queryOrder(AlipayQueryRequest request) throws AlipayApiException {
+        AlipayTradeQueryResponse response = execute("query", buildQueryRequest(request));
+        log.debug("支付宝订单查询响应: {}", response.getBody());
+        return toQueryResponse(response);
+    }
+
+    /**
+     * 查询订单（异步）
+     */
+    public CompletableFuture<AlipayQueryResponse> queryOrderAsync(AlipayQueryRequest request) {
+        return executeAsync("query", buildQueryRequest(request))
+                .thenApply(response -> {
+                    log.debug("支付宝订单查询响应: {}", response.getBody());
+                    return toQueryResponse(response);
+                });
+    }
+
+    private AlipayTradeQueryRequest buildQueryRequest(AlipayQueryRequest request) {
         AlipayTradeQueryRequest apiRequest = new AlipayTradeQueryRequest();
 
         Map<String, Object> bizContent = new HashMap<>();
@@ -187,10 +370,10 @@ public class AlipayService {
 
         apiRequest.setBizContent(toJson(bizContent));
         log.debug("支付宝订单查询请求: {}", apiRequest.getBizContent());
+        return apiRequest;
+    }
 
-        AlipayTradeQueryResponse response = alipayClient.execute(apiRequest);
-        log.debug("支付宝订单查询响应: {}", response.getBody());
-
+    private AlipayQueryResponse toQueryResponse(AlipayTradeQueryResponse response) {
         AlipayQueryResponse result = new AlipayQueryResponse();
         result.setCode(response.getCode());
         result.setMsg(response.getMsg());
@@ -216,6 +399,24 @@ public class AlipayService {
      * 关闭订单
      */
     public boolean closeOrder(String outTradeNo) throws AlipayApiException {
+        AlipayTradeCloseResponse response = execute("close", buildCloseRequest(outTradeNo));
+        log.debug("支付宝关闭订单响应: {}", response.getBody());
+
+        return response.isSuccess();
+    }
+
+    /**
+     * 关闭订单（异步）
+     */
+    public CompletableFuture<Boolean> closeOrderAsync(String outTradeNo) {
+        return executeAsync("close", buildCloseRequest(outTradeNo))
+                .thenApply(response -> {
+                    log.debug("支付宝关闭订单响应: {}", response.getBody());
+                    return response.isSuccess();
+                });
+    }
+
+    private AlipayTradeCloseRequest buildCloseRequest(String outTradeNo) {
         AlipayTradeCloseRequest apiRequest = new AlipayTradeCloseRequest();
 
         Map<String, Object> bizContent = new HashMap<>();
@@ -223,11 +424,49 @@ public class AlipayService {
 
         apiRequest.setBizContent(toJson(bizContent));
         log.debug("支付宝关闭订单请求: {}", apiRequest.getBizContent());
+        return apiRequest;
+    }
 
-        AlipayTradeCloseResponse response = alipayClient.execute(apiRequest);
-        log.debug("支付宝关闭订单响应: {}", response.getBody());
+    /**
+     * 经网关保护同步调用，记录耗时并回报业务错误码
+     */
+    private <T extends AlipayResponse> T execute(String operation, AlipayRequest<T> request) throws AlipayApiException {
+        Timer.Sample sample = paymentMetrics.start();
+        T response;
+        try {
+            response = gatewayGuard.call(PaymentPlatform.ALIPAY, operation, () -> alipayClient.execute(request));
+        } catch (AlipayApiException | RuntimeException e) {
+            paymentMetrics.recordGatewayCall(sample, PaymentPlatform.ALIPAY, operation, outcome(null, e));
+            throw e;
+        }
+        paymentMetrics.recordGatewayCall(sample, PaymentPlatform.ALIPAY, operation, outcome(response, null));
+        gatewayGuard.reportErrorCode(PaymentPlatform.ALIPAY, operation, response.getSubCode());
+        return response;
+    }
 
-        return response.isSuccess();
+    /**
+     * 经网关保护异步调用，记录耗时并回报业务错误码
+     */
+    private <T extends AlipayResponse> CompletableFuture<T> executeAsync(String operation, AlipayRequest<T> request) {
+        Timer.Sample sample = paymentMetrics.start();
+        return gatewayGuard.callAsync(PaymentPlatform.ALIPAY, operation, () -> alipayTransport.execute(request))
+                .whenComplete((response, error) -> paymentMetrics.recordGatewayCall(sample, PaymentPlatform.ALIPAY,
+                        operation, outcome(response, error)))
+                .thenApply(response -> {
+                    gatewayGuard.reportErrorCode(PaymentPlatform.ALIPAY, operation, response.getSubCode());
+                    return response;
+                });
+    }
+
+    /**
+     * 网关调用结果：异常按类型区分拒绝与错误，正常应答按 code 区分成功与业务失败
+     */
+    private static String outcome(AlipayResponse response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return PaymentMetrics.outcomeOf(cause);
+        }
+        return response.isSuccess() ? PaymentMetrics.SUCCESS : PaymentMetrics.FAILURE;
     }
 
     /**
@@ -237,12 +476,23 @@ public class AlipayService {
         Map<String, String> params = getRequestParams(request);
 
         // 验证签名
-        boolean signVerified = AlipaySignature.rsaCheckV1(
-                params,
-                alipayProperties.getPublicKey(),
-                alipayProperties.getCharset(),
-                alipayProperties.getSignType()
-        );
+        Timer.Sample sample = paymentMetrics.start();
+        boolean signVerified;
+        try {
+            signVerified = signatureVerifier != null
+                    ? signatureVerifier.verifyV1(request.getParameterMap())
+                    : AlipaySignature.rsaCheckV1(
+                            params,
+                            alipayProperties.getPublicKey(),
+                            alipayProperties.getCharset(),
+                            alipayProperties.getSignType()
+                    );
+        } catch (AlipayApiException | RuntimeException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.ALIPAY, PaymentMetrics.ERROR);
+            throw e;
+        }
+        paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.ALIPAY,
+                signVerified ? PaymentMetrics.SUCCESS : PaymentMetrics.INVALID);
 
         if (!signVerified) {
             log.error("支付宝回调签名验证失败: {}", params);
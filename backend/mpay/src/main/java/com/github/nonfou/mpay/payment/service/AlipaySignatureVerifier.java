@@ -0,0 +1,141 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.alipay.api.AlipayApiException;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 支付宝回调验签器
+ * <p>
+ * 与 {@code AlipaySignature.rsaCheckV1} 结果一致，但支付宝公钥只在创建时解析一次，
+ * 已 initVerify 的 {@link Signature} 放在有界池中借出归还，不依赖线程绑定，虚拟线程下同样能复用；
+ * 待验签字符串直接由请求参数排序拼接，不再复制参数 Map。
+ * 回调重试集中到达时，验签不再需要每次解码 X.509 公钥。
+ */
+@Slf4j
+public class AlipaySignatureVerifier {
+
+    private static final String SIGN = "sign";
+    private static final String SIGN_TYPE = "sign_type";
+
+    private final String signType;
+    private final String algorithm;
+    private final Charset charset;
+    private final PublicKey publicKey;
+    private final BlockingQueue<Signature> pool;
+
+    public AlipaySignatureVerifier(AlipayProperties properties) {
+        this(properties.getPublicKey(), properties.getCharset(), properties.getSignType());
+    }
+
+    public AlipaySignatureVerifier(String publicKey, String charset, String signType) {
+        this(publicKey, charset, signType, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public AlipaySignatureVerifier(String publicKey, String charset, String signType, int poolSize) {
+        this.signType = signType;
+        this.algorithm = algorithm(signType);
+        this.charset = charset == null || charset.isEmpty() ? Charset.defaultCharset() : Charset.forName(charset);
+        this.publicKey = parsePublicKey(publicKey);
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * 校验异步通知签名（除 sign、sign_type 外的参数按名称排序后拼接）
+     *
+     * @param parameterMap 请求参数，同名参数的多个值以逗号连接，与 {@code HttpServletRequest#getParameterMap()} 一致
+     */
+    public boolean verifyV1(Map<String, String[]> parameterMap) throws AlipayApiException {
+        String[] names = parameterMap.keySet().toArray(String[]::new);
+        Arrays.sort(names);
+        StringBuilder content = new StringBuilder(512);
+        for (String name : names) {
+            if (SIGN.equals(name) || SIGN_TYPE.equals(name)) {
+                continue;
+            }
+            if (!content.isEmpty()) {
+                content.append('&');
+            }
+            content.append(name).append('=');
+            appendJoined(content, parameterMap.get(name));
+        }
+        String[] sign = parameterMap.get(SIGN);
+        return verify(content.toString(), sign == null ? null : String.join(",", sign));
+    }
+
+    /**
+     * 校验待验签字符串的签名
+     */
+    public boolean verify(String content, String sign) throws AlipayApiException {
+        if (algorithm == null) {
+            throw new AlipayApiException("Sign Type is Not Support : signType=" + signType);
+        }
+        if (publicKey == null) {
+            throw new AlipayApiException("支付宝公钥无效，无法验签");
+        }
+        if (sign == null) {
+            throw new AlipayApiException("支付宝回调缺少签名");
+        }
+        Signature signature = pool.poll();
+        try {
+            if (signature == null) {
+                signature = Signature.getInstance(algorithm);
+                signature.initVerify(publicKey);
+            }
+            signature.update(content.getBytes(charset));
+            // verify 完成后 Signature 回到 initVerify 之后的状态，可直接归还复用；出错时状态不确定，直接丢弃
+            boolean verified = signature.verify(Base64.getMimeDecoder().decode(sign));
+            pool.offer(signature);
+            return verified;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new AlipayApiException("RSAcontent = " + content + "; charset = " + charset, e);
+        }
+    }
+
+    private static void appendJoined(StringBuilder content, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                content.append(',');
+            }
+            content.append(values[i]);
+        }
+    }
+
+    private static String algorithm(String signType) {
+        if ("RSA2".equals(signType)) {
+            return "SHA256WithRSA";
+        }
+        if ("RSA".equals(signType)) {
+            return "SHA1WithRSA";
+        }
+        return null;
+    }
+
+    /**
+     * 公钥无效时不阻止启动，与 SDK 一样在验签时报错
+     */
+    private static PublicKey parsePublicKey(String publicKey) {
+        if (publicKey == null || publicKey.isEmpty()) {
+            return null;
+        }
+        try {
+            byte[] encoded = Base64.getMimeDecoder().decode(publicKey);
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.error("解析支付宝公钥失败，回调验签将失败", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.nonfou.mpay.payment.properties.CallbackDedupProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+
+/**
+ * 支付回调去重器 - 识别支付平台的重复通知
+ * <p>
+ * 以 平台 + 平台交易号 + 交易状态 为键，记录在有界、按写入时间过期的本地缓存中。
+ * 状态不同的通知（如 WAIT_BUYER_PAY 之后的 TRADE_SUCCESS）不视为重复。
+ * 仅在单节点内去重，跨节点的重复通知仍由事件监听器按交易号幂等处理。
+ */
+public class CallbackDeduplicator {
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> seen;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public CallbackDeduplicator(CallbackDedupProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    /**
+     * 可指定时钟，测试时验证过期
+     */
+    CallbackDeduplicator(CallbackDedupProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.enabled = properties.isEnabled();
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getExpireAfterWriteSeconds()))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.hitCounter = Counter.builder("payment.callback.dedup")
+                .description("支付回调去重检查次数")
+                .tag("result", "duplicate")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("payment.callback.dedup")
+                .description("支付回调去重检查次数")
+                .tag("result", "first")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, seen, "payment.callback.dedup");
+    }
+
+    /**
+     * 登记一次回调
+     *
+     * @return 首次收到返回 true，重复通知返回 false
+     */
+    public boolean markFirstSeen(String key) {
+        if (!enabled || key == null) {
+            return true;
+        }
+        boolean first = seen.asMap().putIfAbsent(key, Boolean.TRUE) == null;
+        (first ? missCounter : hitCounter).increment();
+        return first;
+    }
+
+    /**
+     * 回调处理失败时撤销登记，使平台重试时能再次处理
+     */
+    public void forget(String key) {
+        if (key != null) {
+            seen.invalidate(key);
+        }
+    }
+
+    /**
+     * 生成去重键
+     */
+    public static String key(PaymentPlatform platform, String platformTradeNo, String status) {
+        if (platformTradeNo == null) {
+            return null;
+        }
+        return platform.name() + ':' + platformTradeNo + ':' + status;
+    }
+}
@@ -0,0 +1,424 @@
+package com.github.nonfou.mpay.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 支付回调日志 - 验签通过的回调在应答前追加写入本地文件，处理完成后登记
+ * <p>
+ * callback.journal 每行一条回调（id、类型、JSON 内容以制表符分隔），写入时同步刷盘；
+ * callback.done 每行一个已处理完成的 id，不刷盘，丢失只会导致重启后重复处理，由回调去重和事件处理的幂等保证正确。
+ * 日志按段滚动：当前段超过指定大小后封存为 callback.journal.N（完成记录随之封存为 callback.done.N），新回调写入新段；
+ * 段内回调全部完成后删除该段，个别长期重试的回调只占住所在的段，不影响其余日志回收。
+ * 启动时 {@link #recover()} 返回所有段中未完成的回调，并把日志重写为只包含这些回调的单个段。
+ * 多次处理失败的回调移入 callback.dead，格式与日志相同，不再自动处理。
+ * <p>
+ * 重试队列已满时回调溢出到 callback.spill（不刷盘，内容仍在日志中），由 {@link #unspill(int)} 分批读回；
+ * 重启时溢出文件直接删除，其中的回调从日志恢复。
+ */
+@Slf4j
+public class CallbackJournal {
+
+    private static final String JOURNAL_FILE = "callback.journal";
+    private static final String DONE_FILE = "callback.done";
+    private static final String COMPACT_FILE = "callback.compact";
+    private static final String DEAD_LETTER_FILE = "callback.dead";
+    private static final String SPILL_FILE = "callback.spill";
+    private static final String SPILL_COMPACT_FILE = "callback.spill.compact";
+
+    private final Path directory;
+    private final Path journalFile;
+    private final Path doneFile;
+    private final Path compactFile;
+    private final Path deadLetterFile;
+    private final Path spillFile;
+    private final Path spillCompactFile;
+    private final long compactBytes;
+    /**
+     * 持锁期间会同步刷盘；使用 ReentrantLock 而不是 synchronized，避免在虚拟线程上钉住载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 溢出文件单独加锁，读回溢出的回调时不阻塞回调线程写入日志
+     */
+    private final ReentrantLock spillLock = new ReentrantLock();
+    /**
+     * 段号 -> 段内未完成的回调数，只包含仍有文件的段
+     */
+    private final Map<Long, Integer> segmentPending = new HashMap<>();
+    private long activeSegment;
+    private long journalBytes;
+    private int pending;
+    private int spilled;
+
+    public CallbackJournal(String directory, long compactBytes) {
+        this.directory = Paths.get(directory);
+        this.journalFile = this.directory.resolve(JOURNAL_FILE);
+        this.doneFile = this.directory.resolve(DONE_FILE);
+        this.compactFile = this.directory.resolve(COMPACT_FILE);
+        this.deadLetterFile = this.directory.resolve(DEAD_LETTER_FILE);
+        this.spillFile = this.directory.resolve(SPILL_FILE);
+        this.spillCompactFile = this.directory.resolve(SPILL_COMPACT_FILE);
+        this.compactBytes = compactBytes;
+    }
+
+    /**
+     * 一条回调日志
+     *
+     * @param kind    回调类型，见 {@link CallbackPipeline}
+     * @param payload 回调内容（单行 JSON）
+     * @param segment 所在的日志段
+     */
+    public record Entry(String id, String kind, String payload, long segment) {
+    }
+
+    /**
+     * 追加写入一条回调，返回前已刷盘
+     */
+    public Entry append(String kind, String payload) throws IOException {
+        String id = UUID.randomUUID().toString();
+        byte[] line = line(id, kind, payload).getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            if (journalBytes > 0 && journalBytes >= compactBytes) {
+                roll();
+            }
+            Files.createDirectories(directory);
+            Files.write(journalFile, line,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            journalBytes += line.length;
+            segmentPending.merge(activeSegment, 1, Integer::sum);
+            pending++;
+            return new Entry(id, kind, payload, activeSegment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登记回调已处理完成，所在段的回调全部完成时删除该段
+     */
+    public void complete(Entry entry) {
+        lock.lock();
+        try {
+            Files.writeString(doneFile(entry.segment()), entry.id() + '\n', StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            pending--;
+            int remaining = segmentPending.merge(entry.segment(), -1, Integer::sum);
+            if (remaining > 0) {
+                return;
+            }
+            if (entry.segment() != activeSegment) {
+                segmentPending.remove(entry.segment());
+                Files.deleteIfExists(journalFile(entry.segment()));
+                Files.deleteIfExists(doneFile(entry.segment()));
+            } else if (journalBytes >= compactBytes) {
+                segmentPending.remove(activeSegment);
+                Files.deleteIfExists(journalFile);
+                Files.deleteIfExists(doneFile);
+                journalBytes = 0;
+            }
+        } catch (IOException e) {
+            log.warn("登记回调处理完成失败，重启后将重复处理: id={}", entry.id(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把回调写入死信文件（同步刷盘）并登记完成
+     *
+     * @return 是否已写入；写入失败时回调仍未完成，下次启动时从日志恢复
+     */
+    public boolean deadLetter(Entry entry) {
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            Files.write(deadLetterFile, line(entry).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            complete(entry);
+            return true;
+        } catch (IOException e) {
+            log.error("回调写入死信文件失败，下次启动时重新处理: id={}", entry.id(), e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未处理完成的回调数
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把等待重试的回调写入溢出文件，不刷盘（回调内容已在日志中）
+     *
+     * @return 是否已写入；写入失败时回调仍未完成，下次启动时从日志恢复
+     */
+    public boolean spill(Entry entry) {
+        spillLock.lock();
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(spillFile, entry.segment() + "\t" + line(entry), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            spilled++;
+            return true;
+        } catch (IOException e) {
+            log.error("回调写入溢出文件失败，下次启动时从日志恢复: id={}", entry.id(), e);
+            return false;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * 溢出文件中的回调数
+     */
+    public int spilled() {
+        spillLock.lock();
+        try {
+            return spilled;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * 按写入顺序读回最多 max 条溢出的回调，其余的保留在溢出文件中
+     */
+    public List<Entry> unspill(int max) {
+        spillLock.lock();
+        try {
+            if (spilled == 0 || max <= 0) {
+                return List.of();
+            }
+            List<Entry> entries = new ArrayList<>(Math.min(max, spilled));
+            int remaining = 0;
+            try (BufferedReader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+                 Writer writer = Files.newBufferedWriter(spillCompactFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    if (entries.size() < max) {
+                        String[] parts = line.split("\t", 4);
+                        if (parts.length == 4) {
+                            entries.add(new Entry(parts[1], parts[2], parts[3], Long.parseLong(parts[0])));
+                            continue;
+                        }
+                        log.warn("跳过不完整的溢出记录: {}", line);
+                        continue;
+                    }
+                    writer.write(line);
+                    writer.write('\n');
+                    remaining++;
+                }
+            }
+            if (remaining > 0) {
+                Files.move(spillCompactFile, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(spillCompactFile);
+                Files.deleteIfExists(spillFile);
+            }
+            spilled = remaining;
+            return entries;
+        } catch (IOException | NumberFormatException e) {
+            log.error("读取溢出文件失败，其中的回调下次启动时从日志恢复: count={}", spilled, e);
+            spilled = 0;
+            return List.of();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * 读取所有段中未处理完成的回调，并把日志重写为只包含这些回调的单个段
+     */
+    public List<Entry> recover() throws IOException {
+        lock.lock();
+        try {
+            // 封存的段按段号顺序在前，当前段在最后
+            TreeMap<Long, Path> sealedJournals = sealedFiles(JOURNAL_FILE);
+            TreeMap<Long, Path> sealedDones = sealedFiles(DONE_FILE);
+            List<Path> journals = new ArrayList<>(sealedJournals.values());
+            journals.add(journalFile);
+            List<Path> dones = new ArrayList<>(sealedDones.values());
+            dones.add(doneFile);
+
+            activeSegment = 0;
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (Path journal : journals) {
+                for (String line : readLines(journal)) {
+                    String[] parts = line.split("\t", 3);
+                    if (parts.length != 3) {
+                        // 写入中途宕机留下的不完整行，写入时尚未应答，平台会重试
+                        log.warn("跳过不完整的回调日志: {}", line);
+                        continue;
+                    }
+                    entries.put(parts[0], new Entry(parts[0], parts[1], parts[2], activeSegment));
+                }
+            }
+            Set<String> done = new HashSet<>();
+            for (Path file : dones) {
+                done.addAll(readLines(file));
+            }
+            entries.keySet().removeAll(done);
+
+            List<Entry> unfinished = new ArrayList<>(entries.values());
+            if (!sealedJournals.isEmpty() || Files.exists(journalFile)) {
+                try (FileChannel channel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                     Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+                    for (Entry entry : unfinished) {
+                        writer.write(line(entry));
+                    }
+                    writer.flush();
+                    // 替换前先刷盘，否则宕机后日志可能已被替换为内容尚未落盘的文件，未完成的回调随之丢失
+                    channel.force(true);
+                }
+                Files.move(compactFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journalBytes = Files.size(journalFile);
+            }
+            for (Path file : sealedJournals.values()) {
+                Files.deleteIfExists(file);
+            }
+            for (Path file : sealedDones.values()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(doneFile);
+            deleteSpill();
+            segmentPending.clear();
+            if (!unfinished.isEmpty()) {
+                segmentPending.put(activeSegment, unfinished.size());
+            }
+            pending = unfinished.size();
+            return unfinished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前段；段内回调已全部完成时直接删除。封存失败时继续写入当前段
+     */
+    private void roll() {
+        int active = segmentPending.getOrDefault(activeSegment, 0);
+        try {
+            if (active == 0) {
+                segmentPending.remove(activeSegment);
+                Files.deleteIfExists(journalFile);
+                Files.deleteIfExists(doneFile);
+            } else {
+                Files.move(journalFile, journalFile(activeSegment), StandardCopyOption.ATOMIC_MOVE);
+                if (Files.exists(doneFile)) {
+                    // 完成记录封存失败时留在当前段，恢复时合并读取所有完成记录，只影响该段能否提前删除
+                    try {
+                        Files.move(doneFile, doneFile(activeSegment), StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        log.warn("封存回调完成记录失败: segment={}", activeSegment, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("封存回调日志段失败，继续写入当前段: segment={}", activeSegment, e);
+            return;
+        }
+        activeSegment++;
+        journalBytes = 0;
+    }
+
+    private void deleteSpill() throws IOException {
+        spillLock.lock();
+        try {
+            Files.deleteIfExists(spillFile);
+            Files.deleteIfExists(spillCompactFile);
+            spilled = 0;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private Path journalFile(long segment) {
+        return segment == activeSegment ? journalFile : directory.resolve(JOURNAL_FILE + "." + segment);
+    }
+
+    private Path doneFile(long segment) {
+        return segment == activeSegment ? doneFile : directory.resolve(DONE_FILE + "." + segment);
+    }
+
+    /**
+     * 目录下已封存的段文件，按段号排序
+     */
+    private TreeMap<Long, Path> sealedFiles(String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + ".*")) {
+            for (Path file : stream) {
+                String suffix = file.getFileName().toString().substring(prefix.length() + 1);
+                try {
+                    files.put(Long.parseLong(suffix), file);
+                } catch (NumberFormatException e) {
+                    // 不是段文件
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return files;
+        }
+        return files;
+    }
+
+    private static String line(Entry entry) {
+        return line(entry.id(), entry.kind(), entry.payload());
+    }
+
+    private static String line(String id, String kind, String payload) {
+        return id + '\t' + kind + '\t' + payload + '\n';
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return lines;
+        }
+        return lines;
+    }
+}
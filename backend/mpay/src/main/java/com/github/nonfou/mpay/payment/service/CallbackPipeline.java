@@ -0,0 +1,317 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 支付回调分阶段处理
+ * <p>
+ * 回调线程只负责验签和追加写入 {@link CallbackJournal}，写入成功即可应答支付平台；
+ * 去重与发布事件在处理线程池执行，WebSocket 推送在推送线程池执行，各阶段耗时记录到 payment.callback.stage。
+ * 处理失败的回调定时重试，达到最多处理次数后移入死信文件。重试队列有界，队列满时回调溢出到日志目录下的文件，
+ * 队列腾出空间后分批读回，内存中等待重试的回调数不超过队列容量。
+ * 停机时在期限内把重试队列中的回调处理一遍，仍未完成的回调在下次启动、Web 服务器开始接收请求之前从日志恢复，
+ * 因此同一回调可能被处理多次，由 {@link CallbackDeduplicator} 和事件处理的幂等保证结果正确。
+ */
+@Slf4j
+public class CallbackPipeline implements SmartLifecycle {
+
+    public static final String ALIPAY = "ALIPAY";
+    public static final String WXPAY = "WXPAY";
+    public static final String WXPAY_REFUND = "WXPAY_REFUND";
+
+    public static final String STAGE_JOURNAL = "journal";
+    public static final String STAGE_QUEUE = "queue";
+    public static final String STAGE_PROCESS = "process";
+    public static final String STAGE_PUSH = "push";
+
+    /**
+     * 早于 Web 服务器启动（WebServerStartStopLifecycle 的阶段为 DEFAULT_PHASE - 2048），
+     * 恢复时重写日志，新的回调在此之后才会写入
+     */
+    private static final int LIFECYCLE_PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final CallbackJournal journal;
+    private final PaymentCallbackService callbackService;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor processExecutor;
+    private final TaskExecutor pushExecutor;
+    private final int maxAttempts;
+    private final BlockingQueue<CallbackJournal.Entry> retryQueue;
+    private final Duration drainTimeout;
+    /**
+     * 回调 id -> 已失败次数，仅记录本次启动以来的失败
+     */
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
+    private volatile boolean running;
+
+    public CallbackPipeline(CallbackJournal journal,
+                            PaymentCallbackService callbackService,
+                            ObjectMapper objectMapper,
+                            TaskExecutor processExecutor,
+                            TaskExecutor pushExecutor,
+                            int maxAttempts,
+                            int retryQueueCapacity,
+                            Duration drainTimeout) {
+        this.journal = journal;
+        this.callbackService = callbackService;
+        // 日志中的回调由本类写入，isPaySuccess 等派生属性读回时忽略
+        this.objectMapper = objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.processExecutor = processExecutor;
+        this.pushExecutor = pushExecutor;
+        this.maxAttempts = maxAttempts;
+        this.retryQueue = new ArrayBlockingQueue<>(Math.max(1, retryQueueCapacity));
+        this.drainTimeout = drainTimeout;
+    }
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    /**
+     * 提交已验签的支付宝回调
+     *
+     * @return 是否已写入日志；写入失败时调用方应同步处理
+     */
+    public boolean submitAlipay(AlipayCallbackDTO callback) {
+        return submit(ALIPAY, callback);
+    }
+
+    /**
+     * 提交已验签的微信支付回调
+     *
+     * @return 是否已写入日志；写入失败时调用方应同步处理
+     */
+    public boolean submitWxPay(WxPayCallbackDTO callback) {
+        return submit(WXPAY, callback);
+    }
+
+    /**
+     * 提交已解密的微信退款回调
+     *
+     * @return 是否已写入日志；写入失败时调用方应同步处理
+     */
+    public boolean submitWxRefund(WxPayRefundNotifyDTO notify) {
+        return submit(WXPAY_REFUND, notify);
+    }
+
+    private boolean submit(String kind, Object callback) {
+        PaymentPlatform platform = platformOf(kind);
+        Timer.Sample sample = paymentMetrics.start();
+        CallbackJournal.Entry entry;
+        try {
+            entry = journal.append(kind, objectMapper.writeValueAsString(callback));
+        } catch (IOException e) {
+            log.error("回调写入日志失败，改为同步处理: kind={}", kind, e);
+            paymentMetrics.recordCallbackStage(sample, platform, STAGE_JOURNAL, PaymentMetrics.ERROR);
+            return false;
+        }
+        paymentMetrics.recordCallbackStage(sample, platform, STAGE_JOURNAL, PaymentMetrics.SUCCESS);
+        dispatch(entry);
+        return true;
+    }
+
+    /**
+     * 交给处理线程池；队列满或停机后被拒绝时放入重试队列，停机后未处理的回调留在日志中等待下次启动恢复
+     */
+    private void dispatch(CallbackJournal.Entry entry) {
+        PaymentPlatform platform = platformOf(entry.kind());
+        Timer.Sample queued = paymentMetrics.start();
+        try {
+            processExecutor.execute(() -> {
+                paymentMetrics.recordCallbackStage(queued, platform, STAGE_QUEUE, PaymentMetrics.SUCCESS);
+                process(entry);
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("回调处理线程池拒绝任务，稍后重试: id={}, kind={}", entry.id(), entry.kind());
+            paymentMetrics.recordCallbackStage(queued, platform, STAGE_QUEUE, PaymentMetrics.REJECTED);
+            retryLater(entry);
+        }
+    }
+
+    /**
+     * 放入重试队列；队列满时溢出到文件，写入失败时留在日志中等待下次启动恢复
+     */
+    private void retryLater(CallbackJournal.Entry entry) {
+        if (retryQueue.offer(entry)) {
+            return;
+        }
+        if (journal.spill(entry)) {
+            log.warn("回调重试队列已满，溢出到文件: id={}, kind={}", entry.id(), entry.kind());
+        }
+    }
+
+    private void process(CallbackJournal.Entry entry) {
+        PaymentPlatform platform = platformOf(entry.kind());
+        Timer.Sample sample = paymentMetrics.start();
+        boolean handled;
+        try {
+            Executor push = task -> push(platform, task);
+            handled = switch (entry.kind()) {
+                case ALIPAY -> callbackService.handleAlipayCallback(read(entry, AlipayCallbackDTO.class), push);
+                case WXPAY -> callbackService.handleWxPayCallback(read(entry, WxPayCallbackDTO.class), push);
+                case WXPAY_REFUND -> callbackService.handleWxRefundCallback(read(entry, WxPayRefundNotifyDTO.class));
+                default -> throw new IOException("未知的回调类型: " + entry.kind());
+            };
+        } catch (IOException e) {
+            // 无法解析的日志重试也不会成功，登记完成避免反复处理
+            log.error("回调日志无法解析，已丢弃: id={}, payload={}", entry.id(), entry.payload(), e);
+            failures.remove(entry.id());
+            journal.complete(entry);
+            paymentMetrics.recordCallbackStage(sample, platform, STAGE_PROCESS, PaymentMetrics.INVALID);
+            return;
+        } catch (RuntimeException e) {
+            int attempts = failures.merge(entry.id(), 1, Integer::sum);
+            if (maxAttempts > 0 && attempts >= maxAttempts) {
+                log.error("回调处理失败次数达到上限，移入死信文件，需人工核对: id={}, kind={}, attempts={}",
+                        entry.id(), entry.kind(), attempts, e);
+                failures.remove(entry.id());
+                journal.deadLetter(entry);
+                paymentMetrics.recordCallbackStage(sample, platform, STAGE_PROCESS, PaymentMetrics.DEAD_LETTER);
+                return;
+            }
+            log.warn("回调处理失败，稍后重试: id={}, kind={}, attempts={}", entry.id(), entry.kind(), attempts, e);
+            retryLater(entry);
+            paymentMetrics.recordCallbackStage(sample, platform, STAGE_PROCESS, PaymentMetrics.ERROR);
+            return;
+        }
+        failures.remove(entry.id());
+        journal.complete(entry);
+        paymentMetrics.recordCallbackStage(sample, platform, STAGE_PROCESS,
+                handled ? PaymentMetrics.SUCCESS : PaymentMetrics.FAILURE);
+    }
+
+    /**
+     * 推送队列满时丢弃，客户端可通过轮询订单状态获知结果
+     */
+    private void push(PaymentPlatform platform, Runnable task) {
+        Timer.Sample sample = paymentMetrics.start();
+        try {
+            pushExecutor.execute(() -> {
+                try {
+                    task.run();
+                    paymentMetrics.recordCallbackStage(sample, platform, STAGE_PUSH, PaymentMetrics.SUCCESS);
+                } catch (RuntimeException e) {
+                    log.warn("WebSocket 推送失败: {}", e.getMessage());
+                    paymentMetrics.recordCallbackStage(sample, platform, STAGE_PUSH, PaymentMetrics.ERROR);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("WebSocket 推送队列已满，丢弃推送: platform={}", platform);
+            paymentMetrics.recordCallbackStage(sample, platform, STAGE_PUSH, PaymentMetrics.REJECTED);
+        }
+    }
+
+    /**
+     * 定时重试处理失败的回调，重试队列腾出的空间用于读回溢出的回调
+     */
+    @Scheduled(fixedDelayString = "${easy-pay.callback.pipeline.retry-interval-ms:5000}")
+    public void retryFailed() {
+        int size = retryQueue.size();
+        for (int i = 0; i < size; i++) {
+            CallbackJournal.Entry entry = retryQueue.poll();
+            if (entry == null) {
+                break;
+            }
+            dispatch(entry);
+        }
+        List<CallbackJournal.Entry> unspilled = journal.unspill(retryQueue.remainingCapacity());
+        unspilled.forEach(this::dispatch);
+        if (size > 0 || !unspilled.isEmpty()) {
+            log.info("重试处理失败的回调: count={}, unspilled={}", size, unspilled.size());
+        }
+    }
+
+    @Override
+    public void start() {
+        recover();
+        running = true;
+    }
+
+    /**
+     * 在 Web 服务器停止之后执行，此时处理线程池可能已不再接收任务，
+     * 因此在当前线程把重试队列中的回调处理一遍；超过期限或再次失败的回调留在日志中，下次启动时恢复
+     */
+    @Override
+    public void stop() {
+        running = false;
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        int size = retryQueue.size();
+        int drained = 0;
+        while (drained < size && System.nanoTime() < deadline) {
+            CallbackJournal.Entry entry = retryQueue.poll();
+            if (entry == null) {
+                break;
+            }
+            process(entry);
+            drained++;
+        }
+        int unfinished = journal.pending();
+        if (unfinished > 0) {
+            log.warn("停机时仍有未处理完成的回调，下次启动时从日志恢复: count={}, drained={}", unfinished, drained);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LIFECYCLE_PHASE;
+    }
+
+    /**
+     * 启动时重新处理上次停机前未完成的回调
+     */
+    public void recover() {
+        List<CallbackJournal.Entry> entries;
+        try {
+            entries = journal.recover();
+        } catch (IOException e) {
+            log.error("读取回调日志失败，未完成的回调需依赖支付平台重试", e);
+            return;
+        }
+        entries.forEach(this::dispatch);
+        log.info("回调日志恢复完成: count={}", entries.size());
+    }
+
+    /**
+     * 等待处理的回调数（含处理中和等待重试）
+     */
+    public int pending() {
+        return journal.pending();
+    }
+
+    private <T> T read(CallbackJournal.Entry entry, Class<T> type) throws IOException {
+        return objectMapper.readValue(entry.payload(), type);
+    }
+
+    private static PaymentPlatform platformOf(String kind) {
+        return ALIPAY.equals(kind) ? PaymentPlatform.ALIPAY : PaymentPlatform.WXPAY;
+    }
+}
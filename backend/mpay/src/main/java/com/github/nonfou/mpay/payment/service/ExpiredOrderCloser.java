@@ -0,0 +1,236 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryResponse;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryResponse;
+import com.github.nonfou.mpay.payment.properties.OrderCloseProperties;
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.resilience.GatewayRateLimiter;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 超时订单关闭器 - 定时关闭超时未支付的订单
+ * <p>
+ * 按 ID 顺序分批读取超时的待支付交易（按订单自身的 expire_at 判断，未记录时按 expire-minutes 兜底），以有限并发调用支付平台关单接口，
+ * 平台关单成功的记录每批用一条 UPDATE 置为 CLOSED。关单失败时查询平台交易状态：
+ * 用户未扫码（平台侧交易不存在）或交易已关闭的订单不会再被支付，同样置为 CLOSED；其余记录保持待支付，下一轮扫描时重试。
+ * 支付宝走异步接口，限流排队在有界线程池中进行，等待网关响应期间不占用池线程；微信仍在池线程中阻塞调用。
+ */
+@Slf4j
+public class ExpiredOrderCloser {
+
+    static final String TASK_NAME = "expired-order-closer";
+
+    private static final String ALIPAY_TRADE_NOT_EXIST = "ACQ.TRADE_NOT_EXIST";
+    private static final String ALIPAY_TRADE_CLOSED = "TRADE_CLOSED";
+    private static final String WXPAY_ORDER_NOT_EXIST = "ORDERNOTEXIST";
+    private static final String WXPAY_TRADE_CLOSED = "CLOSED";
+
+    private final PaymentTransactionRepository transactionRepository;
+    private final PaymentTransactionCache transactionCache;
+    private final Optional<AlipayService> alipayService;
+    private final Optional<WxPayServiceWrapper> wxPayService;
+    private final LeaderElector leaderElector;
+    private final OrderCloseProperties properties;
+    private final Duration gatewayMaxWait;
+    private final ExecutorService executor;
+    private final Counter sweptCounter;
+    private final Counter closedCounter;
+    private final Counter failedCounter;
+
+    public ExpiredOrderCloser(PaymentTransactionRepository transactionRepository,
+                              PaymentTransactionCache transactionCache,
+                              Optional<AlipayService> alipayService,
+                              Optional<WxPayServiceWrapper> wxPayService,
+                              LeaderElector leaderElector,
+                              OrderCloseProperties properties,
+                              RateLimitProperties rateLimitProperties,
+                              MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.transactionCache = transactionCache;
+        this.alipayService = alipayService;
+        this.wxPayService = wxPayService;
+        this.leaderElector = leaderElector;
+        this.properties = properties;
+        this.gatewayMaxWait = Duration.ofMillis(rateLimitProperties.getBatchMaxWaitMs());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()),
+                Thread.ofPlatform().name("order-close-", 0).daemon(true).factory());
+        this.sweptCounter = counter(meterRegistry, "swept");
+        this.closedCounter = counter(meterRegistry, "closed");
+        this.failedCounter = counter(meterRegistry, "failed");
+    }
+
+    /**
+     * 定时扫描超时订单
+     */
+    @Scheduled(fixedDelayString = "${easy-pay.order-close.interval-ms:60000}",
+            initialDelayString = "${easy-pay.order-close.interval-ms:60000}")
+    public void sweep() {
+        if (properties.isLeaderOnly() && !leaderElector.isLeader(TASK_NAME)) {
+            log.debug("非主节点，跳过超时订单关闭");
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // 未记录 expire_at 的订单按创建时间加 expire-minutes 兜底
+        LocalDateTime createdBefore = now.minusMinutes(properties.getExpireMinutes());
+        int batchSize = properties.getBatchSize();
+        long afterId = 0;
+        int closed = 0;
+        List<PaymentTransactionEntity> batch;
+        do {
+            batch = transactionRepository.findExpiredBatch(
+                    TransactionStatus.PENDING, now, createdBefore, afterId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            closed += closeBatch(batch);
+            afterId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == batchSize);
+        if (closed > 0) {
+            log.info("关闭超时订单: count={}", closed);
+        }
+    }
+
+    /**
+     * 关闭一批订单
+     *
+     * @return 实际关闭的订单数
+     */
+    int closeBatch(List<PaymentTransactionEntity> batch) {
+        sweptCounter.increment(batch.size());
+        List<CompletableFuture<Long>> futures = batch.stream()
+                .map(transaction -> closeAtPlatform(transaction)
+                        .thenApply(closed -> closed ? transaction.getId() : null))
+                .toList();
+        List<Long> closedIds = futures.stream()
+                .map(CompletableFuture::join)
+                .filter(Objects::nonNull)
+                .toList();
+        failedCounter.increment(batch.size() - closedIds.size());
+        if (closedIds.isEmpty()) {
+            return 0;
+        }
+        int updated = transactionRepository.closePendingByIds(closedIds, LocalDateTime.now());
+        closedIds.forEach(transactionCache::invalidate);
+        closedCounter.increment(updated);
+        return updated;
+    }
+
+    /**
+     * 批量关单不要求实时，限流令牌不足时排队等待而不是直接失败
+     */
+    private CompletableFuture<Boolean> closeAtPlatform(PaymentTransactionEntity transaction) {
+        String orderId = transaction.getOrderId();
+        CompletableFuture<Boolean> closed = switch (transaction.getPlatform()) {
+            case ALIPAY -> alipayService.map(service -> closeAlipay(service, orderId))
+                    .orElseGet(() -> CompletableFuture.completedFuture(false));
+            case WXPAY -> wxPayService.map(service -> closeWxPayAsync(service, orderId))
+                    .orElseGet(() -> CompletableFuture.completedFuture(false));
+        };
+        return closed.exceptionally(e -> {
+            log.warn("调用支付平台关单失败: orderId={}, platform={}", orderId, transaction.getPlatform(), e);
+            return false;
+        });
+    }
+
+    /**
+     * 支付宝关单，失败时查询交易确认是否已不可支付
+     */
+    private CompletableFuture<Boolean> closeAlipay(AlipayService service, String orderId) {
+        return GatewayRateLimiter.waitUpToAsync(gatewayMaxWait, () -> service.closeOrderAsync(orderId), executor)
+                .thenCompose(closed -> {
+                    if (closed) {
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    AlipayQueryRequest request = new AlipayQueryRequest();
+                    request.setOutTradeNo(orderId);
+                    return GatewayRateLimiter.waitUpToAsync(gatewayMaxWait,
+                                    () -> service.queryOrderAsync(request), executor)
+                            .thenApply(response -> isAlipayClosed(orderId, response));
+                });
+    }
+
+    private static boolean isAlipayClosed(String orderId, AlipayQueryResponse response) {
+        if (ALIPAY_TRADE_NOT_EXIST.equals(response.getSubCode())
+                || ALIPAY_TRADE_CLOSED.equals(response.getTradeStatus())) {
+            log.info("支付宝侧交易不存在或已关闭，按已关闭处理: orderId={}, subCode={}, tradeStatus={}",
+                    orderId, response.getSubCode(), response.getTradeStatus());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在池线程中阻塞调用微信关单
+     */
+    private CompletableFuture<Boolean> closeWxPayAsync(WxPayServiceWrapper service, String orderId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return GatewayRateLimiter.waitUpTo(gatewayMaxWait, () -> closeWxPay(service, orderId));
+            } catch (WxPayException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 微信关单，失败时查询订单确认是否已不可支付
+     */
+    private static boolean closeWxPay(WxPayServiceWrapper service, String orderId) throws WxPayException {
+        if (service.closeOrder(orderId)) {
+            return true;
+        }
+        WxPayQueryRequest request = new WxPayQueryRequest();
+        request.setOutTradeNo(orderId);
+        String state;
+        try {
+            WxPayQueryResponse response = service.queryOrder(request);
+            state = WXPAY_ORDER_NOT_EXIST.equals(response.getErrCode()) ? WXPAY_ORDER_NOT_EXIST : response.getTradeState();
+        } catch (WxPayException e) {
+            // SDK 对 result_code=FAIL 的应答抛出异常，订单不存在以错误码返回
+            if (!WXPAY_ORDER_NOT_EXIST.equals(e.getErrCode())) {
+                throw e;
+            }
+            state = WXPAY_ORDER_NOT_EXIST;
+        }
+        if (WXPAY_ORDER_NOT_EXIST.equals(state) || WXPAY_TRADE_CLOSED.equals(state)) {
+            log.info("微信侧订单不存在或已关闭，按已关闭处理: orderId={}, state={}", orderId, state);
+            return true;
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("payment.order.close")
+                .description("超时订单关闭处理数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.nonfou.mpay.common.timer.HierarchicalTimingWheel;
+import com.github.nonfou.mpay.payment.properties.OrderTimerProperties;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventDelivered;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 订单定时器 - 为每笔待支付订单在时间轮上注册定时任务
+ * <p>
+ * 订单创建时（{@link AlipayService}、{@link WxPayServiceWrapper} 下单成功后发布 CREATE 事件）注册，依次在对账梯度（easy-pay.reconcile.tiers）查询支付平台，
+ * 到达订单自身的超时时间（未指定时为 easy-pay.order-close.expire-minutes）时关单；每笔订单同一时刻只占一个定时任务。
+ * 收到支付或关单通知时取消。
+ * <p>
+ * 待支付交易的定时任务只由持有租约（{@link LeaderElector}）的节点重建：启动时和定期检查租约时，
+ * 新成为主节点就从待支付交易重建，因此进程重启或主节点切换不会丢失定时任务，多个节点也不会为同一批订单重复注册。
+ * 重建时跳过已过超时时间的订单，交给 {@link ExpiredOrderCloser} 的定时扫描分批关闭，避免启动时集中触发。
+ * <p>
+ * 查询和关单分别复用 {@link PaymentReconciler} 和 {@link ExpiredOrderCloser}，对应功能未启用时跳过该动作；
+ * 两者的定时扫描仍作为兜底。发件箱模式下事件不经过 Spring 事件总线，改为监听中继投递成功后发布的 {@link PaymentEventDelivered}。
+ */
+@Slf4j
+public class OrderTimeoutScheduler {
+
+    static final String TASK_NAME = "order-timer";
+
+    private final HierarchicalTimingWheel timer;
+    private final ExecutorService executor;
+    private final PaymentTransactionRepository transactionRepository;
+    private final Optional<PaymentReconciler> reconciler;
+    private final Optional<ExpiredOrderCloser> closer;
+    private final List<Duration> queryTiers;
+    private final Duration expireAfter;
+    private final int rebuildBatchSize;
+    private final LeaderElector leaderElector;
+    private volatile boolean leader;
+    private final Map<String, HierarchicalTimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+
+    public OrderTimeoutScheduler(PaymentTransactionRepository transactionRepository,
+                                 Optional<PaymentReconciler> reconciler,
+                                 Optional<ExpiredOrderCloser> closer,
+                                 List<Duration> queryTiers,
+                                 Duration expireAfter,
+                                 OrderTimerProperties properties,
+                                 LeaderElector leaderElector,
+                                 MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.reconciler = reconciler;
+        this.closer = closer;
+        this.queryTiers = queryTiers.stream().sorted().toList();
+        this.expireAfter = expireAfter;
+        this.rebuildBatchSize = properties.getRebuildBatchSize();
+        this.leaderElector = leaderElector;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getWorkerThreads()),
+                Thread.ofPlatform().name("order-timer-", 0).daemon(true).factory());
+        this.timer = new HierarchicalTimingWheel("order-timer-wheel",
+                properties.getTickMs(), properties.getWheelSize(), executor);
+        Gauge.builder("payment.order.timer.pending", timer, HierarchicalTimingWheel::pendingCount)
+                .description("待触发的订单定时任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 订单创建时注册，支付或关单通知到达时取消
+     */
+    @EventListener
+    public void onPaymentEvent(PaymentEvent event) {
+        switch (event.getEventType()) {
+            case CREATE -> register(event.getOrderId(), LocalDateTime.now(), event.getExpireAt());
+            case NOTIFY, CLOSE -> cancel(event.getOrderId());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 发件箱模式下由中继在事件落库后通知
+     */
+    @EventListener
+    public void onPaymentEventDelivered(PaymentEventDelivered delivered) {
+        onPaymentEvent(delivered.getEvent());
+    }
+
+    /**
+     * 启动时及定期检查租约，新成为主节点时重建定时任务
+     * <p>
+     * 检查同时为租约续约；重建失败时不记为主节点，下次检查重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${easy-pay.order-timer.leader-check-ms:60000}",
+            initialDelayString = "${easy-pay.order-timer.leader-check-ms:60000}")
+    public void checkLeader() {
+        boolean acquired = leaderElector.isLeader(TASK_NAME);
+        if (acquired && !leader) {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("订单定时器重建失败，下次检查租约时重试", e);
+                return;
+            }
+        }
+        leader = acquired;
+    }
+
+    /**
+     * 从待支付交易重建定时任务，已过超时时间的订单留给定时扫描关闭
+     */
+    private void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        long afterId = 0;
+        int count = 0;
+        int skipped = 0;
+        List<PaymentTransactionEntity> batch;
+        do {
+            batch = transactionRepository.findBatchByStatus(
+                    TransactionStatus.PENDING, afterId, Limit.of(rebuildBatchSize));
+            for (PaymentTransactionEntity transaction : batch) {
+                if (isExpired(transaction, now)) {
+                    skipped++;
+                    continue;
+                }
+                register(transaction.getOrderId(), transaction.getCreatedAt(), transaction.getExpireAt());
+                count++;
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == rebuildBatchSize);
+        log.info("订单定时器重建完成: count={}, skippedExpired={}", count, skipped);
+    }
+
+    private boolean isExpired(PaymentTransactionEntity transaction, LocalDateTime now) {
+        LocalDateTime expireAt = transaction.getExpireAt();
+        if (expireAt == null && transaction.getCreatedAt() != null) {
+            expireAt = transaction.getCreatedAt().plus(expireAfter);
+        }
+        return expireAt != null && !expireAt.isAfter(now);
+    }
+
+    /**
+     * 注册订单的下一个定时任务
+     *
+     * @param createdAt 订单创建时间，用于计算所处梯度
+     * @param expireAt  订单超时时间，为空时按创建时间加 expire-minutes 计算
+     */
+    public void register(String orderId, LocalDateTime createdAt, LocalDateTime expireAt) {
+        if (orderId == null || createdAt == null) {
+            return;
+        }
+        Duration age = Duration.between(createdAt, LocalDateTime.now());
+        Duration lifetime = expireAt != null ? Duration.between(createdAt, expireAt) : expireAfter;
+        Optional<Duration> nextQuery = reconciler.isPresent()
+                ? queryTiers.stream().filter(tier -> tier.compareTo(age) > 0 && tier.compareTo(lifetime) < 0).findFirst()
+                : Optional.empty();
+        Duration fireAt;
+        boolean expiry;
+        if (nextQuery.isPresent()) {
+            fireAt = nextQuery.get();
+            expiry = false;
+        } else if (closer.isPresent()) {
+            fireAt = lifetime;
+            expiry = true;
+        } else {
+            return;
+        }
+        long delayMs = fireAt.minus(age).toMillis();
+        AtomicReference<HierarchicalTimingWheel.Timeout> self = new AtomicReference<>();
+        // 在 compute 内调度并登记，已到期的任务立即触发时也要等登记完成后才能移除自己
+        timeouts.compute(orderId, (id, previous) -> {
+            if (previous != null) {
+                previous.cancel();
+            }
+            HierarchicalTimingWheel.Timeout timeout = timer.schedule(
+                    () -> fire(orderId, createdAt, expireAt, expiry, self), delayMs);
+            self.set(timeout);
+            return timeout;
+        });
+    }
+
+    /**
+     * 取消订单的定时任务
+     */
+    public void cancel(String orderId) {
+        if (orderId == null) {
+            return;
+        }
+        HierarchicalTimingWheel.Timeout timeout = timeouts.remove(orderId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void fire(String orderId, LocalDateTime createdAt, LocalDateTime expireAt, boolean expiry,
+                      AtomicReference<HierarchicalTimingWheel.Timeout> self) {
+        // 只移除自己，期间重新注册的定时任务保留
+        timeouts.computeIfPresent(orderId, (id, current) -> current == self.get() ? null : current);
+        try {
+            Optional<PaymentTransactionEntity> transaction = transactionRepository.findByOrderId(orderId)
+                    .filter(t -> t.getStatus() == TransactionStatus.PENDING);
+            if (transaction.isEmpty()) {
+                return;
+            }
+            if (expiry) {
+                closer.ifPresent(c -> c.closeBatch(List.of(transaction.get())));
+                return;
+            }
+            reconciler.ifPresent(r -> r.reconcileBatch(List.of(transaction.get())));
+            // 查询结果经事件异步更新，下一次触发时会重新检查状态
+            register(orderId, createdAt, expireAt);
+        } catch (Exception e) {
+            log.warn("订单定时任务执行失败: orderId={}, expiry={}", orderId, expiry, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.close();
+        executor.shutdownNow();
+    }
+}
@@ -2,19 +2,30 @@ package com.github.nonfou.mpay.payment.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
 import com.github.nonfou.mpay.payment.dto.alipay.AlipayCallbackDTO;
 import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
 import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import com.github.nonfou.mpay.transaction.event.RefundEvent;
 import com.github.nonfou.mpay.websocket.PaymentWebSocketHandler;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.Executor;
+
 /**
  * 支付回调处理服务（简化版 - 无数据库依赖）
+ * <p>
+ * 支付平台会重复推送同一通知，重复的回调由 {@link CallbackDeduplicator} 识别后直接确认，
+ * 不再发布事件和推送 WebSocket 消息。处理耗时按 success / duplicate / error 记录到 payment.callback.handle。
+ * 未指定推送执行器时在当前线程推送 WebSocket 消息；{@link CallbackPipeline} 传入独立的推送线程池。
  */
 @Slf4j
 @Service
@@ -22,13 +33,51 @@ import org.springframework.stereotype.Service;
 public class PaymentCallbackService {
 
     private final PaymentWebSocketHandler webSocketHandler;
-    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentEventPublisher eventPublisher;
     private final ObjectMapper objectMapper;
+    private final CallbackDeduplicator deduplicator;
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
+
+    private static final String REFUND_NOTIFY = "refund_notify";
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
 
     /**
      * 处理支付宝回调
      */
     public boolean handleAlipayCallback(AlipayCallbackDTO callback) {
+        return handleAlipayCallback(callback, Runnable::run);
+    }
+
+    /**
+     * 处理支付宝回调
+     *
+     * @param push WebSocket 推送的执行器
+     */
+    public boolean handleAlipayCallback(AlipayCallbackDTO callback, Executor push) {
+        Timer.Sample sample = paymentMetrics.start();
+        String key = CallbackDeduplicator.key(PaymentPlatform.ALIPAY, callback.getTradeNo(), callback.getTradeStatus());
+        if (!deduplicator.markFirstSeen(key)) {
+            log.info("支付宝重复回调，直接确认: outTradeNo={}, tradeStatus={}",
+                    callback.getOutTradeNo(), callback.getTradeStatus());
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.ALIPAY, PaymentMetrics.DUPLICATE);
+            return true;
+        }
+        try {
+            boolean handled = doHandleAlipayCallback(callback, push);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.ALIPAY, PaymentMetrics.SUCCESS);
+            return handled;
+        } catch (RuntimeException e) {
+            deduplicator.forget(key);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.ALIPAY, PaymentMetrics.ERROR);
+            throw e;
+        }
+    }
+
+    private boolean doHandleAlipayCallback(AlipayCallbackDTO callback, Executor push) {
         String outTradeNo = callback.getOutTradeNo();
         log.info("处理支付宝回调: outTradeNo={}, tradeStatus={}", outTradeNo, callback.getTradeStatus());
 
@@ -53,14 +102,14 @@ public class PaymentCallbackService {
             log.info("支付宝回调: 支付未成功, outTradeNo={}, tradeStatus={}",
                     outTradeNo, callback.getTradeStatus());
             // 发送支付失败通知
-            webSocketHandler.sendPaymentFailed(outTradeNo, callback.getTradeStatus());
+            push.execute(() -> webSocketHandler.sendPaymentFailed(outTradeNo, callback.getTradeStatus()));
             return true;
         }
 
         log.info("支付宝回调: 订单支付成功, outTradeNo={}, tradeNo={}", outTradeNo, callback.getTradeNo());
 
         // 发送 WebSocket 通知
-        webSocketHandler.sendPaymentSuccess(outTradeNo, callback.getTradeNo());
+        push.execute(() -> webSocketHandler.sendPaymentSuccess(outTradeNo, callback.getTradeNo()));
 
         return true;
     }
@@ -69,6 +118,35 @@ public class PaymentCallbackService {
      * 处理微信支付回调
      */
     public boolean handleWxPayCallback(WxPayCallbackDTO callback) {
+        return handleWxPayCallback(callback, Runnable::run);
+    }
+
+    /**
+     * 处理微信支付回调
+     *
+     * @param push WebSocket 推送的执行器
+     */
+    public boolean handleWxPayCallback(WxPayCallbackDTO callback, Executor push) {
+        Timer.Sample sample = paymentMetrics.start();
+        String key = CallbackDeduplicator.key(PaymentPlatform.WXPAY, callback.getTransactionId(), callback.getResultCode());
+        if (!deduplicator.markFirstSeen(key)) {
+            log.info("微信支付重复回调，直接确认: outTradeNo={}, resultCode={}",
+                    callback.getOutTradeNo(), callback.getResultCode());
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, PaymentMetrics.DUPLICATE);
+            return true;
+        }
+        try {
+            boolean handled = doHandleWxPayCallback(callback, push);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, PaymentMetrics.SUCCESS);
+            return handled;
+        } catch (RuntimeException e) {
+            deduplicator.forget(key);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, PaymentMetrics.ERROR);
+            throw e;
+        }
+    }
+
+    private boolean doHandleWxPayCallback(WxPayCallbackDTO callback, Executor push) {
         String outTradeNo = callback.getOutTradeNo();
         log.info("处理微信支付回调: outTradeNo={}, resultCode={}", outTradeNo, callback.getResultCode());
 
@@ -93,7 +171,7 @@ public class PaymentCallbackService {
             log.info("微信支付回调: 支付未成功, outTradeNo={}, resultCode={}",
                     outTradeNo, callback.getResultCode());
             // 发送支付失败通知
-            webSocketHandler.sendPaymentFailed(outTradeNo, callback.getResultCode());
+            push.execute(() -> webSocketHandler.sendPaymentFailed(outTradeNo, callback.getResultCode()));
             return true;
         }
 
@@ -101,11 +179,56 @@ public class PaymentCallbackService {
                 outTradeNo, callback.getTransactionId());
 
         // 发送 WebSocket 通知
-        webSocketHandler.sendPaymentSuccess(outTradeNo, callback.getTransactionId());
+        push.execute(() -> webSocketHandler.sendPaymentSuccess(outTradeNo, callback.getTransactionId()));
 
         return true;
     }
 
+    /**
+     * 处理微信退款回调，发布 REFUND_NOTIFY 事件更新退款记录
+     */
+    public boolean handleWxRefundCallback(WxPayRefundNotifyDTO notify) {
+        Timer.Sample sample = paymentMetrics.start();
+        if (notify.getOutRefundNo() == null) {
+            log.warn("微信退款回调缺少退款单号: returnCode={}, returnMsg={}", notify.getReturnCode(), notify.getReturnMsg());
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.ERROR);
+            return false;
+        }
+        String key = CallbackDeduplicator.key(PaymentPlatform.WXPAY, notify.getRefundId(),
+                "REFUND_" + notify.getRefundStatus());
+        if (!deduplicator.markFirstSeen(key)) {
+            log.info("微信退款重复回调，直接确认: outRefundNo={}, refundStatus={}",
+                    notify.getOutRefundNo(), notify.getRefundStatus());
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.DUPLICATE);
+            return true;
+        }
+        try {
+            log.info("处理微信退款回调: outRefundNo={}, refundStatus={}", notify.getOutRefundNo(), notify.getRefundStatus());
+            boolean success = notify.isRefundSuccess();
+            RefundEvent event = RefundEvent.builder()
+                    .source(this)
+                    .eventType(PaymentEventType.REFUND_NOTIFY)
+                    .platform(PaymentPlatform.WXPAY)
+                    .orderId(notify.getOutTradeNo())
+                    .refundNo(notify.getOutRefundNo())
+                    .platformRefundNo(notify.getRefundId())
+                    .platformTradeNo(notify.getTransactionId())
+                    .refundAmount(notify.getRefundFee())
+                    .responseData(toJson(notify))
+                    .success(success)
+                    .resultCode(notify.getRefundStatus())
+                    .resultMessage(success ? "退款成功" : "退款未成功")
+                    .build();
+            eventPublisher.publish(event);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.SUCCESS);
+            return true;
+        } catch (RuntimeException e) {
+            deduplicator.forget(key);
+            paymentMetrics.recordCallbackHandle(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.ERROR);
+            throw e;
+        }
+    }
+
     /**
      * 发布支付回调事件
      */
@@ -134,7 +257,7 @@ public class PaymentCallbackService {
                 .resultMessage(resultMessage)
                 .build();
 
-        eventPublisher.publishEvent(event);
+        eventPublisher.publish(event);
         log.debug("发布支付回调事件: platform={}, orderId={}, success={}", platform, orderId, success);
     }
 
@@ -0,0 +1,282 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryResponse;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryResponse;
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.properties.ReconcileProperties;
+import com.github.nonfou.mpay.payment.resilience.GatewayRateLimiter;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 支付状态对账器 - 主动查询回调迟迟未到的待支付交易
+ * <p>
+ * 交易创建后按退避梯度（默认 15s、1m、5m、30m）各查询一次支付平台。
+ * 每次调度只取创建时间在上次成功调度以来跨过某个梯度的交易；上次成功调度的时间记录在 scheduler_lease 表，
+ * 读取交易或查询支付平台失败时不推进，下次调度重新查询本次窗口；重启或主节点切换后从记录的时间继续，窗口不会丢失。
+ * 查询速率由共用的 {@link GatewayRateLimiter} 控制（query 接口），令牌不足时在有界线程池中按 easy-pay.rate-limit.batch-max-wait-ms 排队等待；
+ * 支付宝走 {@link AlipayService#queryOrderAsync} 异步查询，等待网关响应期间不占用池线程，微信仍在池线程中阻塞查询。
+ * 查到终态时构造回调交给 {@link PaymentCallbackService}，
+ * 与真实回调走同一条 NOTIFY 事件路径，之后真实回调到达时由回调去重直接确认。
+ */
+@Slf4j
+public class PaymentReconciler {
+
+    static final String TASK_NAME = "payment-reconciler";
+
+    private static final Set<String> ALIPAY_FINAL_STATES = Set.of("TRADE_SUCCESS", "TRADE_FINISHED", "TRADE_CLOSED");
+    private static final Set<String> WXPAY_FINAL_STATES = Set.of("SUCCESS", "CLOSED", "REVOKED", "PAYERROR");
+
+    private final PaymentTransactionRepository transactionRepository;
+    private final SchedulerLeaseRepository leaseRepository;
+    private final PaymentCallbackService callbackService;
+    private final Optional<AlipayService> alipayService;
+    private final Optional<WxPayServiceWrapper> wxPayService;
+    private final LeaderElector leaderElector;
+    private final ReconcileProperties properties;
+    private final Duration gatewayMaxWait;
+    private final ExecutorService executor;
+    private final Counter queriedCounter;
+    private final Counter changedCounter;
+    private final Counter failedCounter;
+
+    public PaymentReconciler(PaymentTransactionRepository transactionRepository,
+                             SchedulerLeaseRepository leaseRepository,
+                             PaymentCallbackService callbackService,
+                             Optional<AlipayService> alipayService,
+                             Optional<WxPayServiceWrapper> wxPayService,
+                             LeaderElector leaderElector,
+                             ReconcileProperties properties,
+                             RateLimitProperties rateLimitProperties,
+                             MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.leaseRepository = leaseRepository;
+        this.callbackService = callbackService;
+        this.alipayService = alipayService;
+        this.wxPayService = wxPayService;
+        this.leaderElector = leaderElector;
+        this.properties = properties;
+        this.gatewayMaxWait = Duration.ofMillis(rateLimitProperties.getBatchMaxWaitMs());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()),
+                Thread.ofPlatform().name("reconcile-", 0).daemon(true).factory());
+        this.queriedCounter = counter(meterRegistry, "queried");
+        this.changedCounter = counter(meterRegistry, "changed");
+        this.failedCounter = counter(meterRegistry, "failed");
+    }
+
+    /**
+     * 定时对账
+     * <p>
+     * 查询创建时间落在 [上次成功调度 - 梯度, 本次 - 梯度) 的交易，全部梯度查询成功后才记录本次时间。
+     * 任一交易查询支付平台失败时同样不记录，已查到终态的交易不再是待支付，重新查询窗口时不会重复处理
+     */
+    @Scheduled(fixedDelayString = "${easy-pay.reconcile.interval-ms:5000}")
+    public void reconcile() {
+        if (properties.isLeaderOnly() && !leaderElector.isLeader(TASK_NAME)) {
+            log.debug("非主节点，跳过主动对账");
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since;
+        int failed = 0;
+        try {
+            since = leaseRepository.findLastRunAt(TASK_NAME)
+                    .orElseGet(() -> now.minus(Duration.ofMillis(properties.getIntervalMs())));
+            for (Duration tier : properties.getTiers()) {
+                failed += reconcileWindow(since.minus(tier), now.minus(tier));
+            }
+        } catch (Exception e) {
+            log.warn("主动对账查询交易失败，下次调度重新查询本次窗口", e);
+            return;
+        }
+        if (failed > 0) {
+            log.warn("主动对账查询支付平台失败，下次调度重新查询本次窗口: failed={}", failed);
+            return;
+        }
+        saveLastRunAt(now);
+    }
+
+    /**
+     * 记录本次成功调度的时间，失败时下次调度从上次记录的时间重新查询
+     */
+    private void saveLastRunAt(LocalDateTime runAt) {
+        try {
+            if (leaseRepository.updateLastRunAt(TASK_NAME, runAt) == 0) {
+                leaseRepository.insertLastRunAt(TASK_NAME, runAt);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // 其他节点抢先创建了记录，本次进度由下次调度记录
+            log.debug("主动对账进度记录已由其他节点创建");
+        } catch (Exception e) {
+            log.warn("记录主动对账进度失败: runAt={}", runAt, e);
+        }
+    }
+
+    /**
+     * 查询创建时间在 [from, to) 内的待支付交易
+     *
+     * @return 查询支付平台失败的交易数
+     */
+    private int reconcileWindow(LocalDateTime from, LocalDateTime to) {
+        int batchSize = properties.getBatchSize();
+        long afterId = 0;
+        int failed = 0;
+        List<PaymentTransactionEntity> batch;
+        do {
+            batch = transactionRepository.findCreatedBetweenBatch(
+                    TransactionStatus.PENDING, from, to, afterId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            failed += reconcileBatch(batch);
+            afterId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == batchSize);
+        return failed;
+    }
+
+    /**
+     * 查询一批交易
+     *
+     * @return 查询支付平台失败的交易数
+     */
+    int reconcileBatch(List<PaymentTransactionEntity> batch) {
+        List<CompletableFuture<Boolean>> futures = batch.stream()
+                .map(this::reconcileOne)
+                .toList();
+        return (int) futures.stream()
+                .map(CompletableFuture::join)
+                .filter(succeeded -> !succeeded)
+                .count();
+    }
+
+    /**
+     * 查询一笔交易，查到终态时交给回调服务
+     *
+     * @return 是否查询成功，不论交易是否为终态
+     */
+    private CompletableFuture<Boolean> reconcileOne(PaymentTransactionEntity transaction) {
+        queriedCounter.increment();
+        CompletableFuture<Boolean> changed = switch (transaction.getPlatform()) {
+            case ALIPAY -> alipayService.map(service -> reconcileAlipay(service, transaction))
+                    .orElseGet(() -> CompletableFuture.completedFuture(false));
+            case WXPAY -> wxPayService.map(service -> reconcileWxPay(service, transaction))
+                    .orElseGet(() -> CompletableFuture.completedFuture(false));
+        };
+        return changed.handle((result, e) -> {
+            if (e != null) {
+                failedCounter.increment();
+                log.warn("主动对账查询失败: orderId={}, platform={}",
+                        transaction.getOrderId(), transaction.getPlatform(), e);
+                return false;
+            }
+            if (result) {
+                changedCounter.increment();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * 异步查询支付宝，查询结果回到池线程处理
+     */
+    private CompletableFuture<Boolean> reconcileAlipay(AlipayService service, PaymentTransactionEntity transaction) {
+        AlipayQueryRequest request = new AlipayQueryRequest();
+        request.setOutTradeNo(transaction.getOrderId());
+        return GatewayRateLimiter.waitUpToAsync(gatewayMaxWait, () -> service.queryOrderAsync(request), executor)
+                .thenApplyAsync(response -> onAlipayQueried(transaction, response), executor);
+    }
+
+    private boolean onAlipayQueried(PaymentTransactionEntity transaction, AlipayQueryResponse response) {
+        // 用户未扫码时支付宝返回交易不存在，等待下一个梯度
+        if (!response.isSuccess() || !ALIPAY_FINAL_STATES.contains(response.getTradeStatus())) {
+            return false;
+        }
+        AlipayCallbackDTO callback = new AlipayCallbackDTO();
+        callback.setOutTradeNo(response.getOutTradeNo());
+        callback.setTradeNo(response.getTradeNo());
+        callback.setTradeStatus(response.getTradeStatus());
+        callback.setTotalAmount(response.getTotalAmount());
+        callback.setReceiptAmount(response.getReceiptAmount());
+        callback.setBuyerId(response.getBuyerUserId());
+        callback.setBuyerLogonId(response.getBuyerLogonId());
+        callback.setSubject(transaction.getSubject());
+        log.info("主动对账发现支付宝交易状态变化: orderId={}, tradeStatus={}",
+                transaction.getOrderId(), response.getTradeStatus());
+        callbackService.handleAlipayCallback(callback);
+        return true;
+    }
+
+    /**
+     * 在池线程中阻塞查询微信
+     */
+    private CompletableFuture<Boolean> reconcileWxPay(WxPayServiceWrapper service, PaymentTransactionEntity transaction) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return GatewayRateLimiter.waitUpTo(gatewayMaxWait, () -> queryWxPay(service, transaction));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private boolean queryWxPay(WxPayServiceWrapper service, PaymentTransactionEntity transaction) throws Exception {
+        WxPayQueryRequest request = new WxPayQueryRequest();
+        request.setOutTradeNo(transaction.getOrderId());
+        WxPayQueryResponse response = service.queryOrder(request);
+        if (!response.isSuccess() || !WXPAY_FINAL_STATES.contains(response.getTradeState())) {
+            return false;
+        }
+        WxPayCallbackDTO callback = new WxPayCallbackDTO();
+        callback.setReturnCode(response.getReturnCode());
+        // 支付回调以 result_code 表示是否支付成功，查询结果以 trade_state 表示
+        callback.setResultCode("SUCCESS".equals(response.getTradeState()) ? "SUCCESS" : response.getTradeState());
+        callback.setOutTradeNo(response.getOutTradeNo());
+        callback.setTransactionId(response.getTransactionId());
+        if (response.getTotalFee() != null) {
+            callback.setTotalFee(BigDecimal.valueOf(response.getTotalFee()).movePointLeft(2));
+        }
+        // 查询接口的响应已由 SDK 验签
+        callback.setSignValid(true);
+        log.info("主动对账发现微信交易状态变化: orderId={}, tradeState={}",
+                transaction.getOrderId(), response.getTradeState());
+        callbackService.handleWxPayCallback(callback);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("payment.reconcile")
+                .description("主动对账查询次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
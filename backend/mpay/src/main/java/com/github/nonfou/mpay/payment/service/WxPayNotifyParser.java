@@ -0,0 +1,309 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
+import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 微信支付结果通知、退款结果通知解析器
+ * <p>
+ * 用 StAX 直接从请求输入流读取 {@code <xml>} 下的字段，不再先读成字符串再由 SDK 构建 DOM 和 XStream 对象。
+ * 字段按名称排序后依次送入 MD5 / HMAC-SHA256 计算签名，规则与 SDK 的 SignUtils 一致：
+ * 跳过 sign 和空值，末尾拼接 key=商户密钥，结果转大写十六进制。
+ * 超过大小上限的请求体在读取过程中即被拒绝，禁用 DTD 与外部实体。
+ * <p>
+ * 退款结果通知不带签名，业务字段在 req_info 中以 AES-256-ECB 加密，密钥为商户密钥 MD5 的小写十六进制。
+ * 密钥只在创建时计算一次，已 init 的 {@link Cipher} 放在有界池中复用，解密结果同样以 StAX 读取。
+ */
+public class WxPayNotifyParser {
+
+    private static final String SIGN = "sign";
+    private static final String SIGN_TYPE = "sign_type";
+    private static final String HMAC_SHA256 = "HMAC-SHA256";
+    private static final HexFormat HEX = HexFormat.of().withUpperCase();
+    private static final String AES_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+
+    private final XMLInputFactory xmlInputFactory;
+    private final byte[] mchKey;
+    private final byte[] keySuffix;
+    private final int maxBodyBytes;
+    private final SecretKeySpec refundKey;
+    private final BlockingQueue<Cipher> refundCiphers;
+
+    public WxPayNotifyParser(WxPayProperties properties) {
+        this(properties.getMchKey(), properties.getNotifyMaxBytes());
+    }
+
+    public WxPayNotifyParser(String mchKey, int maxBodyBytes) {
+        this.mchKey = mchKey == null ? new byte[0] : mchKey.getBytes(StandardCharsets.UTF_8);
+        this.keySuffix = ("key=" + (mchKey == null ? "" : mchKey)).getBytes(StandardCharsets.UTF_8);
+        this.maxBodyBytes = maxBodyBytes;
+        this.refundKey = mchKey == null || mchKey.isEmpty() ? null : refundKey(mchKey);
+        this.refundCiphers = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * 解析并验签支付结果通知
+     *
+     * @param body          请求体
+     * @param contentLength 请求头声明的长度，未知时传 -1
+     * @throws WxPayException 请求体过大、格式错误或签名不符
+     */
+    public WxPayCallbackDTO parse(InputStream body, long contentLength) throws WxPayException {
+        Map<String, String> fields = readBody(body, contentLength);
+        String sign = fields.get(SIGN);
+        if (sign == null || !MessageDigest.isEqual(sign.getBytes(StandardCharsets.UTF_8),
+                sign(fields).getBytes(StandardCharsets.UTF_8))) {
+            throw new WxPayException("参数格式校验错误！");
+        }
+
+        WxPayCallbackDTO callback = new WxPayCallbackDTO();
+        callback.setReturnCode(fields.get("return_code"));
+        callback.setResultCode(fields.get("result_code"));
+        callback.setAppId(fields.get("appid"));
+        callback.setMchId(fields.get("mch_id"));
+        callback.setNonceStr(fields.get("nonce_str"));
+        callback.setSign(sign);
+        callback.setOutTradeNo(fields.get("out_trade_no"));
+        callback.setTransactionId(fields.get("transaction_id"));
+        callback.setTotalFee(fenToYuan(fields.get("total_fee")));
+        callback.setTimeEnd(fields.get("time_end"));
+        callback.setSignValid(true);
+        return callback;
+    }
+
+    /**
+     * 解析退款结果通知并解密 req_info
+     *
+     * @param body          请求体
+     * @param contentLength 请求头声明的长度，未知时传 -1
+     * @throws WxPayException 请求体过大、格式错误或解密失败（商户密钥不符）
+     */
+    public WxPayRefundNotifyDTO parseRefund(InputStream body, long contentLength) throws WxPayException {
+        Map<String, String> fields = readBody(body, contentLength);
+        WxPayRefundNotifyDTO notify = new WxPayRefundNotifyDTO();
+        notify.setReturnCode(fields.get("return_code"));
+        notify.setReturnMsg(fields.get("return_msg"));
+        notify.setAppId(fields.get("appid"));
+        notify.setMchId(fields.get("mch_id"));
+        String reqInfo = fields.get("req_info");
+        if (!"SUCCESS".equals(notify.getReturnCode()) || reqInfo == null || reqInfo.isEmpty()) {
+            // 通信失败时不带 req_info，由调用方按失败处理
+            return notify;
+        }
+
+        Map<String, String> info;
+        try {
+            info = readFields(new ByteArrayInputStream(decrypt(reqInfo)));
+        } catch (XMLStreamException e) {
+            throw new WxPayException("解析微信退款通知 req_info 失败: " + e.getMessage(), e);
+        }
+        notify.setTransactionId(info.get("transaction_id"));
+        notify.setOutTradeNo(info.get("out_trade_no"));
+        notify.setRefundId(info.get("refund_id"));
+        notify.setOutRefundNo(info.get("out_refund_no"));
+        notify.setTotalFee(fenToYuan(info.get("total_fee")));
+        notify.setRefundFee(fenToYuan(info.get("refund_fee")));
+        notify.setSettlementRefundFee(fenToYuan(info.get("settlement_refund_fee")));
+        notify.setRefundStatus(info.get("refund_status"));
+        notify.setSuccessTime(info.get("success_time"));
+        notify.setRefundRecvAccout(info.get("refund_recv_accout"));
+        return notify;
+    }
+
+    /**
+     * 读取请求体，声明长度或实际读取长度超过上限时拒绝
+     */
+    private Map<String, String> readBody(InputStream body, long contentLength) throws WxPayException {
+        if (contentLength > maxBodyBytes) {
+            throw new WxPayException("微信回调数据过大: " + contentLength + " 字节");
+        }
+        LimitedInputStream limited = new LimitedInputStream(body, maxBodyBytes);
+        try {
+            return readFields(limited);
+        } catch (XMLStreamException e) {
+            if (limited.exceeded) {
+                throw new WxPayException("微信回调数据超过 " + maxBodyBytes + " 字节");
+            }
+            throw new WxPayException("解析微信回调数据失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取根元素下的字段，按名称排序以便计算签名
+     */
+    private Map<String, String> readFields(InputStream body) throws XMLStreamException, WxPayException {
+        Map<String, String> fields = new TreeMap<>();
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(body, StandardCharsets.UTF_8.name());
+        try {
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.DTD) {
+                    throw new WxPayException("微信回调数据不允许包含 DTD");
+                }
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == 0) {
+                        depth = 1;
+                    } else {
+                        // getElementText 读到结束标签为止，遇到嵌套元素时抛出 XMLStreamException
+                        fields.put(reader.getLocalName(), reader.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                }
+            }
+        } finally {
+            closeQuietly(reader);
+        }
+        return fields;
+    }
+
+    private String sign(Map<String, String> fields) throws WxPayException {
+        boolean hmac = HMAC_SHA256.equals(fields.get(SIGN_TYPE));
+        try {
+            Mac mac = null;
+            MessageDigest md5 = null;
+            if (hmac) {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(mchKey, "HmacSHA256"));
+            } else {
+                md5 = MessageDigest.getInstance("MD5");
+            }
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                if (SIGN.equals(field.getKey()) || field.getValue().isEmpty()) {
+                    continue;
+                }
+                byte[] pair = (field.getKey() + "=" + field.getValue() + "&").getBytes(StandardCharsets.UTF_8);
+                if (hmac) {
+                    mac.update(pair);
+                } else {
+                    md5.update(pair);
+                }
+            }
+            return HEX.formatHex(hmac ? mac.doFinal(keySuffix) : md5.digest(keySuffix));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            // 未配置商户密钥时 SecretKeySpec 抛出 IllegalArgumentException
+            throw new WxPayException("计算微信回调签名失败", e);
+        }
+    }
+
+    private byte[] decrypt(String reqInfo) throws WxPayException {
+        if (refundKey == null) {
+            throw new WxPayException("未配置商户密钥，无法解密退款通知");
+        }
+        Cipher cipher = refundCiphers.poll();
+        try {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(AES_TRANSFORMATION);
+                cipher.init(Cipher.DECRYPT_MODE, refundKey);
+            }
+            // doFinal 完成后 Cipher 回到 init 之后的状态，可直接归还复用
+            byte[] plain = cipher.doFinal(Base64.getMimeDecoder().decode(reqInfo));
+            refundCiphers.offer(cipher);
+            return plain;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new WxPayException("解密微信退款通知失败", e);
+        }
+    }
+
+    private static SecretKeySpec refundKey(String mchKey) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(mchKey.getBytes(StandardCharsets.UTF_8));
+            return new SecretKeySpec(HexFormat.of().formatHex(md5).getBytes(StandardCharsets.UTF_8), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BigDecimal fenToYuan(String fen) throws WxPayException {
+        if (fen == null || fen.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(Integer.parseInt(fen)).divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            throw new WxPayException("微信回调金额格式错误: " + fen);
+        }
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+            // 读取已结束，关闭失败不影响结果
+        }
+    }
+
+    /**
+     * 超过上限时在读取过程中抛出，不等整个请求体读完
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+        private boolean exceeded;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                exceeded = true;
+                throw new IOException("request body exceeds " + limit + " bytes");
+            }
+        }
+    }
+}
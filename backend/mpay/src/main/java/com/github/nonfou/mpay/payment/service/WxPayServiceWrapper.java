@@ -1,6 +1,7 @@
 package com.github.nonfou.mpay.payment.service;
 
 import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
+import com.github.binarywang.wxpay.bean.notify.WxPayRefundNotifyResult;
 import com.github.binarywang.wxpay.bean.request.WxPayOrderQueryRequest;
 import com.github.binarywang.wxpay.bean.request.WxPayRefundRequest;
 import com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest;
@@ -9,22 +10,34 @@ import com.github.binarywang.wxpay.bean.result.WxPayRefundResult;
 import com.github.binarywang.wxpay.bean.result.WxPayUnifiedOrderResult;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.binarywang.wxpay.service.WxPayService;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
 import com.github.nonfou.mpay.payment.dto.wxpay.*;
 import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+import com.github.nonfou.mpay.payment.resilience.GatewayGuard;
 import com.github.nonfou.mpay.payment.util.IpUtils;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.function.Predicate;
 
 /**
  * 微信支付服务
+ * 访问网关的调用经 {@link GatewayGuard} 限流、熔断和并发隔离，网关调用和回调验签的耗时记录到 {@link PaymentMetrics}。
+ * 下单成功后发布 CREATE 事件，写入待支付交易并注册订单定时器。
  */
 @Slf4j
 @Service
@@ -34,6 +47,65 @@ public class WxPayServiceWrapper {
 
     private final WxPayService wxPayService;
     private final WxPayProperties wxPayProperties;
+    private GatewayGuard gatewayGuard = GatewayGuard.NONE;
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
+    private WxPayNotifyParser notifyParser;
+    private PaymentEventPublisher eventPublisher;
+
+    private static final String REFUND_NOTIFY = "refund_notify";
+
+    /**
+     * SDK 对业务失败（result_code=FAIL，如订单已支付）同样抛出 WxPayException，这类网关已正常应答的错误不计入熔断
+     */
+    private static final Predicate<Throwable> GATEWAY_FAILURE =
+            e -> !(e instanceof WxPayException wx && wx.getResultCode() != null);
+
+    @Autowired(required = false)
+    public void setGatewayGuard(GatewayGuard gatewayGuard) {
+        this.gatewayGuard = gatewayGuard;
+    }
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    /**
+     * 未注入时回调退回 SDK 的 {@link WxPayService#parseOrderNotifyResult(String)} 解析
+     */
+    @Autowired(required = false)
+    public void setNotifyParser(WxPayNotifyParser notifyParser) {
+        this.notifyParser = notifyParser;
+    }
+
+    /**
+     * 未注入时下单不记录交易，交易记录在支付回调到达时补建
+     */
+    @Autowired(required = false)
+    public void setEventPublisher(PaymentEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 经网关保护调用并记录耗时，业务失败时把 err_code 回报给限流器，识别到限流错误码会自动降速
+     */
+    private <T> T call(String operation, GatewayGuard.GatewayCall<T, WxPayException> call) throws WxPayException {
+        Timer.Sample sample = paymentMetrics.start();
+        T result;
+        try {
+            result = gatewayGuard.call(PaymentPlatform.WXPAY, operation, GATEWAY_FAILURE, call);
+        } catch (WxPayException e) {
+            paymentMetrics.recordGatewayCall(sample, PaymentPlatform.WXPAY, operation,
+                    GATEWAY_FAILURE.test(e) ? PaymentMetrics.ERROR : PaymentMetrics.FAILURE);
+            gatewayGuard.reportErrorCode(PaymentPlatform.WXPAY, operation, e.getErrCode());
+            throw e;
+        } catch (RuntimeException e) {
+            paymentMetrics.recordGatewayCall(sample, PaymentPlatform.WXPAY, operation, PaymentMetrics.outcomeOf(e));
+            throw e;
+        }
+        paymentMetrics.recordGatewayCall(sample, PaymentPlatform.WXPAY, operation, PaymentMetrics.SUCCESS);
+        return result;
+    }
 
     /**
      * 元转分
@@ -67,7 +139,7 @@ public class WxPayServiceWrapper {
 
         log.debug("微信二维码支付请求: {}", wxRequest);
 
-        WxPayUnifiedOrderResult result = wxPayService.unifiedOrder(wxRequest);
+        WxPayUnifiedOrderResult result = call("create", () -> wxPayService.unifiedOrder(wxRequest));
         log.debug("微信二维码支付响应: {}", result);
 
         WxPayUnifiedOrderResponse response = new WxPayUnifiedOrderResponse();
@@ -80,6 +152,9 @@ public class WxPayServiceWrapper {
         response.setPrepayId(result.getPrepayId());
         response.setCodeUrl(result.getCodeURL());
 
+        if (response.isSuccess()) {
+            publishCreated(wxRequest, request.getTotalFee());
+        }
         return response;
     }
 
@@ -103,7 +178,7 @@ public class WxPayServiceWrapper {
 
         log.debug("微信H5支付请求: {}", wxRequest);
 
-        WxPayUnifiedOrderResult result = wxPayService.unifiedOrder(wxRequest);
+        WxPayUnifiedOrderResult result = call("create", () -> wxPayService.unifiedOrder(wxRequest));
         log.debug("微信H5支付响应: {}", result);
 
         WxPayUnifiedOrderResponse response = new WxPayUnifiedOrderResponse();
@@ -116,9 +191,41 @@ public class WxPayServiceWrapper {
         response.setPrepayId(result.getPrepayId());
         response.setMwebUrl(result.getMwebUrl());
 
+        if (response.isSuccess()) {
+            publishCreated(wxRequest, request.getTotalFee());
+        }
         return response;
     }
 
+    /**
+     * 发布支付创建事件
+     * <p>
+     * 微信侧已下单，发布失败时不影响返回结果，交易记录在支付回调到达时补建。
+     * 下单未指定 time_expire，订单超时时间留空，由超时关单按全局超时时间兜底
+     */
+    private void publishCreated(WxPayUnifiedOrderRequest wxRequest, BigDecimal totalFee) {
+        if (eventPublisher == null) {
+            return;
+        }
+        PaymentEvent event = PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.CREATE)
+                .platform(PaymentPlatform.WXPAY)
+                .orderId(wxRequest.getOutTradeNo())
+                .tradeNo(wxRequest.getOutTradeNo())
+                .tradeType(wxRequest.getTradeType())
+                .amount(totalFee)
+                .subject(wxRequest.getBody())
+                .clientIp(wxRequest.getSpbillCreateIp())
+                .success(true)
+                .build();
+        try {
+            eventPublisher.publish(event);
+        } catch (RuntimeException e) {
+            log.error("发布支付创建事件失败: outTradeNo={}", wxRequest.getOutTradeNo(), e);
+        }
+    }
+
     /**
      * 退款
      */
@@ -134,7 +241,7 @@ public class WxPayServiceWrapper {
 
         log.debug("微信退款请求: {}", wxRequest);
 
-        WxPayRefundResult result = wxPayService.refund(wxRequest);
+        WxPayRefundResult result = call("refund", () -> wxPayService.refund(wxRequest));
         log.debug("微信退款响应: {}", result);
 
         WxPayRefundResponse response = new WxPayRefundResponse();
@@ -163,7 +270,7 @@ public class WxPayServiceWrapper {
 
         log.debug("微信订单查询请求: {}", wxRequest);
 
-        WxPayOrderQueryResult result = wxPayService.queryOrder(wxRequest);
+        WxPayOrderQueryResult result = call("query", () -> wxPayService.queryOrder(wxRequest));
         log.debug("微信订单查询响应: {}", result);
 
         WxPayQueryResponse response = new WxPayQueryResponse();
@@ -189,7 +296,7 @@ public class WxPayServiceWrapper {
      */
     public boolean closeOrder(String outTradeNo) throws WxPayException {
         try {
-            wxPayService.closeOrder(outTradeNo);
+            call("close", () -> wxPayService.closeOrder(outTradeNo));
             return true;
         } catch (WxPayException e) {
             log.error("微信关闭订单失败: {}", e.getMessage());
@@ -201,10 +308,25 @@ public class WxPayServiceWrapper {
      * 解析支付回调
      */
     public WxPayCallbackDTO parseCallback(HttpServletRequest request) throws WxPayException {
+        if (notifyParser != null) {
+            return parseCallbackStreaming(request);
+        }
         String xmlData = getRequestXml(request);
         log.debug("微信支付回调原始数据: {}", xmlData);
 
-        WxPayOrderNotifyResult notifyResult = wxPayService.parseOrderNotifyResult(xmlData);
+        // SDK 解析时校验签名，签名不符抛出 WxPayException
+        Timer.Sample sample = paymentMetrics.start();
+        WxPayOrderNotifyResult notifyResult;
+        try {
+            notifyResult = wxPayService.parseOrderNotifyResult(xmlData);
+        } catch (WxPayException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.INVALID);
+            throw e;
+        } catch (RuntimeException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.ERROR);
+            throw e;
+        }
+        paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.SUCCESS);
 
         WxPayCallbackDTO callback = new WxPayCallbackDTO();
         callback.setReturnCode(notifyResult.getReturnCode());
@@ -222,6 +344,78 @@ public class WxPayServiceWrapper {
         return callback;
     }
 
+    /**
+     * 解析退款结果通知，req_info 解密失败（商户密钥不符）时抛出 WxPayException
+     */
+    public WxPayRefundNotifyDTO parseRefundCallback(HttpServletRequest request) throws WxPayException {
+        Timer.Sample sample = paymentMetrics.start();
+        WxPayRefundNotifyDTO notify;
+        try {
+            notify = notifyParser != null ? parseRefundStreaming(request) : parseRefundWithSdk(request);
+        } catch (WxPayException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.INVALID);
+            throw e;
+        } catch (RuntimeException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.ERROR);
+            throw e;
+        }
+        paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, REFUND_NOTIFY, PaymentMetrics.SUCCESS);
+        return notify;
+    }
+
+    private WxPayRefundNotifyDTO parseRefundStreaming(HttpServletRequest request) throws WxPayException {
+        try (InputStream body = request.getInputStream()) {
+            return notifyParser.parseRefund(body, request.getContentLengthLong());
+        } catch (IOException e) {
+            throw new WxPayException("读取微信退款回调数据失败", e);
+        }
+    }
+
+    private WxPayRefundNotifyDTO parseRefundWithSdk(HttpServletRequest request) throws WxPayException {
+        WxPayRefundNotifyResult result = wxPayService.parseRefundNotifyResult(getRequestXml(request));
+        WxPayRefundNotifyDTO notify = new WxPayRefundNotifyDTO();
+        notify.setReturnCode(result.getReturnCode());
+        notify.setReturnMsg(result.getReturnMsg());
+        notify.setAppId(result.getAppid());
+        notify.setMchId(result.getMchId());
+        WxPayRefundNotifyResult.ReqInfo reqInfo = result.getReqInfo();
+        if (reqInfo != null) {
+            notify.setTransactionId(reqInfo.getTransactionId());
+            notify.setOutTradeNo(reqInfo.getOutTradeNo());
+            notify.setRefundId(reqInfo.getRefundId());
+            notify.setOutRefundNo(reqInfo.getOutRefundNo());
+            notify.setTotalFee(fenToYuan(reqInfo.getTotalFee()));
+            notify.setRefundFee(fenToYuan(reqInfo.getRefundFee()));
+            notify.setSettlementRefundFee(fenToYuan(reqInfo.getSettlementRefundFee()));
+            notify.setRefundStatus(reqInfo.getRefundStatus());
+            notify.setSuccessTime(reqInfo.getSuccessTime());
+            notify.setRefundRecvAccout(reqInfo.getRefundRecvAccout());
+        }
+        return notify;
+    }
+
+    /**
+     * 直接从请求输入流解析并验签，不先读成字符串
+     */
+    private WxPayCallbackDTO parseCallbackStreaming(HttpServletRequest request) throws WxPayException {
+        Timer.Sample sample = paymentMetrics.start();
+        WxPayCallbackDTO callback;
+        try (InputStream body = request.getInputStream()) {
+            callback = notifyParser.parse(body, request.getContentLengthLong());
+        } catch (WxPayException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.INVALID);
+            throw e;
+        } catch (IOException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.ERROR);
+            throw new WxPayException("读取微信回调数据失败", e);
+        } catch (RuntimeException e) {
+            paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.ERROR);
+            throw e;
+        }
+        paymentMetrics.recordCallbackVerify(sample, PaymentPlatform.WXPAY, PaymentMetrics.SUCCESS);
+        return callback;
+    }
+
     /**
      * 生成回调成功响应
      */
@@ -0,0 +1,30 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayRequest;
+import com.alipay.api.AlipayResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 支付宝网关传输层 - 发送已构建好的 API 请求并异步返回解析、验签后的响应
+ * <p>
+ * 默认实现为基于 JDK HttpClient 的 {@link HttpClientAlipayTransport}；
+ * 可声明自己的 AlipayTransport Bean 替换（如接入统一的 HTTP 网关或测试桩）。
+ * 作为 Bean 注册时容器关闭时调用 {@link #close()}，实现类在其中释放自己持有的线程池和连接。
+ */
+public interface AlipayTransport extends AutoCloseable {
+
+    /**
+     * 执行请求
+     *
+     * @return 响应；网关调用、解析或验签失败时以 {@link com.alipay.api.AlipayApiException} 异常完成
+     */
+    <T extends AlipayResponse> CompletableFuture<T> execute(AlipayRequest<T> request);
+
+    /**
+     * 释放传输层持有的资源，默认无需释放
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.AlipayClient;
+import com.alipay.api.AlipayRequest;
+import com.alipay.api.AlipayResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 基于 {@link AlipayClient} 的传输层 - 在线程池中阻塞调用，用于关闭非阻塞 HTTP 客户端时
+ * <p>
+ * 线程池归传输层所有，关闭时一并关闭。
+ */
+public class ClientAlipayTransport implements AlipayTransport {
+
+    private final AlipayClient alipayClient;
+    private final ExecutorService executor;
+
+    public ClientAlipayTransport(AlipayClient alipayClient, ExecutorService executor) {
+        this.alipayClient = alipayClient;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T extends AlipayResponse> CompletableFuture<T> execute(AlipayRequest<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return alipayClient.execute(request);
+            } catch (AlipayApiException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.AlipayRequest;
+import com.alipay.api.AlipayResponse;
+import com.alipay.api.SignItem;
+import com.alipay.api.Signer;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.alipay.api.parser.ObjectJsonParser;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.payment.service.AlipaySignatureVerifier;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 基于 JDK HttpClient 的支付宝传输层
+ * <p>
+ * 按 {@link com.alipay.api.DefaultAlipayClient} 相同的规则组装公共参数并签名，以 sendAsync 发出请求，
+ * 响应同样用 SDK 的解析器解析，验签复用 {@link AlipaySignatureVerifier}，支付宝公钥不再每次响应解析一次。
+ * HttpClient 复用 keep-alive 连接，等待网关响应期间不占用线程，并发请求数不再受线程数限制。
+ */
+@Slf4j
+public class HttpClientAlipayTransport implements AlipayTransport {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AlipayProperties properties;
+    private final Signer signer;
+    private final AlipaySignatureVerifier verifier;
+    private final Charset charset;
+    private final Duration requestTimeout;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    public HttpClientAlipayTransport(AlipayProperties properties) {
+        this(properties, new PooledAlipaySigner(properties), new AlipaySignatureVerifier(properties));
+    }
+
+    public HttpClientAlipayTransport(AlipayProperties properties, Signer signer, AlipaySignatureVerifier verifier) {
+        AlipayProperties.Http http = properties.getHttp();
+        this.properties = properties;
+        this.signer = signer;
+        this.verifier = verifier;
+        this.charset = Charset.forName(properties.getCharset());
+        this.requestTimeout = Duration.ofMillis(http.getRequestTimeoutMs());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, http.getIoThreads()),
+                Thread.ofPlatform().name("alipay-http-", 0).daemon(true).factory());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(http.getConnectTimeoutMs()))
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public <T extends AlipayResponse> CompletableFuture<T> execute(AlipayRequest<T> request) {
+        String form;
+        try {
+            form = encode(signedParams(request));
+        } catch (AlipayApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(properties.getGatewayUrl()))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/x-www-form-urlencoded;charset=" + properties.getCharset())
+                .POST(HttpRequest.BodyPublishers.ofString(form, charset))
+                .build();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString(charset))
+                .thenApply(response -> parse(request, response));
+    }
+
+    /**
+     * 公共参数 + 业务参数，按参数名排序后签名
+     */
+    private Map<String, String> signedParams(AlipayRequest<?> request) throws AlipayApiException {
+        Map<String, String> params = new TreeMap<>();
+        params.put("app_id", properties.getAppId());
+        params.put("method", request.getApiMethodName());
+        params.put("format", "json");
+        params.put("charset", properties.getCharset());
+        params.put("sign_type", properties.getSignType());
+        params.put("timestamp", LocalDateTime.now().format(TIMESTAMP));
+        params.put("version", request.getApiVersion());
+        if (request.getNotifyUrl() != null) {
+            params.put("notify_url", request.getNotifyUrl());
+        }
+        if (request.getReturnUrl() != null) {
+            params.put("return_url", request.getReturnUrl());
+        }
+        Map<String, String> textParams = request.getTextParams();
+        if (textParams != null) {
+            textParams.forEach((name, value) -> {
+                if (value != null) {
+                    params.put(name, value);
+                }
+            });
+        }
+        String sign;
+        try {
+            sign = signer.sign(AlipaySignature.getSignContent(params), properties.getSignType(), properties.getCharset());
+        } catch (RuntimeException e) {
+            throw new AlipayApiException(e.getMessage(), e);
+        }
+        params.put("sign", sign);
+        return params;
+    }
+
+    private String encode(Map<String, String> params) {
+        return params.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), charset))
+                .collect(Collectors.joining("&"));
+    }
+
+    private <T extends AlipayResponse> T parse(AlipayRequest<T> request, HttpResponse<String> response) {
+        try {
+            if (response.statusCode() != 200) {
+                throw new AlipayApiException("支付宝网关返回 HTTP " + response.statusCode());
+            }
+            String body = response.body();
+            ObjectJsonParser<T> parser = new ObjectJsonParser<>(request.getResponseClass());
+            T result = parser.parse(body);
+            result.setBody(body);
+            verify(parser.getSignItem(request, body), result);
+            return result;
+        } catch (AlipayApiException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 与 SDK 一致：调用成功或响应带签名时校验签名
+     */
+    private void verify(SignItem signItem, AlipayResponse result) throws AlipayApiException {
+        if (signItem == null) {
+            throw new AlipayApiException("支付宝响应缺少签名信息");
+        }
+        String sign = signItem.getSign();
+        if (sign == null || sign.isEmpty()) {
+            if (!result.isSuccess()) {
+                return;
+            }
+            throw new AlipayApiException("支付宝响应缺少签名");
+        }
+        if (!verifier.verify(signItem.getSignSourceDate(), sign)) {
+            throw new AlipayApiException("支付宝响应验签失败");
+        }
+    }
+
+    @Override
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.Signer;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 复用私钥的支付宝请求签名器
+ * <p>
+ * SDK 的 DefaultSigner 每次签名都重新解码 PKCS#8 私钥并创建 {@link Signature}。
+ * 这里私钥只在创建时解析一次，已 initSign 的 Signature 放在有界池中借出归还，
+ * 不依赖线程绑定，虚拟线程下同样能复用。签名结果与 {@code AlipaySignature.rsaSign} 一致。
+ */
+@Slf4j
+public class PooledAlipaySigner implements Signer {
+
+    private final String signType;
+    private final String algorithm;
+    private final String rawPrivateKey;
+    private final PrivateKey privateKey;
+    private final BlockingQueue<Signature> pool;
+
+    public PooledAlipaySigner(AlipayProperties properties) {
+        this(properties.getPrivateKey(), properties.getSignType(), Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public PooledAlipaySigner(String privateKey, String signType, int poolSize) {
+        this.signType = signType;
+        this.algorithm = algorithm(signType);
+        this.rawPrivateKey = privateKey;
+        this.privateKey = parsePrivateKey(privateKey);
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    @Override
+    public String sign(String sourceContent, String signType, String charset) {
+        if (privateKey == null || algorithm == null || !this.signType.equals(signType)) {
+            // 私钥无效或签名类型与配置不同时交给 SDK，由 SDK 给出原有的错误信息
+            return sdkSign(sourceContent, signType, charset);
+        }
+        Signature signature = pool.poll();
+        try {
+            if (signature == null) {
+                signature = Signature.getInstance(algorithm);
+                signature.initSign(privateKey);
+            }
+            signature.update(sourceContent.getBytes(charset(charset)));
+            // sign 完成后 Signature 回到 initSign 之后的状态，可直接归还复用
+            String sign = Base64.getEncoder().encodeToString(signature.sign());
+            pool.offer(signature);
+            return sign;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("支付宝请求签名失败: charset=" + charset, e);
+        }
+    }
+
+    private String sdkSign(String sourceContent, String signType, String charset) {
+        try {
+            return AlipaySignature.rsaSign(sourceContent, rawPrivateKey, charset, signType);
+        } catch (AlipayApiException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Charset charset(String charset) {
+        return charset == null || charset.isEmpty() ? Charset.defaultCharset() : Charset.forName(charset);
+    }
+
+    private static String algorithm(String signType) {
+        if ("RSA2".equals(signType)) {
+            return "SHA256WithRSA";
+        }
+        if ("RSA".equals(signType)) {
+            return "SHA1WithRSA";
+        }
+        return null;
+    }
+
+    /**
+     * 私钥无效时不阻止启动，与 SDK 一样在签名时报错
+     */
+    private static PrivateKey parsePrivateKey(String privateKey) {
+        if (privateKey == null || privateKey.isEmpty()) {
+            return null;
+        }
+        try {
+            byte[] encoded = Base64.getMimeDecoder().decode(privateKey);
+            return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.error("解析支付宝应用私钥失败，请求签名将失败", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.impl.WxPayServiceImpl;
+import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 复用连接池的微信支付服务
+ * <p>
+ * SDK 默认实现每次请求都新建 HttpClient，用完即关闭，每次调用都要重新建立 TCP 连接和 TLS 握手。
+ * 这里普通请求和需要商户证书的请求（退款等）各持有一个长期存活的连接池，证书只在首次使用时加载一次，
+ * 之后的请求复用已握手的连接。
+ */
+@Slf4j
+public class PooledWxPayServiceImpl extends WxPayServiceImpl implements AutoCloseable {
+
+    private static final ContentType XML = ContentType.create("application/xml", StandardCharsets.UTF_8);
+
+    private final WxPayProperties.Http http;
+    private final RequestConfig requestConfig;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private volatile PoolingHttpClientConnectionManager certConnectionManager;
+    private volatile CloseableHttpClient certHttpClient;
+
+    public PooledWxPayServiceImpl(WxPayProperties.Http http, MeterRegistry meterRegistry) {
+        this.http = http;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(http.getConnectTimeoutMs())
+                .setSocketTimeout(http.getReadTimeoutMs())
+                .setConnectionRequestTimeout(http.getConnectionRequestTimeoutMs())
+                .build();
+        long defaultKeepAliveMs = TimeUnit.SECONDS.toMillis(http.getKeepAliveSeconds());
+        this.keepAliveStrategy = (response, context) -> {
+            long declared = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return declared > 0 ? declared : defaultKeepAliveMs;
+        };
+        this.connectionManager = connectionManager(SSLConnectionSocketFactory.getSocketFactory());
+        this.httpClient = buildClient(connectionManager);
+
+        registerPoolGauges(meterRegistry, "default", () -> connectionManager);
+        registerPoolGauges(meterRegistry, "cert", () -> certConnectionManager);
+    }
+
+    @Override
+    public byte[] postForBytes(String url, String requestStr, boolean useKey) throws WxPayException {
+        return execute(url, requestStr, useKey);
+    }
+
+    @Override
+    public String post(String url, String requestStr, boolean useKey) throws WxPayException {
+        String response = new String(execute(url, requestStr, useKey), StandardCharsets.UTF_8);
+        log.debug("微信支付请求: url={}, request={}, response={}", url, requestStr, response);
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+        if (certHttpClient != null) {
+            certHttpClient.close();
+        }
+    }
+
+    private byte[] execute(String url, String requestStr, boolean useKey) throws WxPayException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setEntity(new StringEntity(requestStr, XML));
+        httpPost.setConfig(requestConfig);
+        // 读完响应体后关闭 response，连接归还连接池而不是断开
+        try (CloseableHttpResponse response = client(useKey).execute(httpPost)) {
+            return EntityUtils.toByteArray(response.getEntity());
+        } catch (IOException e) {
+            log.error("微信支付请求失败: url={}", url, e);
+            throw new WxPayException(e.getMessage(), e);
+        }
+    }
+
+    private CloseableHttpClient client(boolean useKey) throws WxPayException {
+        if (!useKey) {
+            return httpClient;
+        }
+        CloseableHttpClient client = certHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = certHttpClient;
+                if (client == null) {
+                    SSLContext sslContext = getConfig().getSslContext();
+                    if (sslContext == null) {
+                        sslContext = getConfig().initSSLContext();
+                    }
+                    certConnectionManager = connectionManager(
+                            new SSLConnectionSocketFactory(sslContext, new DefaultHostnameVerifier()));
+                    client = buildClient(certConnectionManager);
+                    certHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private PoolingHttpClientConnectionManager connectionManager(SSLConnectionSocketFactory sslSocketFactory) {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry);
+        manager.setMaxTotal(http.getMaxTotal());
+        manager.setDefaultMaxPerRoute(http.getMaxPerRoute());
+        return manager;
+    }
+
+    private CloseableHttpClient buildClient(PoolingHttpClientConnectionManager manager) {
+        return HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(http.getIdleEvictSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static void registerPoolGauges(MeterRegistry meterRegistry, String pool,
+                                           Supplier<PoolingHttpClientConnectionManager> manager) {
+        registerPoolGauge(meterRegistry, pool, "leased", manager, PoolStats::getLeased);
+        registerPoolGauge(meterRegistry, pool, "available", manager, PoolStats::getAvailable);
+        registerPoolGauge(meterRegistry, pool, "pending", manager, PoolStats::getPending);
+        registerPoolGauge(meterRegistry, pool, "max", manager, PoolStats::getMax);
+    }
+
+    private static void registerPoolGauge(MeterRegistry meterRegistry, String pool, String state,
+                                          Supplier<PoolingHttpClientConnectionManager> manager,
+                                          ToIntFunction<PoolStats> stat) {
+        Gauge.builder("payment.wxpay.http.pool", manager, supplier -> {
+                    PoolingHttpClientConnectionManager current = supplier.get();
+                    return current == null ? 0 : stat.applyAsInt(current.getTotalStats());
+                })
+                .tag("pool", pool)
+                .tag("state", state)
+                .description("微信支付 HTTP 连接池连接数")
+                .register(meterRegistry);
+    }
+}
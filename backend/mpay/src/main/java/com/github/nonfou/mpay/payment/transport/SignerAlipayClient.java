@@ -0,0 +1,34 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.DefaultAlipayClient;
+import com.alipay.api.Signer;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+
+/**
+ * 使用指定签名器的支付宝客户端
+ * <p>
+ * execute、pageExecute 等调用都通过 {@link #getSigner()} 对请求签名，
+ * 这里替换为外部传入的签名器（如 {@link PooledAlipaySigner}），其余行为与 {@link DefaultAlipayClient} 相同。
+ */
+public class SignerAlipayClient extends DefaultAlipayClient {
+
+    private final Signer signer;
+
+    public SignerAlipayClient(AlipayProperties properties, Signer signer) {
+        super(
+                properties.getGatewayUrl(),
+                properties.getAppId(),
+                properties.getPrivateKey(),
+                "JSON",
+                properties.getCharset(),
+                properties.getPublicKey(),
+                properties.getSignType()
+        );
+        this.signer = signer;
+    }
+
+    @Override
+    public Signer getSigner() {
+        return signer;
+    }
+}
@@ -1,13 +1,115 @@
 package com.github.nonfou.mpay.transaction.config;
 
+import com.github.nonfou.mpay.payment.properties.VirtualThreadProperties;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 异步配置
- * 启用 @Async 注解支持
+ * 启用 @Async 注解支持，并为支付事件处理提供有界线程池
+ * <p>
+ * Spring Boot 的 applicationTaskExecutor 在容器中已有 Executor 时不再创建，
+ * 这里在缺少时按 spring.task.execution 配置补上，宿主应用未指定线程池的 @Async 和 MVC 异步请求仍使用它，
+ * 而不是支付事件线程池。
  */
 @Configuration
 @EnableAsync
+@EnableConfigurationProperties({PaymentEventProperties.class, VirtualThreadProperties.class})
 public class AsyncConfig {
+
+    /**
+     * 支付事件处理线程池 Bean 名称
+     */
+    public static final String PAYMENT_EVENT_EXECUTOR = "paymentEventExecutor";
+
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnMissingBean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ObjectProvider<ThreadPoolTaskExecutorBuilder> builder) {
+        return builder.getIfAvailable(ThreadPoolTaskExecutorBuilder::new).build();
+    }
+
+    @Bean(name = PAYMENT_EVENT_EXECUTOR)
+    public ThreadPoolTaskExecutor paymentEventExecutor(PaymentEventProperties properties,
+                                                       VirtualThreadProperties virtualThreadProperties,
+                                                       MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setKeepAliveSeconds(properties.getKeepAliveSeconds());
+        executor.setThreadNamePrefix("payment-event-");
+        // 虚拟线程模式下线程数和队列容量仍然生效，只是线程本身换成虚拟线程
+        executor.setVirtualThreads(properties.isVirtualThreads() || virtualThreadProperties.isEnabled());
+        // 队列满时直接拒绝，由 PaymentEventPublisher 负责落盘，避免阻塞回调线程
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setTaskDecorator(new TimedTaskDecorator(meterRegistry));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(properties.getAwaitTerminationSeconds());
+
+        Gauge.builder("payment.event.executor.queue.size", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("等待处理的支付事件数")
+                .register(meterRegistry);
+        Gauge.builder("payment.event.executor.queue.remaining", executor,
+                        e -> e.getQueueCapacity() - e.getQueueSize())
+                .description("支付事件队列剩余容量")
+                .register(meterRegistry);
+        Gauge.builder("payment.event.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("正在处理支付事件的线程数")
+                .register(meterRegistry);
+        Gauge.builder("payment.event.executor.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .register(meterRegistry);
+
+        return executor;
+    }
+
+    /**
+     * 记录事件在队列中的等待时间和执行时间
+     */
+    private static class TimedTaskDecorator implements TaskDecorator {
+
+        private final Timer waitTimer;
+        private final Timer executionTimer;
+
+        TimedTaskDecorator(MeterRegistry meterRegistry) {
+            this.waitTimer = Timer.builder("payment.event.executor.wait")
+                    .description("支付事件排队等待时间")
+                    .register(meterRegistry);
+            this.executionTimer = Timer.builder("payment.event.executor.execution")
+                    .description("支付事件处理耗时")
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public Runnable decorate(Runnable runnable) {
+            long submittedAt = System.nanoTime();
+            return () -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    runnable.run();
+                } finally {
+                    executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package com.github.nonfou.mpay.transaction.config;
+
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.lock.LeaseLeaderElector;
+import com.github.nonfou.mpay.transaction.lock.MysqlOrderLockManager;
+import com.github.nonfou.mpay.transaction.lock.OrderLockManager;
+import com.github.nonfou.mpay.transaction.lock.StripedOrderLockManager;
+import com.github.nonfou.mpay.transaction.properties.OrderLockProperties;
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 订单锁配置
+ * 未声明自定义 {@link OrderLockManager} 时按 easy-pay.lock.type 使用单机分段锁或 MySQL 命名锁，
+ * 未声明自定义 {@link LeaderElector} 时使用数据库租约选主
+ */
+@Configuration
+@EnableConfigurationProperties(OrderLockProperties.class)
+public class OrderLockConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(OrderLockManager.class)
+    @ConditionalOnProperty(prefix = "easy-pay.lock", name = "type", havingValue = "mysql")
+    public OrderLockManager mysqlOrderLockManager(DataSource dataSource, OrderLockProperties properties,
+                                                  MeterRegistry meterRegistry) {
+        return new MysqlOrderLockManager(dataSource, properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(OrderLockManager.class)
+    public OrderLockManager orderLockManager(OrderLockProperties properties, MeterRegistry meterRegistry) {
+        return new StripedOrderLockManager(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(LeaderElector.class)
+    public LeaderElector leaderElector(SchedulerLeaseRepository leaseRepository, OrderLockProperties properties) {
+        return new LeaseLeaderElector(leaseRepository, properties.getLeaderLeaseSeconds());
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.nonfou.mpay.transaction.config;
+
+import com.github.nonfou.mpay.transaction.properties.TransactionCacheProperties;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易查询缓存配置
+ */
+@Configuration
+@EnableConfigurationProperties(TransactionCacheProperties.class)
+public class TransactionCacheConfig {
+
+    @Bean
+    public PaymentTransactionCache paymentTransactionCache(TransactionCacheProperties properties,
+                                                           MeterRegistry meterRegistry) {
+        return new PaymentTransactionCache(properties, meterRegistry);
+    }
+}
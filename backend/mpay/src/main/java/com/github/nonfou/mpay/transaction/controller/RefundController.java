@@ -1,7 +1,9 @@
 package com.github.nonfou.mpay.transaction.controller;
 
 import com.github.nonfou.mpay.common.response.ApiResponse;
+import com.github.nonfou.mpay.common.response.CursorPageResponse;
 import com.github.nonfou.mpay.common.response.PageResponse;
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import com.github.nonfou.mpay.transaction.dto.*;
 import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
 import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
@@ -25,6 +27,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RefundController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
     private final RefundService refundService;
     private final PaymentEventLogService eventLogService;
 
@@ -64,6 +68,42 @@ public class RefundController {
         return ApiResponse.success(PageResponse.of(responsePage));
     }
 
+    /**
+     * 游标分页查询退款记录
+     * <p>
+     * 按 (createdAt, id) 定位下一页，不使用 OFFSET，默认不统计总数；
+     * 传入上一页返回的 nextCursor 继续翻页。
+     */
+    @GetMapping("/list/cursor")
+    public ApiResponse<CursorPageResponse<RefundDetailResponse>> listByCursor(RefundQueryRequest request) {
+        int size = Math.min(Math.max(request.getSize(), 1), MAX_CURSOR_PAGE_SIZE);
+
+        // 多查一条用于判断是否还有下一页
+        List<RefundRecordEntity> rows = refundService.findByConditionsAfter(
+                request.getOrderId(),
+                request.getRefundNo(),
+                request.getPlatform(),
+                request.getStatus(),
+                request.getStartTime(),
+                request.getEndTime(),
+                SeekCursor.decode(request.getCursor()),
+                size + 1
+        );
+
+        Long total = Boolean.TRUE.equals(request.getWithTotal())
+                ? refundService.countByConditions(
+                        request.getOrderId(),
+                        request.getRefundNo(),
+                        request.getPlatform(),
+                        request.getStatus(),
+                        request.getStartTime(),
+                        request.getEndTime())
+                : null;
+
+        return ApiResponse.success(CursorPageResponse.of(rows, size,
+                r -> new SeekCursor(r.getCreatedAt(), r.getId()), this::toDetailResponse, total));
+    }
+
     /**
      * 根据退款单号查询退款详情
      */
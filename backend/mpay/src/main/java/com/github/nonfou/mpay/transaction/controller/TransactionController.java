@@ -1,7 +1,9 @@
 package com.github.nonfou.mpay.transaction.controller;
 
 import com.github.nonfou.mpay.common.response.ApiResponse;
+import com.github.nonfou.mpay.common.response.CursorPageResponse;
 import com.github.nonfou.mpay.common.response.PageResponse;
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import com.github.nonfou.mpay.transaction.dto.*;
 import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
 import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
@@ -24,6 +26,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
     private final PaymentTransactionService transactionService;
     private final PaymentEventLogService eventLogService;
 
@@ -50,6 +54,44 @@ public class TransactionController {
         return ApiResponse.success(PageResponse.of(responsePage));
     }
 
+    /**
+     * 游标分页查询交易记录
+     * <p>
+     * 按 (createdAt, id) 定位下一页，不使用 OFFSET，默认不统计总数；
+     * 传入上一页返回的 nextCursor 继续翻页。
+     */
+    @GetMapping("/list/cursor")
+    public ApiResponse<CursorPageResponse<TransactionDetailResponse>> listByCursor(TransactionQueryRequest request) {
+        int size = Math.min(Math.max(request.getSize(), 1), MAX_CURSOR_PAGE_SIZE);
+
+        // 多查一条用于判断是否还有下一页
+        List<PaymentTransactionEntity> rows = transactionService.findByConditionsAfter(
+                request.getOrderId(),
+                request.getTradeNo(),
+                request.getPlatform(),
+                request.getStatus(),
+                request.getMerchantId(),
+                request.getStartTime(),
+                request.getEndTime(),
+                SeekCursor.decode(request.getCursor()),
+                size + 1
+        );
+
+        Long total = Boolean.TRUE.equals(request.getWithTotal())
+                ? transactionService.countByConditions(
+                        request.getOrderId(),
+                        request.getTradeNo(),
+                        request.getPlatform(),
+                        request.getStatus(),
+                        request.getMerchantId(),
+                        request.getStartTime(),
+                        request.getEndTime())
+                : null;
+
+        return ApiResponse.success(CursorPageResponse.of(rows, size,
+                t -> new SeekCursor(t.getCreatedAt(), t.getId()), this::toDetailResponse, total));
+    }
+
     /**
      * 根据订单号查询交易详情
      */
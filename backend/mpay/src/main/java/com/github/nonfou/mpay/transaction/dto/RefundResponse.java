@@ -18,6 +18,11 @@ public class RefundResponse {
      */
     private boolean success;
 
+    /**
+     * 平台是否受理未知（超时、连接中断、平台系统错误等），此时退款保持处理中，由退款通知或人工核对确定结果
+     */
+    private boolean pending;
+
     /**
      * 系统退款单号
      */
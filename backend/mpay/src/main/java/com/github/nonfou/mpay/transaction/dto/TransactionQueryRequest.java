@@ -59,4 +59,14 @@ public class TransactionQueryRequest {
      * 每页数量
      */
     private Integer size = 20;
+
+    /**
+     * 游标分页的续传令牌（上一页返回的 nextCursor），为空时查询第一页
+     */
+    private String cursor;
+
+    /**
+     * 游标分页时是否同时返回总数（需要额外的 COUNT 查询）
+     */
+    private Boolean withTotal = false;
 }
@@ -0,0 +1,93 @@
+package com.github.nonfou.mpay.transaction.entity;
+
+import com.github.nonfou.mpay.transaction.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * 支付事件发件箱实体 - 事件先落库，再由中继异步投递
+ */
+@Entity
+@Table(name = "payment_event_outbox", indexes = {
+        @Index(name = "idx_outbox_status_id", columnList = "status, id"),
+        @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_order_id", columnList = "orderId")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class PaymentEventOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 事件类别（PAYMENT / REFUND）
+     */
+    @Column(name = "event_kind", nullable = false, length = 16)
+    private String eventKind;
+
+    /**
+     * 事件类型
+     */
+    @Column(name = "event_type", length = 32)
+    private String eventType;
+
+    /**
+     * 商户订单号
+     */
+    @Column(name = "order_id", length = 64)
+    private String orderId;
+
+    /**
+     * 事件内容（JSON）
+     */
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    /**
+     * 投递状态
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    /**
+     * 已尝试投递次数
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    /**
+     * 最近一次投递失败原因
+     */
+    @Column(name = "last_error", length = 512)
+    private String lastError;
+
+    /**
+     * 下次允许投递的时间，投递失败后按指数退避推迟；为空表示立即投递
+     */
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 投递完成时间
+     */
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
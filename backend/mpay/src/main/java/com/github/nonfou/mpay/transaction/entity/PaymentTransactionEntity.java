@@ -15,9 +15,11 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "payment_transaction", indexes = {
         @Index(name = "idx_order_id", columnList = "orderId"),
-        @Index(name = "idx_trade_no", columnList = "tradeNo"),
+        @Index(name = "uk_payment_trans_trade_no", columnList = "tradeNo", unique = true),
         @Index(name = "idx_platform_trade_no", columnList = "platformTradeNo"),
-        @Index(name = "idx_status", columnList = "status"),
+        @Index(name = "idx_payment_trans_status_created", columnList = "status, createdAt"),
+        @Index(name = "idx_payment_trans_status_expire", columnList = "status, expireAt"),
+        @Index(name = "idx_payment_trans_merchant_created", columnList = "merchantId, createdAt"),
         @Index(name = "idx_created_at", columnList = "createdAt")
 })
 @Getter
@@ -41,7 +43,7 @@ public class PaymentTransactionEntity extends BaseEntity {
     /**
      * 系统交易号
      */
-    @Column(name = "trade_no", nullable = false, unique = true, length = 64)
+    @Column(name = "trade_no", nullable = false, length = 64)
     private String tradeNo;
 
     /**
@@ -105,6 +107,12 @@ public class PaymentTransactionEntity extends BaseEntity {
     @Column(name = "paid_at")
     private java.time.LocalDateTime paidAt;
 
+    /**
+     * 订单超时时间，为空表示按全局超时时间兜底
+     */
+    @Column(name = "expire_at")
+    private java.time.LocalDateTime expireAt;
+
     /**
      * 客户端IP
      */
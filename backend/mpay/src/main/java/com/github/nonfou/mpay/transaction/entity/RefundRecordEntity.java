@@ -16,9 +16,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "refund_record", indexes = {
         @Index(name = "idx_refund_transaction_id", columnList = "transactionId"),
-        @Index(name = "idx_refund_no", columnList = "refundNo"),
+        @Index(name = "uk_refund_no", columnList = "refundNo", unique = true),
         @Index(name = "idx_platform_refund_no", columnList = "platformRefundNo"),
-        @Index(name = "idx_refund_status", columnList = "status"),
+        @Index(name = "idx_refund_status_created", columnList = "status, createdAt"),
         @Index(name = "idx_refund_created_at", columnList = "createdAt")
 })
 @Getter
@@ -41,7 +41,7 @@ public class RefundRecordEntity extends BaseEntity {
     /**
      * 系统退款单号
      */
-    @Column(name = "refund_no", nullable = false, unique = true, length = 64)
+    @Column(name = "refund_no", nullable = false, length = 64)
     private String refundNo;
 
     /**
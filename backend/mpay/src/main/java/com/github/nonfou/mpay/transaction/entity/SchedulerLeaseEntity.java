@@ -0,0 +1,47 @@
+package com.github.nonfou.mpay.transaction.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 定时任务租约实体 - 用于多节点部署时选出执行定时任务的主节点
+ */
+@Entity
+@Table(name = "scheduler_lease")
+@Getter
+@Setter
+@NoArgsConstructor
+public class SchedulerLeaseEntity {
+
+    /**
+     * 任务名称
+     */
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    /**
+     * 当前持有者（主机名 + 随机标识）
+     */
+    @Column(name = "owner", nullable = false, length = 128)
+    private String owner;
+
+    /**
+     * 租约到期时间
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * 任务上次成功执行的时间，用于重启或主节点切换后衔接执行进度
+     */
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+}
@@ -0,0 +1,21 @@
+package com.github.nonfou.mpay.transaction.enums;
+
+/**
+ * 事件发件箱状态枚举
+ */
+public enum OutboxStatus {
+    /**
+     * 待投递
+     */
+    PENDING,
+
+    /**
+     * 已投递
+     */
+    DONE,
+
+    /**
+     * 投递失败（超过最大重试次数）
+     */
+    FAILED
+}
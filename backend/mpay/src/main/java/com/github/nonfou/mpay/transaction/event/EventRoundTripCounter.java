@@ -0,0 +1,87 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 事件处理数据库往返计数器
+ * <p>
+ * 作为 Hibernate {@link StatementInspector} 统计当前线程执行的 SQL 条数，
+ * 按事件类型记录到 payment.event.db.round.trips，便于发现多余的查询。
+ * 统计从 {@link #begin(PaymentEventType)} 开始，到所在事务结束（含提交时的 flush）为止。
+ */
+@Component
+public class EventRoundTripCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private final ThreadLocal<Tracking> current = new ThreadLocal<>();
+    private final Map<PaymentEventType, DistributionSummary> summaries = new EnumMap<>(PaymentEventType.class);
+
+    public EventRoundTripCounter(MeterRegistry meterRegistry) {
+        for (PaymentEventType type : PaymentEventType.values()) {
+            summaries.put(type, DistributionSummary.builder("payment.event.db.round.trips")
+                    .description("处理单个事件执行的 SQL 条数")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Tracking tracking = current.get();
+        if (tracking != null) {
+            tracking.count++;
+        }
+        return sql;
+    }
+
+    /**
+     * 开始统计当前事件，须在事务内调用，事务结束后记录
+     */
+    public void begin(PaymentEventType type) {
+        if (type == null || !TransactionSynchronizationManager.isSynchronizationActive()
+                || current.get() != null) {
+            return;
+        }
+        current.set(new Tracking(type));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                end();
+            }
+        });
+    }
+
+    private void end() {
+        Tracking tracking = current.get();
+        if (tracking == null) {
+            return;
+        }
+        current.remove();
+        summaries.get(tracking.type).record(tracking.count);
+    }
+
+    private static final class Tracking {
+
+        private final PaymentEventType type;
+        private int count;
+
+        private Tracking(PaymentEventType type) {
+            this.type = type;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 /**
  * 支付事件 - 用于事件驱动架构
@@ -54,6 +55,11 @@ public class PaymentEvent extends ApplicationEvent {
      */
     private final String subject;
 
+    /**
+     * 订单超时时间，为空表示平台未指定，按 easy-pay.order-close.expire-minutes 兜底
+     */
+    private final LocalDateTime expireAt;
+
     /**
      * 请求数据（JSON）
      */
@@ -109,6 +115,7 @@ public class PaymentEvent extends ApplicationEvent {
                         String tradeType,
                         BigDecimal amount,
                         String subject,
+                        LocalDateTime expireAt,
                         String requestData,
                         String responseData,
                         Boolean success,
@@ -127,6 +134,7 @@ public class PaymentEvent extends ApplicationEvent {
         this.tradeType = tradeType;
         this.amount = amount;
         this.subject = subject;
+        this.expireAt = expireAt;
         this.requestData = requestData;
         this.responseData = responseData;
         this.success = success;
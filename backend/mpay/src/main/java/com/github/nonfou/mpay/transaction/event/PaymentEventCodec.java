@@ -0,0 +1,238 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 支付/退款事件编解码器 - 将事件序列化为 JSON 以便持久化后重放
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentEventCodec {
+
+    /**
+     * 支付事件类别
+     */
+    public static final String KIND_PAYMENT = "PAYMENT";
+
+    /**
+     * 退款事件类别
+     */
+    public static final String KIND_REFUND = "REFUND";
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 获取事件类别
+     */
+    public String kindOf(ApplicationEvent event) {
+        if (event instanceof PaymentEvent) {
+            return KIND_PAYMENT;
+        }
+        if (event instanceof RefundEvent) {
+            return KIND_REFUND;
+        }
+        throw new IllegalArgumentException("不支持的事件类型: " + event.getClass().getName());
+    }
+
+    /**
+     * 序列化事件内容（不含类别）
+     */
+    public String encodePayload(ApplicationEvent event) {
+        ObjectNode node = event instanceof PaymentEvent paymentEvent
+                ? toNode(paymentEvent)
+                : toNode((RefundEvent) event);
+        return write(node);
+    }
+
+    /**
+     * 反序列化事件内容
+     */
+    public ApplicationEvent decode(String kind, String payload) {
+        JsonNode node = read(payload);
+        return switch (kind) {
+            case KIND_PAYMENT -> toPaymentEvent(node);
+            case KIND_REFUND -> toRefundEvent(node);
+            default -> throw new IllegalArgumentException("未知的事件类别: " + kind);
+        };
+    }
+
+    /**
+     * 序列化为单行 JSON（包含类别），用于落盘
+     */
+    public String encode(ApplicationEvent event) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("kind", kindOf(event));
+        envelope.set("payload", read(encodePayload(event)));
+        return write(envelope);
+    }
+
+    /**
+     * 解析 {@link #encode(ApplicationEvent)} 生成的单行 JSON
+     */
+    public ApplicationEvent decode(String line) {
+        JsonNode envelope = read(line);
+        return decode(envelope.path("kind").asText(), envelope.path("payload").toString());
+    }
+
+    private ObjectNode toNode(PaymentEvent event) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("eventType", name(event.getEventType()));
+        node.put("platform", name(event.getPlatform()));
+        node.put("orderId", event.getOrderId());
+        node.put("tradeNo", event.getTradeNo());
+        node.put("platformTradeNo", event.getPlatformTradeNo());
+        node.put("tradeType", event.getTradeType());
+        node.put("amount", plain(event.getAmount()));
+        node.put("subject", event.getSubject());
+        node.put("expireAt", event.getExpireAt() != null ? event.getExpireAt().toString() : null);
+        node.put("requestData", event.getRequestData());
+        node.put("responseData", event.getResponseData());
+        node.put("success", event.getSuccess());
+        node.put("resultCode", event.getResultCode());
+        node.put("resultMessage", event.getResultMessage());
+        node.put("durationMs", event.getDurationMs());
+        node.put("clientIp", event.getClientIp());
+        node.put("merchantId", event.getMerchantId());
+        node.put("extraData", event.getExtraData());
+        return node;
+    }
+
+    private ObjectNode toNode(RefundEvent event) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("eventType", name(event.getEventType()));
+        node.put("platform", name(event.getPlatform()));
+        node.put("orderId", event.getOrderId());
+        node.put("transactionId", event.getTransactionId());
+        node.put("refundNo", event.getRefundNo());
+        node.put("platformRefundNo", event.getPlatformRefundNo());
+        node.put("platformTradeNo", event.getPlatformTradeNo());
+        node.put("refundAmount", plain(event.getRefundAmount()));
+        node.put("refundReason", event.getRefundReason());
+        node.put("requestData", event.getRequestData());
+        node.put("responseData", event.getResponseData());
+        node.put("success", event.getSuccess());
+        node.put("resultCode", event.getResultCode());
+        node.put("resultMessage", event.getResultMessage());
+        node.put("durationMs", event.getDurationMs());
+        node.put("clientIp", event.getClientIp());
+        node.put("operator", event.getOperator());
+        node.put("extraData", event.getExtraData());
+        return node;
+    }
+
+    private PaymentEvent toPaymentEvent(JsonNode node) {
+        return PaymentEvent.builder()
+                .source(this)
+                .eventType(enumValue(PaymentEventType.class, node, "eventType"))
+                .platform(enumValue(PaymentPlatform.class, node, "platform"))
+                .orderId(text(node, "orderId"))
+                .tradeNo(text(node, "tradeNo"))
+                .platformTradeNo(text(node, "platformTradeNo"))
+                .tradeType(text(node, "tradeType"))
+                .amount(decimal(node, "amount"))
+                .subject(text(node, "subject"))
+                .expireAt(dateTime(node, "expireAt"))
+                .requestData(text(node, "requestData"))
+                .responseData(text(node, "responseData"))
+                .success(bool(node, "success"))
+                .resultCode(text(node, "resultCode"))
+                .resultMessage(text(node, "resultMessage"))
+                .durationMs(number(node, "durationMs"))
+                .clientIp(text(node, "clientIp"))
+                .merchantId(text(node, "merchantId"))
+                .extraData(text(node, "extraData"))
+                .build();
+    }
+
+    private RefundEvent toRefundEvent(JsonNode node) {
+        return RefundEvent.builder()
+                .source(this)
+                .eventType(enumValue(PaymentEventType.class, node, "eventType"))
+                .platform(enumValue(PaymentPlatform.class, node, "platform"))
+                .orderId(text(node, "orderId"))
+                .transactionId(number(node, "transactionId"))
+                .refundNo(text(node, "refundNo"))
+                .platformRefundNo(text(node, "platformRefundNo"))
+                .platformTradeNo(text(node, "platformTradeNo"))
+                .refundAmount(decimal(node, "refundAmount"))
+                .refundReason(text(node, "refundReason"))
+                .requestData(text(node, "requestData"))
+                .responseData(text(node, "responseData"))
+                .success(bool(node, "success"))
+                .resultCode(text(node, "resultCode"))
+                .resultMessage(text(node, "resultMessage"))
+                .durationMs(number(node, "durationMs"))
+                .clientIp(text(node, "clientIp"))
+                .operator(text(node, "operator"))
+                .extraData(text(node, "extraData"))
+                .build();
+    }
+
+    private static String name(Enum<?> value) {
+        return value != null ? value.name() : null;
+    }
+
+    /**
+     * 金额按字符串保存，避免按浮点数解析丢失精度
+     */
+    private static String plain(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static Long number(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asLong();
+    }
+
+    private static Boolean bool(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asBoolean();
+    }
+
+    private static BigDecimal decimal(JsonNode node, String field) {
+        String value = text(node, field);
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    private static LocalDateTime dateTime(JsonNode node, String field) {
+        String value = text(node, field);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, JsonNode node, String field) {
+        String value = text(node, field);
+        return value != null ? Enum.valueOf(type, value) : null;
+    }
+
+    private String write(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("事件序列化失败", e);
+        }
+    }
+
+    private JsonNode read(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("事件反序列化失败", e);
+        }
+    }
+}
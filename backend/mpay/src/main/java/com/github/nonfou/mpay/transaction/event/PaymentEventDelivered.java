@@ -0,0 +1,24 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 发件箱支付事件投递完成 - 由 {@link PaymentEventOutboxRelay} 在监听器处理成功后发布
+ * <p>
+ * 发件箱模式下支付事件不经过 Spring 事件总线，依赖支付事件的本地组件（如订单定时器）监听该事件获知已落库的事件。
+ * 与 {@link PaymentEvent} 类型不同，{@link PaymentEventListener} 不会再次处理。
+ */
+@Getter
+public class PaymentEventDelivered extends ApplicationEvent {
+
+    /**
+     * 已投递的支付事件
+     */
+    private final PaymentEvent event;
+
+    public PaymentEventDelivered(Object source, PaymentEvent event) {
+        super(source);
+        this.event = event;
+    }
+}
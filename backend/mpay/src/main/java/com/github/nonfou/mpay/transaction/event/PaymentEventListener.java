@@ -1,26 +1,38 @@
 package com.github.nonfou.mpay.transaction.event;
 
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
+import com.github.nonfou.mpay.transaction.config.AsyncConfig;
 import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
 import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
 import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
 import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
 import com.github.nonfou.mpay.transaction.enums.RefundStatus;
 import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
-import com.github.nonfou.mpay.transaction.repository.PaymentEventLogRepository;
+import com.github.nonfou.mpay.transaction.lock.OrderLockManager;
+import com.github.nonfou.mpay.transaction.lock.OrderLockTimeoutException;
 import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
 import com.github.nonfou.mpay.transaction.repository.RefundRecordRepository;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 /**
  * 支付事件监听器 - 异步处理支付/退款事件，持久化数据
+ * <p>
+ * 同一订单的事件持有订单锁串行处理，锁包裹整个事务，避免重复回调、退款与查询交错修改同一交易。
+ * 异步处理时等待订单锁超时的事件落盘稍后重放；发件箱中继同步调用时异常向上抛出，按投递失败退避重试。
+ * 含等锁的处理耗时记录到 payment.event.handle，事务本身（含提交）的耗时记录到 payment.db.write。
  */
 @Slf4j
 @Component
@@ -29,75 +41,209 @@ public class PaymentEventListener {
 
     private final PaymentTransactionRepository transactionRepository;
     private final RefundRecordRepository refundRecordRepository;
-    private final PaymentEventLogRepository eventLogRepository;
+    private final PaymentEventLogBatchWriter eventLogWriter;
+    private final EventRoundTripCounter roundTripCounter;
+    private final OrderLockManager orderLockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentTransactionCache transactionCache;
+    private final PaymentEventSpillStore spillStore;
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
 
     /**
      * 处理支付事件
      */
-    @Async
+    @Async(AsyncConfig.PAYMENT_EVENT_EXECUTOR)
     @EventListener
-    @Transactional
     public void handlePaymentEvent(PaymentEvent event) {
+        try {
+            processPaymentEvent(event);
+        } catch (OrderLockTimeoutException e) {
+            spillOnLockTimeout(event, event.getOrderId());
+        }
+    }
+
+    /**
+     * 处理退款事件
+     */
+    @Async(AsyncConfig.PAYMENT_EVENT_EXECUTOR)
+    @EventListener
+    public void handleRefundEvent(RefundEvent event) {
+        try {
+            processRefundEvent(event);
+        } catch (OrderLockTimeoutException e) {
+            spillOnLockTimeout(event, event.getOrderId());
+        }
+    }
+
+    /**
+     * 异步处理时等待订单锁超时，异常会被线程池吞掉；将事件落盘，由 {@link PaymentEventPublisher} 稍后回放
+     */
+    private void spillOnLockTimeout(ApplicationEvent event, String orderId) {
+        if (spillStore.spill(event)) {
+            log.warn("等待订单锁超时，事件已落盘稍后重放: type={}, orderId={}",
+                    event.getClass().getSimpleName(), orderId);
+            return;
+        }
+        log.error("等待订单锁超时且落盘失败，事件已丢弃: type={}, orderId={}",
+                event.getClass().getSimpleName(), orderId);
+    }
+
+    /**
+     * 同步处理支付事件（供发件箱中继调用）
+     *
+     * @return 是否处理成功；失败时事务已回滚，可以重新投递
+     */
+    public boolean processPaymentEvent(PaymentEvent event) {
+        String eventType = operation(event.getEventType());
+        Timer.Sample sample = paymentMetrics.start();
+        String outcome = PaymentMetrics.ERROR;
+        try {
+            boolean handled = orderLockManager.executeWithLock(event.getOrderId(), () -> {
+                Timer.Sample dbSample = paymentMetrics.start();
+                Boolean result = transactionTemplate.execute(status -> {
+                    boolean processed = doProcessPaymentEvent(event);
+                    if (!processed) {
+                        // 已执行的部分修改一并回滚，重新投递时从头处理
+                        status.setRollbackOnly();
+                    }
+                    return processed;
+                });
+                paymentMetrics.recordDbWrite(dbSample, event.getPlatform(), eventType);
+                return Boolean.TRUE.equals(result);
+            });
+            outcome = handled ? PaymentMetrics.SUCCESS : PaymentMetrics.FAILURE;
+            return handled;
+        } finally {
+            paymentMetrics.recordEventHandle(sample, event.getPlatform(), eventType, outcome);
+        }
+    }
+
+    /**
+     * 同步处理退款事件（供发件箱中继调用）
+     *
+     * @return 是否处理成功；失败时事务已回滚，可以重新投递
+     */
+    public boolean processRefundEvent(RefundEvent event) {
+        String eventType = operation(event.getEventType());
+        Timer.Sample sample = paymentMetrics.start();
+        String outcome = PaymentMetrics.ERROR;
+        try {
+            boolean handled = orderLockManager.executeWithLock(event.getOrderId(), () -> {
+                Timer.Sample dbSample = paymentMetrics.start();
+                Boolean result = transactionTemplate.execute(status -> {
+                    boolean processed = doProcessRefundEvent(event);
+                    if (!processed) {
+                        // 已执行的部分修改一并回滚，重新投递时从头处理
+                        status.setRollbackOnly();
+                    }
+                    return processed;
+                });
+                paymentMetrics.recordDbWrite(dbSample, event.getPlatform(), eventType);
+                return Boolean.TRUE.equals(result);
+            });
+            outcome = handled ? PaymentMetrics.SUCCESS : PaymentMetrics.FAILURE;
+            return handled;
+        } finally {
+            paymentMetrics.recordEventHandle(sample, event.getPlatform(), eventType, outcome);
+        }
+    }
+
+    private static String operation(PaymentEventType eventType) {
+        return eventType == null ? "unknown" : eventType.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return false 表示处理失败，已记录失败的事件日志
+     */
+    private boolean doProcessPaymentEvent(PaymentEvent event) {
         log.info("处理支付事件: type={}, orderId={}, tradeNo={}",
                 event.getEventType(), event.getOrderId(), event.getTradeNo());
+        roundTripCounter.begin(event.getEventType());
 
         try {
-            switch (event.getEventType()) {
+            // 各处理方法返回关联的交易ID，供事件日志使用，避免再次查询交易表
+            Long transactionId = switch (event.getEventType()) {
                 case CREATE -> handlePaymentCreate(event);
                 case NOTIFY -> handlePaymentNotify(event);
                 case QUERY -> handlePaymentQuery(event);
                 case CLOSE -> handlePaymentClose(event);
-                default -> log.warn("未知的支付事件类型: {}", event.getEventType());
-            }
+                default -> {
+                    log.warn("未知的支付事件类型: {}", event.getEventType());
+                    yield null;
+                }
+            };
+
+            // 交易可能已被修改，移除查询缓存
+            transactionCache.invalidate(transactionId);
 
             // 记录事件日志
-            saveEventLog(event);
+            saveEventLog(event, transactionId);
+            return true;
 
         } catch (Exception e) {
             log.error("处理支付事件失败: type={}, orderId={}", event.getEventType(), event.getOrderId(), e);
             // 记录失败的事件日志
             saveEventLogWithError(event, e);
+            return false;
         }
     }
 
     /**
-     * 处理退款事件
+     * @return false 表示处理失败，已记录失败的事件日志
      */
-    @Async
-    @EventListener
-    @Transactional
-    public void handleRefundEvent(RefundEvent event) {
+    private boolean doProcessRefundEvent(RefundEvent event) {
         log.info("处理退款事件: type={}, orderId={}, refundNo={}",
                 event.getEventType(), event.getOrderId(), event.getRefundNo());
+        roundTripCounter.begin(event.getEventType());
 
         try {
-            switch (event.getEventType()) {
+            // 各处理方法返回关联的退款ID，供事件日志使用，避免再次查询退款表
+            Long refundId = switch (event.getEventType()) {
                 case REFUND_CREATE -> handleRefundCreate(event);
                 case REFUND_NOTIFY -> handleRefundNotify(event);
                 case REFUND_QUERY -> handleRefundQuery(event);
-                default -> log.warn("未知的退款事件类型: {}", event.getEventType());
-            }
+                default -> {
+                    log.warn("未知的退款事件类型: {}", event.getEventType());
+                    yield null;
+                }
+            };
 
             // 记录事件日志
-            saveRefundEventLog(event);
+            saveRefundEventLog(event, refundId);
+            return true;
 
         } catch (Exception e) {
             log.error("处理退款事件失败: type={}, refundNo={}", event.getEventType(), event.getRefundNo(), e);
             // 记录失败的事件日志
             saveRefundEventLogWithError(event, e);
+            return false;
         }
     }
 
     /**
      * 处理支付创建事件
+     *
+     * @return 交易ID
      */
-    private void handlePaymentCreate(PaymentEvent event) {
+    private Long handlePaymentCreate(PaymentEvent event) {
         // 检查是否已存在
-        if (transactionRepository.findByTradeNo(event.getTradeNo()).isPresent()) {
+        PaymentTransactionEntity existing = transactionRepository.findByTradeNo(event.getTradeNo()).orElse(null);
+        if (existing != null) {
             log.warn("交易记录已存在，跳过创建: tradeNo={}", event.getTradeNo());
-            return;
+            return existing.getId();
         }
+        return createTransaction(event).getId();
+    }
 
+    /**
+     * 根据事件创建交易记录
+     */
+    private PaymentTransactionEntity createTransaction(PaymentEvent event) {
         PaymentTransactionEntity transaction = new PaymentTransactionEntity();
         transaction.setOrderId(event.getOrderId());
         transaction.setTradeNo(event.getTradeNo());
@@ -105,6 +251,7 @@ public class PaymentEventListener {
         transaction.setTradeType(event.getTradeType());
         transaction.setAmount(event.getAmount());
         transaction.setSubject(event.getSubject());
+        transaction.setExpireAt(event.getExpireAt());
         transaction.setStatus(TransactionStatus.PENDING);
         transaction.setRawRequest(event.getRequestData());
         transaction.setRawResponse(event.getResponseData());
@@ -114,12 +261,15 @@ public class PaymentEventListener {
 
         transactionRepository.save(transaction);
         log.info("创建支付交易记录: id={}, tradeNo={}", transaction.getId(), transaction.getTradeNo());
+        return transaction;
     }
 
     /**
      * 处理支付回调通知事件
+     *
+     * @return 交易ID
      */
-    private void handlePaymentNotify(PaymentEvent event) {
+    private Long handlePaymentNotify(PaymentEvent event) {
         PaymentTransactionEntity transaction = transactionRepository
                 .findByTradeNo(event.getTradeNo())
                 .orElseGet(() -> {
@@ -130,11 +280,7 @@ public class PaymentEventListener {
         if (transaction == null) {
             log.warn("未找到交易记录，创建新记录: orderId={}", event.getOrderId());
             // 创建新记录
-            handlePaymentCreate(event);
-            transaction = transactionRepository.findByTradeNo(event.getTradeNo()).orElse(null);
-            if (transaction == null) {
-                return;
-            }
+            transaction = createTransaction(event);
         }
 
         // 更新交易信息
@@ -150,45 +296,59 @@ public class PaymentEventListener {
 
         transactionRepository.save(transaction);
         log.info("更新支付交易状态: id={}, status={}", transaction.getId(), transaction.getStatus());
+        return transaction.getId();
     }
 
     /**
      * 处理支付查询事件
+     *
+     * @return 交易ID，未找到时为 null
      */
-    private void handlePaymentQuery(PaymentEvent event) {
+    private Long handlePaymentQuery(PaymentEvent event) {
+        if (event.getTradeNo() == null) {
+            return null;
+        }
+        PaymentTransactionEntity transaction = transactionRepository.findByTradeNo(event.getTradeNo()).orElse(null);
+        if (transaction == null) {
+            return null;
+        }
         // 查询事件主要用于记录日志，不更新主表状态
         // 除非查询结果显示状态变化
-        if (event.getPlatformTradeNo() != null && Boolean.TRUE.equals(event.getSuccess())) {
-            transactionRepository.findByTradeNo(event.getTradeNo())
-                    .ifPresent(transaction -> {
-                        if (transaction.getPlatformTradeNo() == null) {
-                            transaction.setPlatformTradeNo(event.getPlatformTradeNo());
-                            transactionRepository.save(transaction);
-                        }
-                    });
+        if (event.getPlatformTradeNo() != null && Boolean.TRUE.equals(event.getSuccess())
+                && transaction.getPlatformTradeNo() == null) {
+            transaction.setPlatformTradeNo(event.getPlatformTradeNo());
+            transactionRepository.save(transaction);
         }
+        return transaction.getId();
     }
 
     /**
      * 处理关闭订单事件
+     *
+     * @return 交易ID，未找到时为 null
      */
-    private void handlePaymentClose(PaymentEvent event) {
-        transactionRepository.findByTradeNo(event.getTradeNo())
-                .ifPresent(transaction -> {
-                    transaction.setStatus(TransactionStatus.CLOSED);
-                    transactionRepository.save(transaction);
-                    log.info("关闭交易: id={}, tradeNo={}", transaction.getId(), transaction.getTradeNo());
-                });
+    private Long handlePaymentClose(PaymentEvent event) {
+        PaymentTransactionEntity transaction = transactionRepository.findByTradeNo(event.getTradeNo()).orElse(null);
+        if (transaction == null) {
+            return null;
+        }
+        transaction.setStatus(TransactionStatus.CLOSED);
+        transactionRepository.save(transaction);
+        log.info("关闭交易: id={}, tradeNo={}", transaction.getId(), transaction.getTradeNo());
+        return transaction.getId();
     }
 
     /**
      * 处理退款创建事件
+     *
+     * @return 退款ID
      */
-    private void handleRefundCreate(RefundEvent event) {
+    private Long handleRefundCreate(RefundEvent event) {
         // 检查是否已存在
-        if (refundRecordRepository.findByRefundNo(event.getRefundNo()).isPresent()) {
+        RefundRecordEntity existing = refundRecordRepository.findByRefundNo(event.getRefundNo()).orElse(null);
+        if (existing != null) {
             log.warn("退款记录已存在，跳过创建: refundNo={}", event.getRefundNo());
-            return;
+            return existing.getId();
         }
 
         RefundRecordEntity refund = new RefundRecordEntity();
@@ -199,7 +359,8 @@ public class PaymentEventListener {
         refund.setPlatformTradeNo(event.getPlatformTradeNo());
         refund.setRefundAmount(event.getRefundAmount());
         refund.setRefundReason(event.getRefundReason());
-        refund.setStatus(Boolean.TRUE.equals(event.getSuccess()) ? RefundStatus.SUCCESS : RefundStatus.PENDING);
+        // 未成功的退款不占用可退金额，记为失败；平台之后通知成功时再累加
+        refund.setStatus(Boolean.TRUE.equals(event.getSuccess()) ? RefundStatus.SUCCESS : RefundStatus.FAILED);
         refund.setRawRequest(event.getRequestData());
         refund.setRawResponse(event.getResponseData());
         refund.setOperator(event.getOperator());
@@ -217,74 +378,108 @@ public class PaymentEventListener {
         if (event.getTransactionId() != null && Boolean.TRUE.equals(event.getSuccess())) {
             updateTransactionRefundAmount(event.getTransactionId(), event.getRefundAmount());
         }
+        return refund.getId();
     }
 
     /**
      * 处理退款回调通知事件
+     *
+     * @return 退款ID，未找到时为 null
      */
-    private void handleRefundNotify(RefundEvent event) {
+    private Long handleRefundNotify(RefundEvent event) {
         RefundRecordEntity refund = refundRecordRepository
                 .findByRefundNo(event.getRefundNo())
                 .orElse(null);
 
         if (refund == null) {
             log.warn("未找到退款记录: refundNo={}", event.getRefundNo());
-            return;
+            return null;
         }
 
         refund.setPlatformRefundNo(event.getPlatformRefundNo());
         refund.setNotifyData(event.getResponseData());
 
+        // 已退款金额包含处理中和已成功的退款：发起退款时已预占，失败时释放
         if (Boolean.TRUE.equals(event.getSuccess())) {
-            refund.setStatus(RefundStatus.SUCCESS);
-            refund.setRefundedAt(LocalDateTime.now());
-            // 更新交易表的退款金额
-            updateTransactionRefundAmount(refund.getTransactionId(), refund.getRefundAmount());
+            if (refund.getStatus() == RefundStatus.FAILED) {
+                // 此前记为失败的退款已释放金额，重新累加
+                updateTransactionRefundAmount(refund.getTransactionId(), refund.getRefundAmount());
+            }
+            if (refund.getStatus() != RefundStatus.SUCCESS) {
+                refund.setStatus(RefundStatus.SUCCESS);
+                refund.setRefundedAt(LocalDateTime.now());
+            }
         } else {
+            if (refund.getStatus() == RefundStatus.SUCCESS) {
+                // 平台后续通知退款未成功（如退款到卡失败），与处理中的退款一样释放已累加的金额
+                log.warn("已成功的退款被平台通知为失败，释放退款金额: refundNo={}, resultCode={}",
+                        refund.getRefundNo(), event.getResultCode());
+            }
+            if (refund.getStatus() == RefundStatus.PENDING || refund.getStatus() == RefundStatus.SUCCESS) {
+                releaseTransactionRefundAmount(refund.getTransactionId(), refund.getRefundAmount());
+            }
             refund.setStatus(RefundStatus.FAILED);
         }
 
         refundRecordRepository.save(refund);
         log.info("更新退款状态: id={}, status={}", refund.getId(), refund.getStatus());
+        return refund.getId();
     }
 
     /**
      * 处理退款查询事件
+     *
+     * @return 退款ID，未找到时为 null
      */
-    private void handleRefundQuery(RefundEvent event) {
+    private Long handleRefundQuery(RefundEvent event) {
         // 查询事件主要用于记录日志
         // 可根据查询结果更新退款状态
+        if (event.getRefundNo() == null) {
+            return null;
+        }
+        return refundRecordRepository.findByRefundNo(event.getRefundNo())
+                .map(RefundRecordEntity::getId)
+                .orElse(null);
     }
 
     /**
-     * 更新交易的退款金额
+     * 更新交易的退款金额（原子累加，并发退款不会丢失更新）
      */
     private void updateTransactionRefundAmount(Long transactionId, BigDecimal refundAmount) {
-        transactionRepository.findById(transactionId).ifPresent(transaction -> {
-            BigDecimal currentRefunded = transaction.getRefundedAmount();
-            if (currentRefunded == null) {
-                currentRefunded = BigDecimal.ZERO;
-            }
-            BigDecimal newRefunded = currentRefunded.add(refundAmount);
-            transaction.setRefundedAmount(newRefunded);
-
-            // 判断是否全部退款
-            if (newRefunded.compareTo(transaction.getAmount()) >= 0) {
-                transaction.setStatus(TransactionStatus.REFUNDED);
-            } else if (newRefunded.compareTo(BigDecimal.ZERO) > 0) {
-                transaction.setStatus(TransactionStatus.PARTIAL_REFUNDED);
-            }
+        if (transactionId == null) {
+            return;
+        }
+        int updated = transactionRepository.addRefundedAmount(transactionId, refundAmount, LocalDateTime.now());
+        transactionCache.invalidate(transactionId);
+        if (updated == 0) {
+            log.warn("累加退款金额未生效，交易不存在或超出可退金额: id={}, refundAmount={}",
+                    transactionId, refundAmount);
+            return;
+        }
+        log.info("更新交易退款金额: id={}, refundAmount={}", transactionId, refundAmount);
+    }
 
-            transactionRepository.save(transaction);
-            log.info("更新交易退款金额: id={}, refundedAmount={}, status={}",
-                    transaction.getId(), newRefunded, transaction.getStatus());
-        });
+    /**
+     * 释放交易的退款金额（原子扣减，用于处理中的退款最终失败）
+     */
+    private void releaseTransactionRefundAmount(Long transactionId, BigDecimal refundAmount) {
+        if (transactionId == null) {
+            return;
+        }
+        int updated = transactionRepository.releaseRefundedAmount(transactionId, refundAmount, LocalDateTime.now());
+        transactionCache.invalidate(transactionId);
+        if (updated == 0) {
+            log.warn("释放退款金额未生效，交易不存在或已退款金额不足: id={}, refundAmount={}",
+                    transactionId, refundAmount);
+            return;
+        }
+        log.info("释放交易退款金额: id={}, refundAmount={}", transactionId, refundAmount);
     }
 
     /**
      * 保存支付事件日志
      */
-    private void saveEventLog(PaymentEvent event) {
+    private void saveEventLog(PaymentEvent event, Long transactionId) {
         PaymentEventLogEntity log = new PaymentEventLogEntity();
         log.setOrderId(event.getOrderId());
         log.setEventType(event.getEventType());
@@ -297,14 +492,9 @@ public class PaymentEventListener {
         log.setDurationMs(event.getDurationMs());
         log.setClientIp(event.getClientIp());
         log.setExtraData(event.getExtraData());
+        log.setTransactionId(transactionId);
 
-        // 关联交易ID
-        if (event.getTradeNo() != null) {
-            transactionRepository.findByTradeNo(event.getTradeNo())
-                    .ifPresent(t -> log.setTransactionId(t.getId()));
-        }
-
-        eventLogRepository.save(log);
+        eventLogWriter.write(log);
     }
 
     /**
@@ -323,13 +513,14 @@ public class PaymentEventListener {
         log.setDurationMs(event.getDurationMs());
         log.setClientIp(event.getClientIp());
 
-        eventLogRepository.save(log);
+        // 处理失败时事务回滚，失败日志在事务结束后写入
+        eventLogWriter.writeAfterCompletion(log);
     }
 
     /**
      * 保存退款事件日志
      */
-    private void saveRefundEventLog(RefundEvent event) {
+    private void saveRefundEventLog(RefundEvent event, Long refundId) {
         PaymentEventLogEntity log = new PaymentEventLogEntity();
         log.setOrderId(event.getOrderId());
         log.setTransactionId(event.getTransactionId());
@@ -343,14 +534,9 @@ public class PaymentEventListener {
         log.setDurationMs(event.getDurationMs());
         log.setClientIp(event.getClientIp());
         log.setExtraData(event.getExtraData());
+        log.setRefundId(refundId);
 
-        // 关联退款ID
-        if (event.getRefundNo() != null) {
-            refundRecordRepository.findByRefundNo(event.getRefundNo())
-                    .ifPresent(r -> log.setRefundId(r.getId()));
-        }
-
-        eventLogRepository.save(log);
+        eventLogWriter.write(log);
     }
 
     /**
@@ -370,6 +556,7 @@ public class PaymentEventListener {
         log.setDurationMs(event.getDurationMs());
         log.setClientIp(event.getClientIp());
 
-        eventLogRepository.save(log);
+        // 处理失败时事务回滚，失败日志在事务结束后写入
+        eventLogWriter.writeAfterCompletion(log);
     }
 }
@@ -0,0 +1,312 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import com.github.nonfou.mpay.transaction.repository.PaymentEventLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件日志批量写入器 - 将 payment_event_log 的写入合并为多行 INSERT
+ * <p>
+ * 事件日志主键为自增 ID，Hibernate 无法对其做 JDBC 批量插入，每条日志都是一次独立的数据库往返。
+ * 这里将日志放入有界队列，由单独的写入线程按条数（batch-size）或时间（flush-interval-ms）
+ * 凑批后，以一条多行 INSERT 写入。队列满或写入线程已停止时由调用方同步写入；停机时写完队列中剩余日志。
+ * <p>
+ * 在事务中调用时，日志在事务提交后才入队：回滚的操作不留下日志，日志也不会早于其所属事务可见。
+ */
+@Slf4j
+@Component
+public class PaymentEventLogBatchWriter {
+
+    private static final String INSERT_PREFIX = "INSERT INTO payment_event_log (order_id, transaction_id, refund_id, "
+            + "event_type, platform, request_data, response_data, result_code, result_message, success, "
+            + "duration_ms, client_ip, extra_data, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMN_COUNT = 14;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PaymentEventLogRepository eventLogRepository;
+    private final PaymentEventProperties.LogWriter properties;
+    private final BlockingQueue<PaymentEventLogEntity> queue;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+
+    private volatile boolean running;
+    private Thread worker;
+    /**
+     * 事务同步回调中事务资源仍绑定在当前线程，需要同步写入时在新事务中执行才能提交；未配置事务管理器时直接写入
+     */
+    private TransactionTemplate requiresNew;
+
+    public PaymentEventLogBatchWriter(JdbcTemplate jdbcTemplate,
+                                      PaymentEventLogRepository eventLogRepository,
+                                      PaymentEventProperties eventProperties,
+                                      MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventLogRepository = eventLogRepository;
+        this.properties = eventProperties.getLogWriter();
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSizeSummary = DistributionSummary.builder("payment.event.log.batch.size")
+                .description("每次写入的事件日志条数")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("payment.event.log.flush")
+                .description("事件日志批量写入耗时")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("payment.event.log.dropped")
+                .description("写入失败被丢弃的事件日志数")
+                .register(meterRegistry);
+        Gauge.builder("payment.event.log.queue.size", queue, BlockingQueue::size)
+                .description("等待写入的事件日志数")
+                .register(meterRegistry);
+    }
+
+    @Autowired(required = false)
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "payment-event-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 停机时停止写入线程，并写完队列中剩余的日志
+     */
+    @PreDestroy
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushRemaining();
+    }
+
+    /**
+     * 写入一条事件日志
+     * <p>
+     * 在事务中调用时于事务提交后写入，事务回滚则丢弃
+     */
+    public void write(PaymentEventLogEntity eventLog) {
+        if (!properties.isEnabled()) {
+            // 同步写入参与当前事务，随事务一起提交或回滚
+            eventLogRepository.save(eventLog);
+            return;
+        }
+        stamp(eventLog);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeNow(eventLog);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                writeDeferred(eventLog);
+            }
+        });
+    }
+
+    /**
+     * 写入一条处理失败的事件日志
+     * <p>
+     * 在事务中调用时于事务结束后写入，不论提交还是回滚：失败的处理通常会回滚，日志仍需保留
+     */
+    public void writeAfterCompletion(PaymentEventLogEntity eventLog) {
+        stamp(eventLog);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeNow(eventLog);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                writeDeferred(eventLog);
+            }
+        });
+    }
+
+    private static void stamp(PaymentEventLogEntity eventLog) {
+        if (eventLog.getCreatedAt() == null) {
+            eventLog.setCreatedAt(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * 在事务同步回调中写入：能入队时直接入队，需要同步写入时放到新事务中
+     */
+    private void writeDeferred(PaymentEventLogEntity eventLog) {
+        if (properties.isEnabled() && running && queue.offer(eventLog)) {
+            if (!running) {
+                // 入队时写入线程恰好停止，补写剩余日志
+                inNewTransaction(this::flushRemaining);
+            }
+            return;
+        }
+        inNewTransaction(() -> writeNow(eventLog));
+    }
+
+    private void inNewTransaction(Runnable action) {
+        if (requiresNew == null) {
+            action.run();
+            return;
+        }
+        requiresNew.executeWithoutResult(status -> action.run());
+    }
+
+    private void writeNow(PaymentEventLogEntity eventLog) {
+        if (!properties.isEnabled()) {
+            eventLogRepository.save(eventLog);
+            return;
+        }
+        if (!running || !queue.offer(eventLog)) {
+            // 写入线程已停止或队列已满，由调用方同步写入
+            flush(List.of(eventLog));
+            return;
+        }
+        if (!running) {
+            // 入队时写入线程恰好停止，补写剩余日志
+            flushRemaining();
+        }
+    }
+
+    private void runLoop() {
+        List<PaymentEventLogEntity> batch = new ArrayList<>(properties.getBatchSize());
+        long interval = TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        while (running || !queue.isEmpty()) {
+            try {
+                // 等待第一条日志和凑批共用一个截止时间，未凑满一批的日志最多等待一个 flush-interval-ms
+                long deadline = System.nanoTime() + interval;
+                PaymentEventLogEntity first = queue.poll(interval, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch, deadline);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // flush 已处理写入异常，这里只兜底未预料的错误，丢弃的日志同样计数
+                droppedCounter.increment(batch.size());
+                log.error("事件日志写入线程异常，已丢弃: size={}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在截止时间前尽量凑满一批
+     */
+    private void fillBatch(List<PaymentEventLogEntity> batch, long deadline) throws InterruptedException {
+        int batchSize = properties.getBatchSize();
+        queue.drainTo(batch, batchSize - batch.size());
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PaymentEventLogEntity next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private synchronized void flushRemaining() {
+        List<PaymentEventLogEntity> batch = new ArrayList<>(properties.getBatchSize());
+        while (queue.drainTo(batch, properties.getBatchSize()) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 以一条多行 INSERT 写入，失败时退化为逐条写入，仍失败的日志丢弃并计数
+     * <p>
+     * 除 DataAccessException 外，参数绑定等其他运行时异常同样按此处理，避免整批日志无声丢失
+     */
+    private void flush(List<PaymentEventLogEntity> batch) {
+        try {
+            flushTimer.record(() -> insert(batch));
+            batchSizeSummary.record(batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                droppedCounter.increment();
+                log.error("事件日志写入失败，已丢弃: orderId={}, eventType={}",
+                        batch.get(0).getOrderId(), batch.get(0).getEventType(), e);
+                return;
+            }
+            log.warn("事件日志批量写入失败，改为逐条写入: size={}", batch.size(), e);
+            for (PaymentEventLogEntity eventLog : batch) {
+                flush(List.of(eventLog));
+            }
+        }
+    }
+
+    private void insert(List<PaymentEventLogEntity> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW_PLACEHOLDER.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[batch.size() * COLUMN_COUNT];
+        int i = 0;
+        for (PaymentEventLogEntity eventLog : batch) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+            args[i++] = eventLog.getOrderId();
+            args[i++] = eventLog.getTransactionId();
+            args[i++] = eventLog.getRefundId();
+            args[i++] = eventLog.getEventType() != null ? eventLog.getEventType().name() : null;
+            args[i++] = eventLog.getPlatform() != null ? eventLog.getPlatform().name() : null;
+            args[i++] = eventLog.getRequestData();
+            args[i++] = eventLog.getResponseData();
+            args[i++] = eventLog.getResultCode();
+            args[i++] = eventLog.getResultMessage();
+            args[i++] = eventLog.getSuccess();
+            args[i++] = eventLog.getDurationMs();
+            args[i++] = eventLog.getClientIp();
+            args[i++] = eventLog.getExtraData();
+            args[i++] = eventLog.getCreatedAt();
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentEventOutboxEntity;
+import com.github.nonfou.mpay.transaction.enums.OutboxStatus;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import com.github.nonfou.mpay.transaction.repository.PaymentEventOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱中继 - 按写入顺序批量读取 payment_event_outbox，同步交给 {@link PaymentEventListener} 落库
+ * <p>
+ * 事件至少投递一次：只有监听器返回处理成功的事件才标记完成，处理失败或抛出异常的事件保持待投递，
+ * 按指数退避推迟下次投递，超过最大次数后标记为 FAILED；同一订单中排在退避事件之后的事件等它投递成功或标记失败后再投递。
+ * 投递成功但未来得及标记完成时，重启后会再次投递，监听器按 tradeNo / refundNo 判重保证幂等。
+ * 多节点部署时只有持有租约的节点投递，避免同一事件被多个节点同时投递。
+ * 支付事件处理成功后在本地发布 {@link PaymentEventDelivered}，供订单定时器等本地组件跟进。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "easy-pay.events.outbox", name = "enabled", havingValue = "true")
+public class PaymentEventOutboxRelay {
+
+    static final String TASK_NAME = "payment-event-outbox-relay";
+
+    /**
+     * 待投递事件数的刷新间隔，避免每次采集指标都执行 COUNT
+     */
+    private static final long PENDING_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final PaymentEventOutboxRepository outboxRepository;
+    private final PaymentEventListener eventListener;
+    private final PaymentEventCodec codec;
+    private final LeaderElector leaderElector;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentEventProperties.Outbox properties;
+    private final Counter relayedCounter;
+    private final Counter failedCounter;
+    private final AtomicLong pendingCount = new AtomicLong();
+    private long nextPendingRefresh = System.nanoTime();
+
+    public PaymentEventOutboxRelay(PaymentEventOutboxRepository outboxRepository,
+                                   PaymentEventListener eventListener,
+                                   PaymentEventCodec codec,
+                                   LeaderElector leaderElector,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PaymentEventProperties eventProperties,
+                                   MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.eventListener = eventListener;
+        this.codec = codec;
+        this.leaderElector = leaderElector;
+        this.eventPublisher = eventPublisher;
+        this.properties = eventProperties.getOutbox();
+        this.relayedCounter = Counter.builder("payment.event.outbox.relayed")
+                .description("发件箱已投递事件数")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("payment.event.outbox.failed")
+                .description("发件箱投递失败次数")
+                .register(meterRegistry);
+        // 由投递节点在轮询时刷新，其他节点保持 0
+        Gauge.builder("payment.event.outbox.pending", pendingCount, AtomicLong::get)
+                .description("发件箱待投递事件数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定时投递，直到发件箱中没有已到投递时间的事件
+     * <p>
+     * 失败的事件已推迟下次投递时间，同一订单之后的事件也随之暂缓，不会在同一轮中被重复读取
+     */
+    @Scheduled(fixedDelayString = "${easy-pay.events.outbox.poll-interval-ms:500}")
+    public void relay() {
+        if (!leaderElector.isLeader(TASK_NAME)) {
+            return;
+        }
+        try {
+            List<PaymentEventOutboxEntity> batch;
+            do {
+                batch = outboxRepository.findDue(LocalDateTime.now(), Limit.of(properties.getBatchSize()));
+                if (batch.isEmpty()) {
+                    return;
+                }
+                relayBatch(batch);
+            } while (batch.size() == properties.getBatchSize());
+        } finally {
+            refreshPendingCount();
+        }
+    }
+
+    /**
+     * 投递一批事件，成功的批量标记完成，失败的单独记录重试次数
+     * <p>
+     * 同一订单的事件失败后，本批中该订单之后的事件不再投递，留待之后按顺序投递
+     */
+    private void relayBatch(List<PaymentEventOutboxEntity> batch) {
+        List<Long> doneIds = new ArrayList<>(batch.size());
+        Set<String> heldOrders = new HashSet<>();
+        for (PaymentEventOutboxEntity outbox : batch) {
+            if (outbox.getOrderId() != null && heldOrders.contains(outbox.getOrderId())) {
+                continue;
+            }
+            boolean delivered;
+            try {
+                delivered = dispatch(codec.decode(outbox.getEventKind(), outbox.getPayload()));
+                if (!delivered) {
+                    log.warn("发件箱事件处理失败: id={}, orderId={}", outbox.getId(), outbox.getOrderId());
+                    markFailedAttempt(outbox, "事件处理失败");
+                }
+            } catch (Exception e) {
+                log.error("发件箱事件投递失败: id={}, orderId={}", outbox.getId(), outbox.getOrderId(), e);
+                markFailedAttempt(outbox, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+                delivered = false;
+            }
+            if (delivered) {
+                doneIds.add(outbox.getId());
+            } else if (outbox.getOrderId() != null) {
+                heldOrders.add(outbox.getOrderId());
+            }
+        }
+        if (!doneIds.isEmpty()) {
+            outboxRepository.markDone(doneIds, LocalDateTime.now());
+            relayedCounter.increment(doneIds.size());
+        }
+    }
+
+    /**
+     * @return 监听器是否处理成功
+     */
+    private boolean dispatch(ApplicationEvent event) {
+        if (event instanceof PaymentEvent paymentEvent) {
+            boolean handled = eventListener.processPaymentEvent(paymentEvent);
+            if (handled) {
+                publishDelivered(paymentEvent);
+            }
+            return handled;
+        }
+        if (event instanceof RefundEvent refundEvent) {
+            return eventListener.processRefundEvent(refundEvent);
+        }
+        return false;
+    }
+
+    /**
+     * 事件已落库，本地监听器出错不影响投递结果
+     */
+    private void publishDelivered(PaymentEvent event) {
+        try {
+            eventPublisher.publishEvent(new PaymentEventDelivered(this, event));
+        } catch (RuntimeException e) {
+            log.warn("发布事件投递完成通知失败: orderId={}, eventType={}", event.getOrderId(), event.getEventType(), e);
+        }
+    }
+
+    private void markFailedAttempt(PaymentEventOutboxEntity outbox, String message) {
+        failedCounter.increment();
+        outbox.setAttempts(outbox.getAttempts() + 1);
+        outbox.setLastError(message.length() > 512 ? message.substring(0, 512) : message);
+        if (outbox.getAttempts() >= properties.getMaxAttempts()) {
+            outbox.setStatus(OutboxStatus.FAILED);
+            log.error("发件箱事件超过最大重试次数，标记为失败: id={}", outbox.getId());
+        } else {
+            outbox.setNextAttemptAt(LocalDateTime.now().plus(backoff(outbox.getAttempts()), ChronoUnit.MILLIS));
+        }
+        outboxRepository.save(outbox);
+    }
+
+    private void refreshPendingCount() {
+        long now = System.nanoTime();
+        if (now - nextPendingRefresh < 0) {
+            return;
+        }
+        nextPendingRefresh = now + PENDING_REFRESH_NANOS;
+        try {
+            pendingCount.set(outboxRepository.countByStatus(OutboxStatus.PENDING));
+        } catch (Exception e) {
+            log.warn("统计发件箱待投递事件数失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 第 n 次失败后的重试间隔：retry-backoff-ms * 2^(n-1)，不超过 max-retry-backoff-ms
+     */
+    long backoff(int attempts) {
+        long delay = properties.getRetryBackoffMs() << Math.min(attempts - 1, 30);
+        return delay <= 0 ? properties.getMaxRetryBackoffMs() : Math.min(delay, properties.getMaxRetryBackoffMs());
+    }
+
+    /**
+     * 重放所有投递失败的事件
+     *
+     * @return 重新置为待投递的事件数
+     */
+    public int replayFailed() {
+        int count = outboxRepository.requeueFailed();
+        log.info("重放发件箱失败事件: count={}", count);
+        return count;
+    }
+
+    /**
+     * 从指定发件箱 ID 开始重放（包括已投递的事件）
+     *
+     * @return 重新置为待投递的事件数
+     */
+    public int replayFrom(Long fromId) {
+        int count = outboxRepository.requeueFrom(fromId);
+        log.info("从发件箱位置重放事件: fromId={}, count={}", fromId, count);
+        return count;
+    }
+
+    /**
+     * 定时清理已投递的历史事件
+     */
+    @Scheduled(cron = "${easy-pay.events.outbox.cleanup-cron:0 0 * * * *}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusHours(properties.getRetentionHours());
+        int deleted = outboxRepository.deleteProcessedBefore(before);
+        if (deleted > 0) {
+            log.info("清理已投递发件箱事件: count={}", deleted);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentEventOutboxEntity;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import com.github.nonfou.mpay.transaction.repository.PaymentEventOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * 支付事件发布器 - 统一发布入口
+ * <p>
+ * 启用发件箱时，事件只追加写入 payment_event_outbox，由 {@link PaymentEventOutboxRelay} 批量投递；
+ * 否则以内存事件发布，事件线程池队列满时拒绝的事件会写入 {@link PaymentEventSpillStore}，
+ * 待队列有空余时再回放，避免回调线程被阻塞或事件在内存中无限堆积。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentEventPublisher {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentEventSpillStore spillStore;
+    private final PaymentEventCodec codec;
+    private final PaymentEventProperties properties;
+    private final ThreadPoolTaskExecutor paymentEventExecutor;
+
+    // 可选注入，仅在启用 JPA 时可用
+    private final Optional<PaymentEventOutboxRepository> outboxRepository;
+
+    /**
+     * 发布事件
+     */
+    public void publish(ApplicationEvent event) {
+        if (properties.getOutbox().isEnabled() && outboxRepository.isPresent()) {
+            appendToOutbox(event);
+            return;
+        }
+        publishInMemory(event);
+    }
+
+    /**
+     * 以内存事件发布，队列满时落盘
+     */
+    private void publishInMemory(ApplicationEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (TaskRejectedException e) {
+            if (!spillStore.spill(event)) {
+                throw e;
+            }
+            log.warn("事件队列已满，事件已落盘: type={}", event.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 追加写入发件箱
+     */
+    private void appendToOutbox(ApplicationEvent event) {
+        PaymentEventOutboxEntity outbox = new PaymentEventOutboxEntity();
+        outbox.setEventKind(codec.kindOf(event));
+        outbox.setPayload(codec.encodePayload(event));
+        if (event instanceof PaymentEvent paymentEvent) {
+            outbox.setEventType(paymentEvent.getEventType().name());
+            outbox.setOrderId(paymentEvent.getOrderId());
+        } else if (event instanceof RefundEvent refundEvent) {
+            outbox.setEventType(refundEvent.getEventType().name());
+            outbox.setOrderId(refundEvent.getOrderId());
+        }
+        outboxRepository.get().save(outbox);
+        log.debug("事件写入发件箱: id={}, kind={}, orderId={}",
+                outbox.getId(), outbox.getEventKind(), outbox.getOrderId());
+    }
+
+    /**
+     * 定时回放落盘事件
+     */
+    @Scheduled(fixedDelayString = "${easy-pay.events.spill.replay-interval-ms:5000}")
+    public void replaySpilled() {
+        if (!spillStore.isEnabled() || !spillStore.hasPending()) {
+            return;
+        }
+        if (paymentEventExecutor.getQueueSize() >= paymentEventExecutor.getQueueCapacity()) {
+            log.debug("事件队列仍然已满，暂不回放落盘事件");
+            return;
+        }
+        int replayed = spillStore.drain(this::publish);
+        if (replayed > 0) {
+            log.info("回放落盘事件: count={}", replayed);
+        }
+    }
+}
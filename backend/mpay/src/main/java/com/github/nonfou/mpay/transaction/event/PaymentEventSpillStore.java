@@ -0,0 +1,148 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 支付事件落盘存储 - 事件线程池队列满或异步处理等待订单锁超时时将事件追加写入本地文件，稍后回放
+ * <p>
+ * 文件格式为每行一个 JSON（见 {@link PaymentEventCodec#encode(ApplicationEvent)}），
+ * 回放时先将当前文件原子重命名，再逐行读取，保证写入与回放互不干扰。
+ */
+@Slf4j
+@Component
+public class PaymentEventSpillStore {
+
+    private static final String ACTIVE_FILE = "spill.log";
+    private static final String REPLAY_FILE = "spill.replay";
+
+    private final PaymentEventCodec codec;
+    private final PaymentEventProperties.Spill properties;
+    private final Path activeFile;
+    private final Path replayFile;
+    private final Counter spilledCounter;
+    private final Counter replayedCounter;
+    /**
+     * 持锁期间会同步刷盘；使用 ReentrantLock 而不是 synchronized，避免在虚拟线程上钉住载体线程
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public PaymentEventSpillStore(PaymentEventCodec codec,
+                                  PaymentEventProperties eventProperties,
+                                  MeterRegistry meterRegistry) {
+        this.codec = codec;
+        this.properties = eventProperties.getSpill();
+        Path directory = Paths.get(properties.getDirectory());
+        this.activeFile = directory.resolve(ACTIVE_FILE);
+        this.replayFile = directory.resolve(REPLAY_FILE);
+        this.spilledCounter = Counter.builder("payment.event.spilled")
+                .description("因队列满或等待订单锁超时而落盘的支付事件数")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("payment.event.replayed")
+                .description("从落盘文件回放的支付事件数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 是否启用落盘
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 追加写入一个事件
+     *
+     * @return 是否写入成功
+     */
+    public boolean spill(ApplicationEvent event) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        String line = codec.encode(event) + "\n";
+        writeLock.lock();
+        try {
+            Files.createDirectories(activeFile.getParent());
+            Files.writeString(activeFile, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        } catch (IOException e) {
+            log.error("支付事件落盘失败: file={}", activeFile, e);
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+        spilledCounter.increment();
+        return true;
+    }
+
+    /**
+     * 是否存在待回放的事件
+     */
+    public boolean hasPending() {
+        return Files.exists(replayFile) || Files.exists(activeFile);
+    }
+
+    /**
+     * 回放全部落盘事件
+     * <p>
+     * 上次回放中断遗留的文件会优先处理，因此事件至少被回放一次，处理方需保证幂等。
+     *
+     * @return 回放的事件数
+     */
+    public int drain(Consumer<ApplicationEvent> consumer) {
+        writeLock.lock();
+        try {
+            if (!Files.exists(replayFile) && Files.exists(activeFile)) {
+                Files.move(activeFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error("切换落盘文件失败: file={}", activeFile, e);
+            return 0;
+        } finally {
+            writeLock.unlock();
+        }
+        if (!Files.exists(replayFile)) {
+            return 0;
+        }
+
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                ApplicationEvent event;
+                try {
+                    event = codec.decode(line);
+                } catch (IllegalArgumentException e) {
+                    log.error("跳过无法解析的落盘事件: {}", line, e);
+                    continue;
+                }
+                consumer.accept(event);
+                count++;
+            }
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            log.error("回放落盘事件失败: file={}", replayFile, e);
+        }
+
+        replayedCounter.increment(count);
+        return count;
+    }
+}
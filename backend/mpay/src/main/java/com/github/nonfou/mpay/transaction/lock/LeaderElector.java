@@ -0,0 +1,19 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+/**
+ * 主节点选举 - 多节点部署时保证定时任务只在一个节点上执行
+ * <p>
+ * 默认实现为基于数据库租约的 {@link LeaseLeaderElector}；可声明自己的 LeaderElector Bean
+ * （如基于 ZooKeeper、Kubernetes Lease）替换默认实现。
+ */
+public interface LeaderElector {
+
+    /**
+     * 当前节点是否为指定任务的主节点
+     * <p>
+     * 每次调度前调用，实现应在返回 true 时顺带续约。
+     *
+     * @param task 任务名称
+     */
+    boolean isLeader(String task);
+}
@@ -0,0 +1,56 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 基于数据库租约的主节点选举
+ * <p>
+ * 每个任务在 scheduler_lease 表中占一行，持有者在租约到期前续约；
+ * 持有者宕机后租约过期，其他节点在下次调度时接管。
+ */
+@Slf4j
+public class LeaseLeaderElector implements LeaderElector {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final long leaseSeconds;
+    private final String owner;
+
+    public LeaseLeaderElector(SchedulerLeaseRepository leaseRepository, long leaseSeconds) {
+        this.leaseRepository = leaseRepository;
+        this.leaseSeconds = leaseSeconds;
+        this.owner = hostName() + ":" + UUID.randomUUID();
+    }
+
+    @Override
+    public boolean isLeader(String task) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(leaseSeconds);
+        try {
+            if (leaseRepository.renew(task, owner, expiresAt, now) > 0) {
+                return true;
+            }
+            // 任务第一次运行时还没有租约记录
+            return leaseRepository.insert(task, owner, expiresAt) > 0;
+        } catch (DataIntegrityViolationException e) {
+            // 其他节点抢先创建了租约
+            return false;
+        } catch (Exception e) {
+            log.warn("获取任务租约失败，本次跳过: task={}", task, e);
+            return false;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.transaction.properties.OrderLockProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * MySQL 命名锁 - 基于 GET_LOCK / RELEASE_LOCK 串行化多个实例上同一订单的处理
+ * <p>
+ * 同一实例内先在 {@link StripedOrderLockManager} 上排队，排到的线程再单独取一个连接获取命名锁，
+ * 排队中的线程不占用数据库连接。命名锁属于连接会话而非事务，实例宕机或连接断开时由 MySQL 自动释放。
+ * 持锁期间每个订单额外占用一个连接（锁内的事务另取连接），连接池大小应留出余量。
+ */
+@Slf4j
+public class MysqlOrderLockManager implements OrderLockManager {
+
+    private static final String LOCK_NAME_PREFIX = "easy-pay:order:";
+    private static final int MAX_LOCK_NAME_LENGTH = 64;
+
+    private final DataSource dataSource;
+    private final StripedOrderLockManager localLock;
+    private final int waitTimeoutSeconds;
+    private final Counter timeoutCounter;
+
+    public MysqlOrderLockManager(DataSource dataSource, OrderLockProperties properties, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.localLock = new StripedOrderLockManager(properties, meterRegistry);
+        // GET_LOCK 的超时以秒为单位，向上取整
+        this.waitTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(properties.getWaitTimeoutMs() + 999));
+        this.timeoutCounter = Counter.builder("payment.order.lock.timeout")
+                .description("等待订单锁超时次数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T executeWithLock(String orderId, Supplier<T> action) {
+        if (orderId == null) {
+            return action.get();
+        }
+        return localLock.executeWithLock(orderId, () -> executeWithNamedLock(orderId, action));
+    }
+
+    private <T> T executeWithNamedLock(String orderId, Supplier<T> action) {
+        String lockName = lockName(orderId);
+        try (Connection connection = dataSource.getConnection()) {
+            if (!acquire(connection, lockName)) {
+                timeoutCounter.increment();
+                log.warn("等待订单命名锁超时: orderId={}, timeoutSeconds={}", orderId, waitTimeoutSeconds);
+                throw new OrderLockTimeoutException("订单正在处理中，请稍后重试: " + orderId);
+            }
+            try {
+                return action.get();
+            } finally {
+                release(connection, lockName);
+            }
+        } catch (SQLException e) {
+            log.error("获取订单命名锁失败: orderId={}", orderId, e);
+            throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "获取订单锁失败: " + orderId);
+        }
+    }
+
+    /**
+     * @return 是否获取成功；超时返回 0，出错返回 NULL，均视为未获取
+     */
+    private boolean acquire(Connection connection, String lockName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, lockName);
+            statement.setInt(2, waitTimeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    /**
+     * 释放失败只记录日志，连接归还连接池后锁仍由该会话持有，直到连接关闭
+     */
+    private void release(Connection connection, String lockName) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, lockName);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            log.error("释放订单命名锁失败: lockName={}", lockName, e);
+        }
+    }
+
+    /**
+     * MySQL 命名锁最长 64 个字符，过长的订单号取其 UUID 摘要
+     */
+    static String lockName(String orderId) {
+        String name = LOCK_NAME_PREFIX + orderId;
+        if (name.length() <= MAX_LOCK_NAME_LENGTH) {
+            return name;
+        }
+        return LOCK_NAME_PREFIX + UUID.nameUUIDFromBytes(orderId.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import java.util.function.Supplier;
+
+/**
+ * 订单锁管理器 - 串行化同一订单的回调、退款等处理
+ * <p>
+ * 默认实现为单机内存分段锁 {@link StripedOrderLockManager}，只能串行化同一实例内的处理；
+ * 多实例部署时配置 easy-pay.lock.type=mysql 使用 {@link MysqlOrderLockManager}，
+ * 或声明自己的 OrderLockManager Bean（如基于 Redis 的分布式锁）替换默认实现。
+ * 锁应包裹整个数据库事务，保证后一个处理读到的是前一个已提交的数据。
+ */
+public interface OrderLockManager {
+
+    /**
+     * 持有订单锁执行操作
+     *
+     * @param orderId 商户订单号，为 null 时不加锁直接执行
+     * @param action  操作
+     * @return 操作结果
+     * @throws OrderLockTimeoutException 等待锁超时或被中断
+     */
+    <T> T executeWithLock(String orderId, Supplier<T> action);
+
+    /**
+     * 持有订单锁执行无返回值的操作
+     */
+    default void runWithLock(String orderId, Runnable action) {
+        executeWithLock(orderId, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+
+/**
+ * 等待订单锁超时或被中断
+ * <p>
+ * 与其他业务异常区分开，异步处理事件时可据此将事件落盘稍后重放，而不是直接丢弃。
+ */
+public class OrderLockTimeoutException extends BusinessException {
+
+    public OrderLockTimeoutException(String message) {
+        super(ErrorCode.CONFLICT, message);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.transaction.properties.OrderLockProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 单机内存分段锁 - 按 orderId 哈希到固定数量的 {@link ReentrantLock}
+ * <p>
+ * 同一订单总是落在同一把锁上，不同订单大概率落在不同的锁上并行处理；
+ * 锁数量固定，不会随订单数增长。ReentrantLock 不会钉住虚拟线程。
+ * <p>
+ * 锁只在当前 JVM 内有效：多实例部署时，同一订单的回调和退款落在不同实例上仍可能并发执行，
+ * 此时应配置 easy-pay.lock.type=mysql 使用 {@link MysqlOrderLockManager}，或声明自定义的分布式锁。
+ */
+@Slf4j
+public class StripedOrderLockManager implements OrderLockManager {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final long waitTimeoutMs;
+    private final Timer waitTimer;
+    private final Counter timeoutCounter;
+
+    public StripedOrderLockManager(OrderLockProperties properties, MeterRegistry meterRegistry) {
+        int stripes = properties.getStripes() <= 1 ? 1 : Integer.highestOneBit(properties.getStripes() - 1) << 1;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+        this.waitTimeoutMs = properties.getWaitTimeoutMs();
+        this.waitTimer = Timer.builder("payment.order.lock.wait")
+                .description("等待订单锁的时间")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("payment.order.lock.timeout")
+                .description("等待订单锁超时次数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T executeWithLock(String orderId, Supplier<T> action) {
+        if (orderId == null) {
+            return action.get();
+        }
+        ReentrantLock lock = lockFor(orderId);
+        long startedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderLockTimeoutException("等待订单锁被中断: " + orderId);
+        }
+        waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            timeoutCounter.increment();
+            log.warn("等待订单锁超时: orderId={}, timeoutMs={}", orderId, waitTimeoutMs);
+            throw new OrderLockTimeoutException("订单正在处理中，请稍后重试: " + orderId);
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock lockFor(String orderId) {
+        int h = orderId.hashCode();
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
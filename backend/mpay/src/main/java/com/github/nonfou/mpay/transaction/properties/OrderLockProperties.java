@@ -0,0 +1,37 @@
+package com.github.nonfou.mpay.transaction.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 订单锁配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.lock")
+public class OrderLockProperties {
+
+    /**
+     * 锁类型：local 为单机分段锁，只在当前实例内生效；mysql 为 MySQL 命名锁，多实例部署时使用
+     */
+    private Type type = Type.LOCAL;
+
+    /**
+     * 分段锁数量（向上取整为 2 的幂），越大不同订单共用一把锁的概率越低
+     */
+    private int stripes = 1024;
+
+    /**
+     * 等待订单锁的最长时间（毫秒），超时抛出 CONFLICT 业务异常
+     */
+    private long waitTimeoutMs = 10000;
+
+    /**
+     * 定时任务主节点租约时长（秒），应大于任务的调度间隔，主节点宕机后最多经过该时长由其他节点接管
+     */
+    private long leaderLeaseSeconds = 300;
+
+    public enum Type {
+        LOCAL,
+        MYSQL
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.nonfou.mpay.transaction.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 支付事件处理配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.events")
+public class PaymentEventProperties {
+
+    /**
+     * 核心线程数
+     */
+    private int corePoolSize = 4;
+
+    /**
+     * 最大线程数
+     */
+    private int maxPoolSize = 16;
+
+    /**
+     * 等待队列容量（有界，队列满时触发拒绝策略）
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * 非核心线程空闲存活时间（秒）
+     */
+    private int keepAliveSeconds = 60;
+
+    /**
+     * 是否使用虚拟线程执行事件处理
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * 停机时等待队列中事件处理完成的最长时间（秒）
+     */
+    private int awaitTerminationSeconds = 30;
+
+    /**
+     * 拒绝溢出落盘配置
+     */
+    private Spill spill = new Spill();
+
+    /**
+     * 事务发件箱配置
+     */
+    private Outbox outbox = new Outbox();
+
+    /**
+     * 事件日志批量写入配置
+     */
+    private LogWriter logWriter = new LogWriter();
+
+    /**
+     * 拒绝溢出落盘配置
+     */
+    @Data
+    public static class Spill {
+
+        /**
+         * 是否启用落盘，关闭后队列满时直接抛出拒绝异常
+         */
+        private boolean enabled = true;
+
+        /**
+         * 落盘文件目录
+         */
+        private String directory = "data/event-spill";
+
+        /**
+         * 回放落盘事件的间隔（毫秒）
+         */
+        private long replayIntervalMs = 5000;
+    }
+
+    /**
+     * 事务发件箱配置
+     */
+    @Data
+    public static class Outbox {
+
+        /**
+         * 是否启用发件箱，启用后事件先写入 payment_event_outbox 再由中继投递
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每批投递的事件数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 中继轮询间隔（毫秒）
+         */
+        private long pollIntervalMs = 500;
+
+        /**
+         * 最大投递尝试次数，超过后标记为 FAILED
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * 投递失败后的首次重试间隔（毫秒），之后每次失败翻倍
+         */
+        private long retryBackoffMs = 1000;
+
+        /**
+         * 重试间隔上限（毫秒）
+         */
+        private long maxRetryBackoffMs = 60000;
+
+        /**
+         * 已投递事件保留时长（小时）
+         */
+        private int retentionHours = 72;
+    }
+
+    /**
+     * 事件日志批量写入配置
+     */
+    @Data
+    public static class LogWriter {
+
+        /**
+         * 是否启用批量写入，关闭后每条事件日志同步写入
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单批最多写入的日志条数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 未凑满一批时的最长等待时间（毫秒）
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * 待写入队列容量，队列满时调用方同步写入
+         */
+        private int queueCapacity = 10000;
+    }
+}
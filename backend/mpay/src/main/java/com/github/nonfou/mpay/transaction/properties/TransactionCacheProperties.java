@@ -0,0 +1,29 @@
+package com.github.nonfou.mpay.transaction.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 交易查询缓存配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "easy-pay.transaction-cache")
+public class TransactionCacheProperties {
+
+    /**
+     * 是否启用交易查询缓存
+     * <p>
+     * 缓存只在本节点内失效，多节点部署时其他节点最多在 expire-after-write-seconds 后才能读到新状态
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最多缓存的交易数
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 缓存保留时间（秒）
+     */
+    private long expireAfterWriteSeconds = 60;
+}
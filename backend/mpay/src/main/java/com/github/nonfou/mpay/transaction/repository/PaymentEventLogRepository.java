@@ -4,8 +4,11 @@ import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
 import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,7 +20,8 @@ import java.util.List;
  * 支付事件日志 Repository
  */
 @Repository
-public interface PaymentEventLogRepository extends JpaRepository<PaymentEventLogEntity, Long> {
+public interface PaymentEventLogRepository extends JpaRepository<PaymentEventLogEntity, Long>,
+        JpaSpecificationExecutor<PaymentEventLogEntity> {
 
     /**
      * 根据订单号查询所有事件（按时间正序，用于追溯流程）
@@ -41,26 +45,32 @@ public interface PaymentEventLogRepository extends JpaRepository<PaymentEventLog
 
     /**
      * 分页查询 - 多条件
+     * <p>
+     * 只拼接实际传入的条件，未指定排序时按创建时间倒序。
      */
-    @Query("SELECT e FROM PaymentEventLogEntity e WHERE " +
-            "(:orderId IS NULL OR e.orderId = :orderId) AND " +
-            "(:transactionId IS NULL OR e.transactionId = :transactionId) AND " +
-            "(:eventType IS NULL OR e.eventType = :eventType) AND " +
-            "(:platform IS NULL OR e.platform = :platform) AND " +
-            "(:success IS NULL OR e.success = :success) AND " +
-            "(:startTime IS NULL OR e.createdAt >= :startTime) AND " +
-            "(:endTime IS NULL OR e.createdAt <= :endTime) " +
-            "ORDER BY e.createdAt DESC")
-    Page<PaymentEventLogEntity> findByConditions(
-            @Param("orderId") String orderId,
-            @Param("transactionId") Long transactionId,
-            @Param("eventType") PaymentEventType eventType,
-            @Param("platform") PaymentPlatform platform,
-            @Param("success") Boolean success,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime,
-            Pageable pageable
-    );
+    default Page<PaymentEventLogEntity> findByConditions(
+            String orderId,
+            Long transactionId,
+            PaymentEventType eventType,
+            PaymentPlatform platform,
+            Boolean success,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            Pageable pageable) {
+        Pageable sorted = pageable.getSort().isSorted() || pageable.isUnpaged()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), QuerySpecifications.NEWEST_FIRST);
+        Specification<PaymentEventLogEntity> spec = Specification.allOf(
+                QuerySpecifications.equal("orderId", orderId),
+                QuerySpecifications.equal("transactionId", transactionId),
+                QuerySpecifications.equal("eventType", eventType),
+                QuerySpecifications.equal("platform", platform),
+                QuerySpecifications.equal("success", success),
+                QuerySpecifications.notBefore("createdAt", startTime),
+                QuerySpecifications.notAfter("createdAt", endTime)
+        );
+        return findAll(spec, sorted);
+    }
 
     /**
      * 查询失败的事件（用于告警监控）
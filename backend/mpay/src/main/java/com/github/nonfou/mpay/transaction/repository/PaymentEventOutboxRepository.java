@@ -0,0 +1,85 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentEventOutboxEntity;
+import com.github.nonfou.mpay.transaction.enums.OutboxStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 支付事件发件箱 Repository
+ */
+@Repository
+public interface PaymentEventOutboxRepository extends JpaRepository<PaymentEventOutboxEntity, Long> {
+
+    /**
+     * 按写入顺序获取一批已到投递时间的待投递事件
+     * <p>
+     * 跳过退避中的失败事件，以及同一订单中排在退避中事件之后的事件，保证同一订单的事件按写入顺序投递
+     */
+    @Query("SELECT o FROM PaymentEventOutboxEntity o " +
+            "WHERE o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.PENDING " +
+            "AND (o.nextAttemptAt IS NULL OR o.nextAttemptAt <= :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM PaymentEventOutboxEntity p " +
+            "WHERE p.orderId = o.orderId AND p.id < o.id " +
+            "AND p.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.PENDING " +
+            "AND p.nextAttemptAt > :now) " +
+            "ORDER BY o.id ASC")
+    List<PaymentEventOutboxEntity> findDue(@Param("now") LocalDateTime now, Limit limit);
+
+    /**
+     * 统计指定状态的事件数量
+     */
+    long countByStatus(OutboxStatus status);
+
+    /**
+     * 批量标记为已投递
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PaymentEventOutboxEntity o SET " +
+            "o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.DONE, " +
+            "o.processedAt = :processedAt " +
+            "WHERE o.id IN :ids")
+    int markDone(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * 将投递失败的事件重新置为待投递（用于重放）
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PaymentEventOutboxEntity o SET " +
+            "o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.PENDING, " +
+            "o.attempts = 0, o.nextAttemptAt = NULL " +
+            "WHERE o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.FAILED")
+    int requeueFailed();
+
+    /**
+     * 将指定 ID 之后的事件重新置为待投递（用于按位置重放）
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PaymentEventOutboxEntity o SET " +
+            "o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.PENDING, " +
+            "o.attempts = 0, o.processedAt = NULL, o.nextAttemptAt = NULL " +
+            "WHERE o.id >= :fromId")
+    int requeueFrom(@Param("fromId") Long fromId);
+
+    /**
+     * 清理已投递的历史事件
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PaymentEventOutboxEntity o WHERE " +
+            "o.status = com.github.nonfou.mpay.transaction.enums.OutboxStatus.DONE AND " +
+            "o.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
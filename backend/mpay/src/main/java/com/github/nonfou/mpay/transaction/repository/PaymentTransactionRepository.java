@@ -1,16 +1,25 @@
 package com.github.nonfou.mpay.transaction.repository;
 
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,7 +27,8 @@ import java.util.Optional;
  * 支付交易记录 Repository
  */
 @Repository
-public interface PaymentTransactionRepository extends JpaRepository<PaymentTransactionEntity, Long> {
+public interface PaymentTransactionRepository extends JpaRepository<PaymentTransactionEntity, Long>,
+        JpaSpecificationExecutor<PaymentTransactionEntity> {
 
     /**
      * 根据订单号查询
@@ -47,26 +57,83 @@ public interface PaymentTransactionRepository extends JpaRepository<PaymentTrans
 
     /**
      * 分页查询 - 多条件
+     * <p>
+     * 只拼接实际传入的条件，未指定排序时按创建时间倒序。
      */
-    @Query("SELECT t FROM PaymentTransactionEntity t WHERE " +
-            "(:orderId IS NULL OR t.orderId = :orderId) AND " +
-            "(:tradeNo IS NULL OR t.tradeNo = :tradeNo) AND " +
-            "(:platform IS NULL OR t.platform = :platform) AND " +
-            "(:status IS NULL OR t.status = :status) AND " +
-            "(:merchantId IS NULL OR t.merchantId = :merchantId) AND " +
-            "(:startTime IS NULL OR t.createdAt >= :startTime) AND " +
-            "(:endTime IS NULL OR t.createdAt <= :endTime) " +
-            "ORDER BY t.createdAt DESC")
-    Page<PaymentTransactionEntity> findByConditions(
-            @Param("orderId") String orderId,
-            @Param("tradeNo") String tradeNo,
-            @Param("platform") PaymentPlatform platform,
-            @Param("status") TransactionStatus status,
-            @Param("merchantId") String merchantId,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime,
-            Pageable pageable
-    );
+    default Page<PaymentTransactionEntity> findByConditions(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            Pageable pageable) {
+        Pageable sorted = pageable.getSort().isSorted() || pageable.isUnpaged()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), QuerySpecifications.NEWEST_FIRST);
+        return findAll(conditions(orderId, tradeNo, platform, status, merchantId, startTime, endTime), sorted);
+    }
+
+    /**
+     * 游标分页查询 - 多条件
+     * <p>
+     * 按 (createdAt, id) 倒序，只取游标之后的记录，不执行 COUNT。
+     *
+     * @param cursor 上一页最后一条的定位键，为 null 时查询第一页
+     * @param limit  最多返回的记录数
+     */
+    default List<PaymentTransactionEntity> findByConditionsAfter(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            SeekCursor cursor,
+            int limit) {
+        Specification<PaymentTransactionEntity> spec = conditions(
+                orderId, tradeNo, platform, status, merchantId, startTime, endTime)
+                .and(QuerySpecifications.before(cursor));
+        return findBy(spec, query -> query.sortBy(QuerySpecifications.NEWEST_FIRST).limit(limit).all());
+    }
+
+    /**
+     * 统计符合条件的交易数（游标分页按需调用）
+     */
+    default long countByConditions(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return count(conditions(orderId, tradeNo, platform, status, merchantId, startTime, endTime));
+    }
+
+    /**
+     * 多条件查询的公共条件，参数为 null 的条件不参与查询
+     */
+    static Specification<PaymentTransactionEntity> conditions(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return Specification.allOf(
+                QuerySpecifications.equal("orderId", orderId),
+                QuerySpecifications.equal("tradeNo", tradeNo),
+                QuerySpecifications.equal("platform", platform),
+                QuerySpecifications.equal("status", status),
+                QuerySpecifications.equal("merchantId", merchantId),
+                QuerySpecifications.notBefore("createdAt", startTime),
+                QuerySpecifications.notAfter("createdAt", endTime)
+        );
+    }
 
     /**
      * 查询超时未支付的订单（用于定时关闭）
@@ -78,6 +145,72 @@ public interface PaymentTransactionRepository extends JpaRepository<PaymentTrans
             @Param("expireTime") LocalDateTime expireTime
     );
 
+    /**
+     * 按 ID 顺序分批查询超时未支付的订单（用于定时关闭）
+     * <p>
+     * 订单按自身的 expire_at 判断是否超时；未记录 expire_at 的订单按创建时间兜底
+     *
+     * @param now            当前时间，expire_at 早于该时间的订单已超时
+     * @param createdBefore  未记录 expire_at 的订单，创建时间早于该时间视为超时
+     * @param afterId        上一批最后一条的 ID，从 0 开始
+     */
+    @Query("SELECT t FROM PaymentTransactionEntity t WHERE " +
+            "t.status = :status AND t.id > :afterId AND (t.expireAt < :now " +
+            "OR (t.expireAt IS NULL AND t.createdAt < :createdBefore)) " +
+            "ORDER BY t.id ASC")
+    List<PaymentTransactionEntity> findExpiredBatch(
+            @Param("status") TransactionStatus status,
+            @Param("now") LocalDateTime now,
+            @Param("createdBefore") LocalDateTime createdBefore,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    /**
+     * 按 ID 顺序分批查询指定状态的订单（用于重建订单定时器）
+     *
+     * @param afterId 上一批最后一条的 ID，从 0 开始
+     */
+    @Query("SELECT t FROM PaymentTransactionEntity t WHERE " +
+            "t.status = :status AND t.id > :afterId ORDER BY t.id ASC")
+    List<PaymentTransactionEntity> findBatchByStatus(
+            @Param("status") TransactionStatus status,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    /**
+     * 按 ID 顺序分批查询某一创建时间区间内的交易（用于主动对账）
+     *
+     * @param from    创建时间下界（含）
+     * @param to      创建时间上界（不含）
+     * @param afterId 上一批最后一条的 ID，从 0 开始
+     */
+    @Query("SELECT t FROM PaymentTransactionEntity t WHERE " +
+            "t.status = :status AND t.createdAt >= :from AND t.createdAt < :to AND t.id > :afterId " +
+            "ORDER BY t.id ASC")
+    List<PaymentTransactionEntity> findCreatedBetweenBatch(
+            @Param("status") TransactionStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    /**
+     * 批量关闭订单，只更新仍为待支付的记录
+     *
+     * @return 实际关闭的记录数
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PaymentTransactionEntity t SET " +
+            "t.status = com.github.nonfou.mpay.transaction.enums.TransactionStatus.CLOSED, " +
+            "t.updatedAt = :now " +
+            "WHERE t.id IN :ids " +
+            "AND t.status = com.github.nonfou.mpay.transaction.enums.TransactionStatus.PENDING")
+    int closePendingByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
     /**
      * 统计某时间段内的交易数量
      */
@@ -94,4 +227,51 @@ public interface PaymentTransactionRepository extends JpaRepository<PaymentTrans
      * 根据商户ID查询
      */
     Page<PaymentTransactionEntity> findByMerchantIdOrderByCreatedAtDesc(String merchantId, Pageable pageable);
+
+    /**
+     * 原子累加已退款金额，并同步更新退款状态
+     * <p>
+     * 仅当累加后不超过订单金额时才更新，并发退款不会丢失更新或超额退款。
+     * 状态赋值放在金额之前：MySQL 按从左到右的顺序计算 SET 子句，后面的表达式会读到已更新的值。
+     * 更新直接作用于数据库，当前持久化上下文中的实体不会同步刷新。
+     *
+     * @return 更新的行数，0 表示交易不存在或退款金额超出可退金额
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE PaymentTransactionEntity t SET " +
+            "t.status = CASE WHEN COALESCE(t.refundedAmount, 0) + :refundAmount >= t.amount " +
+            "THEN com.github.nonfou.mpay.transaction.enums.TransactionStatus.REFUNDED " +
+            "ELSE com.github.nonfou.mpay.transaction.enums.TransactionStatus.PARTIAL_REFUNDED END, " +
+            "t.refundedAmount = COALESCE(t.refundedAmount, 0) + :refundAmount, " +
+            "t.updatedAt = :now " +
+            "WHERE t.id = :id AND COALESCE(t.refundedAmount, 0) + :refundAmount <= t.amount")
+    int addRefundedAmount(
+            @Param("id") Long id,
+            @Param("refundAmount") BigDecimal refundAmount,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * 原子扣减已退款金额，释放平台未受理或退款失败的预占金额
+     * <p>
+     * 仅当已退款金额不小于扣减金额时才更新；扣减后为零时交易恢复为支付成功，否则为部分退款。
+     * 与 {@link #addRefundedAmount} 相同，状态赋值放在金额之前。
+     *
+     * @return 更新的行数，0 表示交易不存在或已退款金额不足以扣减
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE PaymentTransactionEntity t SET " +
+            "t.status = CASE WHEN COALESCE(t.refundedAmount, 0) - :refundAmount <= 0 " +
+            "THEN com.github.nonfou.mpay.transaction.enums.TransactionStatus.SUCCESS " +
+            "ELSE com.github.nonfou.mpay.transaction.enums.TransactionStatus.PARTIAL_REFUNDED END, " +
+            "t.refundedAmount = COALESCE(t.refundedAmount, 0) - :refundAmount, " +
+            "t.updatedAt = :now " +
+            "WHERE t.id = :id AND COALESCE(t.refundedAmount, 0) >= :refundAmount")
+    int releaseRefundedAmount(
+            @Param("id") Long id,
+            @Param("refundAmount") BigDecimal refundAmount,
+            @Param("now") LocalDateTime now
+    );
 }
@@ -0,0 +1,71 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.common.response.SeekCursor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * 多条件查询的 Specification 构造工具
+ * <p>
+ * 参数为 null 时返回 null，由 {@link Specification#allOf} 跳过，生成的 SQL 只包含实际传入的条件，
+ * 不再出现 "(? IS NULL OR col = ?)"，MySQL 才能按条件选中合适的组合索引。
+ */
+public final class QuerySpecifications {
+
+    /**
+     * 列表默认排序，id 保证 createdAt 相同时顺序稳定
+     */
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt")
+            .and(Sort.by(Sort.Direction.DESC, "id"));
+
+    private QuerySpecifications() {
+    }
+
+    /**
+     * attribute = value
+     */
+    public static <T> Specification<T> equal(String attribute, Object value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    /**
+     * attribute >= value
+     */
+    public static <T> Specification<T> notBefore(String attribute, LocalDateTime value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(attribute), value);
+    }
+
+    /**
+     * attribute <= value
+     */
+    public static <T> Specification<T> notAfter(String attribute, LocalDateTime value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get(attribute), value);
+    }
+
+    /**
+     * 游标分页定位：(createdAt, id) 严格小于游标
+     */
+    public static <T> Specification<T> before(SeekCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+                cb.and(
+                        cb.equal(root.get("createdAt"), cursor.createdAt()),
+                        cb.lessThan(root.get("id"), cursor.id())
+                )
+        );
+    }
+}
@@ -1,11 +1,15 @@
 package com.github.nonfou.mpay.transaction.repository;
 
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import com.github.nonfou.mpay.transaction.enums.RefundStatus;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,7 +22,8 @@ import java.util.Optional;
  * 退款记录 Repository
  */
 @Repository
-public interface RefundRecordRepository extends JpaRepository<RefundRecordEntity, Long> {
+public interface RefundRecordRepository extends JpaRepository<RefundRecordEntity, Long>,
+        JpaSpecificationExecutor<RefundRecordEntity> {
 
     /**
      * 根据退款单号查询
@@ -47,24 +52,77 @@ public interface RefundRecordRepository extends JpaRepository<RefundRecordEntity
 
     /**
      * 分页查询 - 多条件
+     * <p>
+     * 只拼接实际传入的条件，未指定排序时按创建时间倒序。
      */
-    @Query("SELECT r FROM RefundRecordEntity r WHERE " +
-            "(:orderId IS NULL OR r.orderId = :orderId) AND " +
-            "(:refundNo IS NULL OR r.refundNo = :refundNo) AND " +
-            "(:platform IS NULL OR r.platform = :platform) AND " +
-            "(:status IS NULL OR r.status = :status) AND " +
-            "(:startTime IS NULL OR r.createdAt >= :startTime) AND " +
-            "(:endTime IS NULL OR r.createdAt <= :endTime) " +
-            "ORDER BY r.createdAt DESC")
-    Page<RefundRecordEntity> findByConditions(
-            @Param("orderId") String orderId,
-            @Param("refundNo") String refundNo,
-            @Param("platform") PaymentPlatform platform,
-            @Param("status") RefundStatus status,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime,
-            Pageable pageable
-    );
+    default Page<RefundRecordEntity> findByConditions(
+            String orderId,
+            String refundNo,
+            PaymentPlatform platform,
+            RefundStatus status,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            Pageable pageable) {
+        Pageable sorted = pageable.getSort().isSorted() || pageable.isUnpaged()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), QuerySpecifications.NEWEST_FIRST);
+        return findAll(conditions(orderId, refundNo, platform, status, startTime, endTime), sorted);
+    }
+
+    /**
+     * 游标分页查询 - 多条件
+     * <p>
+     * 按 (createdAt, id) 倒序，只取游标之后的记录，不执行 COUNT。
+     *
+     * @param cursor 上一页最后一条的定位键，为 null 时查询第一页
+     * @param limit  最多返回的记录数
+     */
+    default List<RefundRecordEntity> findByConditionsAfter(
+            String orderId,
+            String refundNo,
+            PaymentPlatform platform,
+            RefundStatus status,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            SeekCursor cursor,
+            int limit) {
+        Specification<RefundRecordEntity> spec = conditions(orderId, refundNo, platform, status, startTime, endTime)
+                .and(QuerySpecifications.before(cursor));
+        return findBy(spec, query -> query.sortBy(QuerySpecifications.NEWEST_FIRST).limit(limit).all());
+    }
+
+    /**
+     * 统计符合条件的退款数（游标分页按需调用）
+     */
+    default long countByConditions(
+            String orderId,
+            String refundNo,
+            PaymentPlatform platform,
+            RefundStatus status,
+            LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return count(conditions(orderId, refundNo, platform, status, startTime, endTime));
+    }
+
+    /**
+     * 多条件查询的公共条件，参数为 null 的条件不参与查询
+     */
+    static Specification<RefundRecordEntity> conditions(
+            String orderId,
+            String refundNo,
+            PaymentPlatform platform,
+            RefundStatus status,
+            LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return Specification.allOf(
+                QuerySpecifications.equal("orderId", orderId),
+                QuerySpecifications.equal("refundNo", refundNo),
+                QuerySpecifications.equal("platform", platform),
+                QuerySpecifications.equal("status", status),
+                QuerySpecifications.notBefore("createdAt", startTime),
+                QuerySpecifications.notAfter("createdAt", endTime)
+        );
+    }
 
     /**
      * 查询某交易的退款总数
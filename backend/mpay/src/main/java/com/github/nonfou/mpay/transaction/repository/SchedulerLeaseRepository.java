@@ -0,0 +1,70 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.entity.SchedulerLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 定时任务租约 Repository
+ */
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLeaseEntity, String> {
+
+    /**
+     * 续约：自己持有或租约已过期时更新持有者和到期时间
+     *
+     * @return 1 表示获得租约，0 表示租约由其他节点持有或不存在
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLeaseEntity l SET l.owner = :owner, l.expiresAt = :expiresAt " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.expiresAt < :now)")
+    int renew(@Param("name") String name,
+              @Param("owner") String owner,
+              @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * 创建租约，记录已存在时由主键冲突拒绝
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_lease (name, owner, expires_at) VALUES (:name, :owner, :expiresAt)",
+            nativeQuery = true)
+    int insert(@Param("name") String name,
+               @Param("owner") String owner,
+               @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 查询任务上次成功执行的时间
+     */
+    @Query("SELECT l.lastRunAt FROM SchedulerLeaseEntity l WHERE l.name = :name")
+    Optional<LocalDateTime> findLastRunAt(@Param("name") String name);
+
+    /**
+     * 记录任务上次成功执行的时间，不改变租约持有者
+     *
+     * @return 0 表示任务还没有租约记录
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLeaseEntity l SET l.lastRunAt = :lastRunAt WHERE l.name = :name")
+    int updateLastRunAt(@Param("name") String name, @Param("lastRunAt") LocalDateTime lastRunAt);
+
+    /**
+     * 未启用选主的任务没有租约记录，创建一条已过期的租约保存执行时间，不影响之后的选主
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_lease (name, owner, expires_at, last_run_at) " +
+            "VALUES (:name, '', :lastRunAt, :lastRunAt)",
+            nativeQuery = true)
+    int insertLastRunAt(@Param("name") String name, @Param("lastRunAt") LocalDateTime lastRunAt);
+}
@@ -0,0 +1,166 @@
+package com.github.nonfou.mpay.transaction.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.properties.TransactionCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.BeanUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 交易查询缓存 - 旁路缓存（cache-aside）
+ * <p>
+ * 交易按 ID 缓存一份，订单号、系统交易号、平台交易号分别映射到 ID，失效时只需按 ID 移除。
+ * 缓存中保存的是与持久化上下文无关的副本，每次读取再返回一份新副本，调用方修改返回值不会影响缓存和数据库；
+ * 需要更新交易的地方应在事务内直接通过 Repository 读取，并在修改后调用 {@link #invalidate(Long)}。
+ * <p>
+ * 读写事务内加载的数据可能包含未提交的修改，不放入缓存；
+ * 加载期间发生过失效时同样不放入，避免把失效前读到的旧数据重新放回缓存。
+ */
+public class PaymentTransactionCache {
+
+    private static final String ORDER_ID = "order:";
+    private static final String TRADE_NO = "trade:";
+    private static final String PLATFORM_TRADE_NO = "platform:";
+
+    private final boolean enabled;
+    private final Cache<Long, PaymentTransactionEntity> transactions;
+    private final Cache<String, Long> identifiers;
+    /**
+     * 失效次数，用于判断加载期间是否发生过失效
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PaymentTransactionCache(TransactionCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        Duration ttl = Duration.ofSeconds(properties.getExpireAfterWriteSeconds());
+        this.transactions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // 标识到 ID 的映射不会变化，保留更久也不会读到旧状态
+        this.identifiers = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize() * 3)
+                .expireAfterWrite(ttl.multipliedBy(10))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, transactions, "payment.transaction");
+    }
+
+    public Optional<PaymentTransactionEntity> findById(Long id, Supplier<Optional<PaymentTransactionEntity>> loader) {
+        if (!enabled || id == null) {
+            return loader.get();
+        }
+        PaymentTransactionEntity cached = transactions.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copyOf(cached));
+        }
+        return load(loader);
+    }
+
+    public Optional<PaymentTransactionEntity> findByOrderId(String orderId,
+                                                            Supplier<Optional<PaymentTransactionEntity>> loader) {
+        return findByIdentifier(ORDER_ID, orderId, loader);
+    }
+
+    public Optional<PaymentTransactionEntity> findByTradeNo(String tradeNo,
+                                                            Supplier<Optional<PaymentTransactionEntity>> loader) {
+        return findByIdentifier(TRADE_NO, tradeNo, loader);
+    }
+
+    public Optional<PaymentTransactionEntity> findByPlatformTradeNo(String platformTradeNo,
+                                                                    Supplier<Optional<PaymentTransactionEntity>> loader) {
+        return findByIdentifier(PLATFORM_TRADE_NO, platformTradeNo, loader);
+    }
+
+    /**
+     * 交易被修改后移除缓存
+     * <p>
+     * 在事务内调用时，提交后会再移除一次，避免其他线程在提交前把旧数据重新放入缓存。
+     */
+    public void invalidate(Long id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    private void evict(Long id) {
+        invalidations.incrementAndGet();
+        transactions.invalidate(id);
+    }
+
+    private Optional<PaymentTransactionEntity> findByIdentifier(String prefix, String value,
+                                                                Supplier<Optional<PaymentTransactionEntity>> loader) {
+        if (!enabled || value == null) {
+            return loader.get();
+        }
+        Long id = identifiers.getIfPresent(prefix + value);
+        if (id != null) {
+            PaymentTransactionEntity cached = transactions.getIfPresent(id);
+            if (cached != null) {
+                return Optional.of(copyOf(cached));
+            }
+        }
+        return load(loader);
+    }
+
+    /**
+     * 从数据库加载，满足条件时将副本放入缓存
+     */
+    private Optional<PaymentTransactionEntity> load(Supplier<Optional<PaymentTransactionEntity>> loader) {
+        long before = invalidations.get();
+        Optional<PaymentTransactionEntity> loaded = loader.get();
+        if (loaded.isEmpty() || inReadWriteTransaction() || invalidations.get() != before) {
+            return loaded;
+        }
+        PaymentTransactionEntity transaction = loaded.get();
+        put(copyOf(transaction));
+        if (invalidations.get() != before) {
+            // 放入前后恰好发生失效，移除刚放入的数据
+            transactions.invalidate(transaction.getId());
+        }
+        return loaded;
+    }
+
+    private static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static PaymentTransactionEntity copyOf(PaymentTransactionEntity source) {
+        PaymentTransactionEntity copy = new PaymentTransactionEntity();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+
+    private void put(PaymentTransactionEntity transaction) {
+        Long id = transaction.getId();
+        transactions.put(id, transaction);
+        if (transaction.getOrderId() != null) {
+            identifiers.put(ORDER_ID + transaction.getOrderId(), id);
+        }
+        if (transaction.getTradeNo() != null) {
+            identifiers.put(TRADE_NO + transaction.getTradeNo(), id);
+        }
+        if (transaction.getPlatformTradeNo() != null) {
+            identifiers.put(PLATFORM_TRADE_NO + transaction.getPlatformTradeNo(), id);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
 import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -24,13 +25,14 @@ import java.util.Optional;
 public class PaymentTransactionService {
 
     private final PaymentTransactionRepository transactionRepository;
+    private final PaymentTransactionCache transactionCache;
 
     /**
      * 根据ID查询
      */
     @Transactional(readOnly = true)
     public Optional<PaymentTransactionEntity> findById(Long id) {
-        return transactionRepository.findById(id);
+        return transactionCache.findById(id, () -> transactionRepository.findById(id));
     }
 
     /**
@@ -38,7 +40,7 @@ public class PaymentTransactionService {
      */
     @Transactional(readOnly = true)
     public Optional<PaymentTransactionEntity> findByOrderId(String orderId) {
-        return transactionRepository.findByOrderId(orderId);
+        return transactionCache.findByOrderId(orderId, () -> transactionRepository.findByOrderId(orderId));
     }
 
     /**
@@ -46,7 +48,7 @@ public class PaymentTransactionService {
      */
     @Transactional(readOnly = true)
     public Optional<PaymentTransactionEntity> findByTradeNo(String tradeNo) {
-        return transactionRepository.findByTradeNo(tradeNo);
+        return transactionCache.findByTradeNo(tradeNo, () -> transactionRepository.findByTradeNo(tradeNo));
     }
 
     /**
@@ -54,7 +56,8 @@ public class PaymentTransactionService {
      */
     @Transactional(readOnly = true)
     public Optional<PaymentTransactionEntity> findByPlatformTradeNo(String platformTradeNo) {
-        return transactionRepository.findByPlatformTradeNo(platformTradeNo);
+        return transactionCache.findByPlatformTradeNo(platformTradeNo,
+                () -> transactionRepository.findByPlatformTradeNo(platformTradeNo));
     }
 
     /**
@@ -82,6 +85,44 @@ public class PaymentTransactionService {
                 orderId, tradeNo, platform, status, merchantId, startTime, endTime, pageable);
     }
 
+    /**
+     * 游标分页查询 - 多条件
+     *
+     * @param cursor 上一页最后一条的定位键，为 null 时查询第一页
+     * @param limit  最多返回的记录数
+     */
+    @Transactional(readOnly = true)
+    public List<PaymentTransactionEntity> findByConditionsAfter(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            SeekCursor cursor,
+            int limit) {
+        return transactionRepository.findByConditionsAfter(
+                orderId, tradeNo, platform, status, merchantId, startTime, endTime,
+                cursor, limit);
+    }
+
+    /**
+     * 统计符合条件的交易数
+     */
+    @Transactional(readOnly = true)
+    public long countByConditions(
+            String orderId,
+            String tradeNo,
+            PaymentPlatform platform,
+            TransactionStatus status,
+            String merchantId,
+            LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return transactionRepository.countByConditions(
+                orderId, tradeNo, platform, status, merchantId, startTime, endTime);
+    }
+
     /**
      * 查询超时未支付的订单
      */
@@ -112,6 +153,7 @@ public class PaymentTransactionService {
      */
     @Transactional
     public PaymentTransactionEntity update(PaymentTransactionEntity transaction) {
+        transactionCache.invalidate(transaction.getId());
         return transactionRepository.save(transaction);
     }
 
@@ -124,6 +166,7 @@ public class PaymentTransactionService {
                 .map(transaction -> {
                     transaction.setStatus(status);
                     transactionRepository.save(transaction);
+                    transactionCache.invalidate(transaction.getId());
                     log.info("更新交易状态: tradeNo={}, status={}", tradeNo, status);
                     return true;
                 })
@@ -139,6 +182,7 @@ public class PaymentTransactionService {
                 .map(transaction -> {
                     transaction.setPlatformTradeNo(platformTradeNo);
                     transactionRepository.save(transaction);
+                    transactionCache.invalidate(transaction.getId());
                     return true;
                 })
                 .orElse(false);
@@ -6,6 +6,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.nonfou.mpay.common.error.BusinessException;
 import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
+import com.github.nonfou.mpay.common.response.SeekCursor;
 import com.github.nonfou.mpay.payment.dto.alipay.AlipayRefundRequest;
 import com.github.nonfou.mpay.payment.dto.alipay.AlipayRefundResponse;
 import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundResponse;
@@ -19,25 +21,32 @@ import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
 import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
 import com.github.nonfou.mpay.transaction.enums.RefundStatus;
 import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
 import com.github.nonfou.mpay.transaction.event.RefundEvent;
+import com.github.nonfou.mpay.transaction.lock.OrderLockManager;
 import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
 import com.github.nonfou.mpay.transaction.repository.RefundRecordRepository;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * 退款服务 - 统一退款入口
+ * <p>
+ * 退款耗时按平台和结果记录到 payment.refund，成功退款金额累计到 payment.refund.amount。
  */
 @Slf4j
 @Service
@@ -46,22 +55,92 @@ public class RefundService {
 
     private final PaymentTransactionRepository transactionRepository;
     private final RefundRecordRepository refundRecordRepository;
-    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentEventPublisher eventPublisher;
     private final ObjectMapper objectMapper;
+    private final OrderLockManager orderLockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentTransactionService transactionService;
+    private final PaymentTransactionCache transactionCache;
 
     // 可选注入，根据配置决定是否可用
     private final Optional<AlipayService> alipayService;
     private final Optional<WxPayServiceWrapper> wxPayService;
+    private PaymentMetrics paymentMetrics = PaymentMetrics.NOOP;
 
     private static final DateTimeFormatter REFUND_NO_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
 
+    /**
+     * 支付宝服务不可用的网关返回码，平台是否受理未知
+     */
+    private static final String ALIPAY_UNKNOWN_CODE = "20000";
+
+    /**
+     * 支付宝系统错误子码，平台是否受理未知
+     */
+    private static final String ALIPAY_SYSTEM_ERROR = "ACQ.SYSTEM_ERROR";
+
+    /**
+     * 微信支付系统错误码，平台是否受理未知，需用原退款单号重试或查询
+     */
+    private static final Set<String> WXPAY_UNKNOWN_ERR_CODES = Set.of("SYSTEMERROR", "BIZERR_NEED_RETRY");
+
+    @Autowired(required = false)
+    public void setPaymentMetrics(PaymentMetrics paymentMetrics) {
+        this.paymentMetrics = paymentMetrics;
+    }
+
     /**
      * 发起退款
+     * <p>
+     * 调用支付平台时不持有订单锁和数据库事务，分三步执行：
+     * <ol>
+     *   <li>持有订单锁开启事务，重新读取交易、校验并预占退款金额，保存待处理的退款记录；</li>
+     *   <li>释放锁后调用支付平台退款；</li>
+     *   <li>再次持有订单锁开启事务，更新退款记录，平台明确拒绝时释放预占金额，并发布退款事件。</li>
+     * </ol>
+     * 第 3 步之前平台的退款通知可能已先到达并确定了退款结果，此时只补充平台返回的数据。
+     * 调用超时、连接中断或平台系统错误时无法确定平台是否已受理，释放金额后再次退款可能超退，
+     * 因此与第 3 步失败时一样，退款记录保持待处理、金额保持预占，由退款通知或人工核对确定结果。
      */
-    @Transactional
     public RefundResponse refund(RefundRequest request) {
-        long startTime = System.currentTimeMillis();
+        Timer.Sample sample = paymentMetrics.start();
+        RefundResponse response = null;
+        try {
+            long startTime = System.currentTimeMillis();
+            String orderId = resolveOrderId(request);
+            PendingRefund pending = orderLockManager.executeWithLock(orderId,
+                    () -> transactionTemplate.execute(status -> prepareRefund(request)));
+
+            RefundResponse result = callPlatform(pending, request);
+
+            long duration = System.currentTimeMillis() - startTime;
+            try {
+                orderLockManager.runWithLock(orderId, () -> transactionTemplate.executeWithoutResult(
+                        status -> completeRefund(pending, request, result, duration)));
+            } catch (RuntimeException e) {
+                log.error("更新退款结果失败，退款记录保持待处理，需人工核对: refundNo={}, success={}",
+                        pending.refundRecord().getRefundNo(), result.isSuccess(), e);
+            }
+            response = result;
+            return response;
+        } finally {
+            String outcome = response == null || response.isPending() ? PaymentMetrics.ERROR
+                    : response.isSuccess() ? PaymentMetrics.SUCCESS : PaymentMetrics.FAILURE;
+            paymentMetrics.recordRefund(sample, response != null ? response.getPlatform() : null, outcome,
+                    request.getRefundAmount());
+        }
+    }
+
+    /**
+     * 已预占金额、待调用平台的退款
+     */
+    private record PendingRefund(PaymentTransactionEntity transaction, RefundRecordEntity refundRecord) {
+    }
 
+    /**
+     * 校验并预占退款金额，保存待处理的退款记录（持有订单锁，在事务内执行）
+     */
+    private PendingRefund prepareRefund(RefundRequest request) {
         // 1. 查找原交易
         PaymentTransactionEntity transaction = findTransaction(request);
 
@@ -71,46 +150,109 @@ public class RefundService {
         // 3. 生成退款单号
         String refundNo = generateRefundNo();
 
-        // 4. 创建退款记录（待处理状态）
+        // 4. 预占退款金额，保存待处理的退款记录
         RefundRecordEntity refundRecord = createRefundRecord(transaction, request, refundNo);
+        reserveRefundAmount(transaction, request.getRefundAmount());
+        refundRecordRepository.save(refundRecord);
 
-        // 5. 调用支付平台退款
-        RefundResponse response;
-        try {
-            response = executeRefund(transaction, refundRecord, request);
-            refundRecord.setRawResponse(toJson(response));
-
-            if (response.isSuccess()) {
-                refundRecord.setStatus(RefundStatus.SUCCESS);
-                refundRecord.setPlatformRefundNo(response.getPlatformRefundNo());
-                refundRecord.setRefundedAt(LocalDateTime.now());
+        return new PendingRefund(transaction, refundRecord);
+    }
 
-                // 更新交易退款金额
-                updateTransactionRefundAmount(transaction, request.getRefundAmount());
-            } else {
-                refundRecord.setStatus(RefundStatus.FAILED);
-            }
+    /**
+     * 调用支付平台退款（不持有订单锁和事务），调用异常时返回失败响应
+     * <p>
+     * 请求未发出（服务未配置、熔断、限流）或平台明确拒绝时为失败；无法确定平台是否受理时标记为处理中
+     */
+    private RefundResponse callPlatform(PendingRefund pending, RefundRequest request) {
+        try {
+            return executeRefund(pending.transaction(), pending.refundRecord(), request);
         } catch (Exception e) {
-            log.error("退款失败: refundNo={}", refundNo, e);
-            refundRecord.setStatus(RefundStatus.FAILED);
-            refundRecord.setRawResponse(e.getMessage());
-
-            response = RefundResponse.builder()
+            boolean unknown = isOutcomeUnknown(e);
+            log.error("退款失败: refundNo={}, outcomeUnknown={}", pending.refundRecord().getRefundNo(), unknown, e);
+            return RefundResponse.builder()
                     .success(false)
-                    .refundNo(refundNo)
-                    .resultCode("FAIL")
+                    .pending(unknown)
+                    .refundNo(pending.refundRecord().getRefundNo())
+                    .resultCode(unknown ? "UNKNOWN" : "FAIL")
                     .resultMessage(e.getMessage())
+                    .platform(pending.transaction().getPlatform())
                     .build();
         }
+    }
 
-        // 6. 保存退款记录
-        refundRecordRepository.save(refundRecord);
+    /**
+     * 调用异常时平台是否受理未知
+     * <p>
+     * BusinessException 在请求发出前抛出；微信支付异常带错误码时为平台明确拒绝，系统错误码除外；
+     * 其余异常（超时、连接中断、应答解析或验签失败）都可能发生在平台受理之后
+     */
+    private static boolean isOutcomeUnknown(Exception e) {
+        if (e instanceof BusinessException) {
+            return false;
+        }
+        if (e instanceof WxPayException wx) {
+            if (wx.getErrCode() != null) {
+                return WXPAY_UNKNOWN_ERR_CODES.contains(wx.getErrCode());
+            }
+            // 通信标识为 FAIL 表示平台未受理该请求（如签名错误、参数格式错误）
+            return !"FAIL".equals(wx.getReturnCode());
+        }
+        return true;
+    }
 
-        // 7. 发布退款事件
-        long duration = System.currentTimeMillis() - startTime;
-        publishRefundEvent(transaction, refundRecord, request, response, duration);
+    /**
+     * 按平台返回结果更新退款记录并发布退款事件（持有订单锁，在事务内执行）
+     */
+    private void completeRefund(PendingRefund pending,
+                                RefundRequest request,
+                                RefundResponse response,
+                                long duration) {
+        RefundRecordEntity refundRecord = refundRecordRepository.findById(pending.refundRecord().getId())
+                .orElseThrow(() -> new IllegalStateException(
+                        "退款记录不存在: refundNo=" + pending.refundRecord().getRefundNo()));
+        refundRecord.setRawResponse(toJson(response));
+
+        if (refundRecord.getStatus() != RefundStatus.PENDING) {
+            // 退款通知已先到达，状态和金额均已由通知处理
+            log.info("退款结果已由平台通知确定: refundNo={}, status={}",
+                    refundRecord.getRefundNo(), refundRecord.getStatus());
+            if (refundRecord.getPlatformRefundNo() == null) {
+                refundRecord.setPlatformRefundNo(response.getPlatformRefundNo());
+            }
+        } else if (response.isSuccess()) {
+            refundRecord.setStatus(RefundStatus.SUCCESS);
+            refundRecord.setPlatformRefundNo(response.getPlatformRefundNo());
+            refundRecord.setRefundedAt(LocalDateTime.now());
+        } else if (response.isPending()) {
+            // 平台可能已受理，释放金额后再次退款可能超退；保持待处理和预占，由退款通知或人工核对确定结果
+            log.warn("退款结果未知，退款记录保持待处理: refundNo={}, resultCode={}",
+                    refundRecord.getRefundNo(), response.getResultCode());
+        } else {
+            refundRecord.setStatus(RefundStatus.FAILED);
+            releaseRefundAmount(pending.transaction(), request.getRefundAmount());
+        }
 
-        return response;
+        refundRecordRepository.save(refundRecord);
+        publishRefundEvent(pending.transaction(), refundRecord, request, response, duration);
+    }
+
+    /**
+     * 解析原交易的订单号（加锁前使用，可读缓存；订单号不会变化）
+     */
+    private String resolveOrderId(RefundRequest request) {
+        Optional<PaymentTransactionEntity> transaction = Optional.empty();
+        if (request.getTradeNo() != null) {
+            transaction = transactionService.findByTradeNo(request.getTradeNo());
+        }
+        if (transaction.isEmpty() && request.getOrderId() != null) {
+            transaction = transactionService.findByOrderId(request.getOrderId());
+        }
+        if (transaction.isEmpty() && request.getPlatformTradeNo() != null) {
+            transaction = transactionService.findByPlatformTradeNo(request.getPlatformTradeNo());
+        }
+        return transaction
+                .map(PaymentTransactionEntity::getOrderId)
+                .orElseThrow(() -> new BusinessException(ErrorCode.TRANSACTION_NOT_FOUND, "未找到原交易记录"));
     }
 
     /**
@@ -232,9 +374,12 @@ public class RefundService {
         AlipayRefundResponse alipayResponse = alipayService.get().refund(alipayRequest);
 
         boolean success = "10000".equals(alipayResponse.getCode());
+        boolean unknown = ALIPAY_UNKNOWN_CODE.equals(alipayResponse.getCode())
+                || ALIPAY_SYSTEM_ERROR.equals(alipayResponse.getSubCode());
 
         return RefundResponse.builder()
                 .success(success)
+                .pending(!success && unknown)
                 .refundNo(refundRecord.getRefundNo())
                 .platformRefundNo(alipayResponse.getTradeNo())
                 .refundAmount(request.getRefundAmount())
@@ -270,6 +415,7 @@ public class RefundService {
 
         return RefundResponse.builder()
                 .success(success)
+                .pending(!success && WXPAY_UNKNOWN_ERR_CODES.contains(wxResponse.getErrCode()))
                 .refundNo(refundRecord.getRefundNo())
                 .platformRefundNo(wxResponse.getRefundId())
                 .refundAmount(request.getRefundAmount())
@@ -280,24 +426,30 @@ public class RefundService {
     }
 
     /**
-     * 更新交易退款金额
+     * 预占退款金额
+     * <p>
+     * 调用支付平台前通过条件更新原子累加已退款金额，不依赖内存中可能已过期的 refundedAmount。
+     * 更新未生效说明可退金额已被其他退款占用，此时尚未请求平台，直接拒绝即可，不会出现平台已退而本地超额的情况。
+     * 已退款金额因此包含处理中和已成功的退款，平台未受理或退款失败时再释放。
      */
-    private void updateTransactionRefundAmount(PaymentTransactionEntity transaction, BigDecimal refundAmount) {
-        BigDecimal currentRefunded = transaction.getRefundedAmount();
-        if (currentRefunded == null) {
-            currentRefunded = BigDecimal.ZERO;
+    private void reserveRefundAmount(PaymentTransactionEntity transaction, BigDecimal refundAmount) {
+        int updated = transactionRepository.addRefundedAmount(transaction.getId(), refundAmount, LocalDateTime.now());
+        transactionCache.invalidate(transaction.getId());
+        if (updated == 0) {
+            throw new BusinessException(ErrorCode.EXCEED_REFUND_AMOUNT, "退款金额超出可退款金额");
         }
-        BigDecimal newRefunded = currentRefunded.add(refundAmount);
-        transaction.setRefundedAmount(newRefunded);
+    }
 
-        // 判断是否全部退款
-        if (newRefunded.compareTo(transaction.getAmount()) >= 0) {
-            transaction.setStatus(TransactionStatus.REFUNDED);
-        } else {
-            transaction.setStatus(TransactionStatus.PARTIAL_REFUNDED);
+    /**
+     * 释放预占的退款金额
+     */
+    private void releaseRefundAmount(PaymentTransactionEntity transaction, BigDecimal refundAmount) {
+        int updated = transactionRepository.releaseRefundedAmount(transaction.getId(), refundAmount, LocalDateTime.now());
+        transactionCache.invalidate(transaction.getId());
+        if (updated == 0) {
+            log.error("释放预占的退款金额未生效，已退款金额需人工核对: transactionId={}, refundAmount={}",
+                    transaction.getId(), refundAmount);
         }
-
-        transactionRepository.save(transaction);
     }
 
     /**
@@ -329,7 +481,7 @@ public class RefundService {
                 .operator(request.getOperator())
                 .build();
 
-        eventPublisher.publishEvent(event);
+        eventPublisher.publish(event);
     }
 
     /**
@@ -371,6 +523,39 @@ public class RefundService {
                 orderId, refundNo, platform, status, startTime, endTime, pageable);
     }
 
+    /**
+     * 游标分页查询
+     *
+     * @param cursor 上一页最后一条的定位键，为 null 时查询第一页
+     * @param limit  最多返回的记录数
+     */
+    @Transactional(readOnly = true)
+    public List<RefundRecordEntity> findByConditionsAfter(String orderId,
+                                                          String refundNo,
+                                                          PaymentPlatform platform,
+                                                          RefundStatus status,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          SeekCursor cursor,
+                                                          int limit) {
+        return refundRecordRepository.findByConditionsAfter(
+                orderId, refundNo, platform, status, startTime, endTime,
+                cursor, limit);
+    }
+
+    /**
+     * 统计符合条件的退款数
+     */
+    @Transactional(readOnly = true)
+    public long countByConditions(String orderId,
+                                  String refundNo,
+                                  PaymentPlatform platform,
+                                  RefundStatus status,
+                                  LocalDateTime startTime,
+                                  LocalDateTime endTime) {
+        return refundRecordRepository.countByConditions(orderId, refundNo, platform, status, startTime, endTime);
+    }
+
     /**
      * 转换为 JSON
      */
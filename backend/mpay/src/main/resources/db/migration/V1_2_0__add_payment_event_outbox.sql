@@ -0,0 +1,23 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.2.0
+-- 说明: 新增支付事件发件箱表
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. 创建事件发件箱表 (payment_event_outbox)
+-- ------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS payment_event_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    event_kind VARCHAR(16) NOT NULL COMMENT '事件类别: PAYMENT/REFUND',
+    event_type VARCHAR(32) COMMENT '事件类型',
+    order_id VARCHAR(64) COMMENT '商户订单号',
+    payload TEXT NOT NULL COMMENT '事件内容(JSON)',
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING' COMMENT '投递状态: PENDING/DONE/FAILED',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已尝试投递次数',
+    last_error VARCHAR(512) COMMENT '最近一次投递失败原因',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    processed_at DATETIME COMMENT '投递完成时间',
+    INDEX idx_outbox_status_id (status, id),
+    INDEX idx_outbox_order_id (order_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付事件发件箱表';
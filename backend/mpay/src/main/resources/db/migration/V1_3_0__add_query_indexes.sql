@@ -0,0 +1,30 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.3.0
+-- 说明: 按实际查询方式调整交易和退款表索引，由数据库保证交易号和退款单号唯一
+-- 注意: 执行前需确认 trade_no、refund_no 不存在重复数据
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. payment_transaction
+-- ------------------------------------------------------------
+-- findExpiredOrders / countByStatusAndTimeRange: status 等值 + created_at 范围
+-- findByMerchantIdOrderByCreatedAtDesc: merchant_id 等值 + created_at 排序
+-- 单列 status 索引被 (status, created_at) 覆盖，一并删除
+-- trade_no 列在 1.0.0 中已存在，V1_1_0 的 ADD COLUMN IF NOT EXISTS 不会执行，列上只有普通索引，
+-- 这里改为唯一索引，由数据库保证交易号唯一
+ALTER TABLE payment_transaction
+    DROP INDEX idx_payment_trans_trade_no,
+    ADD UNIQUE INDEX uk_payment_trans_trade_no (trade_no),
+    DROP INDEX idx_payment_trans_status,
+    ADD INDEX idx_payment_trans_status_created (status, created_at),
+    ADD INDEX idx_payment_trans_merchant_created (merchant_id, created_at);
+
+-- ------------------------------------------------------------
+-- 2. refund_record
+-- ------------------------------------------------------------
+ALTER TABLE refund_record
+    DROP INDEX idx_refund_no,
+    DROP INDEX idx_refund_status,
+    ADD UNIQUE INDEX uk_refund_no (refund_no),
+    ADD INDEX idx_refund_status_created (status, created_at);
@@ -0,0 +1,14 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.4.0
+-- 说明: 新增定时任务租约表，多节点部署时用于选出执行定时任务的主节点
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. 创建定时任务租约表 (scheduler_lease)
+-- ------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS scheduler_lease (
+    name VARCHAR(64) PRIMARY KEY COMMENT '任务名称',
+    owner VARCHAR(128) NOT NULL COMMENT '当前持有者',
+    expires_at DATETIME NOT NULL COMMENT '租约到期时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='定时任务租约表';
@@ -0,0 +1,12 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.5.0
+-- 说明: 发件箱事件投递失败后按指数退避推迟下次投递
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. payment_event_outbox
+-- ------------------------------------------------------------
+ALTER TABLE payment_event_outbox
+    ADD COLUMN next_attempt_at DATETIME COMMENT '下次允许投递的时间，为空表示立即投递' AFTER last_error,
+    ADD INDEX idx_outbox_status_next_attempt (status, next_attempt_at);
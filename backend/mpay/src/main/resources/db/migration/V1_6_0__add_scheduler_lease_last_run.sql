@@ -0,0 +1,11 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.6.0
+-- 说明: 记录定时任务上次成功执行的时间，重启或主节点切换后从该时间继续
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. scheduler_lease
+-- ------------------------------------------------------------
+ALTER TABLE scheduler_lease
+    ADD COLUMN last_run_at DATETIME COMMENT '上次成功执行的时间，为空表示尚未执行' AFTER expires_at;
@@ -0,0 +1,14 @@
+-- ============================================================
+-- Easy-Pay 数据库迁移脚本
+-- 版本: 1.7.0
+-- 说明: 记录每笔订单自身的超时时间，超时关单按该时间而不是统一的 expire-minutes 判断
+-- ============================================================
+
+-- ------------------------------------------------------------
+-- 1. payment_transaction
+-- ------------------------------------------------------------
+-- expire_at 由下单时的 timeout_express 等参数计算；为空的历史订单仍按 created_at + expire-minutes 兜底，无需回填
+-- 超时关单扫描: status 等值 + expire_at 范围
+ALTER TABLE payment_transaction
+    ADD COLUMN expire_at DATETIME COMMENT '订单超时时间，为空表示按全局超时时间兜底' AFTER paid_at,
+    ADD INDEX idx_payment_trans_status_expire (status, expire_at);
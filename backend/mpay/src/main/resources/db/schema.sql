@@ -1,8 +1,9 @@
 -- ============================================================
 -- Easy-Pay 数据库初始化脚本
--- 版本: 1.0.0
+-- 版本: 1.7.0
 -- 生成时间: 2025-11-29
--- 说明: 包含所有表结构和初始数据
+-- 说明: 包含所有表结构和初始数据，已合并 db/migration 下截至 1.7.0 的全部变更
+-- 注意: 全新安装只需执行本脚本；已有数据库按版本依次执行 db/migration 下的迁移脚本
 -- ============================================================
 
 -- 创建数据库 (如果需要)
@@ -113,18 +114,31 @@ CREATE TABLE IF NOT EXISTS order_notify_log (
 CREATE TABLE IF NOT EXISTS payment_transaction (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     order_id VARCHAR(255) NOT NULL COMMENT '系统订单号',
+    trade_no VARCHAR(64) NOT NULL COMMENT '系统交易号',
+    platform_trade_no VARCHAR(64) COMMENT '平台交易号',
     platform VARCHAR(50) NOT NULL COMMENT '支付平台: alipay/wxpay',
-    trade_no VARCHAR(255) COMMENT '平台交易号',
     trade_type VARCHAR(50) COMMENT '交易类型: NATIVE/JSAPI/H5/PC',
     amount DECIMAL(10,2) NOT NULL COMMENT '交易金额',
+    refunded_amount DECIMAL(10,2) DEFAULT 0 COMMENT '已退款金额',
     status VARCHAR(50) NOT NULL COMMENT '交易状态: PENDING/SUCCESS/FAILED/REFUND',
+    subject VARCHAR(256) COMMENT '商品描述',
     raw_request TEXT COMMENT '原始请求数据',
     raw_response TEXT COMMENT '原始响应数据',
+    notify_data TEXT COMMENT '回调通知数据',
+    paid_at DATETIME COMMENT '支付成功时间',
+    expire_at DATETIME COMMENT '订单超时时间，为空表示按全局超时时间兜底',
+    client_ip VARCHAR(64) COMMENT '客户端IP',
+    merchant_id VARCHAR(64) COMMENT '商户ID',
+    extra_data TEXT COMMENT '扩展数据',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_payment_trans_order (order_id),
-    INDEX idx_payment_trans_trade_no (trade_no),
-    INDEX idx_payment_trans_status (status)
+    UNIQUE INDEX uk_payment_trans_trade_no (trade_no),
+    INDEX idx_payment_trans_platform_trade (platform_trade_no),
+    INDEX idx_payment_trans_created (created_at),
+    INDEX idx_payment_trans_status_created (status, created_at),
+    INDEX idx_payment_trans_status_expire (status, expire_at),
+    INDEX idx_payment_trans_merchant_created (merchant_id, created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付交易记录表';
 
 -- ------------------------------------------------------------
@@ -132,21 +146,86 @@ CREATE TABLE IF NOT EXISTS payment_transaction (
 -- ------------------------------------------------------------
 CREATE TABLE IF NOT EXISTS refund_record (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    transaction_id BIGINT COMMENT '关联交易ID',
     order_id VARCHAR(255) NOT NULL COMMENT '系统订单号',
     refund_no VARCHAR(255) NOT NULL COMMENT '退款单号',
     platform VARCHAR(50) NOT NULL COMMENT '支付平台: alipay/wxpay',
     platform_refund_no VARCHAR(255) COMMENT '平台退款单号',
+    platform_trade_no VARCHAR(64) COMMENT '原支付平台交易号',
     refund_amount DECIMAL(10,2) NOT NULL COMMENT '退款金额',
     refund_reason VARCHAR(500) COMMENT '退款原因',
+    raw_request TEXT COMMENT '原始请求数据',
     status VARCHAR(50) NOT NULL COMMENT '退款状态: PENDING/SUCCESS/FAILED',
     raw_response TEXT COMMENT '原始响应数据',
+    notify_data TEXT COMMENT '退款回调数据',
+    refunded_at DATETIME COMMENT '退款成功时间',
+    operator VARCHAR(64) COMMENT '操作人',
+    extra_data TEXT COMMENT '扩展数据',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_refund_order (order_id),
-    INDEX idx_refund_no (refund_no),
-    INDEX idx_refund_status (status)
+    UNIQUE INDEX uk_refund_no (refund_no),
+    INDEX idx_refund_transaction (transaction_id),
+    INDEX idx_refund_platform_refund (platform_refund_no),
+    INDEX idx_refund_created (created_at),
+    INDEX idx_refund_status_created (status, created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='退款记录表';
 
+-- ------------------------------------------------------------
+-- 8. 支付事件日志表 (payment_event_log)
+-- ------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS payment_event_log (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    order_id VARCHAR(64) COMMENT '商户订单号',
+    transaction_id BIGINT COMMENT '关联交易ID',
+    refund_id BIGINT COMMENT '关联退款ID',
+    event_type VARCHAR(32) NOT NULL COMMENT '事件类型: CREATE/NOTIFY/QUERY/CLOSE/REFUND_CREATE/REFUND_NOTIFY/REFUND_QUERY',
+    platform VARCHAR(20) COMMENT '支付平台',
+    request_data TEXT COMMENT '请求数据',
+    response_data TEXT COMMENT '响应数据',
+    result_code VARCHAR(32) COMMENT '结果码',
+    result_message VARCHAR(512) COMMENT '结果消息',
+    success TINYINT(1) COMMENT '是否成功',
+    duration_ms BIGINT COMMENT '耗时(毫秒)',
+    client_ip VARCHAR(64) COMMENT '客户端IP',
+    extra_data TEXT COMMENT '扩展数据',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    INDEX idx_event_order (order_id),
+    INDEX idx_event_transaction (transaction_id),
+    INDEX idx_event_type (event_type),
+    INDEX idx_event_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付事件日志表';
+
+-- ------------------------------------------------------------
+-- 9. 支付事件发件箱表 (payment_event_outbox)
+-- ------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS payment_event_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    event_kind VARCHAR(16) NOT NULL COMMENT '事件类别: PAYMENT/REFUND',
+    event_type VARCHAR(32) COMMENT '事件类型',
+    order_id VARCHAR(64) COMMENT '商户订单号',
+    payload TEXT NOT NULL COMMENT '事件内容(JSON)',
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING' COMMENT '投递状态: PENDING/DONE/FAILED',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已尝试投递次数',
+    last_error VARCHAR(512) COMMENT '最近一次投递失败原因',
+    next_attempt_at DATETIME COMMENT '下次允许投递的时间，为空表示立即投递',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    processed_at DATETIME COMMENT '投递完成时间',
+    INDEX idx_outbox_status_id (status, id),
+    INDEX idx_outbox_status_next_attempt (status, next_attempt_at),
+    INDEX idx_outbox_order_id (order_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付事件发件箱表';
+
+-- ------------------------------------------------------------
+-- 10. 定时任务租约表 (scheduler_lease)
+-- ------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS scheduler_lease (
+    name VARCHAR(64) PRIMARY KEY COMMENT '任务名称',
+    owner VARCHAR(128) NOT NULL COMMENT '当前持有者',
+    expires_at DATETIME NOT NULL COMMENT '租约到期时间',
+    last_run_at DATETIME COMMENT '上次成功执行的时间，为空表示尚未执行'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='定时任务租约表';
+
 -- ============================================================
 -- 初始数据
 -- ============================================================
@@ -0,0 +1,112 @@
+package com.github.nonfou.mpay.benchmark;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.service.AlipaySignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付宝回调验签基准测试 - SDK rsaCheckV1 vs 缓存公钥的 AlipaySignatureVerifier
+ * <p>
+ * 以一条约 20 个字段的交易状态通知为输入，SDK 路径与 AlipayService 原实现一致：先把请求参数复制成 Map，
+ * 每次验签都重新解码公钥、创建 Signature。
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以 org.openjdk.jmh.Main 启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AlipaySignatureBenchmark {
+
+    private static final String CHARSET = "utf-8";
+    private static final String SIGN_TYPE = "RSA2";
+
+    private String publicKey;
+    private Map<String, String[]> parameterMap;
+    private AlipaySignatureVerifier verifier;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException, AlipayApiException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("gmt_create", "2024-01-01 12:00:00");
+        fields.put("gmt_payment", "2024-01-01 12:00:05");
+        fields.put("notify_time", "2024-01-01 12:00:06");
+        fields.put("notify_type", "trade_status_sync");
+        fields.put("notify_id", "2024010100222120005000000000000000");
+        fields.put("app_id", "2021000000000000");
+        fields.put("auth_app_id", "2021000000000000");
+        fields.put("seller_id", "2088000000000000");
+        fields.put("buyer_id", "2088102000000000");
+        fields.put("charset", CHARSET);
+        fields.put("version", "1.0");
+        fields.put("trade_no", "2024010122001400000000000001");
+        fields.put("out_trade_no", "ORDER_20240101120000000001");
+        fields.put("trade_status", "TRADE_SUCCESS");
+        fields.put("total_amount", "88.88");
+        fields.put("receipt_amount", "88.88");
+        fields.put("buyer_pay_amount", "88.88");
+        fields.put("invoice_amount", "88.88");
+        fields.put("point_amount", "0.00");
+        fields.put("subject", "测试商品");
+        fields.put("fund_bill_list", "[{\"amount\":\"88.88\",\"fundChannel\":\"ALIPAYACCOUNT\"}]");
+
+        String sign = AlipaySignature.rsaSign(AlipaySignature.getSignCheckContentV1(new HashMap<>(fields)),
+                privateKey, CHARSET, SIGN_TYPE);
+        parameterMap = new LinkedHashMap<>();
+        fields.forEach((name, value) -> parameterMap.put(name, new String[]{value}));
+        parameterMap.put("sign", new String[]{sign});
+        parameterMap.put("sign_type", new String[]{SIGN_TYPE});
+
+        verifier = new AlipaySignatureVerifier(publicKey, CHARSET, SIGN_TYPE);
+    }
+
+    @Benchmark
+    public boolean sdk() throws AlipayApiException {
+        Map<String, String> params = new HashMap<>();
+        parameterMap.forEach((name, values) -> params.put(name, String.join(",", values)));
+        return AlipaySignature.rsaCheckV1(params, publicKey, CHARSET, SIGN_TYPE);
+    }
+
+    @Benchmark
+    public boolean cached() throws AlipayApiException {
+        return verifier.verifyV1(parameterMap);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AlipaySignatureBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.nonfou.mpay.benchmark;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.transport.PooledAlipaySigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付宝请求签名基准测试 - SDK DefaultSigner（每次解码私钥）vs PooledAlipaySigner
+ * <p>
+ * 以一次当面付预下单请求的公共参数 + 业务参数为输入，包含拼接待签名字符串与 RSA2 签名，
+ * 单线程吞吐即每核每秒可签名的请求数。
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以 org.openjdk.jmh.Main 启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class AlipaySignerBenchmark {
+
+    private static final String CHARSET = "utf-8";
+    private static final String SIGN_TYPE = "RSA2";
+
+    private String privateKey;
+    private Map<String, String> params;
+    private PooledAlipaySigner signer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = Base64.getEncoder().encodeToString(generator.generateKeyPair().getPrivate().getEncoded());
+
+        params = new TreeMap<>();
+        params.put("app_id", "2021000000000000");
+        params.put("method", "alipay.trade.precreate");
+        params.put("format", "JSON");
+        params.put("charset", CHARSET);
+        params.put("sign_type", SIGN_TYPE);
+        params.put("timestamp", "2024-01-01 12:00:00");
+        params.put("version", "1.0");
+        params.put("notify_url", "https://pay.example.com/api/alipay/notify");
+        params.put("biz_content", "{\"out_trade_no\":\"ORDER_20240101120000000001\",\"total_amount\":\"88.88\","
+                + "\"subject\":\"测试商品\",\"timeout_express\":\"30m\"}");
+
+        signer = new PooledAlipaySigner(privateKey, SIGN_TYPE, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @Benchmark
+    public String sdk() throws AlipayApiException {
+        return AlipaySignature.rsaSign(AlipaySignature.getSignContent(params), privateKey, CHARSET, SIGN_TYPE);
+    }
+
+    @Benchmark
+    public String pooled() {
+        return signer.sign(AlipaySignature.getSignContent(params), SIGN_TYPE, CHARSET);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AlipaySignerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.nonfou.mpay.benchmark;
+
+import com.github.nonfou.mpay.common.timer.HierarchicalTimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单定时器基准测试 - 分层时间轮 vs ScheduledThreadPoolExecutor
+ * <p>
+ * 预先注册 pendingTimers 个 30 分钟内到期的定时任务（模拟未支付订单），
+ * 测量再注册并取消一个定时任务（订单创建后很快支付）的开销。
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以 org.openjdk.jmh.Main 启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class OrderTimerBenchmark {
+
+    private static final long MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Param({"10000", "1000000"})
+    private int pendingTimers;
+
+    private HierarchicalTimingWheel wheel;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wheel = new HierarchicalTimingWheel("benchmark-wheel", 100, 512, Runnable::run);
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pendingTimers; i++) {
+            long delay = randomDelay();
+            wheel.schedule(NOOP, delay);
+            scheduler.schedule(NOOP, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.close();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean timingWheel() {
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(NOOP, randomDelay());
+        return timeout.cancel();
+    }
+
+    @Benchmark
+    public boolean scheduledExecutor() {
+        ScheduledFuture<?> future = scheduler.schedule(NOOP, randomDelay(), TimeUnit.MILLISECONDS);
+        return future.cancel(false);
+    }
+
+    private static long randomDelay() {
+        return ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toMillis(1), MAX_DELAY_MS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderTimerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
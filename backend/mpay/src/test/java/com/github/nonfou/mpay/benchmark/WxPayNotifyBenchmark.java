@@ -0,0 +1,124 @@
+package com.github.nonfou.mpay.benchmark;
+
+import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.impl.WxPayServiceImpl;
+import com.github.binarywang.wxpay.util.SignUtils;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.service.WxPayNotifyParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 微信支付结果通知解析基准测试 - 读成字符串后由 SDK 解析 vs StAX 流式解析
+ * <p>
+ * 以一条带优惠券字段的 NATIVE 支付结果通知为输入（约 1KB），两条路径都包含读取请求体、解析和 MD5 验签。
+ * 建议配合 -prof gc 观察每次解析的内存分配。
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以 org.openjdk.jmh.Main 启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WxPayNotifyBenchmark {
+
+    private static final String MCH_KEY = "192006250b4c09247ec02edce69f6a2d";
+
+    private byte[] body;
+    private WxPayServiceImpl wxPayService;
+    private WxPayNotifyParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("appid", "wx2421b1c4370ec43b");
+        fields.put("attach", "ORDER_20240101120000000001");
+        fields.put("bank_type", "CMB_DEBIT");
+        fields.put("cash_fee", "8388");
+        fields.put("coupon_count", "1");
+        fields.put("coupon_fee", "500");
+        fields.put("coupon_fee_0", "500");
+        fields.put("coupon_id_0", "10000000000000000001");
+        fields.put("device_info", "WEB");
+        fields.put("fee_type", "CNY");
+        fields.put("is_subscribe", "N");
+        fields.put("mch_id", "10000100");
+        fields.put("nonce_str", "5d2b6c2a8db53831f7eda20af46e531c");
+        fields.put("openid", "oUpF8uMEb4qRXf22hE3X68TekukE");
+        fields.put("out_trade_no", "ORDER_20240101120000000001");
+        fields.put("result_code", "SUCCESS");
+        fields.put("return_code", "SUCCESS");
+        fields.put("settlement_total_fee", "8388");
+        fields.put("time_end", "20240101120005");
+        fields.put("total_fee", "8888");
+        fields.put("trade_type", "NATIVE");
+        fields.put("transaction_id", "4200000000202401010000000001");
+        fields.put("sign", SignUtils.createSign(fields, null, MCH_KEY, null));
+
+        StringBuilder xml = new StringBuilder("<xml>\n");
+        fields.forEach((name, value) ->
+                xml.append("  <").append(name).append("><![CDATA[").append(value).append("]]></").append(name).append(">\n"));
+        body = xml.append("</xml>").toString().getBytes(StandardCharsets.UTF_8);
+
+        WxPayConfig config = new WxPayConfig();
+        config.setAppId("wx2421b1c4370ec43b");
+        config.setMchId("10000100");
+        config.setMchKey(MCH_KEY);
+        wxPayService = new WxPayServiceImpl();
+        wxPayService.setConfig(config);
+        parser = new WxPayNotifyParser(MCH_KEY, 64 * 1024);
+    }
+
+    /**
+     * 原实现：逐行读入 StringBuilder，再交给 SDK 解析验签
+     */
+    @Benchmark
+    public WxPayOrderNotifyResult sdk() throws IOException, WxPayException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+        }
+        return wxPayService.parseOrderNotifyResult(sb.toString());
+    }
+
+    @Benchmark
+    public WxPayCallbackDTO streaming() throws WxPayException {
+        return parser.parse(new ByteArrayInputStream(body), body.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WxPayNotifyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.nonfou.mpay.benchmark;
+
+import com.github.binarywang.wxpay.bean.notify.WxPayRefundNotifyResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.impl.WxPayServiceImpl;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
+import com.github.nonfou.mpay.payment.service.WxPayNotifyParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 微信退款结果通知基准测试 - SDK parseRefundNotifyResult vs 缓存 AES 密钥的流式解析
+ * <p>
+ * 预先生成 corpusSize 条退款单号、金额、状态各不相同的加密通知，每次随机取一条解析，
+ * 两条路径都包含解析外层 XML、解密 req_info 和解析解密后的 XML。
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以 org.openjdk.jmh.Main 启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WxPayRefundNotifyBenchmark {
+
+    private static final String MCH_KEY = "192006250b4c09247ec02edce69f6a2d";
+    private static final String[] REFUND_STATUSES = {"SUCCESS", "SUCCESS", "SUCCESS", "CHANGE", "REFUNDCLOSE"};
+
+    @Param({"1000"})
+    private int corpusSize;
+
+    private String[] corpus;
+    private byte[][] corpusBytes;
+    private WxPayServiceImpl wxPayService;
+    private WxPayNotifyParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        byte[] key = HexFormat.of().formatHex(MessageDigest.getInstance("MD5")
+                .digest(MCH_KEY.getBytes(StandardCharsets.UTF_8))).getBytes(StandardCharsets.UTF_8);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        corpus = new String[corpusSize];
+        corpusBytes = new byte[corpusSize][];
+        for (int i = 0; i < corpusSize; i++) {
+            int totalFee = random.nextInt(100, 1_000_000);
+            int refundFee = random.nextInt(1, totalFee + 1);
+            String reqInfo = "<root>"
+                    + "<out_refund_no><![CDATA[REFUND_" + (100000 + i) + "]]></out_refund_no>"
+                    + "<out_trade_no><![CDATA[ORDER_" + (100000 + i) + "]]></out_trade_no>"
+                    + "<refund_account><![CDATA[REFUND_SOURCE_RECHARGE_FUNDS]]></refund_account>"
+                    + "<refund_fee><![CDATA[" + refundFee + "]]></refund_fee>"
+                    + "<refund_id><![CDATA[5000000038201905270" + (1000000000L + i) + "]]></refund_id>"
+                    + "<refund_recv_accout><![CDATA[支付用户零钱]]></refund_recv_accout>"
+                    + "<refund_request_source><![CDATA[API]]></refund_request_source>"
+                    + "<refund_status><![CDATA[" + REFUND_STATUSES[i % REFUND_STATUSES.length] + "]]></refund_status>"
+                    + "<settlement_refund_fee><![CDATA[" + refundFee + "]]></settlement_refund_fee>"
+                    + "<settlement_total_fee><![CDATA[" + totalFee + "]]></settlement_total_fee>"
+                    + "<success_time><![CDATA[2024-01-02 10:00:00]]></success_time>"
+                    + "<total_fee><![CDATA[" + totalFee + "]]></total_fee>"
+                    + "<transaction_id><![CDATA[420000000020240101" + (1000000000L + i) + "]]></transaction_id>"
+                    + "</root>";
+            String encrypted = Base64.getEncoder().encodeToString(
+                    cipher.doFinal(reqInfo.getBytes(StandardCharsets.UTF_8)));
+            corpus[i] = "<xml>"
+                    + "<return_code>SUCCESS</return_code>"
+                    + "<appid><![CDATA[wx2421b1c4370ec43b]]></appid>"
+                    + "<mch_id><![CDATA[10000100]]></mch_id>"
+                    + "<nonce_str><![CDATA[" + Integer.toHexString(random.nextInt()) + "]]></nonce_str>"
+                    + "<req_info><![CDATA[" + encrypted + "]]></req_info>"
+                    + "</xml>";
+            corpusBytes[i] = corpus[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        WxPayConfig config = new WxPayConfig();
+        config.setAppId("wx2421b1c4370ec43b");
+        config.setMchId("10000100");
+        config.setMchKey(MCH_KEY);
+        wxPayService = new WxPayServiceImpl();
+        wxPayService.setConfig(config);
+        parser = new WxPayNotifyParser(MCH_KEY, 64 * 1024);
+    }
+
+    @Benchmark
+    public WxPayRefundNotifyResult sdk() throws WxPayException {
+        return wxPayService.parseRefundNotifyResult(corpus[ThreadLocalRandom.current().nextInt(corpusSize)]);
+    }
+
+    @Benchmark
+    public WxPayRefundNotifyDTO cached() throws WxPayException {
+        byte[] body = corpusBytes[ThreadLocalRandom.current().nextInt(corpusSize)];
+        return parser.parseRefund(new ByteArrayInputStream(body), body.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WxPayRefundNotifyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.nonfou.mpay.common.response;
+
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * SeekCursor 编解码测试
+ */
+@DisplayName("分页游标编解码测试")
+class SeekCursorTest {
+
+    @Test
+    @DisplayName("编码后解码 - 时间精度与 ID 不变，令牌可直接放入 URL")
+    void roundTrip() {
+        SeekCursor cursor = new SeekCursor(LocalDateTime.of(2024, 1, 1, 12, 30, 45, 123_456_000), 42L);
+
+        String token = cursor.encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(SeekCursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("整分钟时间 - 文本形式省略秒，仍能解码")
+    void roundTrip_WholeMinute() {
+        SeekCursor cursor = new SeekCursor(LocalDateTime.of(2024, 1, 1, 12, 30), Long.MAX_VALUE);
+
+        assertThat(SeekCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("空令牌 - 返回 null 表示第一页")
+    void blankToken_FirstPage() {
+        assertThat(SeekCursor.decode(null)).isNull();
+        assertThat(SeekCursor.decode("")).isNull();
+        assertThat(SeekCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    @DisplayName("无效令牌 - 抛出 INVALID_ARGUMENT 业务异常")
+    void invalidToken_Rejected() {
+        assertInvalid("!!not-base64!!");
+        assertInvalid(encodeRaw("2024-01-01T12:30:45"));
+        assertInvalid(encodeRaw("|42"));
+        assertInvalid(encodeRaw("not-a-time|42"));
+        assertInvalid(encodeRaw("2024-01-01T12:30:45|abc"));
+    }
+
+    private static void assertInvalid(String token) {
+        assertThatThrownBy(() -> SeekCursor.decode(token))
+                .isInstanceOf(BusinessException.class)
+                .extracting(e -> ((BusinessException) e).getErrorCode())
+                .isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
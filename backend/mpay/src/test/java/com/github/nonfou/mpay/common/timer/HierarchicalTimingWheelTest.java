@@ -0,0 +1,118 @@
+package com.github.nonfou.mpay.common.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * HierarchicalTimingWheel 测试
+ * 每格 10ms、每层 4 格：底层覆盖 40ms，第二层 160ms，第三层 640ms，较长的延迟需要逐层降到底层才到期
+ */
+@DisplayName("分层时间轮测试")
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 4;
+
+    private HierarchicalTimingWheel timer;
+
+    @BeforeEach
+    void setUp() {
+        // 到期任务直接在时间轮工作线程中执行，便于观察触发顺序
+        timer = new HierarchicalTimingWheel("test-timing-wheel", TICK_MS, WHEEL_SIZE, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    @DisplayName("按到期时间先后触发，与注册顺序无关")
+    void expiresInDeadlineOrder() throws InterruptedException {
+        List<Long> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+        for (long delay : new long[]{300, 30, 120, 60}) {
+            timer.schedule(() -> {
+                fired.add(delay);
+                latch.countDown();
+            }, delay);
+        }
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly(30L, 60L, 120L, 300L);
+        assertThat(timer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("超出底层范围的任务放入上层时间轮，逐层降级后在到期时间触发而不是上层格子的起点")
+    void overflowWheelCascade() throws InterruptedException {
+        long delay = 500;
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] elapsed = new long[1];
+        timer.schedule(() -> {
+            elapsed[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            latch.countDown();
+        }, delay);
+
+        assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+        // 第三层每格 160ms，未降级直接执行会提前最多 160ms；降到底层后最多提前一格（另留 1 格给毫秒取整）
+        assertThat(elapsed[0]).isGreaterThanOrEqualTo(delay - 2 * TICK_MS);
+    }
+
+    @Test
+    @DisplayName("取消后不再触发，待触发数减少；重复取消返回 false")
+    void cancelledTimeoutNeverFires() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HierarchicalTimingWheel.Timeout cancelled = timer.schedule(runs::incrementAndGet, 100);
+        CountDownLatch later = new CountDownLatch(1);
+        timer.schedule(later::countDown, 200);
+        assertThat(timer.pendingCount()).isEqualTo(2);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThat(cancelled.cancel()).isFalse();
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(timer.pendingCount()).isEqualTo(1);
+
+        // 晚于被取消任务的任务已触发，说明被取消任务所在的格子已经过去
+        assertThat(later.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(runs.get()).isZero();
+        assertThat(timer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("已触发的任务不能再取消")
+    void expiredTimeoutCannotBeCancelled() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        HierarchicalTimingWheel.Timeout timeout = timer.schedule(latch::countDown, 20);
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(timer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("延迟小于等于 0 - 不等待下一格，立即执行")
+    void nonPositiveDelay_RunsImmediately() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+
+        HierarchicalTimingWheel.Timeout timeout = timer.schedule(latch::countDown, 0);
+        timer.schedule(latch::countDown, -100);
+
+        // 时钟只在格子到期时推进，空闲一段时间后注册的任务放入已过期的格子，由工作线程随即取出
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(timer.pendingCount()).isZero();
+    }
+}
@@ -2,7 +2,9 @@ package com.github.nonfou.mpay.controller;
 
 import com.alipay.api.AlipayApiException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.nonfou.mpay.payment.dto.alipay.*;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
 import com.github.nonfou.mpay.payment.service.AlipayService;
 import com.github.nonfou.mpay.payment.service.PaymentCallbackService;
 import com.github.nonfou.mpay.payment.service.WxPayServiceWrapper;
@@ -457,6 +459,49 @@ class PaymentControllerTest {
         }
     }
 
+    // ==================== 微信退款回调接口测试 ====================
+    @Nested
+    @DisplayName("微信退款回调接口")
+    class WxRefundCallbackTests {
+
+        private static final String SUCCESS_XML =
+                "<xml><return_code><![CDATA[SUCCESS]]></return_code><return_msg><![CDATA[OK]]></return_msg></xml>";
+
+        @Test
+        @DisplayName("回调处理成功")
+        void wxRefundCallback_Success() throws Exception {
+            WxPayRefundNotifyDTO notify = new WxPayRefundNotifyDTO();
+            notify.setReturnCode("SUCCESS");
+            notify.setOutRefundNo("REFUND_001");
+            notify.setRefundStatus("SUCCESS");
+
+            when(wxPayService.parseRefundCallback(any())).thenReturn(notify);
+            when(callbackService.handleWxRefundCallback(notify)).thenReturn(true);
+            when(wxPayService.successResponse()).thenReturn(SUCCESS_XML);
+
+            mockMvc.perform(post("/api/payment/wxpay/refund-callback")
+                            .contentType(MediaType.APPLICATION_XML)
+                            .content("<xml><return_code>SUCCESS</return_code></xml>"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(SUCCESS_XML));
+            verify(callbackService).handleWxRefundCallback(notify);
+        }
+
+        @Test
+        @DisplayName("req_info 解密失败 - 返回 FAIL 且不处理")
+        void wxRefundCallback_DecryptFailed() throws Exception {
+            when(wxPayService.parseRefundCallback(any())).thenThrow(new WxPayException("解密微信退款通知失败"));
+            when(wxPayService.failResponse(any())).thenReturn("FAIL");
+
+            mockMvc.perform(post("/api/payment/wxpay/refund-callback")
+                            .contentType(MediaType.APPLICATION_XML)
+                            .content("<xml><return_code>SUCCESS</return_code></xml>"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("FAIL"));
+            verify(callbackService, never()).handleWxRefundCallback(any());
+        }
+    }
+
     // ==================== 支付状态接口测试 ====================
     @Nested
     @DisplayName("支付状态接口")
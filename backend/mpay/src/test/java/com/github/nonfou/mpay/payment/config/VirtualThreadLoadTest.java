@@ -0,0 +1,105 @@
+package com.github.nonfou.mpay.payment.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.coyote.AbstractProtocol;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 虚拟线程模式负载测试
+ * 模拟网关延迟的 Servlet 在内嵌 Tomcat 中分别以固定工作线程和虚拟线程运行，比较吞吐量
+ */
+@DisplayName("虚拟线程模式负载测试")
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 200;
+    private static final int PLATFORM_THREADS = 20;
+    private static final long GATEWAY_LATENCY_MS = 200;
+
+    private final AtomicBoolean handledOnVirtualThread = new AtomicBoolean();
+
+    @Test
+    @DisplayName("网关延迟下虚拟线程模式吞吐量明显高于固定工作线程")
+    void throughputUnderGatewayLatency() throws Exception {
+        double platform = measure(factory -> factory.addConnectorCustomizers(connector ->
+                ((AbstractProtocol<?>) connector.getProtocolHandler()).setMaxThreads(PLATFORM_THREADS)));
+        assertThat(handledOnVirtualThread).isFalse();
+
+        double virtual = measure(factory -> factory.addProtocolHandlerCustomizers(
+                new VirtualThreadConfig.TomcatVirtualThreadConfig().easyPayVirtualThreadCustomizer()));
+        assertThat(handledOnVirtualThread).isTrue();
+
+        // 固定线程的上限是 PLATFORM_THREADS / 延迟 = 100 req/s，虚拟线程只受延迟本身限制
+        assertThat(virtual).isGreaterThan(platform * 2);
+    }
+
+    /**
+     * 并发发出全部请求，返回每秒完成的请求数
+     */
+    private double measure(Consumer<TomcatServletWebServerFactory> customizer) throws Exception {
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        customizer.accept(factory);
+        WebServer server = factory.getWebServer(context ->
+                context.addServlet("gateway", new SlowGatewayServlet()).addMapping("/pay"));
+        server.start();
+        try (ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(clientExecutor).build()) {
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/pay");
+            handledOnVirtualThread.set(false);
+            client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<String>>> futures = IntStream.range(0, REQUESTS)
+                    .mapToObj(i -> client.sendAsync(HttpRequest.newBuilder(uri).build(),
+                            HttpResponse.BodyHandlers.ofString()))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertThat(futures).allSatisfy(future -> assertThat(future.join().statusCode()).isEqualTo(200));
+            return REQUESTS / seconds;
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * 模拟阻塞等待支付网关响应的请求处理
+     */
+    private class SlowGatewayServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            if (Thread.currentThread().isVirtual()) {
+                handledOnVirtualThread.set(true);
+            }
+            try {
+                Thread.sleep(GATEWAY_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setContentType("text/plain");
+            response.getWriter().write("ok");
+        }
+    }
+}
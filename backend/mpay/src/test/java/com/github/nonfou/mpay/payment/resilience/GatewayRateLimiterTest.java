@@ -0,0 +1,177 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.properties.ResilienceProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * GatewayRateLimiter 测试
+ * 使用可手动推进的时钟验证令牌补充、等待期限和自适应降速
+ */
+@DisplayName("支付网关客户端限流测试")
+class GatewayRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private RateLimitProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.setPermitsPerSecond(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("令牌用完后默认立即失败，补充后恢复")
+    void emptyBucket_FailsFast() throws Exception {
+        GatewayRateLimiter limiter = limiter();
+
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "query")).isTrue();
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "query")).isTrue();
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "query")).isFalse();
+        // 各接口预算独立
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "refund")).isTrue();
+
+        advance(500);
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "query")).isTrue();
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "query")).isFalse();
+    }
+
+    @Test
+    @DisplayName("单独配置的接口速率覆盖默认值")
+    void perApiLimit_OverridesDefault() throws Exception {
+        properties.getLimits().put("wxpay.refund", 1.0);
+        GatewayRateLimiter limiter = limiter();
+
+        assertThat(limiter.acquire(PaymentPlatform.WXPAY, "refund")).isTrue();
+        assertThat(limiter.acquire(PaymentPlatform.WXPAY, "refund")).isFalse();
+        assertThat(limiter.currentRate(PaymentPlatform.WXPAY, "refund")).isEqualTo(1.0);
+        assertThat(limiter.currentRate(PaymentPlatform.WXPAY, "query")).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("调用方指定等待期限时在期限内排队等待令牌")
+    void waitUpTo_WaitsWithinDeadline() throws Exception {
+        GatewayRateLimiter limiter = limiter();
+        limiter.acquire(PaymentPlatform.WXPAY, "query");
+        limiter.acquire(PaymentPlatform.WXPAY, "query");
+
+        long start = System.nanoTime();
+        boolean acquired = GatewayRateLimiter.waitUpTo(Duration.ofSeconds(1),
+                () -> limiter.acquire(PaymentPlatform.WXPAY, "query"));
+        assertThat(acquired).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(500);
+        assertThat(meterRegistry.get("payment.gateway.ratelimit.wait").timer().count()).isEqualTo(1);
+
+        // 下一个令牌需要再等 1 秒，超出期限时不等待也不消耗令牌
+        boolean exceeded = GatewayRateLimiter.waitUpTo(Duration.ofMillis(100),
+                () -> limiter.acquire(PaymentPlatform.WXPAY, "query"));
+        assertThat(exceeded).isFalse();
+        // 期限只在 waitUpTo 内生效
+        assertThat(limiter.acquire(PaymentPlatform.WXPAY, "query")).isFalse();
+    }
+
+    @Test
+    @DisplayName("异步调用在指定线程池中以等待期限获取令牌")
+    void waitUpToAsync_WaitsOnExecutor() throws Exception {
+        GatewayRateLimiter limiter = limiter();
+        limiter.acquire(PaymentPlatform.ALIPAY, "query");
+        limiter.acquire(PaymentPlatform.ALIPAY, "query");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Boolean> acquired = GatewayRateLimiter.waitUpToAsync(Duration.ofSeconds(1), () -> {
+                try {
+                    return CompletableFuture.completedFuture(limiter.acquire(PaymentPlatform.ALIPAY, "query"));
+                } catch (InterruptedException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }, executor);
+
+            assertThat(acquired.get(5, TimeUnit.SECONDS)).isTrue();
+            // 期限不会遗留在线程池的线程上
+            assertThat(executor.submit(() -> limiter.acquire(PaymentPlatform.ALIPAY, "query")).get()).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("网关返回限流错误码时降速，之后逐步恢复")
+    void rateLimitCode_BacksOffAndRecovers() throws Exception {
+        properties.setPermitsPerSecond(10);
+        GatewayRateLimiter limiter = limiter();
+
+        limiter.onErrorCode(PaymentPlatform.ALIPAY, "refund", "ACQ.TRADE_NOT_EXIST");
+        assertThat(limiter.currentRate(PaymentPlatform.ALIPAY, "refund")).isEqualTo(10.0);
+
+        limiter.onErrorCode(PaymentPlatform.ALIPAY, "refund", "ACQ.CALL_LIMITED");
+        assertThat(limiter.currentRate(PaymentPlatform.ALIPAY, "refund")).isEqualTo(5.0);
+        // 降速时丢弃积攒的突发额度
+        assertThat(limiter.acquire(PaymentPlatform.ALIPAY, "refund")).isFalse();
+        assertThat(meterRegistry.get("payment.gateway.ratelimit.backoff")
+                .tag("platform", "alipay").tag("operation", "refund").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("payment.gateway.ratelimit.rate")
+                .tag("platform", "alipay").tag("operation", "refund").gauge().value()).isEqualTo(5.0);
+
+        advance(properties.getRecoveryIntervalMs());
+        limiter.acquire(PaymentPlatform.ALIPAY, "refund");
+        assertThat(limiter.currentRate(PaymentPlatform.ALIPAY, "refund")).isEqualTo(6.0);
+
+        advance(properties.getRecoveryIntervalMs() * 10);
+        limiter.acquire(PaymentPlatform.ALIPAY, "refund");
+        assertThat(limiter.currentRate(PaymentPlatform.ALIPAY, "refund")).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("关闭自适应时忽略限流错误码")
+    void adaptiveDisabled_IgnoresRateLimitCode() {
+        properties.setAdaptive(false);
+        GatewayRateLimiter limiter = limiter();
+
+        limiter.onErrorCode(PaymentPlatform.WXPAY, "query", "FREQUENCY_LIMITED");
+
+        assertThat(limiter.currentRate(PaymentPlatform.WXPAY, "query")).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("网关保护在熔断前先限流，被限流的调用不访问网关")
+    void guard_RejectsRateLimitedCall() throws Exception {
+        ResilientGatewayGuard guard = new ResilientGatewayGuard(new ResilienceProperties(), limiter(), meterRegistry);
+        AtomicLong gatewayHits = new AtomicLong();
+
+        guard.call(PaymentPlatform.ALIPAY, "query", gatewayHits::incrementAndGet);
+        guard.call(PaymentPlatform.ALIPAY, "query", gatewayHits::incrementAndGet);
+        assertThatThrownBy(() -> guard.call(PaymentPlatform.ALIPAY, "query", gatewayHits::incrementAndGet))
+                .isInstanceOf(GatewayRateLimitedException.class);
+
+        assertThat(gatewayHits).hasValue(2);
+        assertThat(meterRegistry.get("payment.gateway.rejected")
+                .tag("platform", "alipay").tag("operation", "query").tag("reason", "rate_limited")
+                .counter().count()).isEqualTo(1.0);
+        assertThat(guard.state(PaymentPlatform.ALIPAY, "query")).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private GatewayRateLimiter limiter() {
+        return new GatewayRateLimiter(properties, meterRegistry, clock::get);
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
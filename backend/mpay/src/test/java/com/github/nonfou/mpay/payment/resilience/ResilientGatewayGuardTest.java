@@ -0,0 +1,241 @@
+package com.github.nonfou.mpay.payment.resilience;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.DefaultAlipayClient;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.payment.properties.ResilienceProperties;
+import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ResilientGatewayGuard 测试
+ * 使用可切换为正常、失败、变慢的本地桩网关，经 AlipayService 验证熔断和并发隔离
+ */
+@DisplayName("支付网关熔断与并发隔离测试")
+class ResilientGatewayGuardTest {
+
+    private enum Mode { HEALTHY, FAILING, SLOW }
+
+    private static final long SLOW_MS = 300;
+
+    private HttpServer gateway;
+    private ExecutorService gatewayExecutor;
+    private String privateKey;
+    private String publicKey;
+    private volatile Mode mode = Mode.HEALTHY;
+    private final AtomicInteger gatewayHits = new AtomicInteger();
+
+    private ResilienceProperties resilienceProperties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+        gatewayExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        gateway.createContext("/gateway.do", this::handle);
+        gateway.setExecutor(gatewayExecutor);
+        gateway.start();
+
+        resilienceProperties = new ResilienceProperties();
+        resilienceProperties.setSlidingWindowSize(10);
+        resilienceProperties.setMinimumCalls(5);
+        resilienceProperties.setFailureRateThreshold(50);
+        resilienceProperties.setSlowCallThresholdMs(SLOW_MS / 2);
+        resilienceProperties.setOpenDurationMs(300);
+        resilienceProperties.setHalfOpenCalls(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop(0);
+        gatewayExecutor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("网关持续失败 - 熔断后快速失败且不再请求网关")
+    void failingGateway_OpensCircuit() {
+        AlipayService service = alipayService(new ResilientGatewayGuard(resilienceProperties, meterRegistry));
+        mode = Mode.FAILING;
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> service.queryOrder(query()))
+                    .isInstanceOf(AlipayApiException.class);
+        }
+        assertThat(gatewayHits).hasValue(5);
+
+        assertThatThrownBy(() -> service.queryOrder(query()))
+                .isInstanceOf(GatewayUnavailableException.class)
+                .hasMessageContaining("熔断中");
+        assertThat(gatewayHits).hasValue(5);
+        assertThat(rejected("circuit_open")).isEqualTo(1.0);
+        assertThat(transitions("closed", "open")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("网关变慢 - 慢调用计为失败并熔断")
+    void slowGateway_OpensCircuit() throws Exception {
+        ResilientGatewayGuard guard = new ResilientGatewayGuard(resilienceProperties, meterRegistry);
+        AlipayService service = alipayService(guard);
+        mode = Mode.SLOW;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.queryOrder(query()).isSuccess()).isTrue();
+        }
+
+        assertThat(guard.state(PaymentPlatform.ALIPAY, "query")).isEqualTo(CircuitBreaker.State.OPEN);
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> service.queryOrder(query())).isInstanceOf(GatewayUnavailableException.class);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(SLOW_MS);
+    }
+
+    @Test
+    @DisplayName("半开试探成功后恢复关闭状态")
+    void recoveredGateway_ClosesCircuit() throws Exception {
+        ResilientGatewayGuard guard = new ResilientGatewayGuard(resilienceProperties, meterRegistry);
+        AlipayService service = alipayService(guard);
+        mode = Mode.FAILING;
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> service.queryOrder(query())).isInstanceOf(AlipayApiException.class);
+        }
+        assertThat(guard.state(PaymentPlatform.ALIPAY, "query")).isEqualTo(CircuitBreaker.State.OPEN);
+
+        mode = Mode.HEALTHY;
+        Thread.sleep(resilienceProperties.getOpenDurationMs() + 50);
+        assertThat(service.queryOrder(query()).isSuccess()).isTrue();
+        assertThat(guard.state(PaymentPlatform.ALIPAY, "query")).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(service.queryOrder(query()).isSuccess()).isTrue();
+
+        assertThat(guard.state(PaymentPlatform.ALIPAY, "query")).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(transitions("open", "half_open")).isEqualTo(1.0);
+        assertThat(transitions("half_open", "closed")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("并发超过隔离舱容量时多余调用被立即拒绝")
+    void bulkheadFull_RejectsExcessCalls() throws Exception {
+        resilienceProperties.setMaxConcurrentCalls(2);
+        resilienceProperties.setSlowCallThresholdMs(10_000);
+        AlipayService service = alipayService(new ResilientGatewayGuard(resilienceProperties, meterRegistry));
+        mode = Mode.SLOW;
+
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicInteger rejected = new AtomicInteger();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 6; i++) {
+                futures.add(callers.submit(() -> {
+                    try {
+                        service.queryOrder(query());
+                    } catch (GatewayUnavailableException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(rejected).hasValue(4);
+        assertThat(gatewayHits).hasValue(2);
+        assertThat(rejected("bulkhead_full")).isEqualTo(4.0);
+    }
+
+    private AlipayService alipayService(GatewayGuard guard) {
+        AlipayProperties properties = new AlipayProperties();
+        properties.setAppId("2021000000000000");
+        properties.setPrivateKey(privateKey);
+        properties.setPublicKey(publicKey);
+        properties.setGatewayUrl("http://127.0.0.1:" + gateway.getAddress().getPort() + "/gateway.do");
+        DefaultAlipayClient client = new DefaultAlipayClient(properties.getGatewayUrl(), properties.getAppId(),
+                privateKey, "json", properties.getCharset(), publicKey, properties.getSignType());
+        AlipayService service = new AlipayService(client, properties, null);
+        service.setGatewayGuard(guard);
+        return service;
+    }
+
+    private static AlipayQueryRequest query() {
+        AlipayQueryRequest request = new AlipayQueryRequest();
+        request.setOutTradeNo("ORDER_001");
+        return request;
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("payment.gateway.rejected")
+                .tag("platform", "alipay").tag("operation", "query").tag("reason", reason)
+                .counter().count();
+    }
+
+    private double transitions(String from, String to) {
+        return meterRegistry.get("payment.gateway.circuit.transition")
+                .tag("platform", "alipay").tag("operation", "query").tag("from", from).tag("to", to)
+                .counter().count();
+    }
+
+    /**
+     * 桩网关：按当前模式正常应答、断开连接或延迟应答
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        gatewayHits.incrementAndGet();
+        try {
+            exchange.getRequestBody().readAllBytes();
+            if (mode == Mode.FAILING) {
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+            if (mode == Mode.SLOW) {
+                Thread.sleep(SLOW_MS);
+            }
+            String node = "{\"code\":\"10000\",\"msg\":\"Success\",\"out_trade_no\":\"ORDER_001\","
+                    + "\"trade_no\":\"2024ORDER_001\",\"trade_status\":\"WAIT_BUYER_PAY\",\"total_amount\":\"0.01\"}";
+            String sign = AlipaySignature.rsaSign(node, privateKey, "utf-8", "RSA2");
+            byte[] body = ("{\"alipay_trade_query_response\":" + node + ",\"sign\":\"" + sign + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (AlipayApiException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
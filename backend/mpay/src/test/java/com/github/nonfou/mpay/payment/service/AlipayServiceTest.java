@@ -4,8 +4,14 @@ import com.alipay.api.AlipayApiException;
 import com.alipay.api.AlipayClient;
 import com.alipay.api.request.*;
 import com.alipay.api.response.*;
+import com.github.nonfou.mpay.common.metrics.PaymentMetrics;
 import com.github.nonfou.mpay.payment.dto.alipay.*;
 import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -17,6 +23,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -91,6 +98,36 @@ class AlipayServiceTest {
             assertThat(captor.getValue().getNotifyUrl()).isEqualTo("http://localhost:8080/api/payment/alipay/callback");
         }
 
+        @Test
+        @DisplayName("二维码支付成功 - 发布支付创建事件，登记待支付交易")
+        void createQrcode_PublishesCreateEvent() throws AlipayApiException {
+            PaymentEventPublisher eventPublisher = mock(PaymentEventPublisher.class);
+            alipayService.setEventPublisher(eventPublisher);
+            AlipayQrcodeRequest request = new AlipayQrcodeRequest()
+                    .setOutTradeNo("TEST_ORDER_002")
+                    .setTotalAmount(new BigDecimal("10.00"))
+                    .setSubject("测试商品");
+
+            AlipayTradePrecreateResponse mockResponse = mock(AlipayTradePrecreateResponse.class);
+            when(mockResponse.getCode()).thenReturn("10000");
+            when(mockResponse.getOutTradeNo()).thenReturn("TEST_ORDER_002");
+            when(mockResponse.getBody()).thenReturn("{\"code\":\"10000\"}");
+            when(alipayClient.execute(any(AlipayTradePrecreateRequest.class))).thenReturn(mockResponse);
+
+            LocalDateTime before = LocalDateTime.now();
+            alipayService.createQrcode(request);
+
+            ArgumentCaptor<PaymentEvent> captor = ArgumentCaptor.forClass(PaymentEvent.class);
+            verify(eventPublisher).publish(captor.capture());
+            assertThat(captor.getValue().getEventType()).isEqualTo(PaymentEventType.CREATE);
+            assertThat(captor.getValue().getPlatform()).isEqualTo(PaymentPlatform.ALIPAY);
+            assertThat(captor.getValue().getOrderId()).isEqualTo("TEST_ORDER_002");
+            assertThat(captor.getValue().getAmount()).isEqualByComparingTo("10.00");
+            // 默认 timeout_express 为 30m
+            assertThat(captor.getValue().getExpireAt())
+                    .isBetween(before.plusMinutes(30), LocalDateTime.now().plusMinutes(30));
+        }
+
         @Test
         @DisplayName("二维码支付失败 - 商户订单号重复")
         void createQrcode_DuplicateOrderNo() throws AlipayApiException {
@@ -184,6 +221,33 @@ class AlipayServiceTest {
 
             assertThat(htmlForm).isNotNull();
         }
+
+        @Test
+        @DisplayName("PC支付 - 发布支付创建事件，超时时间按 timeout_express 计算")
+        void createPcPay_PublishesCreateEvent() throws AlipayApiException {
+            PaymentEventPublisher eventPublisher = mock(PaymentEventPublisher.class);
+            alipayService.setEventPublisher(eventPublisher);
+            AlipayPcPayRequest request = new AlipayPcPayRequest()
+                    .setOutTradeNo("PC_ORDER_003")
+                    .setTotalAmount(new BigDecimal("50.00"))
+                    .setSubject("测试商品")
+                    .setTimeoutExpress("2h");
+
+            AlipayTradePagePayResponse mockResponse = mock(AlipayTradePagePayResponse.class);
+            when(mockResponse.getBody()).thenReturn("<form></form>");
+            when(alipayClient.pageExecute(any(AlipayTradePagePayRequest.class))).thenReturn(mockResponse);
+
+            LocalDateTime before = LocalDateTime.now();
+            alipayService.createPcPay(request);
+
+            ArgumentCaptor<PaymentEvent> captor = ArgumentCaptor.forClass(PaymentEvent.class);
+            verify(eventPublisher).publish(captor.capture());
+            assertThat(captor.getValue().getEventType()).isEqualTo(PaymentEventType.CREATE);
+            assertThat(captor.getValue().getOrderId()).isEqualTo("PC_ORDER_003");
+            assertThat(captor.getValue().getTradeType()).isEqualTo("FAST_INSTANT_TRADE_PAY");
+            assertThat(captor.getValue().getExpireAt())
+                    .isBetween(before.plusHours(2), LocalDateTime.now().plusHours(2));
+        }
     }
 
     // ==================== H5 支付测试 ====================
@@ -231,6 +295,30 @@ class AlipayServiceTest {
 
             assertThat(htmlForm).isNotNull();
         }
+
+        @Test
+        @DisplayName("H5支付 - 发布支付创建事件，发布失败不影响返回表单")
+        void createH5Pay_PublishesCreateEvent() throws AlipayApiException {
+            PaymentEventPublisher eventPublisher = mock(PaymentEventPublisher.class);
+            alipayService.setEventPublisher(eventPublisher);
+            doThrow(new IllegalStateException("发件箱写入失败")).when(eventPublisher).publish(any());
+            AlipayH5PayRequest request = new AlipayH5PayRequest()
+                    .setOutTradeNo("H5_ORDER_003")
+                    .setTotalAmount(new BigDecimal("30.00"))
+                    .setSubject("测试");
+
+            AlipayTradeWapPayResponse mockResponse = mock(AlipayTradeWapPayResponse.class);
+            when(mockResponse.getBody()).thenReturn("<form></form>");
+            when(alipayClient.pageExecute(any(AlipayTradeWapPayRequest.class))).thenReturn(mockResponse);
+
+            String htmlForm = alipayService.createH5Pay(request);
+
+            assertThat(htmlForm).isEqualTo("<form></form>");
+            ArgumentCaptor<PaymentEvent> captor = ArgumentCaptor.forClass(PaymentEvent.class);
+            verify(eventPublisher).publish(captor.capture());
+            assertThat(captor.getValue().getOrderId()).isEqualTo("H5_ORDER_003");
+            assertThat(captor.getValue().getTradeType()).isEqualTo("QUICK_WAP_WAY");
+        }
     }
 
     // ==================== 退款测试 ====================
@@ -660,4 +748,78 @@ class AlipayServiceTest {
             assertThat(response.isSuccess()).isTrue();
         }
     }
+
+    // ==================== 指标测试 ====================
+    @Nested
+    @DisplayName("订单超时时间测试")
+    class ExpireAtTests {
+
+        private final LocalDateTime now = LocalDateTime.of(2024, 1, 1, 10, 15);
+
+        @Test
+        @DisplayName("按分钟、小时、天计算")
+        void expireAt_Units() {
+            assertThat(AlipayService.expireAt("90m", now)).isEqualTo(now.plusMinutes(90));
+            assertThat(AlipayService.expireAt("2h", now)).isEqualTo(now.plusHours(2));
+            assertThat(AlipayService.expireAt("15d", now)).isEqualTo(now.plusDays(15));
+        }
+
+        @Test
+        @DisplayName("1c - 当天结束")
+        void expireAt_EndOfDay() {
+            assertThat(AlipayService.expireAt("1c", now)).isEqualTo(LocalDateTime.of(2024, 1, 2, 0, 0));
+        }
+
+        @Test
+        @DisplayName("取值不合法 - 返回空，由全局超时时间兜底")
+        void expireAt_Invalid() {
+            assertThat(AlipayService.expireAt(null, now)).isNull();
+            assertThat(AlipayService.expireAt("m", now)).isNull();
+            assertThat(AlipayService.expireAt("30s", now)).isNull();
+            assertThat(AlipayService.expireAt("0m", now)).isNull();
+            assertThat(AlipayService.expireAt("2c", now)).isNull();
+            assertThat(AlipayService.expireAt("abcm", now)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("指标测试")
+    class MetricsTests {
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        @BeforeEach
+        void setUp() {
+            alipayService.setPaymentMetrics(new PaymentMetrics(meterRegistry));
+        }
+
+        @Test
+        @DisplayName("网关调用按结果记录耗时")
+        void gatewayCall_RecordsOutcome() throws AlipayApiException {
+            AlipayTradeQueryResponse success = mock(AlipayTradeQueryResponse.class);
+            when(success.isSuccess()).thenReturn(true);
+            AlipayTradeQueryResponse notExist = mock(AlipayTradeQueryResponse.class);
+            when(notExist.getSubCode()).thenReturn("ACQ.TRADE_NOT_EXIST");
+            when(alipayClient.execute(any(AlipayTradeQueryRequest.class)))
+                    .thenReturn(success)
+                    .thenReturn(notExist)
+                    .thenThrow(new AlipayApiException("网络连接超时"));
+
+            AlipayQueryRequest request = new AlipayQueryRequest();
+            request.setOutTradeNo("METRICS_ORDER");
+            alipayService.queryOrder(request);
+            alipayService.queryOrder(request);
+            assertThatThrownBy(() -> alipayService.queryOrder(request)).isInstanceOf(AlipayApiException.class);
+
+            assertThat(gatewayCalls("success")).isEqualTo(1);
+            assertThat(gatewayCalls("failure")).isEqualTo(1);
+            assertThat(gatewayCalls("error")).isEqualTo(1);
+        }
+
+        private long gatewayCalls(String outcome) {
+            return meterRegistry.get("payment.gateway.call")
+                    .tag("platform", "alipay").tag("operation", "query").tag("outcome", outcome)
+                    .timer().count();
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.internal.util.AlipaySignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AlipaySignatureVerifier 测试
+ * 以 SDK 的 rsaCheckV1 为基准，验证相同参数下验签结果一致
+ */
+@DisplayName("支付宝回调验签器测试")
+class AlipaySignatureVerifierTest {
+
+    private String privateKey;
+    private String publicKey;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    }
+
+    @Test
+    @DisplayName("正确签名 - 与 SDK 一致验签通过")
+    void validSignature_MatchesSdk() throws AlipayApiException {
+        Map<String, String[]> params = signedNotify("RSA2");
+
+        assertThat(sdkCheck(params, "RSA2")).isTrue();
+        assertThat(new AlipaySignatureVerifier(publicKey, "utf-8", "RSA2").verifyV1(params)).isTrue();
+    }
+
+    @Test
+    @DisplayName("参数被篡改 - 与 SDK 一致验签失败")
+    void tamperedParams_MatchesSdk() throws AlipayApiException {
+        Map<String, String[]> params = signedNotify("RSA2");
+        params.put("total_amount", new String[]{"0.01"});
+
+        assertThat(sdkCheck(params, "RSA2")).isFalse();
+        assertThat(new AlipaySignatureVerifier(publicKey, "utf-8", "RSA2").verifyV1(params)).isFalse();
+    }
+
+    @Test
+    @DisplayName("RSA 签名类型与空值参数 - 与 SDK 一致")
+    void rsaSignTypeAndEmptyValue_MatchesSdk() throws AlipayApiException {
+        Map<String, String[]> params = signedNotify("RSA");
+
+        assertThat(sdkCheck(params, "RSA")).isTrue();
+        assertThat(new AlipaySignatureVerifier(publicKey, "utf-8", "RSA").verifyV1(params)).isTrue();
+        assertThat(new AlipaySignatureVerifier(publicKey, "utf-8", "RSA2").verifyV1(params)).isFalse();
+    }
+
+    @Test
+    @DisplayName("多线程复用验签器结果稳定 - 线程数超过池大小时临时创建，不阻塞")
+    void concurrentVerify_IsThreadSafe() throws Exception {
+        AlipaySignatureVerifier verifier = new AlipaySignatureVerifier(publicKey, "utf-8", "RSA2", 2);
+        Map<String, String[]> valid = signedNotify("RSA2");
+        Map<String, String[]> tampered = new LinkedHashMap<>(valid);
+        tampered.put("trade_status", new String[]{"TRADE_CLOSED"});
+
+        List<Future<Boolean>> validResults = new ArrayList<>();
+        List<Future<Boolean>> tamperedResults = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 200; i++) {
+                validResults.add(executor.submit(() -> verifier.verifyV1(valid)));
+                tamperedResults.add(executor.submit(() -> verifier.verifyV1(tampered)));
+            }
+            for (Future<Boolean> result : validResults) {
+                assertThat(result.get()).isTrue();
+            }
+            for (Future<Boolean> result : tamperedResults) {
+                assertThat(result.get()).isFalse();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("签名长度错误 - 抛出异常，出错的 Signature 不归还，之后的验签不受影响")
+    void malformedSign_DoesNotPoisonPool() throws Exception {
+        AlipaySignatureVerifier verifier = new AlipaySignatureVerifier(publicKey, "utf-8", "RSA2", 1);
+        Map<String, String[]> malformed = new LinkedHashMap<>(signedNotify("RSA2"));
+        malformed.put("sign", new String[]{"AAAA"});
+
+        assertThatThrownBy(() -> verifier.verifyV1(malformed)).isInstanceOf(AlipayApiException.class);
+        assertThat(verifier.verifyV1(signedNotify("RSA2"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("公钥无效 - 验签时抛出异常")
+    void invalidPublicKey_Throws() {
+        AlipaySignatureVerifier verifier = new AlipaySignatureVerifier("test-public-key", "utf-8", "RSA2");
+
+        assertThatThrownBy(() -> verifier.verifyV1(signedNotify("RSA2")))
+                .isInstanceOf(AlipayApiException.class);
+    }
+
+    /**
+     * 模拟一条异步通知：按 SDK 规则生成待签名字符串并签名
+     */
+    private Map<String, String[]> signedNotify(String signType) throws AlipayApiException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("notify_time", "2024-01-01 12:00:00");
+        fields.put("notify_type", "trade_status_sync");
+        fields.put("notify_id", "ac05099524730693a8b330c5ecf72da9786");
+        fields.put("app_id", "2021000000000000");
+        fields.put("charset", "utf-8");
+        fields.put("version", "1.0");
+        fields.put("trade_no", "2024010122001400000000000001");
+        fields.put("out_trade_no", "ORDER_001");
+        fields.put("trade_status", "TRADE_SUCCESS");
+        fields.put("total_amount", "88.88");
+        fields.put("receipt_amount", "88.88");
+        fields.put("subject", "测试商品【特价】& 50%");
+        fields.put("body", "");
+        fields.put("buyer_id", "2088102000000000");
+
+        String content = AlipaySignature.getSignCheckContentV1(new HashMap<>(fields));
+        String sign = AlipaySignature.rsaSign(content, privateKey, "utf-8", signType);
+
+        Map<String, String[]> params = new LinkedHashMap<>();
+        fields.forEach((name, value) -> params.put(name, new String[]{value}));
+        params.put("sign", new String[]{sign});
+        params.put("sign_type", new String[]{signType});
+        return params;
+    }
+
+    private boolean sdkCheck(Map<String, String[]> params, String signType) throws AlipayApiException {
+        Map<String, String> flat = new HashMap<>();
+        params.forEach((name, values) -> flat.put(name, String.join(",", values)));
+        return AlipaySignature.rsaCheckV1(flat, publicKey, "utf-8", signType);
+    }
+}
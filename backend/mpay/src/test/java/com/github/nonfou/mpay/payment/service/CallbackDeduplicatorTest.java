@@ -0,0 +1,102 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.nonfou.mpay.payment.properties.CallbackDedupProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CallbackDeduplicator 测试
+ * 以可调的时钟代替系统时间验证过期
+ */
+@DisplayName("支付回调去重测试")
+class CallbackDeduplicatorTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private CallbackDedupProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CallbackDedupProperties();
+        properties.setExpireAfterWriteSeconds(60);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("同一回调第二次到达 - 识别为重复并计数")
+    void secondCallback_Duplicate() {
+        CallbackDeduplicator deduplicator = deduplicator();
+        String key = CallbackDeduplicator.key(PaymentPlatform.ALIPAY, "2024010122001400000000000001", "TRADE_SUCCESS");
+
+        assertThat(deduplicator.markFirstSeen(key)).isTrue();
+        assertThat(deduplicator.markFirstSeen(key)).isFalse();
+        assertThat(meterRegistry.get("payment.callback.dedup").tag("result", "first").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("payment.callback.dedup").tag("result", "duplicate").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("交易状态不同 - 不视为重复")
+    void differentStatus_NotDuplicate() {
+        CallbackDeduplicator deduplicator = deduplicator();
+
+        assertThat(deduplicator.markFirstSeen(
+                CallbackDeduplicator.key(PaymentPlatform.ALIPAY, "T001", "WAIT_BUYER_PAY"))).isTrue();
+        assertThat(deduplicator.markFirstSeen(
+                CallbackDeduplicator.key(PaymentPlatform.ALIPAY, "T001", "TRADE_SUCCESS"))).isTrue();
+        assertThat(deduplicator.markFirstSeen(
+                CallbackDeduplicator.key(PaymentPlatform.WXPAY, "T001", "TRADE_SUCCESS"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("超过保留时间 - 记录过期，再次到达视为首次")
+    void expiredAfterTtl() {
+        CallbackDeduplicator deduplicator = deduplicator();
+        String key = CallbackDeduplicator.key(PaymentPlatform.WXPAY, "4200000000000000000000000001", "SUCCESS");
+        deduplicator.markFirstSeen(key);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(deduplicator.markFirstSeen(key)).isFalse();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(deduplicator.markFirstSeen(key)).isTrue();
+    }
+
+    @Test
+    @DisplayName("处理失败后撤销登记 - 平台重试时再次处理")
+    void forget_AllowsRetry() {
+        CallbackDeduplicator deduplicator = deduplicator();
+        String key = CallbackDeduplicator.key(PaymentPlatform.ALIPAY, "T001", "TRADE_SUCCESS");
+        deduplicator.markFirstSeen(key);
+
+        deduplicator.forget(key);
+
+        assertThat(deduplicator.markFirstSeen(key)).isTrue();
+        assertThat(deduplicator.markFirstSeen(key)).isFalse();
+    }
+
+    @Test
+    @DisplayName("关闭去重或缺少平台交易号 - 总是视为首次")
+    void disabledOrNullKey_AlwaysFirst() {
+        assertThat(CallbackDeduplicator.key(PaymentPlatform.ALIPAY, null, "TRADE_SUCCESS")).isNull();
+        assertThat(deduplicator().markFirstSeen(null)).isTrue();
+
+        properties.setEnabled(false);
+        CallbackDeduplicator disabled = deduplicator();
+        assertThat(disabled.markFirstSeen("ALIPAY:T001:TRADE_SUCCESS")).isTrue();
+        assertThat(disabled.markFirstSeen("ALIPAY:T001:TRADE_SUCCESS")).isTrue();
+    }
+
+    private CallbackDeduplicator deduplicator() {
+        return new CallbackDeduplicator(properties, meterRegistry, nanos::get);
+    }
+}
@@ -0,0 +1,275 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * CallbackPipeline 与 CallbackJournal 测试
+ * 处理和推送阶段使用同步执行器，日志写入临时目录
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("支付回调分阶段处理测试")
+class CallbackPipelineTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int RETRY_QUEUE_CAPACITY = 100;
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private PaymentCallbackService callbackService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private CallbackJournal journal;
+    private CallbackPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        journal = new CallbackJournal(dir.toString(), 1024 * 1024);
+        pipeline = pipeline(journal);
+    }
+
+    @Test
+    @DisplayName("写入日志后处理，处理完成后不再恢复")
+    void submit_ProcessedAndCompleted() throws Exception {
+        AlipayCallbackDTO callback = alipayCallback();
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class))).thenReturn(true);
+
+        assertThat(pipeline.submitAlipay(callback)).isTrue();
+
+        ArgumentCaptor<AlipayCallbackDTO> captor = ArgumentCaptor.forClass(AlipayCallbackDTO.class);
+        verify(callbackService).handleAlipayCallback(captor.capture(), any(Executor.class));
+        assertThat(captor.getValue()).isEqualTo(callback);
+        assertThat(pipeline.pending()).isZero();
+        assertThat(new CallbackJournal(dir.toString(), 1024 * 1024).recover()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("处理失败 - 保留在日志中并在重试时处理")
+    void processFailure_Retried() {
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class)))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenReturn(true);
+
+        assertThat(pipeline.submitAlipay(alipayCallback())).isTrue();
+        assertThat(pipeline.pending()).isEqualTo(1);
+
+        pipeline.retryFailed();
+
+        verify(callbackService, times(2)).handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class));
+        assertThat(pipeline.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("失败次数达到上限 - 移入死信文件，不再重试")
+    void processFailure_DeadLettered() throws Exception {
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class)))
+                .thenThrow(new IllegalStateException("数据库不可用"));
+
+        pipeline.submitAlipay(alipayCallback());
+        pipeline.retryFailed();
+        pipeline.retryFailed();
+        pipeline.retryFailed();
+
+        verify(callbackService, times(MAX_ATTEMPTS)).handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class));
+        assertThat(pipeline.pending()).isZero();
+        List<String> deadLetters = Files.readAllLines(dir.resolve("callback.dead"), StandardCharsets.UTF_8);
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0)).contains(CallbackPipeline.ALIPAY, "ORDER_001");
+        assertThat(new CallbackJournal(dir.toString(), 1024 * 1024).recover()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("处理线程池拒绝 - 不在回调线程处理，放入重试队列")
+    void processRejected_RetriedLater() {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        TaskExecutor processExecutor = task -> {
+            if (reject.getAndSet(false)) {
+                throw new TaskRejectedException("队列已满");
+            }
+            task.run();
+        };
+        CallbackPipeline rejecting = new CallbackPipeline(journal, callbackService, objectMapper,
+                processExecutor, new SyncTaskExecutor(), MAX_ATTEMPTS, RETRY_QUEUE_CAPACITY, Duration.ofSeconds(5));
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class))).thenReturn(true);
+
+        assertThat(rejecting.submitAlipay(alipayCallback())).isTrue();
+        verifyNoInteractions(callbackService);
+        assertThat(rejecting.pending()).isEqualTo(1);
+
+        rejecting.retryFailed();
+
+        verify(callbackService).handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class));
+        assertThat(rejecting.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("重启后恢复未完成的回调，跳过不完整的行")
+    void restart_RecoversUnfinished() throws Exception {
+        WxPayCallbackDTO callback = new WxPayCallbackDTO();
+        callback.setOutTradeNo("ORDER_002");
+        callback.setTransactionId("4200000000202401010000000002");
+        callback.setResultCode("SUCCESS");
+        callback.setTotalFee(new BigDecimal("88.88"));
+        callback.setSignValid(true);
+        journal.append(CallbackPipeline.WXPAY, objectMapper.writeValueAsString(callback));
+        // 模拟写入中途宕机
+        Files.writeString(dir.resolve("callback.journal"), "broken-line", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        when(callbackService.handleWxPayCallback(any(WxPayCallbackDTO.class), any(Executor.class))).thenReturn(true);
+        CallbackJournal restarted = new CallbackJournal(dir.toString(), 1024 * 1024);
+        CallbackPipeline restartedPipeline = pipeline(restarted);
+        // 由容器在 Web 服务器启动前调用
+        restartedPipeline.start();
+        assertThat(restartedPipeline.isRunning()).isTrue();
+        assertThat(dir.resolve("callback.compact")).doesNotExist();
+
+        ArgumentCaptor<WxPayCallbackDTO> captor = ArgumentCaptor.forClass(WxPayCallbackDTO.class);
+        verify(callbackService).handleWxPayCallback(captor.capture(), any(Executor.class));
+        assertThat(captor.getValue()).isEqualTo(callback);
+        assertThat(restarted.pending()).isZero();
+        assertThat(new CallbackJournal(dir.toString(), 1024 * 1024).recover()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("没有未完成的回调且超过大小时清空日志")
+    void completed_Compacted() {
+        CallbackJournal small = new CallbackJournal(dir.toString(), 0);
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class))).thenReturn(true);
+
+        pipeline(small).submitAlipay(alipayCallback());
+
+        assertThat(dir.resolve("callback.journal")).doesNotExist();
+        assertThat(dir.resolve("callback.done")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("重试队列已满 - 溢出到文件，队列腾出空间后读回处理")
+    void retryQueueFull_Spilled() {
+        CallbackPipeline bounded = pipeline(journal, 1);
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class)))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenReturn(true);
+
+        bounded.submitAlipay(alipayCallback());
+        bounded.submitAlipay(alipayCallback());
+
+        assertThat(journal.spilled()).isEqualTo(1);
+        assertThat(dir.resolve("callback.spill")).exists();
+
+        // 队列中的回调处理完成后腾出空间，读回溢出的回调
+        bounded.retryFailed();
+
+        verify(callbackService, times(4)).handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class));
+        assertThat(journal.spilled()).isZero();
+        assertThat(dir.resolve("callback.spill")).doesNotExist();
+        assertThat(bounded.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("日志分段 - 长期重试的回调只占住所在的段，其余段处理完成后删除")
+    void segments_DeletedWhenCompleted() {
+        CallbackJournal segmented = new CallbackJournal(dir.toString(), 1);
+        CallbackPipeline segmentedPipeline = pipeline(segmented);
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class)))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenReturn(true);
+
+        segmentedPipeline.submitAlipay(alipayCallback());
+        segmentedPipeline.submitAlipay(alipayCallback());
+
+        // 第一条回调失败，所在的段封存后保留；第二条所在的段处理完成后删除
+        assertThat(dir.resolve("callback.journal.0")).exists();
+        assertThat(dir.resolve("callback.journal")).doesNotExist();
+        assertThat(segmented.pending()).isEqualTo(1);
+
+        segmentedPipeline.retryFailed();
+
+        assertThat(dir.resolve("callback.journal.0")).doesNotExist();
+        assertThat(segmented.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("重启后从所有段恢复未完成的回调，并合并为单个段")
+    void restart_RecoversAllSegments() throws Exception {
+        CallbackJournal segmented = new CallbackJournal(dir.toString(), 1);
+        segmented.append(CallbackPipeline.ALIPAY, "{\"outTradeNo\":\"ORDER_A\"}");
+        CallbackJournal.Entry completed = segmented.append(CallbackPipeline.ALIPAY, "{\"outTradeNo\":\"ORDER_B\"}");
+        segmented.append(CallbackPipeline.ALIPAY, "{\"outTradeNo\":\"ORDER_C\"}");
+        segmented.complete(completed);
+
+        List<CallbackJournal.Entry> recovered = new CallbackJournal(dir.toString(), 1).recover();
+
+        assertThat(recovered).extracting(CallbackJournal.Entry::payload)
+                .containsExactly("{\"outTradeNo\":\"ORDER_A\"}", "{\"outTradeNo\":\"ORDER_C\"}");
+        assertThat(dir.resolve("callback.journal.0")).doesNotExist();
+        assertThat(Files.readAllLines(dir.resolve("callback.journal"), StandardCharsets.UTF_8)).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("停机时在期限内处理重试队列中的回调")
+    void stop_DrainsRetryQueue() {
+        when(callbackService.handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class)))
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenReturn(true);
+        pipeline.start();
+        pipeline.submitAlipay(alipayCallback());
+        assertThat(pipeline.pending()).isEqualTo(1);
+
+        pipeline.stop();
+
+        assertThat(pipeline.isRunning()).isFalse();
+        verify(callbackService, times(2)).handleAlipayCallback(any(AlipayCallbackDTO.class), any(Executor.class));
+        assertThat(pipeline.pending()).isZero();
+    }
+
+    private CallbackPipeline pipeline(CallbackJournal journal) {
+        return pipeline(journal, RETRY_QUEUE_CAPACITY);
+    }
+
+    private CallbackPipeline pipeline(CallbackJournal journal, int retryQueueCapacity) {
+        return new CallbackPipeline(journal, callbackService, objectMapper,
+                new SyncTaskExecutor(), new SyncTaskExecutor(), MAX_ATTEMPTS, retryQueueCapacity, Duration.ofSeconds(5));
+    }
+
+    private static AlipayCallbackDTO alipayCallback() {
+        AlipayCallbackDTO callback = new AlipayCallbackDTO();
+        callback.setOutTradeNo("ORDER_001");
+        callback.setTradeNo("2024010122001400000000000001");
+        callback.setTradeStatus("TRADE_SUCCESS");
+        callback.setTotalAmount(new BigDecimal("88.88"));
+        callback.setSubject("测试商品");
+        callback.setGmtPayment(LocalDateTime.of(2024, 1, 1, 12, 0, 5));
+        return callback;
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.alipay.api.AlipayApiException;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryResponse;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayQueryResponse;
+import com.github.nonfou.mpay.payment.properties.OrderCloseProperties;
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * ExpiredOrderCloser 测试
+ * 只有支付平台确认关闭，或关单失败后查询确认平台侧订单不存在、已关闭的订单才在本地置为关闭
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("超时订单关闭测试")
+class ExpiredOrderCloserTest {
+
+    @Mock
+    private PaymentTransactionRepository transactionRepository;
+
+    @Mock
+    private PaymentTransactionCache transactionCache;
+
+    @Mock
+    private AlipayService alipayService;
+
+    @Mock
+    private WxPayServiceWrapper wxPayService;
+
+    @Mock
+    private LeaderElector leaderElector;
+
+    private OrderCloseProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ExpiredOrderCloser closer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OrderCloseProperties();
+        properties.setBatchSize(2);
+        properties.setConcurrency(2);
+        meterRegistry = new SimpleMeterRegistry();
+        closer = new ExpiredOrderCloser(transactionRepository, transactionCache, Optional.of(alipayService),
+                Optional.of(wxPayService), leaderElector, properties, new RateLimitProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        closer.shutdown();
+    }
+
+    @Test
+    @DisplayName("平台关单成功的订单置为关闭，失败和异常的保持待支付")
+    void closeBatch_OnlyPlatformClosed() throws Exception {
+        PaymentTransactionEntity closed = transaction(1L, PaymentPlatform.ALIPAY);
+        PaymentTransactionEntity rejected = transaction(2L, PaymentPlatform.WXPAY);
+        PaymentTransactionEntity error = transaction(3L, PaymentPlatform.ALIPAY);
+        when(alipayService.closeOrderAsync("ORDER_1")).thenReturn(CompletableFuture.completedFuture(true));
+        when(wxPayService.closeOrder("ORDER_2")).thenReturn(false);
+        when(wxPayService.queryOrder(any(WxPayQueryRequest.class))).thenReturn(wxQuery("SUCCESS"));
+        when(alipayService.closeOrderAsync("ORDER_3"))
+                .thenReturn(CompletableFuture.failedFuture(new AlipayApiException("连接超时")));
+        when(transactionRepository.closePendingByIds(eq(List.of(1L)), any(LocalDateTime.class))).thenReturn(1);
+
+        int count = closer.closeBatch(List.of(closed, rejected, error));
+
+        assertThat(count).isEqualTo(1);
+        verify(transactionCache).invalidate(1L);
+        verify(transactionCache, never()).invalidate(2L);
+        assertThat(counter("closed")).isEqualTo(1);
+        assertThat(counter("failed")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("整批关单失败 - 不更新数据库")
+    void closeBatch_NoneClosed() throws Exception {
+        when(wxPayService.closeOrder("ORDER_1")).thenReturn(false);
+        when(wxPayService.queryOrder(any(WxPayQueryRequest.class))).thenReturn(wxQuery("NOTPAY"));
+
+        int count = closer.closeBatch(List.of(transaction(1L, PaymentPlatform.WXPAY)));
+
+        assertThat(count).isZero();
+        verify(transactionRepository, never()).closePendingByIds(anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("按 ID 分批扫描 - 下一批从上一批最后一条之后开始，不足一批时结束")
+    void sweep_PagesById() throws Exception {
+        when(transactionRepository.findExpiredBatch(eq(TransactionStatus.PENDING), any(LocalDateTime.class),
+                any(LocalDateTime.class), eq(0L), any(Limit.class)))
+                .thenReturn(List.of(transaction(1L, PaymentPlatform.ALIPAY), transaction(5L, PaymentPlatform.ALIPAY)));
+        when(transactionRepository.findExpiredBatch(eq(TransactionStatus.PENDING), any(LocalDateTime.class),
+                any(LocalDateTime.class), eq(5L), any(Limit.class)))
+                .thenReturn(List.of(transaction(9L, PaymentPlatform.ALIPAY)));
+        when(alipayService.closeOrderAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        when(transactionRepository.closePendingByIds(anyCollection(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+
+        closer.sweep();
+
+        verify(transactionRepository, times(2)).findExpiredBatch(any(), any(), any(), anyLong(), any());
+        assertThat(counter("closed")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("仅主节点执行时，非主节点跳过扫描")
+    void sweep_NotLeader_Skipped() {
+        properties.setLeaderOnly(true);
+        when(leaderElector.isLeader(ExpiredOrderCloser.TASK_NAME)).thenReturn(false);
+
+        closer.sweep();
+
+        verifyNoInteractions(transactionRepository, alipayService, wxPayService);
+    }
+
+    @Test
+    @DisplayName("未配置对应平台 - 视为关单失败")
+    void platformMissing_NotClosed() {
+        ExpiredOrderCloser alipayOnly = new ExpiredOrderCloser(transactionRepository, transactionCache,
+                Optional.of(alipayService), Optional.empty(), leaderElector, properties,
+                new RateLimitProperties(), meterRegistry);
+        try {
+            int count = alipayOnly.closeBatch(List.of(transaction(1L, PaymentPlatform.WXPAY)));
+
+            assertThat(count).isZero();
+            verifyNoInteractions(alipayService);
+        } finally {
+            alipayOnly.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("支付宝关单失败、查询交易不存在（用户未扫码） - 按已关闭处理")
+    void alipayTradeNotExist_Closed() throws Exception {
+        when(alipayService.closeOrderAsync("ORDER_1")).thenReturn(CompletableFuture.completedFuture(false));
+        AlipayQueryResponse notExist = new AlipayQueryResponse();
+        notExist.setCode("40004");
+        notExist.setSubCode("ACQ.TRADE_NOT_EXIST");
+        when(alipayService.queryOrderAsync(any(AlipayQueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(notExist));
+        when(transactionRepository.closePendingByIds(eq(List.of(1L)), any(LocalDateTime.class))).thenReturn(1);
+
+        int count = closer.closeBatch(List.of(transaction(1L, PaymentPlatform.ALIPAY)));
+
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("支付宝关单失败、查询交易已支付 - 保持待支付")
+    void alipayTradePaid_NotClosed() throws Exception {
+        when(alipayService.closeOrderAsync("ORDER_1")).thenReturn(CompletableFuture.completedFuture(false));
+        AlipayQueryResponse paid = new AlipayQueryResponse();
+        paid.setCode("10000");
+        paid.setTradeStatus("TRADE_SUCCESS");
+        when(alipayService.queryOrderAsync(any(AlipayQueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(paid));
+
+        int count = closer.closeBatch(List.of(transaction(1L, PaymentPlatform.ALIPAY)));
+
+        assertThat(count).isZero();
+        verify(transactionRepository, never()).closePendingByIds(anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("微信关单失败、查询订单不存在 - 按已关闭处理")
+    void wxPayOrderNotExist_Closed() throws Exception {
+        when(wxPayService.closeOrder("ORDER_1")).thenReturn(false);
+        WxPayException notExist = WxPayException.newBuilder()
+                .returnCode("SUCCESS")
+                .resultCode("FAIL")
+                .errCode("ORDERNOTEXIST")
+                .errCodeDes("订单不存在")
+                .build();
+        when(wxPayService.queryOrder(any(WxPayQueryRequest.class))).thenThrow(notExist);
+        when(transactionRepository.closePendingByIds(eq(List.of(1L)), any(LocalDateTime.class))).thenReturn(1);
+
+        int count = closer.closeBatch(List.of(transaction(1L, PaymentPlatform.WXPAY)));
+
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("微信关单失败、查询订单已关闭 - 按已关闭处理")
+    void wxPayOrderClosed_Closed() throws Exception {
+        when(wxPayService.closeOrder("ORDER_1")).thenReturn(false);
+        when(wxPayService.queryOrder(any(WxPayQueryRequest.class))).thenReturn(wxQuery("CLOSED"));
+        when(transactionRepository.closePendingByIds(eq(List.of(1L)), any(LocalDateTime.class))).thenReturn(1);
+
+        int count = closer.closeBatch(List.of(transaction(1L, PaymentPlatform.WXPAY)));
+
+        assertThat(count).isEqualTo(1);
+    }
+
+    private static WxPayQueryResponse wxQuery(String tradeState) {
+        WxPayQueryResponse response = new WxPayQueryResponse();
+        response.setReturnCode("SUCCESS");
+        response.setResultCode("SUCCESS");
+        response.setTradeState(tradeState);
+        return response;
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("payment.order.close").tag("result", result).counter().count();
+    }
+
+    private static PaymentTransactionEntity transaction(Long id, PaymentPlatform platform) {
+        PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+        transaction.setId(id);
+        transaction.setOrderId("ORDER_" + id);
+        transaction.setTradeNo("T_" + id);
+        transaction.setPlatform(platform);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setStatus(TransactionStatus.PENDING);
+        return transaction;
+    }
+}
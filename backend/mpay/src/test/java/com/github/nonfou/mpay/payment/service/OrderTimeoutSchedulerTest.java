@@ -0,0 +1,153 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.nonfou.mpay.payment.properties.OrderTimerProperties;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventDelivered;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderTimeoutScheduler 测试
+ * 只有持有租约的节点重建待支付交易的定时任务，已过超时时间的订单交给定时扫描；
+ * 发件箱模式下按中继投递完成的事件注册和取消
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("订单定时器测试")
+class OrderTimeoutSchedulerTest {
+
+    private static final String TASK = OrderTimeoutScheduler.TASK_NAME;
+
+    @Mock
+    private PaymentTransactionRepository transactionRepository;
+
+    @Mock
+    private ExpiredOrderCloser closer;
+
+    @Mock
+    private LeaderElector leaderElector;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderTimeoutScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new OrderTimeoutScheduler(transactionRepository, Optional.empty(), Optional.of(closer),
+                List.of(), Duration.ofMinutes(30), new OrderTimerProperties(), leaderElector, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("主节点 - 重建未超时的订单，跳过已过超时时间的订单")
+    void leader_RebuildsPendingNotExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        when(leaderElector.isLeader(TASK)).thenReturn(true);
+        when(transactionRepository.findBatchByStatus(eq(TransactionStatus.PENDING), eq(0L), any()))
+                .thenReturn(List.of(
+                        transaction(1L, now.minusMinutes(5), null),
+                        transaction(2L, now.minusMinutes(40), null),
+                        transaction(3L, now.minusMinutes(5), now.minusMinutes(1)),
+                        transaction(4L, now.minusMinutes(40), now.plusMinutes(10))));
+
+        scheduler.checkLeader();
+
+        // ORDER_2 按兜底时长已超时，ORDER_3 按自身 expire_at 已超时
+        assertThat(pendingTimers()).isEqualTo(2);
+        verifyNoInteractions(closer);
+    }
+
+    @Test
+    @DisplayName("非主节点 - 不重建定时任务")
+    void notLeader_Skipped() {
+        when(leaderElector.isLeader(TASK)).thenReturn(false);
+
+        scheduler.checkLeader();
+
+        verifyNoInteractions(transactionRepository);
+        assertThat(pendingTimers()).isZero();
+    }
+
+    @Test
+    @DisplayName("持续持有租约 - 只在成为主节点时重建一次；重建失败时下次检查重试")
+    void rebuildOnlyWhenBecomingLeader() {
+        when(leaderElector.isLeader(TASK)).thenReturn(true);
+        when(transactionRepository.findBatchByStatus(any(), anyLong(), any()))
+                .thenThrow(new IllegalStateException("数据库连接中断"))
+                .thenReturn(List.of());
+
+        scheduler.checkLeader();
+        scheduler.checkLeader();
+        scheduler.checkLeader();
+
+        verify(transactionRepository, times(2)).findBatchByStatus(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("发件箱投递完成的 CREATE 事件 - 注册定时任务，NOTIFY 事件取消")
+    void deliveredCreate_Registered() {
+        scheduler.onPaymentEventDelivered(new PaymentEventDelivered(this, event(PaymentEventType.CREATE)));
+
+        assertThat(pendingTimers()).isEqualTo(1);
+
+        scheduler.onPaymentEventDelivered(new PaymentEventDelivered(this, event(PaymentEventType.NOTIFY)));
+
+        assertThat(pendingTimers()).isZero();
+    }
+
+    private double pendingTimers() {
+        return meterRegistry.get("payment.order.timer.pending").gauge().value();
+    }
+
+    private PaymentEvent event(PaymentEventType eventType) {
+        return PaymentEvent.builder()
+                .source(this)
+                .eventType(eventType)
+                .platform(PaymentPlatform.ALIPAY)
+                .orderId("ORDER_1")
+                .tradeNo("ORDER_1")
+                .amount(new BigDecimal("100.00"))
+                .expireAt(LocalDateTime.now().plusMinutes(30))
+                .build();
+    }
+
+    private static PaymentTransactionEntity transaction(Long id, LocalDateTime createdAt, LocalDateTime expireAt) {
+        PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+        transaction.setId(id);
+        transaction.setOrderId("ORDER_" + id);
+        transaction.setTradeNo("T_" + id);
+        transaction.setPlatform(PaymentPlatform.ALIPAY);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setStatus(TransactionStatus.PENDING);
+        transaction.setCreatedAt(createdAt);
+        transaction.setExpireAt(expireAt);
+        return transaction;
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.alipay.api.AlipayApiException;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryResponse;
+import com.github.nonfou.mpay.payment.properties.RateLimitProperties;
+import com.github.nonfou.mpay.payment.properties.ReconcileProperties;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * PaymentReconciler 测试
+ * 按上次成功调度的时间计算各梯度的查询窗口，查询失败时不推进，下次调度重新查询同一窗口
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("支付状态主动对账测试")
+class PaymentReconcilerTest {
+
+    private static final Duration TIER_15S = Duration.ofSeconds(15);
+    private static final Duration TIER_1M = Duration.ofMinutes(1);
+    private static final String TASK = PaymentReconciler.TASK_NAME;
+
+    @Mock
+    private PaymentTransactionRepository transactionRepository;
+
+    @Mock
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Mock
+    private PaymentCallbackService callbackService;
+
+    @Mock
+    private AlipayService alipayService;
+
+    @Mock
+    private LeaderElector leaderElector;
+
+    private ReconcileProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReconcileProperties();
+        properties.setTiers(List.of(TIER_15S, TIER_1M));
+        properties.setIntervalMs(5000);
+        properties.setBatchSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        reconciler = new PaymentReconciler(transactionRepository, leaseRepository, callbackService,
+                Optional.of(alipayService), Optional.empty(), leaderElector, properties,
+                new RateLimitProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.shutdown();
+    }
+
+    @Test
+    @DisplayName("已记录上次调度时间 - 每个梯度查询 [上次 - 梯度, 本次 - 梯度)，成功后记录本次时间")
+    void windowsFollowLastRun() {
+        LocalDateTime lastRunAt = LocalDateTime.now().minusSeconds(30);
+        when(leaseRepository.findLastRunAt(TASK)).thenReturn(Optional.of(lastRunAt));
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), any(), any())).thenReturn(List.of());
+        when(leaseRepository.updateLastRunAt(eq(TASK), any())).thenReturn(1);
+
+        reconciler.reconcile();
+
+        LocalDateTime runAt = savedRunAt();
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> to = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(transactionRepository, times(2)).findCreatedBetweenBatch(
+                eq(TransactionStatus.PENDING), from.capture(), to.capture(), eq(0L), any(Limit.class));
+        assertThat(from.getAllValues()).containsExactly(lastRunAt.minus(TIER_15S), lastRunAt.minus(TIER_1M));
+        assertThat(to.getAllValues()).containsExactly(runAt.minus(TIER_15S), runAt.minus(TIER_1M));
+        verify(leaseRepository, never()).insertLastRunAt(any(), any());
+    }
+
+    @Test
+    @DisplayName("第一次运行 - 从一个调度间隔之前开始，并创建进度记录")
+    void firstRun_StartsOneIntervalBack() {
+        when(leaseRepository.findLastRunAt(TASK)).thenReturn(Optional.empty());
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), any(), any())).thenReturn(List.of());
+        when(leaseRepository.updateLastRunAt(eq(TASK), any())).thenReturn(0);
+
+        reconciler.reconcile();
+
+        LocalDateTime runAt = savedRunAt();
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(transactionRepository, times(2)).findCreatedBetweenBatch(
+                any(), from.capture(), any(), any(), any());
+        assertThat(from.getAllValues().get(0)).isEqualTo(runAt.minusSeconds(5).minus(TIER_15S));
+        verify(leaseRepository).insertLastRunAt(TASK, runAt);
+    }
+
+    @Test
+    @DisplayName("查询交易失败 - 不记录本次时间，下次调度重新查询同一窗口")
+    void queryFailed_WindowRetried() {
+        LocalDateTime lastRunAt = LocalDateTime.now().minusSeconds(30);
+        when(leaseRepository.findLastRunAt(TASK)).thenReturn(Optional.of(lastRunAt));
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), any(), any()))
+                .thenReturn(List.of())
+                .thenThrow(new DataAccessResourceFailureException("数据库连接中断"))
+                .thenReturn(List.of());
+
+        reconciler.reconcile();
+        verify(leaseRepository, never()).updateLastRunAt(any(), any());
+
+        when(leaseRepository.updateLastRunAt(eq(TASK), any())).thenReturn(1);
+        reconciler.reconcile();
+
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(transactionRepository, times(4)).findCreatedBetweenBatch(
+                any(), from.capture(), any(), any(), any());
+        assertThat(from.getAllValues()).containsExactly(
+                lastRunAt.minus(TIER_15S), lastRunAt.minus(TIER_1M),
+                lastRunAt.minus(TIER_15S), lastRunAt.minus(TIER_1M));
+        verify(leaseRepository).updateLastRunAt(eq(TASK), any());
+    }
+
+    @Test
+    @DisplayName("查询支付平台失败 - 不记录本次时间，下次调度重新查询同一窗口")
+    void gatewayFailed_WindowRetried() throws Exception {
+        properties.setTiers(List.of(TIER_15S));
+        LocalDateTime lastRunAt = LocalDateTime.now().minusSeconds(30);
+        when(leaseRepository.findLastRunAt(TASK)).thenReturn(Optional.of(lastRunAt));
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), any(), any()))
+                .thenReturn(List.of(transaction(1L)));
+        AlipayQueryResponse waiting = new AlipayQueryResponse();
+        waiting.setCode("10000");
+        waiting.setTradeStatus("WAIT_BUYER_PAY");
+        when(alipayService.queryOrderAsync(any(AlipayQueryRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new AlipayApiException("网络连接超时")))
+                .thenReturn(CompletableFuture.completedFuture(waiting));
+
+        reconciler.reconcile();
+        verify(leaseRepository, never()).updateLastRunAt(any(), any());
+        assertThat(meterRegistry.get("payment.reconcile").tag("result", "failed").counter().count())
+                .isEqualTo(1);
+
+        when(leaseRepository.updateLastRunAt(eq(TASK), any())).thenReturn(1);
+        reconciler.reconcile();
+
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(transactionRepository, times(2)).findCreatedBetweenBatch(
+                any(), from.capture(), any(), any(), any());
+        assertThat(from.getAllValues()).containsExactly(lastRunAt.minus(TIER_15S), lastRunAt.minus(TIER_15S));
+        verify(leaseRepository).updateLastRunAt(eq(TASK), any());
+        verify(callbackService, never()).handleAlipayCallback(any());
+    }
+
+    @Test
+    @DisplayName("分批查询 - 查到终态的交易构造回调交给回调服务")
+    void finalState_CallbackHandled() throws Exception {
+        properties.setTiers(List.of(TIER_15S));
+        when(leaseRepository.findLastRunAt(TASK)).thenReturn(Optional.empty());
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), eq(0L), any()))
+                .thenReturn(List.of(transaction(1L), transaction(2L)));
+        when(transactionRepository.findCreatedBetweenBatch(any(), any(), any(), eq(2L), any()))
+                .thenReturn(List.of(transaction(3L)));
+        when(alipayService.queryOrderAsync(any(AlipayQueryRequest.class))).thenAnswer(invocation -> {
+            AlipayQueryResponse response = new AlipayQueryResponse();
+            response.setCode("10000");
+            response.setOutTradeNo(invocation.<AlipayQueryRequest>getArgument(0).getOutTradeNo());
+            response.setTradeStatus("TRADE_SUCCESS");
+            response.setTotalAmount(new BigDecimal("100.00"));
+            return CompletableFuture.completedFuture(response);
+        });
+        when(leaseRepository.updateLastRunAt(eq(TASK), any())).thenReturn(1);
+
+        reconciler.reconcile();
+
+        ArgumentCaptor<AlipayCallbackDTO> callbacks = ArgumentCaptor.forClass(AlipayCallbackDTO.class);
+        verify(callbackService, times(3)).handleAlipayCallback(callbacks.capture());
+        assertThat(callbacks.getAllValues()).extracting(AlipayCallbackDTO::getOutTradeNo)
+                .containsExactlyInAnyOrder("ORDER_1", "ORDER_2", "ORDER_3");
+        assertThat(meterRegistry.get("payment.reconcile").tag("result", "changed").counter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("仅主节点执行时，非主节点不查询也不记录进度")
+    void notLeader_Skipped() {
+        properties.setLeaderOnly(true);
+        when(leaderElector.isLeader(TASK)).thenReturn(false);
+
+        reconciler.reconcile();
+
+        verifyNoInteractions(transactionRepository, leaseRepository);
+    }
+
+    private LocalDateTime savedRunAt() {
+        ArgumentCaptor<LocalDateTime> runAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(leaseRepository).updateLastRunAt(eq(TASK), runAt.capture());
+        return runAt.getValue();
+    }
+
+    private static PaymentTransactionEntity transaction(Long id) {
+        PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+        transaction.setId(id);
+        transaction.setOrderId("ORDER_" + id);
+        transaction.setTradeNo("T_" + id);
+        transaction.setPlatform(PaymentPlatform.ALIPAY);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setStatus(TransactionStatus.PENDING);
+        return transaction;
+    }
+}
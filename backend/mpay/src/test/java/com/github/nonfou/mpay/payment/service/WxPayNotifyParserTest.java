@@ -0,0 +1,222 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
+import com.github.binarywang.wxpay.bean.notify.WxPayRefundNotifyResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.impl.WxPayServiceImpl;
+import com.github.binarywang.wxpay.util.SignUtils;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayCallbackDTO;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayRefundNotifyDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * WxPayNotifyParser 测试
+ * 以 SDK 的 parseOrderNotifyResult 为基准，验证签名规则与字段提取一致
+ */
+@DisplayName("微信支付结果通知解析测试")
+class WxPayNotifyParserTest {
+
+    private static final String MCH_KEY = "192006250b4c09247ec02edce69f6a2d";
+
+    private WxPayNotifyParser parser;
+    private WxPayServiceImpl sdk;
+
+    @BeforeEach
+    void setUp() {
+        parser = new WxPayNotifyParser(MCH_KEY, 4096);
+        WxPayConfig config = new WxPayConfig();
+        config.setAppId("wx2421b1c4370ec43b");
+        config.setMchId("10000100");
+        config.setMchKey(MCH_KEY);
+        sdk = new WxPayServiceImpl();
+        sdk.setConfig(config);
+    }
+
+    @Test
+    @DisplayName("MD5 签名 - 与 SDK 一致验签通过并提取字段")
+    void md5Signed_MatchesSdk() throws WxPayException {
+        String xml = notifyXml(null);
+
+        WxPayCallbackDTO callback = parse(xml);
+        WxPayOrderNotifyResult expected = sdk.parseOrderNotifyResult(xml);
+
+        assertThat(callback.isSignValid()).isTrue();
+        assertThat(callback.isPaySuccess()).isTrue();
+        assertThat(callback.getOutTradeNo()).isEqualTo(expected.getOutTradeNo());
+        assertThat(callback.getTransactionId()).isEqualTo(expected.getTransactionId());
+        assertThat(callback.getAppId()).isEqualTo(expected.getAppid());
+        assertThat(callback.getMchId()).isEqualTo(expected.getMchId());
+        assertThat(callback.getTimeEnd()).isEqualTo(expected.getTimeEnd());
+        assertThat(callback.getSign()).isEqualTo(expected.getSign());
+        assertThat(callback.getTotalFee()).isEqualByComparingTo(new BigDecimal("88.88"));
+    }
+
+    @Test
+    @DisplayName("HMAC-SHA256 签名 - 按 sign_type 验签通过")
+    void hmacSigned_Verifies() throws WxPayException {
+        String xml = notifyXml("HMAC-SHA256");
+
+        assertThat(parse(xml).isSignValid()).isTrue();
+        assertThat(sdk.parseOrderNotifyResult(xml).getOutTradeNo()).isEqualTo("ORDER_001");
+    }
+
+    @Test
+    @DisplayName("字段被篡改 - 与 SDK 一致拒绝")
+    void tampered_Rejected() {
+        String xml = notifyXml(null).replace("<total_fee>8888</total_fee>", "<total_fee>1</total_fee>");
+
+        assertThatThrownBy(() -> parse(xml)).isInstanceOf(WxPayException.class);
+        assertThatThrownBy(() -> sdk.parseOrderNotifyResult(xml)).isInstanceOf(WxPayException.class);
+    }
+
+    @Test
+    @DisplayName("请求体超过上限 - 读取过程中拒绝")
+    void oversizedBody_Rejected() {
+        String xml = notifyXml(null).replace("<xml>", "<xml><attach>" + "a".repeat(8192) + "</attach>");
+
+        assertThatThrownBy(() -> parse(xml))
+                .isInstanceOf(WxPayException.class)
+                .hasMessageContaining("4096");
+        // 请求头声明的长度超限时不读取请求体
+        assertThatThrownBy(() -> parser.parse(new ByteArrayInputStream(new byte[0]), 8192))
+                .isInstanceOf(WxPayException.class);
+    }
+
+    @Test
+    @DisplayName("包含 DTD 或外部实体 - 拒绝")
+    void doctype_Rejected() {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE xml [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                + notifyXml(null).replace("<nonce_str>", "<nonce_str>&xxe;");
+
+        assertThatThrownBy(() -> parse(xml)).isInstanceOf(WxPayException.class);
+    }
+
+    @Test
+    @DisplayName("退款通知 - 解密 req_info 与 SDK 一致")
+    void refundNotify_DecryptsLikeSdk() throws Exception {
+        String xml = refundNotifyXml(MCH_KEY, "SUCCESS");
+
+        WxPayRefundNotifyDTO notify = parser.parseRefund(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), -1);
+        WxPayRefundNotifyResult.ReqInfo expected = sdk.parseRefundNotifyResult(xml).getReqInfo();
+
+        assertThat(notify.isRefundSuccess()).isTrue();
+        assertThat(notify.getOutRefundNo()).isEqualTo(expected.getOutRefundNo());
+        assertThat(notify.getRefundId()).isEqualTo(expected.getRefundId());
+        assertThat(notify.getTransactionId()).isEqualTo(expected.getTransactionId());
+        assertThat(notify.getOutTradeNo()).isEqualTo(expected.getOutTradeNo());
+        assertThat(notify.getSuccessTime()).isEqualTo(expected.getSuccessTime());
+        assertThat(notify.getRefundFee()).isEqualByComparingTo(new BigDecimal("10.00"));
+        assertThat(notify.getTotalFee()).isEqualByComparingTo(new BigDecimal("88.88"));
+
+        // Cipher 归还后再次使用结果不变
+        assertThat(parser.parseRefund(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), -1)
+                .getOutRefundNo()).isEqualTo("REFUND_001");
+    }
+
+    @Test
+    @DisplayName("退款通知 - 退款关闭时不算成功")
+    void refundNotify_ClosedIsNotSuccess() throws Exception {
+        WxPayRefundNotifyDTO notify = parser.parseRefund(new ByteArrayInputStream(
+                refundNotifyXml(MCH_KEY, "REFUNDCLOSE").getBytes(StandardCharsets.UTF_8)), -1);
+
+        assertThat(notify.getOutRefundNo()).isEqualTo("REFUND_001");
+        assertThat(notify.isRefundSuccess()).isFalse();
+    }
+
+    @Test
+    @DisplayName("退款通知 - 密钥不符时解密失败")
+    void refundNotify_WrongKeyRejected() throws Exception {
+        String xml = refundNotifyXml("00000000000000000000000000000000", "SUCCESS");
+
+        assertThatThrownBy(() -> parser.parseRefund(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), -1))
+                .isInstanceOf(WxPayException.class);
+    }
+
+    private WxPayCallbackDTO parse(String xml) throws WxPayException {
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(new ByteArrayInputStream(body), -1);
+    }
+
+    /**
+     * 按微信退款结果通知的格式生成 XML，req_info 以商户密钥 MD5 为密钥 AES-256-ECB 加密
+     */
+    private static String refundNotifyXml(String mchKey, String refundStatus) throws Exception {
+        String reqInfo = "<root>"
+                + "<out_refund_no><![CDATA[REFUND_001]]></out_refund_no>"
+                + "<out_trade_no><![CDATA[ORDER_001]]></out_trade_no>"
+                + "<refund_account><![CDATA[REFUND_SOURCE_RECHARGE_FUNDS]]></refund_account>"
+                + "<refund_fee><![CDATA[1000]]></refund_fee>"
+                + "<refund_id><![CDATA[50000000382019052709732678859]]></refund_id>"
+                + "<refund_recv_accout><![CDATA[支付用户零钱]]></refund_recv_accout>"
+                + "<refund_request_source><![CDATA[API]]></refund_request_source>"
+                + "<refund_status><![CDATA[" + refundStatus + "]]></refund_status>"
+                + "<settlement_refund_fee><![CDATA[1000]]></settlement_refund_fee>"
+                + "<settlement_total_fee><![CDATA[8888]]></settlement_total_fee>"
+                + "<success_time><![CDATA[2024-01-02 10:00:00]]></success_time>"
+                + "<total_fee><![CDATA[8888]]></total_fee>"
+                + "<transaction_id><![CDATA[4200000000202401010000000001]]></transaction_id>"
+                + "</root>";
+        byte[] key = HexFormat.of().formatHex(MessageDigest.getInstance("MD5")
+                .digest(mchKey.getBytes(StandardCharsets.UTF_8))).getBytes(StandardCharsets.UTF_8);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        String encrypted = Base64.getEncoder().encodeToString(cipher.doFinal(reqInfo.getBytes(StandardCharsets.UTF_8)));
+        return "<xml>"
+                + "<return_code>SUCCESS</return_code>"
+                + "<appid><![CDATA[wx2421b1c4370ec43b]]></appid>"
+                + "<mch_id><![CDATA[10000100]]></mch_id>"
+                + "<nonce_str><![CDATA[TeqClE3i0mvn3DrK]]></nonce_str>"
+                + "<req_info><![CDATA[" + encrypted + "]]></req_info>"
+                + "</xml>";
+    }
+
+    /**
+     * 按微信支付结果通知的字段生成已签名的 XML
+     */
+    private static String notifyXml(String signType) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("appid", "wx2421b1c4370ec43b");
+        fields.put("attach", "支付测试");
+        fields.put("bank_type", "CFT");
+        fields.put("fee_type", "CNY");
+        fields.put("is_subscribe", "Y");
+        fields.put("mch_id", "10000100");
+        fields.put("nonce_str", "5d2b6c2a8db53831f7eda20af46e531c");
+        fields.put("openid", "oUpF8uMEb4qRXf22hE3X68TekukE");
+        fields.put("out_trade_no", "ORDER_001");
+        fields.put("result_code", "SUCCESS");
+        fields.put("return_code", "SUCCESS");
+        fields.put("time_end", "20240101120005");
+        fields.put("total_fee", "8888");
+        fields.put("cash_fee", "8888");
+        fields.put("trade_type", "NATIVE");
+        fields.put("transaction_id", "4200000000202401010000000001");
+        if (signType != null) {
+            fields.put("sign_type", signType);
+        }
+        fields.put("sign", SignUtils.createSign(fields, signType, MCH_KEY, null));
+
+        StringBuilder xml = new StringBuilder("<xml>");
+        fields.forEach((name, value) ->
+                xml.append('<').append(name).append("><![CDATA[").append(value).append("]]></").append(name).append('>'));
+        return xml.append("</xml>").toString().replace("<total_fee><![CDATA[8888]]></total_fee>", "<total_fee>8888</total_fee>");
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.nonfou.mpay.payment.service;
+
+import com.github.binarywang.wxpay.bean.result.WxPayUnifiedOrderResult;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.WxPayService;
+import com.github.nonfou.mpay.payment.dto.wxpay.WxPayUnifiedOrderRequest;
+import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.event.PaymentEvent;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * WxPayServiceWrapper 测试
+ * 下单成功后发布 CREATE 事件登记待支付交易，下单失败时不发布
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("微信支付服务测试")
+class WxPayServiceWrapperTest {
+
+    @Mock
+    private WxPayService wxPayService;
+
+    @Mock
+    private PaymentEventPublisher eventPublisher;
+
+    @Mock
+    private HttpServletRequest httpRequest;
+
+    private WxPayServiceWrapper wrapper;
+
+    @BeforeEach
+    void setUp() {
+        wrapper = new WxPayServiceWrapper(wxPayService, new WxPayProperties());
+        wrapper.setEventPublisher(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("二维码支付成功 - 发布 NATIVE 支付创建事件，超时时间留空")
+    void createQrcode_PublishesCreateEvent() throws WxPayException {
+        when(wxPayService.unifiedOrder(any(com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest.class)))
+                .thenReturn(result("SUCCESS"));
+
+        wrapper.createQrcode(request("WX_ORDER_001"), httpRequest);
+
+        PaymentEvent event = publishedEvent();
+        assertThat(event.getEventType()).isEqualTo(PaymentEventType.CREATE);
+        assertThat(event.getPlatform()).isEqualTo(PaymentPlatform.WXPAY);
+        assertThat(event.getOrderId()).isEqualTo("WX_ORDER_001");
+        assertThat(event.getTradeType()).isEqualTo("NATIVE");
+        assertThat(event.getAmount()).isEqualByComparingTo("10.00");
+        assertThat(event.getClientIp()).isEqualTo("127.0.0.1");
+        assertThat(event.getExpireAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("H5 支付成功 - 发布 MWEB 支付创建事件")
+    void createH5Pay_PublishesCreateEvent() throws WxPayException {
+        when(wxPayService.unifiedOrder(any(com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest.class)))
+                .thenReturn(result("SUCCESS"));
+
+        wrapper.createH5Pay(request("WX_ORDER_002"), httpRequest);
+
+        PaymentEvent event = publishedEvent();
+        assertThat(event.getEventType()).isEqualTo(PaymentEventType.CREATE);
+        assertThat(event.getOrderId()).isEqualTo("WX_ORDER_002");
+        assertThat(event.getTradeType()).isEqualTo("MWEB");
+    }
+
+    @Test
+    @DisplayName("下单失败 - 不发布支付创建事件")
+    void createQrcode_Failed_NotPublished() throws WxPayException {
+        when(wxPayService.unifiedOrder(any(com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest.class)))
+                .thenReturn(result("FAIL"));
+
+        wrapper.createQrcode(request("WX_ORDER_003"), httpRequest);
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("发布事件失败 - 不影响下单结果")
+    void createQrcode_PublishFailed_StillReturns() throws WxPayException {
+        when(wxPayService.unifiedOrder(any(com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest.class)))
+                .thenReturn(result("SUCCESS"));
+        doThrow(new IllegalStateException("发件箱写入失败")).when(eventPublisher).publish(any());
+
+        assertThat(wrapper.createQrcode(request("WX_ORDER_004"), httpRequest).isSuccess()).isTrue();
+    }
+
+    private PaymentEvent publishedEvent() {
+        ArgumentCaptor<PaymentEvent> captor = ArgumentCaptor.forClass(PaymentEvent.class);
+        verify(eventPublisher).publish(captor.capture());
+        return captor.getValue();
+    }
+
+    private static WxPayUnifiedOrderRequest request(String outTradeNo) {
+        return new WxPayUnifiedOrderRequest()
+                .setOutTradeNo(outTradeNo)
+                .setTotalFee(new BigDecimal("10.00"))
+                .setBody("测试商品")
+                .setSpbillCreateIp("127.0.0.1");
+    }
+
+    private static WxPayUnifiedOrderResult result(String resultCode) {
+        WxPayUnifiedOrderResult result = new WxPayUnifiedOrderResult();
+        result.setReturnCode("SUCCESS");
+        result.setResultCode(resultCode);
+        result.setPrepayId("wx_prepay_id");
+        return result;
+    }
+}
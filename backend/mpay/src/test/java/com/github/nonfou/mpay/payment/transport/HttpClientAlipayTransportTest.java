@@ -0,0 +1,160 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayQueryResponse;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * HttpClientAlipayTransport 测试
+ * 使用本地桩网关模拟支付宝：每个请求延迟返回签名后的响应，验证并发请求数不受线程数限制
+ */
+@DisplayName("支付宝非阻塞传输层测试")
+class HttpClientAlipayTransportTest {
+
+    private static final int REQUESTS = 100;
+    private static final long GATEWAY_LATENCY_MS = 500;
+    private static final int IO_THREADS = 2;
+
+    private HttpServer gateway;
+    private ExecutorService gatewayExecutor;
+    private HttpClientAlipayTransport transport;
+    private AlipayService alipayService;
+    private String privateKey;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicBoolean tamperSign = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        // 桩网关与商户共用一对密钥，简化签名和验签
+        privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+        gatewayExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), REQUESTS * 2);
+        gateway.createContext("/gateway.do", this::handle);
+        gateway.setExecutor(gatewayExecutor);
+        gateway.start();
+
+        AlipayProperties properties = new AlipayProperties();
+        properties.setAppId("2021000000000000");
+        properties.setPrivateKey(privateKey);
+        properties.setPublicKey(publicKey);
+        properties.setGatewayUrl("http://127.0.0.1:" + gateway.getAddress().getPort() + "/gateway.do");
+        properties.getHttp().setIoThreads(IO_THREADS);
+
+        transport = new HttpClientAlipayTransport(properties);
+        alipayService = new AlipayService(null, properties, transport);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        gateway.stop(0);
+        gatewayExecutor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("并发查询 - 耗时接近单次网关延迟而非按线程数排队")
+    void queryOrderAsync_ConcurrencyIndependentOfThreads() throws Exception {
+        long start = System.nanoTime();
+        List<CompletableFuture<AlipayQueryResponse>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            AlipayQueryRequest request = new AlipayQueryRequest();
+            request.setOutTradeNo("ORDER_" + i);
+            futures.add(alipayService.queryOrderAsync(request));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            AlipayQueryResponse response = futures.get(i).get();
+            assertThat(response.isSuccess()).isTrue();
+            assertThat(response.getOutTradeNo()).isEqualTo("ORDER_" + i);
+            assertThat(response.getTradeStatus()).isEqualTo("TRADE_SUCCESS");
+        }
+        // 按线程排队需要 REQUESTS / IO_THREADS * 延迟 = 25 秒
+        assertThat(elapsedMs).isLessThan(REQUESTS / IO_THREADS * GATEWAY_LATENCY_MS / 5);
+        assertThat(maxInFlight.get()).isGreaterThan(IO_THREADS * 10);
+    }
+
+    @Test
+    @DisplayName("响应签名不正确时以 AlipayApiException 失败")
+    void queryOrderAsync_InvalidSignature() {
+        tamperSign.set(true);
+        AlipayQueryRequest request = new AlipayQueryRequest();
+        request.setOutTradeNo("ORDER_BAD_SIGN");
+
+        assertThatThrownBy(() -> alipayService.queryOrderAsync(request).get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AlipayApiException.class);
+    }
+
+    /**
+     * 桩网关：校验请求已签名，延迟后返回签名后的交易查询响应
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String decoded = URLDecoder.decode(form, StandardCharsets.UTF_8);
+            assertThat(form).contains("method=alipay.trade.query").contains("sign=");
+            String outTradeNo = decoded.replaceAll(".*\"out_trade_no\":\"([^\"]+)\".*", "$1");
+
+            Thread.sleep(GATEWAY_LATENCY_MS);
+
+            String node = "{\"code\":\"10000\",\"msg\":\"Success\",\"out_trade_no\":\"" + outTradeNo
+                    + "\",\"trade_no\":\"2024" + outTradeNo + "\",\"trade_status\":\"TRADE_SUCCESS\","
+                    + "\"total_amount\":\"0.01\"}";
+            String sign = AlipaySignature.rsaSign(tamperSign.get() ? node + " " : node, privateKey, "utf-8", "RSA2");
+            byte[] body = ("{\"alipay_trade_query_response\":" + node + ",\"sign\":\"" + sign + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (AlipayApiException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.alipay.api.AlipayApiException;
+import com.alipay.api.internal.util.AlipaySignature;
+import com.github.nonfou.mpay.payment.properties.AlipayProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * PooledAlipaySigner 测试
+ * 以 SDK 的 rsaSign 为基准，RSA PKCS#1 v1.5 签名是确定性的，相同输入应得到相同签名
+ */
+@DisplayName("支付宝请求签名器测试")
+class PooledAlipaySignerTest {
+
+    private static final String CONTENT = "app_id=2021000000000000&biz_content={\"out_trade_no\":\"ORDER_001\","
+            + "\"total_amount\":\"88.88\",\"subject\":\"测试商品\"}&charset=utf-8&format=JSON"
+            + "&method=alipay.trade.precreate&sign_type=RSA2&timestamp=2024-01-01 12:00:00&version=1.0";
+
+    private String privateKey;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+    }
+
+    @Test
+    @DisplayName("签名结果与 SDK 一致，Signature 复用后结果不变")
+    void sign_MatchesSdk() throws AlipayApiException {
+        PooledAlipaySigner signer = new PooledAlipaySigner(privateKey, "RSA2", 1);
+        String expected = AlipaySignature.rsaSign(CONTENT, privateKey, "utf-8", "RSA2");
+
+        assertThat(signer.sign(CONTENT, "RSA2", "utf-8")).isEqualTo(expected);
+        assertThat(signer.sign(CONTENT, "RSA2", "utf-8")).isEqualTo(expected);
+        assertThat(signer.sign("other", "RSA2", "utf-8"))
+                .isEqualTo(AlipaySignature.rsaSign("other", privateKey, "utf-8", "RSA2"));
+    }
+
+    @Test
+    @DisplayName("签名类型与配置不同时交给 SDK 签名")
+    void otherSignType_FallsBackToSdk() throws AlipayApiException {
+        PooledAlipaySigner signer = new PooledAlipaySigner(privateKey, "RSA2", 1);
+
+        assertThat(signer.sign(CONTENT, "RSA", "utf-8"))
+                .isEqualTo(AlipaySignature.rsaSign(CONTENT, privateKey, "utf-8", "RSA"));
+    }
+
+    @Test
+    @DisplayName("多线程共享签名器结果稳定")
+    void concurrentSign_IsThreadSafe() throws Exception {
+        PooledAlipaySigner signer = new PooledAlipaySigner(privateKey, "RSA2", 2);
+        String expected = AlipaySignature.rsaSign(CONTENT, privateKey, "utf-8", "RSA2");
+
+        List<Future<String>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> signer.sign(CONTENT, "RSA2", "utf-8")));
+            }
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo(expected);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("私钥无效 - 签名时抛出异常")
+    void invalidPrivateKey_Throws() {
+        PooledAlipaySigner signer = new PooledAlipaySigner("test-private-key", "RSA2", 1);
+
+        assertThatThrownBy(() -> signer.sign(CONTENT, "RSA2", "utf-8"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("客户端使用传入的签名器")
+    void client_UsesGivenSigner() {
+        AlipayProperties properties = new AlipayProperties();
+        properties.setAppId("2021000000000000");
+        properties.setPrivateKey(privateKey);
+        properties.setPublicKey("test-public-key");
+        PooledAlipaySigner signer = new PooledAlipaySigner(properties);
+
+        assertThat(new SignerAlipayClient(properties, signer).getSigner()).isSameAs(signer);
+    }
+}
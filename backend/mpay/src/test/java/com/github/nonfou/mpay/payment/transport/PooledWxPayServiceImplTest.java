@@ -0,0 +1,81 @@
+package com.github.nonfou.mpay.payment.transport;
+
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.nonfou.mpay.payment.properties.WxPayProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PooledWxPayServiceImpl 测试
+ * 通过本地桩服务记录客户端端口，验证多次请求复用同一连接
+ */
+@DisplayName("微信支付连接池测试")
+class PooledWxPayServiceImplTest {
+
+    private static final String RESPONSE = "<xml><return_code>SUCCESS</return_code></xml>";
+
+    private HttpServer gateway;
+    private PooledWxPayServiceImpl wxPayService;
+    private MeterRegistry meterRegistry;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+        gateway.createContext("/pay/orderquery", this::handle);
+        gateway.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        wxPayService = new PooledWxPayServiceImpl(new WxPayProperties.Http(), meterRegistry);
+        wxPayService.setConfig(new WxPayConfig());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        wxPayService.close();
+        gateway.stop(0);
+    }
+
+    @Test
+    @DisplayName("连续请求复用连接，不再每次重新建连")
+    void post_ReusesConnection() throws Exception {
+        String url = "http://127.0.0.1:" + gateway.getAddress().getPort() + "/pay/orderquery";
+
+        for (int i = 0; i < 20; i++) {
+            String response = wxPayService.post(url, "<xml><out_trade_no>ORDER_" + i + "</out_trade_no></xml>", false);
+            assertThat(response).isEqualTo(RESPONSE);
+        }
+
+        assertThat(clientPorts).hasSize(1);
+        assertThat(meterRegistry.get("payment.wxpay.http.pool")
+                .tag("pool", "default").tag("state", "available").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("payment.wxpay.http.pool")
+                .tag("pool", "default").tag("state", "leased").gauge().value()).isZero();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getRequestBody().readAllBytes();
+        byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml;charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
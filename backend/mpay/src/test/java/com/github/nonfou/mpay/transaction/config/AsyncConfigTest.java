@@ -0,0 +1,48 @@
+package com.github.nonfou.mpay.transaction.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AsyncConfig 测试
+ * 支付事件线程池不能取代宿主应用默认的 applicationTaskExecutor
+ */
+@DisplayName("异步配置测试")
+class AsyncConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+            .withUserConfiguration(AsyncConfig.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+    @Test
+    @DisplayName("保留按 spring.task.execution 配置的默认线程池，未指定线程池的 @Async 不使用支付事件线程池")
+    void applicationTaskExecutor_Kept() {
+        contextRunner.withPropertyValues("spring.task.execution.thread-name-prefix=app-task-").run(context -> {
+            ThreadPoolTaskExecutor applicationExecutor = context.getBean(
+                    TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, ThreadPoolTaskExecutor.class);
+
+            assertThat(applicationExecutor.getThreadNamePrefix()).isEqualTo("app-task-");
+            assertThat(context.getBean("taskExecutor")).isSameAs(applicationExecutor);
+            assertThat(context.getBean(AsyncConfig.PAYMENT_EVENT_EXECUTOR)).isNotSameAs(applicationExecutor);
+        });
+    }
+
+    @Test
+    @DisplayName("宿主应用已定义 applicationTaskExecutor 时不覆盖")
+    void applicationTaskExecutor_HostDefined() {
+        ThreadPoolTaskExecutor hostExecutor = new ThreadPoolTaskExecutor();
+        contextRunner.withBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                        ThreadPoolTaskExecutor.class, () -> hostExecutor)
+                .run(context -> assertThat(context.getBean(
+                        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)).isSameAs(hostExecutor));
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * PaymentEventCodec 测试
+ */
+@DisplayName("支付事件编解码测试")
+class PaymentEventCodecTest {
+
+    private final PaymentEventCodec codec = new PaymentEventCodec(new ObjectMapper());
+
+    @Test
+    @DisplayName("支付事件 - 编码后解码字段不变，金额保持精度")
+    void paymentEvent_RoundTrip() {
+        PaymentEvent event = PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.NOTIFY)
+                .platform(PaymentPlatform.ALIPAY)
+                .orderId("ORDER_001")
+                .tradeNo("2024010122001400000000000001")
+                .platformTradeNo("2024010122001400000000000001")
+                .amount(new BigDecimal("0.10"))
+                .subject("测试商品\n第二行")
+                .expireAt(LocalDateTime.of(2024, 1, 1, 12, 30))
+                .responseData("{\"trade_status\":\"TRADE_SUCCESS\"}")
+                .success(true)
+                .resultCode("TRADE_SUCCESS")
+                .durationMs(35L)
+                .build();
+
+        String line = codec.encode(event);
+        ApplicationEvent decoded = codec.decode(line);
+
+        assertThat(line).doesNotContain("\n");
+        assertThat(decoded).isInstanceOf(PaymentEvent.class);
+        PaymentEvent payment = (PaymentEvent) decoded;
+        assertThat(payment.getEventType()).isEqualTo(PaymentEventType.NOTIFY);
+        assertThat(payment.getPlatform()).isEqualTo(PaymentPlatform.ALIPAY);
+        assertThat(payment.getOrderId()).isEqualTo("ORDER_001");
+        assertThat(payment.getAmount()).isEqualTo(new BigDecimal("0.10"));
+        assertThat(payment.getSubject()).isEqualTo("测试商品\n第二行");
+        assertThat(payment.getExpireAt()).isEqualTo(LocalDateTime.of(2024, 1, 1, 12, 30));
+        assertThat(payment.getResponseData()).isEqualTo(event.getResponseData());
+        assertThat(payment.getSuccess()).isTrue();
+        assertThat(payment.getDurationMs()).isEqualTo(35L);
+        assertThat(payment.getClientIp()).isNull();
+    }
+
+    @Test
+    @DisplayName("退款事件 - 编码后解码字段不变")
+    void refundEvent_RoundTrip() {
+        RefundEvent event = RefundEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.REFUND_NOTIFY)
+                .platform(PaymentPlatform.WXPAY)
+                .orderId("ORDER_002")
+                .transactionId(42L)
+                .refundNo("REFUND_001")
+                .platformRefundNo("50000000382019052709732678859")
+                .refundAmount(new BigDecimal("10.00"))
+                .success(false)
+                .resultCode("REFUNDCLOSE")
+                .build();
+
+        RefundEvent decoded = (RefundEvent) codec.decode(codec.kindOf(event), codec.encodePayload(event));
+
+        assertThat(decoded.getEventType()).isEqualTo(PaymentEventType.REFUND_NOTIFY);
+        assertThat(decoded.getPlatform()).isEqualTo(PaymentPlatform.WXPAY);
+        assertThat(decoded.getTransactionId()).isEqualTo(42L);
+        assertThat(decoded.getRefundNo()).isEqualTo("REFUND_001");
+        assertThat(decoded.getPlatformRefundNo()).isEqualTo("50000000382019052709732678859");
+        assertThat(decoded.getRefundAmount()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(decoded.getSuccess()).isFalse();
+    }
+
+    @Test
+    @DisplayName("损坏的内容 - 抛出 IllegalArgumentException")
+    void corruptLine_Rejected() {
+        assertThatThrownBy(() -> codec.decode("{\"kind\":\"PAYMENT\",\"payload\":{\"orderId\""))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.decode("{\"kind\":\"UNKNOWN\",\"payload\":{}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.decode("{\"kind\":\"PAYMENT\",\"payload\":{\"eventType\":\"NO_SUCH_TYPE\"}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.RefundStatus;
+import com.github.nonfou.mpay.transaction.lock.OrderLockManager;
+import com.github.nonfou.mpay.transaction.lock.OrderLockTimeoutException;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.repository.RefundRecordRepository;
+import com.github.nonfou.mpay.transaction.service.PaymentTransactionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * PaymentEventListener 测试
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("支付事件监听器测试")
+class PaymentEventListenerTest {
+
+    @Mock
+    private PaymentTransactionRepository transactionRepository;
+
+    @Mock
+    private RefundRecordRepository refundRecordRepository;
+
+    @Mock
+    private PaymentEventLogBatchWriter eventLogWriter;
+
+    @Mock
+    private EventRoundTripCounter roundTripCounter;
+
+    @Mock
+    private OrderLockManager orderLockManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PaymentTransactionCache transactionCache;
+
+    @Mock
+    private PaymentEventSpillStore spillStore;
+
+    private PaymentEventListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new PaymentEventListener(transactionRepository, refundRecordRepository, eventLogWriter,
+                roundTripCounter, orderLockManager, transactionTemplate, transactionCache, spillStore);
+    }
+
+    @Test
+    @DisplayName("异步处理支付事件时等待订单锁超时 - 事件落盘稍后重放")
+    void paymentEvent_LockTimeout_Spilled() {
+        PaymentEvent event = paymentEvent();
+        when(orderLockManager.executeWithLock(anyString(), any()))
+                .thenThrow(new OrderLockTimeoutException("订单正在处理中，请稍后重试: ORDER_001"));
+        when(spillStore.spill(event)).thenReturn(true);
+
+        listener.handlePaymentEvent(event);
+
+        verify(spillStore).spill(event);
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    @DisplayName("异步处理退款事件时等待订单锁超时 - 事件落盘稍后重放")
+    void refundEvent_LockTimeout_Spilled() {
+        RefundEvent event = RefundEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.REFUND_NOTIFY)
+                .platform(PaymentPlatform.WXPAY)
+                .orderId("ORDER_001")
+                .refundNo("REFUND_001")
+                .refundAmount(new BigDecimal("10.00"))
+                .success(true)
+                .build();
+        when(orderLockManager.executeWithLock(anyString(), any()))
+                .thenThrow(new OrderLockTimeoutException("订单正在处理中，请稍后重试: ORDER_001"));
+        when(spillStore.spill(event)).thenReturn(true);
+
+        listener.handleRefundEvent(event);
+
+        verify(spillStore).spill(event);
+    }
+
+    @Test
+    @DisplayName("发件箱中继同步处理时等待订单锁超时 - 异常抛给中继按投递失败重试，不落盘")
+    void processPaymentEvent_LockTimeout_Propagates() {
+        when(orderLockManager.executeWithLock(anyString(), any()))
+                .thenThrow(new OrderLockTimeoutException("订单正在处理中，请稍后重试: ORDER_001"));
+
+        assertThatThrownBy(() -> listener.processPaymentEvent(paymentEvent()))
+                .isInstanceOf(OrderLockTimeoutException.class);
+
+        verifyNoInteractions(spillStore);
+    }
+
+    @Test
+    @DisplayName("已成功的退款被平台通知为失败 - 同一事务内释放已累加的退款金额")
+    void refundNotify_SuccessThenFailed_ReleasesAmount() {
+        RefundRecordEntity refund = new RefundRecordEntity();
+        refund.setId(7L);
+        refund.setTransactionId(1L);
+        refund.setRefundNo("REFUND_001");
+        refund.setRefundAmount(new BigDecimal("10.00"));
+        refund.setStatus(RefundStatus.SUCCESS);
+        when(refundRecordRepository.findByRefundNo("REFUND_001")).thenReturn(Optional.of(refund));
+        when(transactionRepository.releaseRefundedAmount(eq(1L), eq(new BigDecimal("10.00")), any(LocalDateTime.class)))
+                .thenReturn(1);
+        runWithLockAndTransaction();
+
+        boolean handled = listener.processRefundEvent(refundNotify(false));
+
+        assertThat(handled).isTrue();
+        assertThat(refund.getStatus()).isEqualTo(RefundStatus.FAILED);
+        verify(transactionTemplate).execute(any());
+        verify(transactionRepository).releaseRefundedAmount(eq(1L), eq(new BigDecimal("10.00")), any(LocalDateTime.class));
+        verify(transactionCache).invalidate(1L);
+    }
+
+    @Test
+    @DisplayName("已失败的退款重复收到失败通知 - 不重复释放退款金额")
+    void refundNotify_FailedAgain_NotReleasedTwice() {
+        RefundRecordEntity refund = new RefundRecordEntity();
+        refund.setId(7L);
+        refund.setTransactionId(1L);
+        refund.setRefundNo("REFUND_001");
+        refund.setRefundAmount(new BigDecimal("10.00"));
+        refund.setStatus(RefundStatus.FAILED);
+        when(refundRecordRepository.findByRefundNo("REFUND_001")).thenReturn(Optional.of(refund));
+        runWithLockAndTransaction();
+
+        assertThat(listener.processRefundEvent(refundNotify(false))).isTrue();
+
+        verify(transactionRepository, never()).releaseRefundedAmount(any(), any(), any());
+    }
+
+    /**
+     * 订单锁和事务模板直接执行传入的操作
+     */
+    private void runWithLockAndTransaction() {
+        when(orderLockManager.executeWithLock(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(mock(TransactionStatus.class)));
+    }
+
+    private RefundEvent refundNotify(boolean success) {
+        return RefundEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.REFUND_NOTIFY)
+                .platform(PaymentPlatform.WXPAY)
+                .orderId("ORDER_001")
+                .refundNo("REFUND_001")
+                .refundAmount(new BigDecimal("10.00"))
+                .success(success)
+                .build();
+    }
+
+    private PaymentEvent paymentEvent() {
+        return PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.NOTIFY)
+                .platform(PaymentPlatform.ALIPAY)
+                .orderId("ORDER_001")
+                .tradeNo("TRADE_001")
+                .amount(new BigDecimal("88.88"))
+                .success(true)
+                .build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentEventLogEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import com.github.nonfou.mpay.transaction.repository.PaymentEventLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * PaymentEventLogBatchWriter 测试
+ * 以记录调用的 JdbcTemplate 代替数据库，按每次 INSERT 的行数验证凑批与失败处理
+ */
+@DisplayName("事件日志批量写入测试")
+class PaymentEventLogBatchWriterTest {
+
+    private RecordingJdbcTemplate jdbcTemplate;
+    private PaymentEventProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentEventLogBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new RecordingJdbcTemplate();
+        properties = new PaymentEventProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new PaymentEventLogBatchWriter(jdbcTemplate, mock(PaymentEventLogRepository.class),
+                properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("凑满 batch-size 后立即写入，不等待 flush-interval-ms")
+    void flushOnSize() throws InterruptedException {
+        properties.getLogWriter().setBatchSize(3);
+        properties.getLogWriter().setFlushIntervalMs(10_000);
+        writer.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            writer.write(eventLog(i));
+        }
+
+        assertThat(jdbcTemplate.rows.poll(5, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(10_000);
+    }
+
+    @Test
+    @DisplayName("未凑满一批时在 flush-interval-ms 后写入")
+    void flushOnInterval() throws InterruptedException {
+        properties.getLogWriter().setBatchSize(100);
+        properties.getLogWriter().setFlushIntervalMs(100);
+        writer.start();
+
+        writer.write(eventLog(1));
+        writer.write(eventLog(2));
+
+        Integer first = jdbcTemplate.rows.poll(5, TimeUnit.SECONDS);
+        assertThat(first).isNotNull();
+        int total = first;
+        while (total < 2) {
+            Integer next = jdbcTemplate.rows.poll(5, TimeUnit.SECONDS);
+            assertThat(next).isNotNull();
+            total += next;
+        }
+        assertThat(total).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("批量写入失败 - 改为逐条写入")
+    void batchFailure_FallsBackToSingleRows() throws InterruptedException {
+        properties.getLogWriter().setBatchSize(3);
+        properties.getLogWriter().setFlushIntervalMs(10_000);
+        jdbcTemplate.failure = rows -> rows > 1 ? new DataAccessResourceFailureException("packet too large") : null;
+        writer.start();
+
+        for (int i = 0; i < 3; i++) {
+            writer.write(eventLog(i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(jdbcTemplate.rows.poll(5, TimeUnit.SECONDS)).isEqualTo(1);
+        }
+        assertThat(meterRegistry.get("payment.event.log.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("非 DataAccessException 的写入失败 - 丢弃的日志同样计数")
+    void unexpectedFailure_CountedAsDropped() {
+        // 未启动写入线程时由调用方同步写入
+        jdbcTemplate.failure = rows -> new IllegalStateException("参数绑定失败");
+
+        writer.write(eventLog(1));
+        writer.write(eventLog(2));
+
+        assertThat(jdbcTemplate.rows).isEmpty();
+        assertThat(meterRegistry.get("payment.event.log.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("未凑满一批时，日志从入队到写入不超过一个 flush-interval-ms")
+    void flushOnInterval_SingleDeadline() throws InterruptedException {
+        properties.getLogWriter().setBatchSize(100);
+        properties.getLogWriter().setFlushIntervalMs(1_000);
+        writer.start();
+        // 写入线程已空等一段时间，第一条日志到达后不再重新计时
+        Thread.sleep(800);
+
+        long start = System.nanoTime();
+        writer.write(eventLog(1));
+
+        assertThat(jdbcTemplate.rows.poll(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_500);
+    }
+
+    @Test
+    @DisplayName("事务中写入 - 提交后才写入日志")
+    void inTransaction_WrittenAfterCommit() {
+        // 未启动写入线程时同步写入，便于直接观察写入时机
+        TransactionSynchronizationManager.initSynchronization();
+
+        writer.write(eventLog(1));
+        assertThat(jdbcTemplate.rows).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(jdbcTemplate.rows).containsExactly(1);
+    }
+
+    @Test
+    @DisplayName("事务中写入 - 事务回滚时不写入日志")
+    void inTransaction_DiscardedOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        writer.write(eventLog(1));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(jdbcTemplate.rows).isEmpty();
+    }
+
+    @Test
+    @DisplayName("失败日志 - 事务回滚后仍写入")
+    void failureLog_WrittenAfterRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        writer.writeAfterCompletion(eventLog(1));
+        assertThat(jdbcTemplate.rows).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertThat(jdbcTemplate.rows).containsExactly(1);
+    }
+
+    @Test
+    @DisplayName("关闭批量写入 - 直接保存，随当前事务提交或回滚")
+    void disabled_SavedInTransaction() {
+        PaymentEventLogRepository repository = mock(PaymentEventLogRepository.class);
+        properties.getLogWriter().setEnabled(false);
+        writer = new PaymentEventLogBatchWriter(jdbcTemplate, repository, properties, meterRegistry);
+        TransactionSynchronizationManager.initSynchronization();
+        PaymentEventLogEntity eventLog = eventLog(1);
+
+        writer.write(eventLog);
+
+        verify(repository).save(eventLog);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+    }
+
+    private static PaymentEventLogEntity eventLog(int i) {
+        PaymentEventLogEntity eventLog = new PaymentEventLogEntity();
+        eventLog.setOrderId("ORDER_" + i);
+        eventLog.setEventType(PaymentEventType.NOTIFY);
+        eventLog.setPlatform(PaymentPlatform.ALIPAY);
+        eventLog.setSuccess(true);
+        return eventLog;
+    }
+
+    /**
+     * 记录每次 INSERT 的行数，可按行数模拟写入失败
+     */
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private final BlockingQueue<Integer> rows = new LinkedBlockingQueue<>();
+        private volatile IntFunction<RuntimeException> failure = count -> null;
+
+        @Override
+        public int update(String sql, Object... args) {
+            int count = args.length / 14;
+            RuntimeException e = failure.apply(count);
+            if (e != null) {
+                throw e;
+            }
+            rows.add(count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.transaction.entity.PaymentEventOutboxEntity;
+import com.github.nonfou.mpay.transaction.enums.OutboxStatus;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.lock.LeaderElector;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import com.github.nonfou.mpay.transaction.repository.PaymentEventOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * PaymentEventOutboxRelay 测试
+ * 只有监听器返回处理成功的事件才标记完成，失败的事件退避后重试，超过最大次数标记为 FAILED；
+ * 只有持有租约的节点投递
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("发件箱中继测试")
+class PaymentEventOutboxRelayTest {
+
+    @Mock
+    private PaymentEventOutboxRepository outboxRepository;
+
+    @Mock
+    private PaymentEventListener eventListener;
+
+    @Mock
+    private LeaderElector leaderElector;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final PaymentEventCodec codec = new PaymentEventCodec(new ObjectMapper());
+    private PaymentEventProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentEventOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PaymentEventProperties();
+        properties.getOutbox().setBatchSize(10);
+        properties.getOutbox().setMaxAttempts(3);
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(leaderElector.isLeader(PaymentEventOutboxRelay.TASK_NAME)).thenReturn(true);
+        relay = new PaymentEventOutboxRelay(outboxRepository, eventListener, codec, leaderElector, eventPublisher,
+                properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("处理成功 - 标记完成")
+    void handled_MarkedDone() {
+        PaymentEventOutboxEntity outbox = outbox(1L);
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(outbox));
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class))).thenReturn(true);
+
+        relay.relay();
+
+        verify(outboxRepository).markDone(eq(List.of(1L)), any(LocalDateTime.class));
+        verify(outboxRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("支付事件处理成功 - 本地发布投递完成事件，处理失败时不发布")
+    void handled_PublishesDelivered() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(List.of(outbox(1L), outbox(2L)))
+                .thenReturn(List.of());
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class))).thenReturn(true, false);
+
+        relay.relay();
+
+        ArgumentCaptor<PaymentEventDelivered> captor = ArgumentCaptor.forClass(PaymentEventDelivered.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().getEvent().getOrderId()).isEqualTo("ORDER_1");
+    }
+
+    @Test
+    @DisplayName("监听器返回失败 - 保持待投递并推迟下次投递，同一轮不再读取")
+    void handlerFailed_StaysPendingWithBackoff() {
+        PaymentEventOutboxEntity outbox = outbox(1L);
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(outbox));
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class))).thenReturn(false);
+
+        LocalDateTime before = LocalDateTime.now();
+        relay.relay();
+
+        verify(outboxRepository, never()).markDone(anyCollection(), any());
+        verify(outboxRepository).save(outbox);
+        verify(outboxRepository, times(1)).findDue(any(LocalDateTime.class), any(Limit.class));
+        assertThat(outbox.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(outbox.getAttempts()).isEqualTo(1);
+        assertThat(outbox.getLastError()).isEqualTo("事件处理失败");
+        assertThat(outbox.getNextAttemptAt()).isAfter(before);
+    }
+
+    @Test
+    @DisplayName("持续失败 - 达到最大次数后标记为 FAILED")
+    void handlerKeepsFailing_MarkedFailedAfterMaxAttempts() {
+        PaymentEventOutboxEntity outbox = outbox(1L);
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(outbox));
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class)))
+                .thenReturn(false)
+                .thenThrow(new IllegalStateException("数据库不可用"))
+                .thenReturn(false);
+
+        relay.relay();
+        assertThat(outbox.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        relay.relay();
+        assertThat(outbox.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(outbox.getLastError()).isEqualTo("数据库不可用");
+        relay.relay();
+
+        assertThat(outbox.getAttempts()).isEqualTo(3);
+        assertThat(outbox.getStatus()).isEqualTo(OutboxStatus.FAILED);
+        verify(outboxRepository, never()).markDone(anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("一批中部分失败 - 仅成功的事件标记完成")
+    void partialFailure_OnlyHandledMarkedDone() {
+        List<PaymentEventOutboxEntity> batch = new ArrayList<>(List.of(outbox(1L), outbox(2L), outbox(3L)));
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class))).thenReturn(batch);
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class))).thenReturn(true, false, true);
+
+        relay.relay();
+
+        verify(outboxRepository).markDone(eq(List.of(1L, 3L)), any(LocalDateTime.class));
+        assertThat(batch.get(1).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("同一订单的事件失败 - 本批中该订单之后的事件不投递，其他订单不受影响")
+    void sameOrderFailure_LaterEventsHeld() {
+        PaymentEventOutboxEntity first = outbox(1L, "ORDER_A");
+        PaymentEventOutboxEntity second = outbox(2L, "ORDER_A");
+        PaymentEventOutboxEntity other = outbox(3L, "ORDER_B");
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(List.of(first, second, other));
+        when(eventListener.processPaymentEvent(any(PaymentEvent.class))).thenReturn(false, true);
+
+        relay.relay();
+
+        ArgumentCaptor<PaymentEvent> events = ArgumentCaptor.forClass(PaymentEvent.class);
+        verify(eventListener, times(2)).processPaymentEvent(events.capture());
+        assertThat(events.getAllValues()).extracting(PaymentEvent::getTradeNo).containsExactly("TRADE_1", "TRADE_3");
+        verify(outboxRepository).markDone(eq(List.of(3L)), any(LocalDateTime.class));
+        assertThat(second.getAttempts()).isZero();
+    }
+
+    @Test
+    @DisplayName("非租约持有节点 - 不读取发件箱")
+    void notLeader_Skipped() {
+        when(leaderElector.isLeader(PaymentEventOutboxRelay.TASK_NAME)).thenReturn(false);
+
+        relay.relay();
+
+        verifyNoInteractions(outboxRepository, eventListener);
+    }
+
+    @Test
+    @DisplayName("待投递数指标读取轮询时缓存的值，不在每次采集时 COUNT")
+    void pendingGauge_Cached() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of());
+        when(outboxRepository.countByStatus(OutboxStatus.PENDING)).thenReturn(42L);
+
+        relay.relay();
+        relay.relay();
+
+        assertThat(meterRegistry.get("payment.event.outbox.pending").gauge().value()).isEqualTo(42);
+        assertThat(meterRegistry.get("payment.event.outbox.pending").gauge().value()).isEqualTo(42);
+        verify(outboxRepository, times(1)).countByStatus(OutboxStatus.PENDING);
+    }
+
+    @Test
+    @DisplayName("退避间隔按失败次数翻倍，不超过上限")
+    void backoff_DoublesUpToMax() {
+        properties.getOutbox().setRetryBackoffMs(1000);
+        properties.getOutbox().setMaxRetryBackoffMs(5000);
+
+        assertThat(relay.backoff(1)).isEqualTo(1000);
+        assertThat(relay.backoff(2)).isEqualTo(2000);
+        assertThat(relay.backoff(3)).isEqualTo(4000);
+        assertThat(relay.backoff(4)).isEqualTo(5000);
+        assertThat(relay.backoff(100)).isEqualTo(5000);
+    }
+
+    private PaymentEventOutboxEntity outbox(Long id) {
+        return outbox(id, "ORDER_" + id);
+    }
+
+    private PaymentEventOutboxEntity outbox(Long id, String orderId) {
+        PaymentEvent event = PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.NOTIFY)
+                .platform(PaymentPlatform.ALIPAY)
+                .orderId(orderId)
+                .tradeNo("TRADE_" + id)
+                .amount(new BigDecimal("88.88"))
+                .success(true)
+                .build();
+        PaymentEventOutboxEntity outbox = new PaymentEventOutboxEntity();
+        outbox.setId(id);
+        outbox.setEventKind(codec.kindOf(event));
+        outbox.setEventType(event.getEventType().name());
+        outbox.setOrderId(event.getOrderId());
+        outbox.setPayload(codec.encodePayload(event));
+        return outbox;
+    }
+}
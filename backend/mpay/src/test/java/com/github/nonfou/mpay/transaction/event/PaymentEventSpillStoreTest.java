@@ -0,0 +1,116 @@
+package com.github.nonfou.mpay.transaction.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.properties.PaymentEventProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEvent;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PaymentEventSpillStore 测试
+ * 落盘文件写入临时目录
+ */
+@DisplayName("支付事件落盘存储测试")
+class PaymentEventSpillStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private PaymentEventProperties properties;
+    private PaymentEventSpillStore store;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PaymentEventProperties();
+        properties.getSpill().setDirectory(dir.toString());
+        store = new PaymentEventSpillStore(new PaymentEventCodec(new ObjectMapper()), properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("落盘后按写入顺序回放，回放后文件删除")
+    void spillThenDrain_RoundTrip() {
+        assertThat(store.spill(event("ORDER_001"))).isTrue();
+        assertThat(store.spill(event("ORDER_002"))).isTrue();
+        assertThat(store.hasPending()).isTrue();
+
+        List<ApplicationEvent> replayed = new ArrayList<>();
+        int count = store.drain(replayed::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(replayed).extracting(e -> ((PaymentEvent) e).getOrderId())
+                .containsExactly("ORDER_001", "ORDER_002");
+        assertThat(((PaymentEvent) replayed.get(0)).getAmount()).isEqualTo(new BigDecimal("88.88"));
+        assertThat(store.hasPending()).isFalse();
+        assertThat(store.drain(replayed::add)).isZero();
+    }
+
+    @Test
+    @DisplayName("文件中有损坏或写入中断的行 - 跳过该行，其余事件照常回放")
+    void corruptLines_Skipped() throws Exception {
+        store.spill(event("ORDER_001"));
+        Path file = dir.resolve("spill.log");
+        Files.writeString(file, "not-json\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        store.spill(event("ORDER_002"));
+        // 模拟写入中途宕机留下的半行
+        Files.writeString(file, "{\"kind\":\"PAYMENT\",\"payload\":{\"orderId\":\"ORD", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        List<ApplicationEvent> replayed = new ArrayList<>();
+        int count = store.drain(replayed::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(replayed).extracting(e -> ((PaymentEvent) e).getOrderId())
+                .containsExactly("ORDER_001", "ORDER_002");
+        assertThat(store.hasPending()).isFalse();
+    }
+
+    @Test
+    @DisplayName("上次回放中断 - 遗留的回放文件先于新落盘事件处理")
+    void interruptedReplay_ReplayedFirst() throws Exception {
+        store.spill(event("ORDER_001"));
+        Files.move(dir.resolve("spill.log"), dir.resolve("spill.replay"));
+        store.spill(event("ORDER_002"));
+
+        List<ApplicationEvent> replayed = new ArrayList<>();
+        store.drain(replayed::add);
+        store.drain(replayed::add);
+
+        assertThat(replayed).extracting(e -> ((PaymentEvent) e).getOrderId())
+                .containsExactly("ORDER_001", "ORDER_002");
+    }
+
+    @Test
+    @DisplayName("关闭落盘 - 不写入文件")
+    void disabled_NotSpilled() {
+        properties.getSpill().setEnabled(false);
+
+        assertThat(store.spill(event("ORDER_001"))).isFalse();
+        assertThat(store.hasPending()).isFalse();
+    }
+
+    private PaymentEvent event(String orderId) {
+        return PaymentEvent.builder()
+                .source(this)
+                .eventType(PaymentEventType.NOTIFY)
+                .platform(PaymentPlatform.WXPAY)
+                .orderId(orderId)
+                .amount(new BigDecimal("88.88"))
+                .success(true)
+                .build();
+    }
+}
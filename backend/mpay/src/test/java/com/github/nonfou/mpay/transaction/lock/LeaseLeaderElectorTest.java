@@ -0,0 +1,97 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.repository.SchedulerLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LeaseLeaderElector 测试
+ * 两个选举器代表两个节点，共用同一张 scheduler_lease 表
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("数据库租约主节点选举测试")
+class LeaseLeaderElectorTest {
+
+    private static final String TASK = "test-task";
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @AfterEach
+    void tearDown() {
+        leaseRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("第一次运行 - 创建租约成为主节点，之后续约保持主节点")
+    void firstRun_AcquiresAndRenews() {
+        LeaseLeaderElector node = new LeaseLeaderElector(leaseRepository, 60);
+
+        assertThat(node.isLeader(TASK)).isTrue();
+        assertThat(node.isLeader(TASK)).isTrue();
+        assertThat(leaseRepository.findById(TASK)).isPresent();
+    }
+
+    @Test
+    @DisplayName("租约未过期 - 其他节点不能接管")
+    void leaseHeld_OtherNodeRejected() {
+        LeaseLeaderElector first = new LeaseLeaderElector(leaseRepository, 60);
+        LeaseLeaderElector second = new LeaseLeaderElector(leaseRepository, 60);
+
+        assertThat(first.isLeader(TASK)).isTrue();
+        assertThat(second.isLeader(TASK)).isFalse();
+        assertThat(first.isLeader(TASK)).isTrue();
+    }
+
+    @Test
+    @DisplayName("持有者停止续约、租约过期 - 其他节点接管，原持有者不再是主节点")
+    void leaseExpired_OtherNodeTakesOver() {
+        // 租约时长为负数，创建后立即过期，模拟持有者宕机
+        LeaseLeaderElector crashed = new LeaseLeaderElector(leaseRepository, -1);
+        LeaseLeaderElector standby = new LeaseLeaderElector(leaseRepository, 60);
+
+        assertThat(crashed.isLeader(TASK)).isTrue();
+        assertThat(standby.isLeader(TASK)).isTrue();
+        assertThat(crashed.isLeader(TASK)).isFalse();
+    }
+
+    @Test
+    @DisplayName("不同任务的租约互不影响")
+    void differentTasks_Independent() {
+        LeaseLeaderElector first = new LeaseLeaderElector(leaseRepository, 60);
+        LeaseLeaderElector second = new LeaseLeaderElector(leaseRepository, 60);
+
+        assertThat(first.isLeader("task-a")).isTrue();
+        assertThat(second.isLeader("task-b")).isTrue();
+        assertThat(second.isLeader("task-a")).isFalse();
+        assertThat(first.isLeader("task-b")).isFalse();
+    }
+
+    @Test
+    @DisplayName("未选主时写入的执行进度 - 不阻止之后的选主，续约时保留进度")
+    void lastRunAtRecord_DoesNotBlockElection() {
+        LocalDateTime lastRunAt = LocalDateTime.now().minusMinutes(1).withNano(0);
+        leaseRepository.insertLastRunAt(TASK, lastRunAt);
+        LeaseLeaderElector node = new LeaseLeaderElector(leaseRepository, 60);
+
+        assertThat(node.isLeader(TASK)).isTrue();
+        assertThat(leaseRepository.findLastRunAt(TASK)).contains(lastRunAt);
+
+        LocalDateTime next = lastRunAt.plusSeconds(5);
+        assertThat(leaseRepository.updateLastRunAt(TASK, next)).isEqualTo(1);
+        assertThat(leaseRepository.findLastRunAt(TASK)).contains(next);
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.transaction.properties.OrderLockProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * MysqlOrderLockManager 测试
+ * 以模拟的 JDBC 连接验证 GET_LOCK / RELEASE_LOCK 的调用顺序与超时处理
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MySQL 命名订单锁测试")
+class MysqlOrderLockManagerTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement getLock;
+
+    @Mock
+    private PreparedStatement releaseLock;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MysqlOrderLockManager lockManager;
+
+    @BeforeEach
+    void setUp() {
+        OrderLockProperties properties = new OrderLockProperties();
+        properties.setWaitTimeoutMs(1500);
+        meterRegistry = new SimpleMeterRegistry();
+        lockManager = new MysqlOrderLockManager(dataSource, properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("获取命名锁后执行操作，完成后释放并归还连接")
+    void acquired_RunsAndReleases() throws Exception {
+        stubGetLock(1);
+        when(connection.prepareStatement("SELECT RELEASE_LOCK(?)")).thenReturn(releaseLock);
+        when(releaseLock.executeQuery()).thenReturn(mock(ResultSet.class));
+
+        String result = lockManager.executeWithLock("ORDER_001", () -> "done");
+
+        assertThat(result).isEqualTo("done");
+        verify(getLock).setString(1, "easy-pay:order:ORDER_001");
+        // 1500 毫秒向上取整为 2 秒
+        verify(getLock).setInt(2, 2);
+        InOrder inOrder = inOrder(getLock, releaseLock, connection);
+        inOrder.verify(getLock).executeQuery();
+        inOrder.verify(releaseLock).setString(1, "easy-pay:order:ORDER_001");
+        inOrder.verify(releaseLock).executeQuery();
+        inOrder.verify(connection).close();
+    }
+
+    @Test
+    @DisplayName("等待命名锁超时 - 抛出 OrderLockTimeoutException，不执行操作")
+    void timeout_Throws() throws Exception {
+        stubGetLock(0);
+        Runnable action = mock(Runnable.class);
+
+        assertThatThrownBy(() -> lockManager.runWithLock("ORDER_001", action))
+                .isInstanceOf(OrderLockTimeoutException.class);
+
+        verify(action, never()).run();
+        verify(connection, never()).prepareStatement("SELECT RELEASE_LOCK(?)");
+        verify(connection).close();
+        assertThat(meterRegistry.get("payment.order.lock.timeout").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("订单号过长 - 锁名取摘要，不超过 64 个字符")
+    void longOrderId_LockNameBounded() {
+        String orderId = "O".repeat(100);
+
+        String lockName = MysqlOrderLockManager.lockName(orderId);
+
+        assertThat(lockName).hasSizeLessThanOrEqualTo(64).startsWith("easy-pay:order:");
+        assertThat(MysqlOrderLockManager.lockName(orderId)).isEqualTo(lockName);
+        assertThat(MysqlOrderLockManager.lockName("O".repeat(101))).isNotEqualTo(lockName);
+    }
+
+    /**
+     * GET_LOCK 返回值：1 获取成功，0 超时
+     */
+    private void stubGetLock(int result) throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement("SELECT GET_LOCK(?, ?)")).thenReturn(getLock);
+        when(getLock.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(result);
+    }
+}
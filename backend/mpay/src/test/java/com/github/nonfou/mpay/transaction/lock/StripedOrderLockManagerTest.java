@@ -0,0 +1,126 @@
+package com.github.nonfou.mpay.transaction.lock;
+
+import com.github.nonfou.mpay.transaction.properties.OrderLockProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * StripedOrderLockManager 测试
+ * 由另一个线程持有订单锁，验证等锁超时与分段
+ */
+@DisplayName("单机分段订单锁测试")
+class StripedOrderLockManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("同一订单被占用 - 等待超时抛出 OrderLockTimeoutException 并计数")
+    void sameOrder_TimesOut() throws Exception {
+        StripedOrderLockManager lockManager = lockManager(1024, 100);
+        CountDownLatch release = holdLock(lockManager, "ORDER_001");
+        try {
+            assertThatThrownBy(() -> lockManager.executeWithLock("ORDER_001", () -> "never"))
+                    .isInstanceOf(OrderLockTimeoutException.class);
+            assertThat(meterRegistry.get("payment.order.lock.timeout").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("不同分段的订单 - 互不阻塞")
+    void differentStripes_DoNotBlock() throws Exception {
+        StripedOrderLockManager lockManager = lockManager(1024, 100);
+        String other = "ORDER_002";
+        for (int i = 3; lockManager.lockFor(other) == lockManager.lockFor("ORDER_001"); i++) {
+            other = "ORDER_" + i;
+        }
+        CountDownLatch release = holdLock(lockManager, "ORDER_001");
+        try {
+            assertThat(lockManager.executeWithLock(other, () -> "done")).isEqualTo("done");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("分段数为 1 - 不同订单共用一把锁")
+    void singleStripe_SharedByAllOrders() throws Exception {
+        StripedOrderLockManager lockManager = lockManager(1, 100);
+        CountDownLatch release = holdLock(lockManager, "ORDER_001");
+        try {
+            assertThatThrownBy(() -> lockManager.executeWithLock("ORDER_002", () -> "never"))
+                    .isInstanceOf(OrderLockTimeoutException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("同一订单总是映射到同一把锁，分段数向上取整为 2 的幂")
+    void lockFor_StableAndBounded() {
+        StripedOrderLockManager lockManager = lockManager(1000, 100);
+        Set<ReentrantLock> locks = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 10_000; i++) {
+            String orderId = "ORDER_" + i;
+            assertThat(lockManager.lockFor(orderId)).isSameAs(lockManager.lockFor(orderId));
+            locks.add(lockManager.lockFor(orderId));
+        }
+        assertThat(locks).hasSizeLessThanOrEqualTo(1024).hasSizeGreaterThan(512);
+    }
+
+    @Test
+    @DisplayName("订单号为空 - 不加锁直接执行")
+    void nullOrderId_RunsWithoutLock() {
+        StripedOrderLockManager lockManager = lockManager(1, 100);
+
+        assertThat(lockManager.executeWithLock(null, () -> "done")).isEqualTo("done");
+    }
+
+    private StripedOrderLockManager lockManager(int stripes, long waitTimeoutMs) {
+        OrderLockProperties properties = new OrderLockProperties();
+        properties.setStripes(stripes);
+        properties.setWaitTimeoutMs(waitTimeoutMs);
+        return new StripedOrderLockManager(properties, meterRegistry);
+    }
+
+    /**
+     * 在另一个线程持有订单锁，返回的 latch 计数归零后释放
+     */
+    private CountDownLatch holdLock(StripedOrderLockManager lockManager, String orderId) throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> lockManager.runWithLock(orderId, () -> {
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(holder.isDone()).isFalse();
+        return release;
+    }
+}
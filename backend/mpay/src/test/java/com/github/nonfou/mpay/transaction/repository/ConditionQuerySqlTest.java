@@ -0,0 +1,169 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.common.response.SeekCursor;
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.enums.PaymentEventType;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.RefundStatus;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 多条件查询生成 SQL 测试
+ * 验证每种条件组合只生成实际传入的谓词，不再出现 "? IS NULL OR" 形式的条件
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.github.nonfou.mpay.transaction.repository.ConditionQuerySqlTest$SqlCapture")
+@DisplayName("多条件查询 SQL 生成测试")
+class ConditionQuerySqlTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private RefundRecordRepository refundRecordRepository;
+
+    @Autowired
+    private PaymentEventLogRepository eventLogRepository;
+
+    @BeforeEach
+    void setUp() {
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    @DisplayName("交易 - 无条件时不生成 WHERE")
+    void transaction_NoConditions() {
+        transactionRepository.findByConditions(null, null, null, null, null, null, null, PageRequest.of(0, 10));
+
+        String sql = lastSelect("payment_transaction");
+        assertThat(sql).doesNotContain(" where ").doesNotContain("is null");
+        assertThat(sql).contains("order by").contains("created_at desc");
+    }
+
+    @Test
+    @DisplayName("交易 - 仅订单号")
+    void transaction_OrderIdOnly() {
+        transactionRepository.findByConditions("ORDER_001", null, null, null, null, null, null, PageRequest.of(0, 10));
+
+        String sql = lastSelect("payment_transaction");
+        assertThat(sql).contains("order_id=?")
+                .doesNotContain("trade_no=?").doesNotContain("status=?").doesNotContain("merchant_id=?")
+                .doesNotContain("created_at>=?").doesNotContain("created_at<=?")
+                .doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("交易 - 平台、状态与时间范围")
+    void transaction_PlatformStatusAndRange() {
+        transactionRepository.findByConditions(null, null, PaymentPlatform.ALIPAY, TransactionStatus.SUCCESS,
+                null, START, END, PageRequest.of(0, 10));
+
+        String sql = lastSelect("payment_transaction");
+        assertThat(sql).contains("platform=?").contains("status=?")
+                .contains("created_at>=?").contains("created_at<=?")
+                .doesNotContain("order_id=?").doesNotContain("merchant_id=?")
+                .doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("交易 - 游标分页只追加游标条件且不执行 COUNT")
+    void transaction_Cursor() {
+        transactionRepository.findByConditionsAfter("ORDER_001", null, null, null, null, null, null,
+                new SeekCursor(START, 100L), 20);
+
+        assertThat(SqlCapture.STATEMENTS).noneMatch(s -> s.contains("count("));
+        String sql = lastSelect("payment_transaction");
+        assertThat(sql).contains("order_id=?").contains("created_at<?").contains("id<?")
+                .doesNotContain("status=?").doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("交易 - 计数只包含传入条件")
+    void transaction_Count() {
+        transactionRepository.countByConditions(null, null, null, TransactionStatus.PENDING, "M001", null, null);
+
+        String sql = lastStatement("count(");
+        assertThat(sql).contains("status=?").contains("merchant_id=?")
+                .doesNotContain("order_id=?").doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("退款 - 退款单号与状态")
+    void refund_RefundNoAndStatus() {
+        refundRecordRepository.findByConditions(null, "REFUND_001", null, RefundStatus.SUCCESS, null, null,
+                PageRequest.of(0, 10));
+
+        String sql = lastSelect("refund_record");
+        assertThat(sql).contains("refund_no=?").contains("status=?")
+                .doesNotContain("order_id=?").doesNotContain("platform=?")
+                .doesNotContain("created_at>=?").doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("退款 - 仅时间范围")
+    void refund_RangeOnly() {
+        refundRecordRepository.findByConditions(null, null, null, null, START, END, PageRequest.of(0, 10));
+
+        String sql = lastSelect("refund_record");
+        assertThat(sql).contains("created_at>=?").contains("created_at<=?")
+                .doesNotContain("refund_no=?").doesNotContain("status=?").doesNotContain("is null");
+    }
+
+    @Test
+    @DisplayName("事件日志 - 交易ID、事件类型与成功标记")
+    void eventLog_TransactionTypeAndSuccess() {
+        eventLogRepository.findByConditions(null, 1L, PaymentEventType.NOTIFY, null, Boolean.FALSE,
+                null, null, PageRequest.of(0, 10));
+
+        String sql = lastSelect("payment_event_log");
+        assertThat(sql).contains("transaction_id=?").contains("event_type=?").contains("success=?")
+                .doesNotContain("order_id=?").doesNotContain("platform=?").doesNotContain("is null");
+    }
+
+    private static String lastSelect(String table) {
+        return lastStatement("from " + table);
+    }
+
+    private static String lastStatement(String fragment) {
+        List<String> matched = SqlCapture.STATEMENTS.stream()
+                .filter(s -> s.contains(fragment))
+                .toList();
+        assertThat(matched).as("captured SQL containing [%s]", fragment).isNotEmpty();
+        return matched.get(matched.size() - 1);
+    }
+
+    /**
+     * 记录 Hibernate 生成的 SQL，由 hibernate.session_factory.statement_inspector 按类名实例化
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql.toLowerCase(Locale.ROOT));
+            return sql;
+        }
+    }
+}
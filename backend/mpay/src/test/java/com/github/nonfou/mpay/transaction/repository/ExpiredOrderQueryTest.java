@@ -0,0 +1,70 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 超时订单查询测试
+ * 订单按自身的 expire_at 判断是否超时，未记录 expire_at 的订单按创建时间兜底
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@DisplayName("超时订单查询测试")
+class ExpiredOrderQueryTest {
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Test
+    @DisplayName("按 expire_at 判断 - 超时时间未到的订单不返回，已支付订单不返回")
+    void findExpiredBatch_ByExpireAt() {
+        LocalDateTime now = LocalDateTime.now();
+        PaymentTransactionEntity expired = save("ORDER_A", TransactionStatus.PENDING, now.minusMinutes(1));
+        save("ORDER_B", TransactionStatus.PENDING, now.plusMinutes(10));
+        save("ORDER_C", TransactionStatus.SUCCESS, now.minusMinutes(1));
+        PaymentTransactionEntity fallback = save("ORDER_D", TransactionStatus.PENDING, null);
+
+        // 兜底时间晚于创建时间：未记录 expire_at 的订单同样超时；ORDER_B 虽然创建时间也早于兜底时间，仍按 expire_at 判断
+        assertThat(transactionRepository.findExpiredBatch(
+                TransactionStatus.PENDING, now, now.plusMinutes(1), 0L, Limit.of(10)))
+                .extracting(PaymentTransactionEntity::getId)
+                .containsExactly(expired.getId(), fallback.getId());
+    }
+
+    @Test
+    @DisplayName("未记录 expire_at - 创建时间未早于兜底时间时不返回")
+    void findExpiredBatch_FallbackNotReached() {
+        LocalDateTime now = LocalDateTime.now();
+        PaymentTransactionEntity expired = save("ORDER_A", TransactionStatus.PENDING, now.minusMinutes(1));
+        save("ORDER_B", TransactionStatus.PENDING, null);
+
+        assertThat(transactionRepository.findExpiredBatch(
+                TransactionStatus.PENDING, now, now.minusMinutes(30), 0L, Limit.of(10)))
+                .extracting(PaymentTransactionEntity::getId)
+                .containsExactly(expired.getId());
+    }
+
+    private PaymentTransactionEntity save(String orderId, TransactionStatus status, LocalDateTime expireAt) {
+        PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+        transaction.setOrderId(orderId);
+        transaction.setTradeNo("T_" + orderId);
+        transaction.setPlatform(PaymentPlatform.ALIPAY);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setStatus(status);
+        transaction.setExpireAt(expireAt);
+        return transactionRepository.saveAndFlush(transaction);
+    }
+}
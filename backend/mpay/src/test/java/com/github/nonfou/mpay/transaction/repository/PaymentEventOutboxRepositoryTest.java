@@ -0,0 +1,73 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.entity.PaymentEventOutboxEntity;
+import com.github.nonfou.mpay.transaction.enums.OutboxStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 发件箱查询测试
+ * 同一订单中排在退避事件之后的事件暂不投递，保证按写入顺序处理
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@DisplayName("发件箱查询测试")
+class PaymentEventOutboxRepositoryTest {
+
+    @Autowired
+    private PaymentEventOutboxRepository outboxRepository;
+
+    @Test
+    @DisplayName("同一订单的前一个事件退避中 - 之后的事件暂缓，其他订单照常投递")
+    void findDue_HoldsBackBehindBackoff() {
+        LocalDateTime now = LocalDateTime.now();
+        PaymentEventOutboxEntity backingOff = save("ORDER_A", OutboxStatus.PENDING, now.plusMinutes(1));
+        save("ORDER_A", OutboxStatus.PENDING, null);
+        PaymentEventOutboxEntity other = save("ORDER_B", OutboxStatus.PENDING, null);
+        save("ORDER_C", OutboxStatus.DONE, null);
+
+        assertThat(outboxRepository.findDue(now, Limit.of(10)))
+                .extracting(PaymentEventOutboxEntity::getId)
+                .containsExactly(other.getId());
+
+        // 前一个事件超过最大次数标记为失败后，不再阻塞之后的事件
+        backingOff.setStatus(OutboxStatus.FAILED);
+        outboxRepository.saveAndFlush(backingOff);
+
+        assertThat(outboxRepository.findDue(now, Limit.of(10)))
+                .extracting(PaymentEventOutboxEntity::getOrderId)
+                .containsExactly("ORDER_A", "ORDER_B");
+    }
+
+    @Test
+    @DisplayName("退避时间已到 - 同一订单的事件按写入顺序一起返回")
+    void findDue_BackoffElapsed_InOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        PaymentEventOutboxEntity first = save("ORDER_A", OutboxStatus.PENDING, now.minusSeconds(1));
+        PaymentEventOutboxEntity second = save("ORDER_A", OutboxStatus.PENDING, null);
+
+        assertThat(outboxRepository.findDue(now, Limit.of(10)))
+                .extracting(PaymentEventOutboxEntity::getId)
+                .containsExactly(first.getId(), second.getId());
+    }
+
+    private PaymentEventOutboxEntity save(String orderId, OutboxStatus status, LocalDateTime nextAttemptAt) {
+        PaymentEventOutboxEntity outbox = new PaymentEventOutboxEntity();
+        outbox.setEventKind("PAYMENT");
+        outbox.setEventType("NOTIFY");
+        outbox.setOrderId(orderId);
+        outbox.setPayload("{}");
+        outbox.setStatus(status);
+        outbox.setNextAttemptAt(nextAttemptAt);
+        return outboxRepository.saveAndFlush(outbox);
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PaymentTransactionRepository 并发退款测试
+ * 多线程同时对同一笔交易累加退款金额，验证不会丢失更新或超额退款
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("交易退款金额并发更新测试")
+class PaymentTransactionRepositoryConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("并发部分退款 - 恰好退满订单金额且不超额")
+    void addRefundedAmount_ConcurrentPartialRefunds() throws Exception {
+        PaymentTransactionEntity transaction = saveTransaction(new BigDecimal("100.00"));
+
+        // 40 次 10 元退款，只有 10 次能成功
+        int applied = hammer(transaction.getId(), new BigDecimal("10.00"), 40);
+
+        PaymentTransactionEntity reloaded = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertThat(applied).isEqualTo(10);
+        assertThat(reloaded.getRefundedAmount()).isEqualByComparingTo("100.00");
+        assertThat(reloaded.getStatus()).isEqualTo(TransactionStatus.REFUNDED);
+    }
+
+    @Test
+    @DisplayName("并发部分退款 - 金额不能整除时剩余部分不被退出")
+    void addRefundedAmount_ConcurrentRefundsWithRemainder() throws Exception {
+        PaymentTransactionEntity transaction = saveTransaction(new BigDecimal("100.00"));
+
+        // 7 元退款最多成功 14 次，剩余 2 元
+        int applied = hammer(transaction.getId(), new BigDecimal("7.00"), 40);
+
+        PaymentTransactionEntity reloaded = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertThat(applied).isEqualTo(14);
+        assertThat(reloaded.getRefundedAmount()).isEqualByComparingTo("98.00");
+        assertThat(reloaded.getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUNDED);
+    }
+
+    @Test
+    @DisplayName("超出可退金额 - 更新不生效")
+    void addRefundedAmount_ExceedAmount() {
+        PaymentTransactionEntity transaction = saveTransaction(new BigDecimal("50.00"));
+
+        int updated = transactionRepository.addRefundedAmount(
+                transaction.getId(), new BigDecimal("50.01"), LocalDateTime.now());
+
+        PaymentTransactionEntity reloaded = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertThat(updated).isZero();
+        assertThat(reloaded.getRefundedAmount()).isEqualByComparingTo("0.00");
+        assertThat(reloaded.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    @DisplayName("释放预占金额 - 全部释放后交易恢复为支付成功")
+    void releaseRefundedAmount_RestoresStatus() {
+        PaymentTransactionEntity transaction = saveTransaction(new BigDecimal("100.00"));
+        transactionRepository.addRefundedAmount(transaction.getId(), new BigDecimal("30.00"), LocalDateTime.now());
+        transactionRepository.addRefundedAmount(transaction.getId(), new BigDecimal("20.00"), LocalDateTime.now());
+
+        int first = transactionRepository.releaseRefundedAmount(
+                transaction.getId(), new BigDecimal("20.00"), LocalDateTime.now());
+        PaymentTransactionEntity partial = transactionRepository.findById(transaction.getId()).orElseThrow();
+        int second = transactionRepository.releaseRefundedAmount(
+                transaction.getId(), new BigDecimal("30.00"), LocalDateTime.now());
+        PaymentTransactionEntity reloaded = transactionRepository.findById(transaction.getId()).orElseThrow();
+
+        assertThat(first).isEqualTo(1);
+        assertThat(partial.getRefundedAmount()).isEqualByComparingTo("30.00");
+        assertThat(partial.getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUNDED);
+        assertThat(second).isEqualTo(1);
+        assertThat(reloaded.getRefundedAmount()).isEqualByComparingTo("0.00");
+        assertThat(reloaded.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    @DisplayName("释放金额超过已退款金额 - 更新不生效")
+    void releaseRefundedAmount_ExceedRefunded() {
+        PaymentTransactionEntity transaction = saveTransaction(new BigDecimal("100.00"));
+        transactionRepository.addRefundedAmount(transaction.getId(), new BigDecimal("10.00"), LocalDateTime.now());
+
+        int updated = transactionRepository.releaseRefundedAmount(
+                transaction.getId(), new BigDecimal("10.01"), LocalDateTime.now());
+
+        PaymentTransactionEntity reloaded = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertThat(updated).isZero();
+        assertThat(reloaded.getRefundedAmount()).isEqualByComparingTo("10.00");
+        assertThat(reloaded.getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUNDED);
+    }
+
+    private PaymentTransactionEntity saveTransaction(BigDecimal amount) {
+        PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+        transaction.setOrderId("ORDER_" + UUID.randomUUID());
+        transaction.setTradeNo("T" + UUID.randomUUID());
+        transaction.setPlatform(PaymentPlatform.ALIPAY);
+        transaction.setAmount(amount);
+        transaction.setStatus(TransactionStatus.SUCCESS);
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * 多线程同时发起退款，返回成功生效的次数
+     */
+    private int hammer(Long transactionId, BigDecimal refundAmount, int attempts) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(attempts);
+        try {
+            for (int i = 0; i < attempts; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return transactionRepository.addRefundedAmount(transactionId, refundAmount, LocalDateTime.now());
+                }));
+            }
+            start.countDown();
+
+            int applied = 0;
+            for (Future<Integer> future : futures) {
+                applied += future.get(30, TimeUnit.SECONDS);
+            }
+            return applied;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
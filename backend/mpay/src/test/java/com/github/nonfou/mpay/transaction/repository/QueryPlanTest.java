@@ -0,0 +1,242 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.RefundStatus;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 交易、退款查询执行计划测试
+ * <p>
+ * 写入一批数据后调用每个 Repository 查询，捕获 Hibernate 实际生成的 SQL 并带上参数执行 EXPLAIN，
+ * 记录执行计划并验证命中了对应的组合索引。
+ * 索引定义与 V1_3_0__add_query_indexes.sql 保持一致。
+ */
+@Slf4j
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.github.nonfou.mpay.transaction.repository.QueryPlanTest$SqlCapture")
+@DisplayName("查询执行计划测试")
+class QueryPlanTest {
+
+    private static final int ROWS = 2000;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private RefundRecordRepository refundRecordRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        TransactionStatus[] statuses = TransactionStatus.values();
+        RefundStatus[] refundStatuses = RefundStatus.values();
+        List<PaymentTransactionEntity> transactions = new ArrayList<>(ROWS);
+        List<RefundRecordEntity> refunds = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+            transaction.setOrderId("ORDER_" + i);
+            transaction.setTradeNo("T" + i);
+            transaction.setPlatform(i % 2 == 0 ? PaymentPlatform.ALIPAY : PaymentPlatform.WXPAY);
+            transaction.setAmount(new BigDecimal("100.00"));
+            transaction.setStatus(statuses[i % statuses.length]);
+            transaction.setMerchantId("M" + (i % 50));
+            transactions.add(transaction);
+
+            RefundRecordEntity refund = new RefundRecordEntity();
+            refund.setTransactionId((long) i + 1);
+            refund.setOrderId("ORDER_" + i);
+            refund.setRefundNo("R" + i);
+            refund.setPlatform(PaymentPlatform.ALIPAY);
+            refund.setRefundAmount(new BigDecimal("10.00"));
+            refund.setStatus(refundStatuses[i % refundStatuses.length]);
+            refunds.add(refund);
+        }
+        transactionRepository.saveAll(transactions);
+        refundRecordRepository.saveAll(refunds);
+        entityManager.flush();
+        entityManager.createNativeQuery("ANALYZE").executeUpdate();
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    @DisplayName("findExpiredOrders - 命中 (status, created_at)")
+    void findExpiredOrders() {
+        LocalDateTime now = LocalDateTime.now();
+        transactionRepository.findExpiredOrders(TransactionStatus.PENDING, now);
+
+        String plan = explain(lastStatement("payment_transaction"), TransactionStatus.PENDING.name(), now);
+
+        assertThat(plan).contains("IDX_PAYMENT_TRANS_STATUS_CREATED");
+    }
+
+    @Test
+    @DisplayName("countByStatusAndTimeRange - 命中 (status, created_at)")
+    void countByStatusAndTimeRange() {
+        LocalDateTime end = LocalDateTime.now();
+        LocalDateTime start = end.minusDays(1);
+        transactionRepository.countByStatusAndTimeRange(TransactionStatus.SUCCESS, start, end);
+
+        String plan = explain(lastStatement("count(", "payment_transaction"),
+                TransactionStatus.SUCCESS.name(), start, end);
+
+        assertThat(plan).contains("IDX_PAYMENT_TRANS_STATUS_CREATED");
+    }
+
+    @Test
+    @DisplayName("findByMerchantIdOrderByCreatedAtDesc - 命中 (merchant_id, created_at)")
+    void findByMerchantId() {
+        transactionRepository.findByMerchantIdOrderByCreatedAtDesc("M1", PageRequest.of(0, 20));
+
+        // 分页查询之后还有一条 count 查询，这里只取带排序的数据查询
+        String plan = explain(lastStatement("payment_transaction", "order by"), "M1", 20);
+
+        assertThat(plan).contains("IDX_PAYMENT_TRANS_MERCHANT_CREATED");
+    }
+
+    @Test
+    @DisplayName("findByTradeNo - 命中 trade_no 唯一约束的索引")
+    void findByTradeNo() {
+        transactionRepository.findByTradeNo("T1");
+
+        String plan = explain(lastStatement("payment_transaction", "trade_no=?"), "T1");
+
+        // 唯一约束来自列定义，索引名由数据库生成，这里只确认没有全表扫描
+        assertThat(plan).doesNotContain("TABLESCAN");
+    }
+
+    @Test
+    @DisplayName("退款 findByStatusAndCreatedAtBefore - 命中 (status, created_at)")
+    void refundFindByStatusAndCreatedAtBefore() {
+        LocalDateTime now = LocalDateTime.now();
+        refundRecordRepository.findByStatusAndCreatedAtBefore(RefundStatus.PENDING, now);
+
+        String plan = explain(lastStatement("refund_record"), RefundStatus.PENDING.name(), now);
+
+        assertThat(plan).contains("IDX_REFUND_STATUS_CREATED");
+    }
+
+    @Test
+    @DisplayName("退款 findByRefundNo - 命中唯一索引")
+    void refundFindByRefundNo() {
+        refundRecordRepository.findByRefundNo("R1");
+
+        String plan = explain(lastStatement("refund_record", "refund_no=?"), "R1");
+
+        assertThat(plan).contains("UK_REFUND_NO");
+    }
+
+    @Test
+    @DisplayName("重复交易号由数据库拒绝")
+    void duplicateTradeNoRejected() {
+        PaymentTransactionEntity duplicate = new PaymentTransactionEntity();
+        duplicate.setOrderId("ORDER_DUP");
+        duplicate.setTradeNo("T1");
+        duplicate.setPlatform(PaymentPlatform.ALIPAY);
+        duplicate.setAmount(new BigDecimal("1.00"));
+        duplicate.setStatus(TransactionStatus.PENDING);
+
+        assertThatThrownBy(() -> transactionRepository.saveAndFlush(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("重复退款单号由数据库拒绝")
+    void duplicateRefundNoRejected() {
+        RefundRecordEntity duplicate = new RefundRecordEntity();
+        duplicate.setTransactionId(1L);
+        duplicate.setOrderId("ORDER_1");
+        duplicate.setRefundNo("R1");
+        duplicate.setPlatform(PaymentPlatform.ALIPAY);
+        duplicate.setRefundAmount(new BigDecimal("1.00"));
+        duplicate.setStatus(RefundStatus.PENDING);
+
+        assertThatThrownBy(() -> refundRecordRepository.saveAndFlush(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    /**
+     * 取最后一条包含全部片段的 SQL
+     */
+    private static String lastStatement(String... fragments) {
+        List<String> matched = SqlCapture.STATEMENTS.stream()
+                .filter(sql -> {
+                    String lower = sql.toLowerCase(Locale.ROOT);
+                    return Arrays.stream(fragments).allMatch(lower::contains);
+                })
+                .toList();
+        assertThat(matched).as("未捕获到包含 %s 的 SQL", Arrays.toString(fragments)).isNotEmpty();
+        return matched.get(matched.size() - 1);
+    }
+
+    /**
+     * 按 Hibernate 生成的 SQL 和实际参数执行 EXPLAIN
+     */
+    private String explain(String sql, Object... args) {
+        assertThat(sql.chars().filter(c -> c == '?').count())
+                .as("参数个数与 SQL 占位符不一致: %s", sql)
+                .isEqualTo(args.length);
+        String plan = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    StringBuilder builder = new StringBuilder();
+                    while (resultSet.next()) {
+                        builder.append(resultSet.getString(1)).append('\n');
+                    }
+                    return builder.toString();
+                }
+            }
+        });
+        log.info("EXPLAIN {}\n{}", sql, plan);
+        return plan.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 记录 Hibernate 生成的 SQL，由 hibernate.session_factory.statement_inspector 按类名实例化
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
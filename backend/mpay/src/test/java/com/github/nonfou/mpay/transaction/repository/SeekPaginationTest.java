@@ -0,0 +1,116 @@
+package com.github.nonfou.mpay.transaction.repository;
+
+import com.github.nonfou.mpay.common.response.SeekCursor;
+import com.github.nonfou.mpay.transaction.config.JpaAuditingConfig;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 游标分页测试
+ * 多条记录的 createdAt 相同时按 id 区分先后，逐页翻完不重复、不遗漏
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class)
+@DisplayName("游标分页测试")
+class SeekPaginationTest {
+
+    private static final LocalDateTime SAME_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final LocalDateTime EARLIER = SAME_TIME.minusMinutes(1);
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        List<PaymentTransactionEntity> transactions = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            PaymentTransactionEntity transaction = new PaymentTransactionEntity();
+            transaction.setOrderId("ORDER_" + i);
+            transaction.setTradeNo("T" + i);
+            transaction.setPlatform(PaymentPlatform.ALIPAY);
+            transaction.setAmount(new BigDecimal("100.00"));
+            transaction.setStatus(TransactionStatus.SUCCESS);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        entityManager.flush();
+        // 审计字段写入当前时间，这里改为固定时间：前 5 条时间相同，后 2 条更早
+        entityManager.createNativeQuery("UPDATE payment_transaction SET created_at = :time WHERE order_id IN "
+                        + "('ORDER_0', 'ORDER_1', 'ORDER_2', 'ORDER_3', 'ORDER_4')")
+                .setParameter("time", SAME_TIME)
+                .executeUpdate();
+        entityManager.createNativeQuery("UPDATE payment_transaction SET created_at = :time WHERE order_id IN "
+                        + "('ORDER_5', 'ORDER_6')")
+                .setParameter("time", EARLIER)
+                .executeUpdate();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("createdAt 相同 - 按 id 倒序分页，逐页翻完不重复、不遗漏")
+    void sameCreatedAt_TieBrokenById() {
+        List<PaymentTransactionEntity> expected = new ArrayList<>(transactionRepository.findAll());
+        expected.sort(Comparator.comparing(PaymentTransactionEntity::getCreatedAt)
+                .thenComparing(PaymentTransactionEntity::getId)
+                .reversed());
+
+        List<Long> visited = new ArrayList<>();
+        SeekCursor cursor = null;
+        int pages = 0;
+        while (true) {
+            List<PaymentTransactionEntity> page = transactionRepository.findByConditionsAfter(
+                    null, null, null, null, null, null, null, cursor, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            pages++;
+            page.forEach(transaction -> visited.add(transaction.getId()));
+            PaymentTransactionEntity last = page.get(page.size() - 1);
+            cursor = SeekCursor.decode(new SeekCursor(last.getCreatedAt(), last.getId()).encode());
+        }
+
+        assertThat(pages).isEqualTo(4);
+        assertThat(visited).containsExactlyElementsOf(expected.stream().map(PaymentTransactionEntity::getId).toList());
+        assertThat(expected.get(0).getCreatedAt()).isEqualTo(SAME_TIME);
+        assertThat(expected.get(6).getCreatedAt()).isEqualTo(EARLIER);
+    }
+
+    @Test
+    @DisplayName("游标位于相同时间的中间 - 只返回同一时间 id 更小的记录和更早的记录")
+    void cursorInsideTie() {
+        List<Long> sameTimeIds = transactionRepository.findAll().stream()
+                .filter(transaction -> transaction.getCreatedAt().equals(SAME_TIME))
+                .map(PaymentTransactionEntity::getId)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        SeekCursor cursor = new SeekCursor(SAME_TIME, sameTimeIds.get(2));
+
+        List<PaymentTransactionEntity> rest = transactionRepository.findByConditionsAfter(
+                null, null, null, null, null, null, null, cursor, 10);
+
+        assertThat(rest).hasSize(4);
+        assertThat(rest.subList(0, 2)).extracting(PaymentTransactionEntity::getId)
+                .containsExactly(sameTimeIds.get(3), sameTimeIds.get(4));
+        assertThat(rest.subList(2, 4)).extracting(PaymentTransactionEntity::getCreatedAt)
+                .containsOnly(EARLIER);
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.nonfou.mpay.transaction.service;
+
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.properties.TransactionCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PaymentTransactionCache 测试
+ * 以计数的加载函数代替数据库查询，按加载次数判断是否命中缓存
+ */
+@DisplayName("交易查询缓存测试")
+class PaymentTransactionCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private PaymentTransactionCache cache;
+    private PaymentTransactionEntity stored;
+
+    @BeforeEach
+    void setUp() {
+        TransactionCacheProperties properties = new TransactionCacheProperties();
+        properties.setEnabled(true);
+        cache = new PaymentTransactionCache(properties, new SimpleMeterRegistry());
+
+        stored = new PaymentTransactionEntity();
+        stored.setId(1L);
+        stored.setOrderId("ORDER_001");
+        stored.setTradeNo("T_001");
+        stored.setPlatform(PaymentPlatform.ALIPAY);
+        stored.setAmount(new BigDecimal("100.00"));
+        stored.setStatus(TransactionStatus.PENDING);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    @DisplayName("命中缓存 - 不再加载，按不同标识查询共用同一份数据")
+    void hit_SharedAcrossIdentifiers() {
+        cache.findByOrderId("ORDER_001", this::load);
+        Optional<PaymentTransactionEntity> byTradeNo = cache.findByTradeNo("T_001", this::load);
+        Optional<PaymentTransactionEntity> byId = cache.findById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(byTradeNo).get().extracting(PaymentTransactionEntity::getOrderId).isEqualTo("ORDER_001");
+        assertThat(byId).get().extracting(PaymentTransactionEntity::getAmount).isEqualTo(new BigDecimal("100.00"));
+    }
+
+    @Test
+    @DisplayName("缓存保存副本 - 修改加载结果或读取结果都不影响缓存")
+    void returnsCopies() {
+        PaymentTransactionEntity loaded = cache.findById(1L, this::load).orElseThrow();
+        loaded.setStatus(TransactionStatus.SUCCESS);
+
+        PaymentTransactionEntity first = cache.findById(1L, this::load).orElseThrow();
+        first.setStatus(TransactionStatus.CLOSED);
+        PaymentTransactionEntity second = cache.findById(1L, this::load).orElseThrow();
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(first).isNotSameAs(second).isNotSameAs(stored);
+        assertThat(second.getStatus()).isEqualTo(TransactionStatus.PENDING);
+    }
+
+    @Test
+    @DisplayName("读写事务内加载 - 可能含未提交的修改，不放入缓存")
+    void readWriteTransaction_NotCached() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        cache.findById(1L, this::load);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        cache.findById(1L, this::load);
+        cache.findById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("加载期间发生失效 - 读到的旧数据不放入缓存")
+    void invalidatedDuringLoad_NotCached() {
+        cache.findById(1L, () -> {
+            Optional<PaymentTransactionEntity> old = load();
+            cache.invalidate(1L);
+            return old;
+        });
+        cache.findById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("事务内失效 - 提交后再移除一次，提交前重新放入的旧数据同样失效")
+    void invalidate_EvictsAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1L);
+        // 提交前其他线程读到旧数据并放入缓存
+        cache.findById(1L, this::load);
+        cache.findById(1L, this::load);
+        assertThat(loads.get()).isEqualTo(1);
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        cache.findById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private Optional<PaymentTransactionEntity> load() {
+        loads.incrementAndGet();
+        PaymentTransactionEntity copy = new PaymentTransactionEntity();
+        copy.setId(stored.getId());
+        copy.setOrderId(stored.getOrderId());
+        copy.setTradeNo(stored.getTradeNo());
+        copy.setPlatform(stored.getPlatform());
+        copy.setAmount(stored.getAmount());
+        copy.setStatus(stored.getStatus());
+        return Optional.of(copy);
+    }
+}
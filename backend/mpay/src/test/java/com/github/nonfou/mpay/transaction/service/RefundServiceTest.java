@@ -0,0 +1,275 @@
+package com.github.nonfou.mpay.transaction.service;
+
+import com.alipay.api.AlipayApiException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nonfou.mpay.common.error.BusinessException;
+import com.github.nonfou.mpay.common.error.ErrorCode;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayRefundRequest;
+import com.github.nonfou.mpay.payment.dto.alipay.AlipayRefundResponse;
+import com.github.nonfou.mpay.payment.resilience.GatewayUnavailableException;
+import com.github.nonfou.mpay.payment.service.AlipayService;
+import com.github.nonfou.mpay.transaction.dto.RefundRequest;
+import com.github.nonfou.mpay.transaction.dto.RefundResponse;
+import com.github.nonfou.mpay.transaction.entity.PaymentTransactionEntity;
+import com.github.nonfou.mpay.transaction.entity.RefundRecordEntity;
+import com.github.nonfou.mpay.transaction.enums.PaymentPlatform;
+import com.github.nonfou.mpay.transaction.enums.RefundStatus;
+import com.github.nonfou.mpay.transaction.enums.TransactionStatus;
+import com.github.nonfou.mpay.transaction.event.PaymentEventPublisher;
+import com.github.nonfou.mpay.transaction.lock.OrderLockManager;
+import com.github.nonfou.mpay.transaction.repository.PaymentTransactionRepository;
+import com.github.nonfou.mpay.transaction.repository.RefundRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * RefundService 测试
+ * 调用支付平台前预占退款金额，平台明确拒绝时释放，结果未知时保持预占；调用平台时不持有订单锁
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("退款服务测试")
+class RefundServiceTest {
+
+    private static final BigDecimal REFUND_AMOUNT = new BigDecimal("10.00");
+
+    @Mock
+    private PaymentTransactionRepository transactionRepository;
+
+    @Mock
+    private RefundRecordRepository refundRecordRepository;
+
+    @Mock
+    private PaymentEventPublisher eventPublisher;
+
+    @Mock
+    private OrderLockManager orderLockManager;
+
+    @Mock
+    private PaymentTransactionService transactionService;
+
+    @Mock
+    private PaymentTransactionCache transactionCache;
+
+    @Mock
+    private AlipayService alipayService;
+
+    private PaymentTransactionEntity transaction;
+    private RefundService refundService;
+    private RefundRecordEntity storedRecord;
+    private boolean locked;
+
+    @BeforeEach
+    void setUp() {
+        refundService = new RefundService(transactionRepository, refundRecordRepository, eventPublisher,
+                new ObjectMapper(), orderLockManager, new DirectTransactionTemplate(), transactionService,
+                transactionCache, Optional.of(alipayService), Optional.empty());
+
+        transaction = new PaymentTransactionEntity();
+        transaction.setId(1L);
+        transaction.setOrderId("ORDER_001");
+        transaction.setTradeNo("T_001");
+        transaction.setPlatform(PaymentPlatform.ALIPAY);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setStatus(TransactionStatus.SUCCESS);
+
+        when(transactionService.findByTradeNo("T_001")).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findByTradeNo("T_001")).thenReturn(Optional.of(transaction));
+        when(orderLockManager.executeWithLock(anyString(), any())).thenAnswer(invocation -> {
+            locked = true;
+            try {
+                return ((Supplier<?>) invocation.getArgument(1)).get();
+            } finally {
+                locked = false;
+            }
+        });
+        lenient().doCallRealMethod().when(orderLockManager).runWithLock(anyString(), any());
+        // 模拟退款记录表：保存后可按 ID 读回
+        lenient().when(refundRecordRepository.save(any(RefundRecordEntity.class))).thenAnswer(invocation -> {
+            storedRecord = invocation.getArgument(0);
+            return storedRecord;
+        });
+        lenient().when(refundRecordRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(storedRecord));
+    }
+
+    @Test
+    @DisplayName("可退金额已被占用 - 不调用支付平台，直接拒绝")
+    void reserveFailed_GatewayNotCalled() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(0);
+
+        assertThatThrownBy(() -> refundService.refund(request()))
+                .isInstanceOf(BusinessException.class)
+                .extracting(e -> ((BusinessException) e).getErrorCode())
+                .isEqualTo(ErrorCode.EXCEED_REFUND_AMOUNT);
+
+        verify(alipayService, never()).refund(any());
+        verify(refundRecordRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("调用支付平台时不持有订单锁，调用前已保存待处理的退款记录")
+    void gatewayCalledOutsideLock() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenAnswer(invocation -> {
+            assertThat(locked).isFalse();
+            assertThat(storedRecord.getStatus()).isEqualTo(RefundStatus.PENDING);
+            return alipayResponse("10000");
+        });
+
+        refundService.refund(request());
+
+        verify(orderLockManager, times(2)).executeWithLock(eq("ORDER_001"), any());
+        assertThat(storedRecord.getStatus()).isEqualTo(RefundStatus.SUCCESS);
+    }
+
+    @Test
+    @DisplayName("平台通知先于退款结果到达 - 保留通知确定的状态，不再释放金额")
+    void notifyArrivedFirst_KeepsNotifiedStatus() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenAnswer(invocation -> {
+            // 调用平台期间退款通知已处理
+            storedRecord.setStatus(RefundStatus.SUCCESS);
+            return alipayResponse("40004");
+        });
+
+        refundService.refund(request());
+
+        assertThat(storedRecord.getStatus()).isEqualTo(RefundStatus.SUCCESS);
+        verify(transactionRepository, never()).releaseRefundedAmount(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("平台受理退款 - 保留预占金额，退款记录为成功")
+    void gatewaySuccess_KeepsReservation() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenReturn(alipayResponse("10000"));
+
+        RefundResponse response = refundService.refund(request());
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(savedRecord().getStatus()).isEqualTo(RefundStatus.SUCCESS);
+        verify(transactionRepository, never()).releaseRefundedAmount(any(), any(), any());
+        verify(eventPublisher).publish(any());
+    }
+
+    @Test
+    @DisplayName("平台拒绝退款 - 释放预占金额，退款记录为失败")
+    void gatewayRejected_ReleasesReservation() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(transactionRepository.releaseRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenReturn(alipayResponse("40004"));
+
+        RefundResponse response = refundService.refund(request());
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(savedRecord().getStatus()).isEqualTo(RefundStatus.FAILED);
+        verify(transactionRepository).releaseRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("调用平台超时 - 结果未知，保留预占金额，退款记录保持处理中")
+    void gatewayTimeout_KeepsPending() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenThrow(new AlipayApiException("连接超时"));
+
+        RefundResponse response = refundService.refund(request());
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.isPending()).isTrue();
+        assertThat(savedRecord().getStatus()).isEqualTo(RefundStatus.PENDING);
+        verify(transactionRepository, never()).releaseRefundedAmount(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("平台系统错误 - 结果未知，保留预占金额，退款记录保持处理中")
+    void gatewaySystemError_KeepsPending() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        AlipayRefundResponse systemError = alipayResponse("40004");
+        systemError.setSubCode("ACQ.SYSTEM_ERROR");
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenReturn(systemError);
+
+        RefundResponse response = refundService.refund(request());
+
+        assertThat(response.isPending()).isTrue();
+        assertThat(savedRecord().getStatus()).isEqualTo(RefundStatus.PENDING);
+        verify(transactionRepository, never()).releaseRefundedAmount(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("请求未发出（熔断） - 释放预占金额，退款记录为失败")
+    void gatewayUnavailable_ReleasesReservation() throws AlipayApiException {
+        when(transactionRepository.addRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(transactionRepository.releaseRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(alipayService.refund(any(AlipayRefundRequest.class))).thenThrow(
+                new GatewayUnavailableException(PaymentPlatform.ALIPAY, "refund", "熔断器打开"));
+
+        RefundResponse response = refundService.refund(request());
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.isPending()).isFalse();
+        assertThat(savedRecord().getStatus()).isEqualTo(RefundStatus.FAILED);
+        verify(transactionRepository).releaseRefundedAmount(eq(1L), eq(REFUND_AMOUNT), any(LocalDateTime.class));
+    }
+
+    private RefundRecordEntity savedRecord() {
+        ArgumentCaptor<RefundRecordEntity> captor = ArgumentCaptor.forClass(RefundRecordEntity.class);
+        verify(refundRecordRepository, times(2)).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static RefundRequest request() {
+        RefundRequest request = new RefundRequest();
+        request.setTradeNo("T_001");
+        request.setRefundAmount(REFUND_AMOUNT);
+        request.setRefundReason("测试退款");
+        return request;
+    }
+
+    private static AlipayRefundResponse alipayResponse(String code) {
+        AlipayRefundResponse response = new AlipayRefundResponse();
+        response.setCode(code);
+        response.setMsg("Success");
+        response.setTradeNo("2024010122001400000000000001");
+        return response;
+    }
+
+    /**
+     * 直接在当前线程执行回调，不开启真实事务
+     */
+    private static class DirectTransactionTemplate extends TransactionTemplate {
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(new SimpleTransactionStatus());
+        }
+    }
+}